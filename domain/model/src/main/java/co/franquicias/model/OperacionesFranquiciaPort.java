@@ -1,7 +1,13 @@
 package co.franquicias.model;
 
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -27,13 +33,36 @@ public interface OperacionesFranquiciaPort {
     Mono<Producto> agregarProducto(String franquiciaId, String sucursalId, String nombreProducto, int stock);
     Mono<Void>     eliminarProducto(String franquiciaId, String sucursalId, String productoId);
     Mono<Producto> actualizarStock(String franquiciaId, String sucursalId, String productoId, int stock);
+    /** Suma {@code delta} al stock de forma atómica; error {@code StockInsuficienteException} si quedaría negativo. */
+    Mono<Producto> ajustarStock(String franquiciaId, String sucursalId, String productoId, int delta);
+    /** Stocks absolutos en masa (entradas ya validadas); un resultado por entrada. */
+    Flux<ResultadoActualizacion> actualizarStockLote(Flux<ActualizacionStock> cambios);
+    /** Alta masiva de productos de la franquicia (filas ya validadas); un resultado por fila. */
+    Flux<ResultadoImportacion> importarProductos(String franquiciaId, Flux<ImportacionProducto> filas);
 
     Flux<Producto> productosDeSucursal(String franquiciaId, String sucursalId);
     Flux<Producto> todosLosProductos();
-    Flux<Producto> buscarProductos(String nombreLike);
+    Flux<Producto> buscarProductos(String nombreLike, int limit);
+    Flux<Producto> sugerirProductos(String texto, int limit);
     Mono<Producto> actualizarProducto(String id, Producto cambios);
 
     Mono<Map<String,Object>> productoGlobal(String productoId);
     Flux<Object> todosProductosViewRaw();
     Flux<Map<String, Object>> maxStockPorSucursal(String franquiciaId);
+
+    // listados paginados por keyset: `after` es el nextCursor de la página anterior (null = primera)
+    Mono<Pagina<Franquicia>> obtenerFranquicias(boolean verProductos, int limit, String after);
+    Mono<Pagina<Sucursal>> obtenerSucursalPorFranquiciaId(String franquiciaId, int limit, String after);
+    Mono<Pagina<Producto>> todosLosProductos(int limit, String after);
+    Mono<Pagina<Map<String, Object>>> todosProductosViewRaw(int limit, String after);
+
+    // revisiones para GET condicionales: solo id/version de lo que devolvería la lectura, sin hidratar.
+    // Vacío si la franquicia/sucursal no existe (la lectura normal responde el error).
+    Mono<Revision> revisionFranquicia(String id);
+    Mono<Revision> revisionSucursal(String id);
+    Mono<Revision> revisionFranquicias();
+
+    // vista materializada de productos
+    Mono<Long> reconstruirVistaProductos();
+    Mono<Map<String, Object>> verificarVistaProductos();
 }
@@ -0,0 +1,25 @@
+package co.franquicias.model.busqueda;
+
+import co.franquicias.model.producto.Producto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado acotado de una búsqueda de productos. Si no hubo coincidencias, {@code sugerencias} es
+ * true y {@code productos} trae un conjunto pequeño de nombres aproximados en lugar del catálogo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoBusqueda {
+    private String consulta;
+    @Builder.Default
+    private List<Producto> productos = new ArrayList<>();
+    private boolean sugerencias;
+}
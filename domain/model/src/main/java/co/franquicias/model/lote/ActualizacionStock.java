@@ -0,0 +1,17 @@
+package co.franquicias.model.lote;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Una entrada de la actualización masiva de stock: valor absoluto para un producto de una sucursal. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActualizacionStock {
+    private String productoId;
+    private String sucursalId;
+    private Integer stock;
+}
@@ -0,0 +1,22 @@
+package co.franquicias.model.lote;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Una fila de la importación masiva de productos. {@code fila} es el número de línea en el archivo
+ * de origen; {@code errorFormato} viene informado si la línea no se pudo leer.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionProducto {
+    private long fila;
+    private String sucursalId;
+    private String nombre;
+    private Integer stock;
+    private String errorFormato;
+}
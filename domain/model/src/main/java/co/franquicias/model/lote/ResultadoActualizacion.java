@@ -0,0 +1,26 @@
+package co.franquicias.model.lote;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Resultado por ítem de una actualización masiva de stock. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoActualizacion {
+
+    /** {@code SUPERADO}: el mismo producto aparece más adelante en el lote y solo se aplica esa entrada. */
+    public enum Estado { ACTUALIZADO, NO_ENCONTRADO, INVALIDO, ERROR, SUPERADO }
+
+    private String productoId;
+    private String sucursalId;
+    private Estado estado;
+    private String mensaje;
+
+    public static ResultadoActualizacion de(ActualizacionStock cambio, Estado estado, String mensaje) {
+        return new ResultadoActualizacion(cambio.getProductoId(), cambio.getSucursalId(), estado, mensaje);
+    }
+}
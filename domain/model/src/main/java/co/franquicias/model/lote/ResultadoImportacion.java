@@ -0,0 +1,27 @@
+package co.franquicias.model.lote;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Resultado por fila de una importación masiva de productos. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoImportacion {
+
+    public enum Estado { CREADO, DUPLICADO, INVALIDO, ERROR }
+
+    private long fila;
+    private String sucursalId;
+    private String nombre;
+    private String productoId;
+    private Estado estado;
+    private String mensaje;
+
+    public static ResultadoImportacion de(ImportacionProducto fila, Estado estado, String productoId, String mensaje) {
+        return new ResultadoImportacion(fila.getFila(), fila.getSucursalId(), fila.getNombre(), productoId, estado, mensaje);
+    }
+}
@@ -0,0 +1,22 @@
+package co.franquicias.model.pagina;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Página de un listado paginado por keyset. {@code nextCursor} es opaco y es null en la última página.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Pagina<T> {
+    @Builder.Default
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+}
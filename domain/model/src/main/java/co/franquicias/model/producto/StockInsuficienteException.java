@@ -0,0 +1,17 @@
+package co.franquicias.model.producto;
+
+import lombok.Getter;
+
+/** El ajuste de stock dejaría el producto en negativo; la escritura no se aplicó. */
+@Getter
+public class StockInsuficienteException extends RuntimeException {
+
+    private final String productoId;
+    private final int delta;
+
+    public StockInsuficienteException(String productoId, int delta) {
+        super("Stock insuficiente para el producto " + productoId + " (delta " + delta + ")");
+        this.productoId = productoId;
+        this.delta = delta;
+    }
+}
@@ -0,0 +1,20 @@
+package co.franquicias.model.revision;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Validador de una lectura para GET condicionales. {@code etag} cambia con cualquier cambio de lo que
+ * la lectura devolvería (se deriva de id + version de cada documento involucrado, así que también con
+ * altas y bajas). No hay fecha de última modificación: el {@code updatedAt} más reciente de los
+ * documentos vigentes no avanza con una baja ni con el stock pendiente del write-behind.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Revision {
+    private String etag;
+}
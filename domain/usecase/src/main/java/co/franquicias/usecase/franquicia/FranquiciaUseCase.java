@@ -1,15 +1,27 @@
 package co.franquicias.usecase.franquicia;
 
 import co.franquicias.model.OperacionesFranquiciaPort;
+import co.franquicias.model.busqueda.ResultadoBusqueda;
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.text.Normalizer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 @RequiredArgsConstructor
@@ -17,6 +29,15 @@ public class FranquiciaUseCase {
 
     private static final Logger logger = Logger.getLogger(FranquiciaUseCase.class.getName());
 
+    /** Tamaño máximo de página aceptado en los listados paginados. */
+    public static final int LIMITE_MAXIMO_PAGINA = 500;
+
+    /** Tope obligatorio de resultados de una búsqueda. */
+    public static final int LIMITE_MAXIMO_BUSQUEDA = 100;
+
+    /** Cantidad máxima de sugerencias cuando una búsqueda no tiene coincidencias. */
+    public static final int MAXIMO_SUGERENCIAS = 5;
+
     private final OperacionesFranquiciaPort repository;
 
     // ================= Franquicia =================
@@ -47,6 +68,13 @@ public class FranquiciaUseCase {
         return repository.obtenerFranquicias(verProducto);
     }
 
+    public Mono<Pagina<Franquicia>> obtenerFranquicias(boolean verProducto, int limit, String after) {
+        return validarLimite(limit)
+                .then(Mono.defer(() -> repository.obtenerFranquicias(verProducto, limit, after)))
+                .doOnSubscribe(s -> logger.info(() -> "[obtenerFranquicias] limit=" + limit + ", after=" + after))
+                .doOnError(e -> logger.severe("[obtenerFranquicias] error: " + e.getMessage()));
+    }
+
     public Mono<String> eliminarFranquiciaPorId(String id) {
         return repository.eliminarFranquiciaPorId(Objects.requireNonNull(id, "id requerido"))
                 .doOnSubscribe(s -> logger.info(() -> "[eliminarFranquiciaPorId] id=" + id))
@@ -87,6 +115,13 @@ public class FranquiciaUseCase {
         return repository.obtenerSucursalPorFranquiciaId(franquiciaId);
     }
 
+    public Mono<Pagina<Sucursal>> obtenerSucursalPorFranquiciaId(String franquiciaId, int limit, String after) {
+        return validarLimite(limit)
+                .then(Mono.defer(() -> repository.obtenerSucursalPorFranquiciaId(franquiciaId, limit, after)))
+                .doOnSubscribe(s -> logger.info(() -> "[obtenerSucursalPorFranquiciaId] fId=" + franquiciaId + ", limit=" + limit))
+                .doOnError(e -> logger.severe("[obtenerSucursalPorFranquiciaId] error: " + e.getMessage()));
+    }
+
 
     public Mono<String> eliminarSucursalPorId(String id) {
         return repository.eliminarSucursalPorId(Objects.requireNonNull(id, "id requerido"))
@@ -137,6 +172,48 @@ public class FranquiciaUseCase {
                 .doOnError(e -> logger.severe("[actualizarStock] error: " + e.getMessage()));
     }
 
+    public Mono<Producto> ajustarStock(String franquiciaId, String sucursalId, String productoId, int delta) {
+        Mono<Void> validacion = delta == 0
+                ? Mono.error(new IllegalArgumentException("delta debe ser distinto de 0"))
+                : Mono.empty();
+        return validacion
+                .then(Mono.defer(() -> repository.ajustarStock(franquiciaId, sucursalId, productoId, delta)))
+                .doOnSubscribe(s -> logger.info(() ->
+                        "[ajustarStock] fId=" + franquiciaId + ", sId=" + sucursalId + ", pId=" + productoId + ", delta=" + delta))
+                .doOnError(e -> logger.severe("[ajustarStock] error: " + e.getMessage()));
+    }
+
+    /**
+     * Actualización masiva de stock: las entradas inválidas se reportan como INVALIDO sin llegar al
+     * puerto; las válidas fluyen al puerto, que las aplica por lotes. Un resultado por entrada.
+     */
+    public Flux<ResultadoActualizacion> actualizarStockLote(Flux<ActualizacionStock> cambios) {
+        return cambios
+                .groupBy(c -> motivoInvalido(c).isEmpty())
+                .flatMap(grupo -> Boolean.TRUE.equals(grupo.key())
+                        ? repository.actualizarStockLote(grupo)
+                        : grupo.map(c -> ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.INVALIDO,
+                                motivoInvalido(c).orElse(null))))
+                .doOnSubscribe(s -> logger.info(() -> "[actualizarStockLote]"))
+                .doOnError(e -> logger.severe("[actualizarStockLote] error: " + e.getMessage()));
+    }
+
+    /**
+     * Importación masiva de productos: las filas ilegibles o inválidas se reportan como INVALIDO;
+     * las válidas (nombre recortado) fluyen al puerto. Un resultado por fila.
+     */
+    public Flux<ResultadoImportacion> importarProductos(String franquiciaId, Flux<ImportacionProducto> filas) {
+        return filas
+                .map(f -> f.getNombre() == null ? f : f.toBuilder().nombre(f.getNombre().trim()).build())
+                .groupBy(f -> motivoInvalido(f).isEmpty())
+                .flatMap(grupo -> Boolean.TRUE.equals(grupo.key())
+                        ? repository.importarProductos(franquiciaId, grupo)
+                        : grupo.map(f -> ResultadoImportacion.de(f, ResultadoImportacion.Estado.INVALIDO, null,
+                                motivoInvalido(f).orElse(null))))
+                .doOnSubscribe(s -> logger.info(() -> "[importarProductos] fId=" + franquiciaId))
+                .doOnError(e -> logger.severe("[importarProductos] error: " + e.getMessage()));
+    }
+
     public Mono<Producto> actualizarProducto(String id, Producto cambios) {
         return Mono.defer(() -> {
             if (cambios.getNombre() != null) {
@@ -167,6 +244,13 @@ public class FranquiciaUseCase {
                 .doOnError(e -> logger.severe("[getAllProductos] error: " + e.getMessage()));
     }
 
+    public Mono<Pagina<Producto>> getAllProductos(int limit, String after) {
+        return validarLimite(limit)
+                .then(Mono.defer(() -> repository.todosLosProductos(limit, after)))
+                .doOnSubscribe(s -> logger.info(() -> "[getAllProductos] limit=" + limit + ", after=" + after))
+                .doOnError(e -> logger.severe("[getAllProductos] error: " + e.getMessage()));
+    }
+
     public Mono<Map<String,Object>> getProductoGlobal(String productoId) {
         return repository.productoGlobal(productoId)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")))
@@ -174,9 +258,26 @@ public class FranquiciaUseCase {
                 .doOnError(e -> logger.severe("[getProductoGlobal] error: " + e.getMessage()));
     }
 
-    public Flux<Producto> searchProductosGlobal(String nombreLike) {
-        Flux<Producto> query = repository.buscarProductos(nombreLike == null ? "" : nombreLike.trim());
-        return query.switchIfEmpty(repository.todosLosProductos())
+    /**
+     * Búsqueda acotada a {@code limit} (1..{@value #LIMITE_MAXIMO_BUSQUEDA}) y ordenada por
+     * exacto > prefijo > infijo > aproximado. Sin coincidencias devuelve a lo sumo
+     * {@value #MAXIMO_SUGERENCIAS} sugerencias, nunca el catálogo completo.
+     */
+    public Mono<ResultadoBusqueda> searchProductosGlobal(String nombreLike, int limit) {
+        String consulta = nombreLike == null ? "" : nombreLike.trim();
+        Mono<ResultadoBusqueda> busqueda = Mono.defer(() -> consulta.isEmpty()
+                ? Mono.just(ResultadoBusqueda.builder().consulta(consulta).build())
+                : repository.buscarProductos(consulta, limit)
+                        .take(limit)
+                        .collectList()
+                        .flatMap(encontrados -> encontrados.isEmpty()
+                                ? sugerencias(consulta, limit)
+                                : Mono.just(ResultadoBusqueda.builder()
+                                        .consulta(consulta)
+                                        .productos(rankear(encontrados, consulta))
+                                        .build())));
+        return validarLimite(limit, LIMITE_MAXIMO_BUSQUEDA)
+                .then(busqueda)
                 .doOnSubscribe(s -> logger.info(() -> "[searchProductosGlobal] q='" + nombreLike + "'"))
                 .doOnError(e -> logger.severe("[searchProductosGlobal] error: " + e.getMessage()));
     }
@@ -187,6 +288,13 @@ public class FranquiciaUseCase {
                 .doOnError(e -> logger.severe("[getAllProductosViewRaw] error: " + e.getMessage()));
     }
 
+    public Mono<Pagina<Map<String, Object>>> getAllProductosViewRaw(int limit, String after) {
+        return validarLimite(limit)
+                .then(Mono.defer(() -> repository.todosProductosViewRaw(limit, after)))
+                .doOnSubscribe(s -> logger.info(() -> "[getAllProductosViewRaw] limit=" + limit + ", after=" + after))
+                .doOnError(e -> logger.severe("[getAllProductosViewRaw] error: " + e.getMessage()));
+    }
+
     public Mono<Map<String, Object>> getProductoGlobalViewRaw(String productoId) {
         return repository.productoGlobal(productoId)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")))
@@ -194,6 +302,35 @@ public class FranquiciaUseCase {
                 .doOnError(e -> logger.severe("[getProductoGlobalViewRaw] error: " + e.getMessage()));
     }
 
+    public Mono<Long> reconstruirVistaProductos() {
+        return repository.reconstruirVistaProductos()
+                .doOnSubscribe(s -> logger.info(() -> "[reconstruirVistaProductos]"))
+                .doOnError(e -> logger.severe("[reconstruirVistaProductos] error: " + e.getMessage()));
+    }
+
+    public Mono<Map<String, Object>> verificarVistaProductos() {
+        return repository.verificarVistaProductos()
+                .doOnSubscribe(s -> logger.info(() -> "[verificarVistaProductos]"))
+                .doOnError(e -> logger.severe("[verificarVistaProductos] error: " + e.getMessage()));
+    }
+
+    // ================= Revisiones (GET condicional) =================
+
+    /** Revisión del árbol que devuelve {@link #obtenerPorId}; vacío si la franquicia no existe. */
+    public Mono<Revision> revisionFranquicia(String id) {
+        return repository.revisionFranquicia(Objects.requireNonNull(id, "id requerido"));
+    }
+
+    /** Revisión de la sucursal con sus productos ({@link #obtenerSucursalPorId}); vacío si no existe. */
+    public Mono<Revision> revisionSucursal(String id) {
+        return repository.revisionSucursal(Objects.requireNonNull(id, "id requerido"));
+    }
+
+    /** Revisión del listado completo de franquicias con sus sucursales (sin productos). */
+    public Mono<Revision> revisionFranquicias() {
+        return repository.revisionFranquicias();
+    }
+
     public Flux<Producto> getProductosDeSucursal(String franquiciaId, String sucursalId) {
         return repository.productosDeSucursal(franquiciaId, sucursalId)
                 .doOnSubscribe(s -> logger.info(() -> "[getProductosDeSucursal] fId=" + franquiciaId + ", sId=" + sucursalId))
@@ -208,6 +345,87 @@ public class FranquiciaUseCase {
                 .then();
     }
 
+    private Mono<ResultadoBusqueda> sugerencias(String consulta, int limit) {
+        int max = Math.min(limit, MAXIMO_SUGERENCIAS);
+        return repository.sugerirProductos(consulta, max)
+                .take(max)
+                .collectList()
+                .map(sugeridos -> ResultadoBusqueda.builder()
+                        .consulta(consulta)
+                        .productos(sugeridos)
+                        .sugerencias(true)
+                        .build());
+    }
+
+    /** exacto (0) > prefijo (1) > infijo (2) > aproximado (3); dentro de cada nivel, nombre más corto. */
+    static List<Producto> rankear(List<Producto> productos, String consulta) {
+        String q = normalizar(consulta);
+        Comparator<Producto> orden = Comparator.<Producto>comparingInt(p -> nivel(normalizar(p.getNombre()), q))
+                .thenComparingInt(p -> p.getNombre() == null ? 0 : p.getNombre().length());
+        return productos.stream().sorted(orden).toList();
+    }
+
+    private static int nivel(String nombre, String q) {
+        if (nombre.equals(q)) return 0;
+        if (nombre.startsWith(q)) return 1;
+        if (nombre.contains(q)) return 2;
+        return 3;
+    }
+
+    private static String normalizar(String s) {
+        if (s == null) return "";
+        return Normalizer.normalize(s.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private Mono<Void> validarLimite(int limit) {
+        return validarLimite(limit, LIMITE_MAXIMO_PAGINA);
+    }
+
+    private Mono<Void> validarLimite(int limit, int maximo) {
+        return Mono.just(limit)
+                .filter(l -> l > 0 && l <= maximo)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException(
+                        "limit debe estar entre 1 y " + maximo)))
+                .then();
+    }
+
+    private static Optional<String> motivoInvalido(ActualizacionStock c) {
+        if (c.getProductoId() == null || c.getProductoId().isBlank()) {
+            return Optional.of("productoId requerido");
+        }
+        if (c.getSucursalId() == null || c.getSucursalId().isBlank()) {
+            return Optional.of("sucursalId requerido");
+        }
+        if (c.getStock() == null) {
+            return Optional.of("stock requerido");
+        }
+        if (c.getStock() < 0) {
+            return Optional.of("Stock negativo no permitido");
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> motivoInvalido(ImportacionProducto f) {
+        if (f.getErrorFormato() != null) {
+            return Optional.of(f.getErrorFormato());
+        }
+        if (f.getSucursalId() == null || f.getSucursalId().isBlank()) {
+            return Optional.of("sucursalId requerido");
+        }
+        if (f.getNombre() == null || f.getNombre().isBlank()) {
+            return Optional.of("El nombre del producto no puede estar vacío");
+        }
+        if (f.getStock() == null) {
+            return Optional.of("stock requerido");
+        }
+        if (f.getStock() < 0) {
+            return Optional.of("Stock negativo no permitido");
+        }
+        return Optional.empty();
+    }
+
     private Mono<Void> validarStockNoNegativo(int stock) {
         return Mono.just(stock)
                 .filter(s -> s >= 0)
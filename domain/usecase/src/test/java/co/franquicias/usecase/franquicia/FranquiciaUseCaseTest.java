@@ -2,7 +2,13 @@ package co.franquicias.usecase.franquicia;
 
 import co.franquicias.model.OperacionesFranquiciaPort;
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +18,8 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -256,6 +264,87 @@ class FranquiciaUseCaseTest {
                 .verify();
     }
 
+    @Test
+    @DisplayName("ajustarStock: delega el delta; delta 0 → error sin tocar el puerto")
+    void ajustarStock() {
+        when(port.ajustarStock("f1","s1","p1",-3))
+                .thenReturn(Mono.just(prod("p1","s1","A",6)));
+
+        StepVerifier.create(useCase.ajustarStock("f1","s1","p1",-3))
+                .expectNextMatches(p -> p.getStock()==6)
+                .verifyComplete();
+
+        StepVerifier.create(useCase.ajustarStock("f1","s1","p1",0))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verify(port, times(1)).ajustarStock(anyString(), anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("actualizarStockLote: inválidos → INVALIDO sin llegar al puerto; válidos → puerto")
+    void actualizarStockLote() {
+        ActualizacionStock ok1 = ActualizacionStock.builder().productoId("p1").sucursalId("s1").stock(3).build();
+        ActualizacionStock ok2 = ActualizacionStock.builder().productoId("p2").sucursalId("s1").stock(0).build();
+        ActualizacionStock negativo = ActualizacionStock.builder().productoId("p3").sucursalId("s1").stock(-1).build();
+        ActualizacionStock sinStock = ActualizacionStock.builder().productoId("p4").sucursalId("s1").build();
+        ActualizacionStock sinSucursal = ActualizacionStock.builder().productoId("p5").stock(1).build();
+
+        List<ActualizacionStock> recibidos = new ArrayList<>();
+        when(port.actualizarStockLote(any())).thenAnswer(inv -> {
+            Flux<ActualizacionStock> validos = inv.getArgument(0);
+            return validos.doOnNext(recibidos::add)
+                    .map(c -> ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ACTUALIZADO, null));
+        });
+
+        StepVerifier.create(useCase.actualizarStockLote(Flux.just(ok1, negativo, sinStock, ok2, sinSucursal))
+                        .collectMap(ResultadoActualizacion::getProductoId))
+                .assertNext(porId -> {
+                    assertEquals(5, porId.size());
+                    assertEquals(ResultadoActualizacion.Estado.ACTUALIZADO, porId.get("p1").getEstado());
+                    assertEquals(ResultadoActualizacion.Estado.ACTUALIZADO, porId.get("p2").getEstado());
+                    assertEquals("Stock negativo no permitido", porId.get("p3").getMensaje());
+                    assertEquals("stock requerido", porId.get("p4").getMensaje());
+                    assertEquals(ResultadoActualizacion.Estado.INVALIDO, porId.get("p5").getEstado());
+                })
+                .verifyComplete();
+
+        assertEquals(List.of(ok1, ok2), recibidos);
+        verify(port, times(1)).actualizarStockLote(any());
+    }
+
+    @Test
+    @DisplayName("importarProductos: trimea nombre; filas inválidas → INVALIDO sin llegar al puerto")
+    void importarProductos() {
+        ImportacionProducto ok = ImportacionProducto.builder().fila(1).sucursalId("s1").nombre("  Leche ").stock(3).build();
+        ImportacionProducto malFormada = ImportacionProducto.builder().fila(2).errorFormato("JSON inválido").build();
+        ImportacionProducto sinNombre = ImportacionProducto.builder().fila(3).sucursalId("s1").nombre("   ").stock(1).build();
+        ImportacionProducto negativo = ImportacionProducto.builder().fila(4).sucursalId("s1").nombre("Pan").stock(-2).build();
+        ImportacionProducto sinSucursal = ImportacionProducto.builder().fila(5).nombre("Cafe").stock(1).build();
+
+        List<ImportacionProducto> recibidas = new ArrayList<>();
+        when(port.importarProductos(eq("f1"), any())).thenAnswer(inv -> {
+            Flux<ImportacionProducto> validas = inv.getArgument(1);
+            return validas.doOnNext(recibidas::add)
+                    .map(f -> ResultadoImportacion.de(f, ResultadoImportacion.Estado.CREADO, "p" + f.getFila(), null));
+        });
+
+        StepVerifier.create(useCase.importarProductos("f1", Flux.just(ok, malFormada, sinNombre, negativo, sinSucursal))
+                        .collectMap(ResultadoImportacion::getFila))
+                .assertNext(porFila -> {
+                    assertEquals(5, porFila.size());
+                    assertEquals(ResultadoImportacion.Estado.CREADO, porFila.get(1L).getEstado());
+                    assertEquals("JSON inválido", porFila.get(2L).getMensaje());
+                    assertEquals("El nombre del producto no puede estar vacío", porFila.get(3L).getMensaje());
+                    assertEquals("Stock negativo no permitido", porFila.get(4L).getMensaje());
+                    assertEquals("sucursalId requerido", porFila.get(5L).getMensaje());
+                })
+                .verifyComplete();
+
+        assertEquals(1, recibidas.size());
+        assertEquals("Leche", recibidas.get(0).getNombre());
+        verify(port, times(1)).importarProductos(eq("f1"), any());
+    }
+
     @Test
     @DisplayName("actualizarProducto: trimea nombre; nombre vacío o stock negativo → error")
     void actualizarProducto() {
@@ -293,6 +382,37 @@ class FranquiciaUseCaseTest {
                 .expectNextCount(2).verifyComplete();
     }
 
+    @Test
+    @DisplayName("reconstruir / verificar vista de productos: delegan")
+    void vistaProductosAdmin() {
+        when(port.reconstruirVistaProductos()).thenReturn(Mono.just(4L));
+        when(port.verificarVistaProductos()).thenReturn(Mono.just(Map.<String, Object>of("consistente", true)));
+
+        StepVerifier.create(useCase.reconstruirVistaProductos())
+                .expectNext(4L).verifyComplete();
+        StepVerifier.create(useCase.verificarVistaProductos())
+                .expectNextMatches(m -> Boolean.TRUE.equals(m.get("consistente")))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listados paginados: validan limit y delegan en el puerto")
+    void listadosPaginados() {
+        when(port.todosLosProductos(10, "c1")).thenReturn(Mono.just(new Pagina<>(List.of(prod("p1","s1","A",1)), "c2")));
+        StepVerifier.create(useCase.getAllProductos(10, "c1"))
+                .expectNextMatches(p -> p.getItems().size() == 1 && "c2".equals(p.getNextCursor()))
+                .verifyComplete();
+
+        StepVerifier.create(useCase.getAllProductosViewRaw(0, null))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("limit"))
+                .verify();
+        StepVerifier.create(useCase.obtenerFranquicias(false, FranquiciaUseCase.LIMITE_MAXIMO_PAGINA + 1, null))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verify(port, never()).todosProductosViewRaw(anyInt(), any());
+        verify(port, never()).obtenerFranquicias(anyBoolean(), anyInt(), any());
+    }
+
     @Test
     @DisplayName("getAllProductos: delega")
     void getAllProductos() {
@@ -317,19 +437,52 @@ class FranquiciaUseCaseTest {
     }
 
     @Test
-    @DisplayName("searchProductosGlobal: usa resultado de búsqueda o fallback a todos")
-    void searchProductosGlobal() {
-        when(port.buscarProductos("abc")).thenReturn(Flux.just(prod("p1","s1","abc",1)));
-        when(port.buscarProductos("")).thenReturn(Flux.empty());
-        when(port.todosLosProductos()).thenReturn(Flux.just(prod("p2","s1","X",2)));
-
-        StepVerifier.create(useCase.searchProductosGlobal("  abc  "))
-                .expectNextMatches(p -> p.getNombre().equals("abc"))
+    @DisplayName("searchProductosGlobal: ranking exacto > prefijo > infijo > aproximado")
+    void searchProductosGlobal_ranking() {
+        when(port.buscarProductos("cafe", 10)).thenReturn(Flux.just(
+                prod("p1","s1","Descafeinado",1),
+                prod("p2","s1","Cafetera",1),
+                prod("p3","s1","Cafés",1),
+                prod("p4","s1","Café",1)));
+
+        StepVerifier.create(useCase.searchProductosGlobal("  cafe  ", 10))
+                .assertNext(r -> {
+                    assertFalse(r.isSugerencias());
+                    assertEquals(List.of("p4", "p3", "p2", "p1"),
+                            r.getProductos().stream().map(Producto::getId).toList());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("searchProductosGlobal: sin coincidencias devuelve sugerencias acotadas, nunca el catálogo")
+    void searchProductosGlobal_sugerencias() {
+        when(port.buscarProductos("lehce", 50)).thenReturn(Flux.empty());
+        when(port.sugerirProductos("lehce", FranquiciaUseCase.MAXIMO_SUGERENCIAS))
+                .thenReturn(Flux.just(prod("p9","s1","Leche",1)));
+
+        StepVerifier.create(useCase.searchProductosGlobal("lehce", 50))
+                .assertNext(r -> {
+                    assertTrue(r.isSugerencias());
+                    assertEquals(1, r.getProductos().size());
+                })
                 .verifyComplete();
 
-        StepVerifier.create(useCase.searchProductosGlobal(null))
-                .expectNextMatches(p -> p.getId().equals("p2"))
+        verify(port, never()).todosLosProductos();
+    }
+
+    @Test
+    @DisplayName("searchProductosGlobal: consulta vacía no consulta el puerto; limit fuera de rango => error")
+    void searchProductosGlobal_limites() {
+        StepVerifier.create(useCase.searchProductosGlobal(null, 10))
+                .assertNext(r -> assertTrue(r.getProductos().isEmpty()))
                 .verifyComplete();
+
+        StepVerifier.create(useCase.searchProductosGlobal("abc", FranquiciaUseCase.LIMITE_MAXIMO_BUSQUEDA + 1))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(port);
     }
 
     @Test
@@ -362,4 +515,18 @@ class FranquiciaUseCaseTest {
         StepVerifier.create(useCase.getProductosDeSucursal("f1","s1"))
                 .expectNextCount(1).verifyComplete();
     }
+
+    @Test
+    @DisplayName("revisiones: delegan; la de franquicia/sucursal exige id")
+    void revisiones() {
+        Revision r = Revision.builder().etag("abc").build();
+        when(port.revisionFranquicia("f1")).thenReturn(Mono.just(r));
+        when(port.revisionSucursal("s1")).thenReturn(Mono.empty());
+        when(port.revisionFranquicias()).thenReturn(Mono.just(r));
+
+        StepVerifier.create(useCase.revisionFranquicia("f1")).expectNext(r).verifyComplete();
+        StepVerifier.create(useCase.revisionSucursal("s1")).verifyComplete();
+        StepVerifier.create(useCase.revisionFranquicias()).expectNext(r).verifyComplete();
+        assertThrows(NullPointerException.class, () -> useCase.revisionFranquicia(null));
+    }
 }
@@ -0,0 +1,108 @@
+package co.franquicias.mongodb.adapter;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.facade.SucursalFranquiciaCache;
+import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
+import co.franquicias.mongodb.repository.ReactiveProductosRepository;
+import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de altas de producto concurrentes contra un Mongo real
+ * ({@code -Dbench.mongo.uri}, por defecto {@code mongodb://localhost:27017}):
+ * <ul>
+ *   <li>{@code existsYSave}: el camino anterior (sucursal existe + nombre duplicado + save).</li>
+ *   <li>{@code insertUnico}: pertenencia desde {@link SucursalFranquiciaCache} + un único insert;
+ *       el duplicado lo resuelve el índice único.</li>
+ * </ul>
+ * Los nombres son únicos, así que ambos caminos terminan siempre en un alta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class CreateThroughputBenchmark {
+
+    private static final String FRANQUICIA = "bench-f";
+    private static final String SUCURSAL = "bench-s";
+
+    private MongoClient client;
+    private ReactiveMongoTemplate template;
+    private ProductoAdapter productoAdapter;
+    private SucursalFranquiciaCache sucursalFranquicia;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        template = new ReactiveMongoTemplate(client, "franquicias_bench");
+        var repos = new ReactiveMongoRepositoryFactory(template);
+        var mm = new ModelMapper();
+        var repoSucursales = repos.getRepository(ReactiveSucursalesRepository.class);
+        productoAdapter = new ProductoAdapter(repos.getRepository(ReactiveProductosRepository.class), template, mm, repoSucursales);
+        var sucursalAdapter = new SucursalAdapter(repoSucursales, template, mm, repos.getRepository(ReactiveFranquiciaRepository.class));
+        sucursalFranquicia = new SucursalFranquiciaCache(sucursalAdapter, new SimpleMeterRegistry(), Duration.ofMinutes(5), 1000);
+
+        template.dropCollection(ProductoData.class)
+                .then(template.dropCollection(SucursalData.class))
+                .then(template.indexOps(ProductoData.class).ensureIndex(
+                        new Index().on("sucursalId", Sort.Direction.ASC).on("nombre", Sort.Direction.ASC)
+                                .unique().named("ux_producto_sucursal_nombre")))
+                .then(template.insert(SucursalData.builder().id(SUCURSAL).franquiciaId(FRANQUICIA).nombre("S").build()))
+                .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public ProductoData existsYSave() {
+        String nombre = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        ProductoData data = ProductoData.builder().id(UUID.randomUUID().toString()).sucursalId(SUCURSAL)
+                .nombre(nombre).stock(0).createdAt(now).updatedAt(now).build();
+        return template.exists(new Query(Criteria.where("_id").is(SUCURSAL)), SucursalData.class)
+                .filter(Boolean.TRUE::equals)
+                .flatMap(s -> template.exists(new Query(Criteria.where("sucursalId").is(SUCURSAL).and("nombre").is(nombre)),
+                        ProductoData.class))
+                .flatMap(dup -> dup ? Mono.<ProductoData>empty() : template.save(data))
+                .block();
+    }
+
+    @Benchmark
+    public Producto insertUnico() {
+        String nombre = UUID.randomUUID().toString();
+        return sucursalFranquicia.franquiciaDe(SUCURSAL)
+                .filter(FRANQUICIA::equals)
+                .flatMap(f -> productoAdapter.crear(SUCURSAL, nombre, 0))
+                .block();
+    }
+}
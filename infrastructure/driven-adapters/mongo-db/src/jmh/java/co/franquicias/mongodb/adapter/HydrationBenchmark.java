@@ -0,0 +1,182 @@
+package co.franquicias.mongodb.adapter;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.mongodb.config.CreadorIndices;
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.facade.FranquiciaTreeHydrator;
+import co.franquicias.mongodb.mapper.BsonReadConverters;
+import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
+import co.franquicias.mongodb.repository.ReactiveProductosRepository;
+import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listado completo franquicia → sucursales → productos contra un Mongo real
+ * ({@code -Dbench.mongo.uri}, por defecto {@code mongodb://localhost:27017}), sobre un catálogo
+ * sembrado con semilla fija para que las corridas sean comparables:
+ * <ul>
+ *   <li>{@code nMasUno}: el camino anterior (franquicias, una consulta de sucursales por franquicia y
+ *       una de productos por sucursal).</li>
+ *   <li>{@code lotesIn}: {@link FranquiciaTreeHydrator}, una consulta {@code $in} por nivel y ventana.</li>
+ *   <li>{@code lookup}: {@link FranquiciaAdapter#obtenerFranquiciasHidratadas()}, una sola agregación
+ *       con {@code $lookup} resuelta en el servidor.</li>
+ * </ul>
+ * Todos leen con los reading converters de {@link BsonReadConverters}, como la aplicación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HydrationBenchmark {
+
+    private static final long SEMILLA = 42L;
+
+    @Param({"10", "100"})
+    int franquicias;
+
+    @Param({"5"})
+    int sucursalesPorFranquicia;
+
+    @Param({"20"})
+    int productosPorSucursal;
+
+    private MongoClient client;
+    private FranquiciaAdapter franquiciaAdapter;
+    private SucursalAdapter sucursalAdapter;
+    private ProductoAdapter productoAdapter;
+    private FranquiciaTreeHydrator hydrator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        ReactiveMongoTemplate template = template(client);
+        var repos = new ReactiveMongoRepositoryFactory(template);
+        var mm = new ModelMapper();
+        var repoFranquicias = repos.getRepository(ReactiveFranquiciaRepository.class);
+        var repoSucursales = repos.getRepository(ReactiveSucursalesRepository.class);
+        franquiciaAdapter = new FranquiciaAdapter(repoFranquicias, template, mm);
+        sucursalAdapter = new SucursalAdapter(repoSucursales, template, mm, repoFranquicias);
+        productoAdapter = new ProductoAdapter(repos.getRepository(ReactiveProductosRepository.class), template, mm, repoSucursales);
+        hydrator = new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 100, true);
+
+        template.dropCollection(FranquiciaData.class)
+                .then(template.dropCollection(SucursalData.class))
+                .then(template.dropCollection(ProductoData.class))
+                .then(new CreadorIndices(template, Duration.ofMinutes(1)).crear())
+                .then(template.insertAll(franquiciasSembradas()).then())
+                .then(template.insertAll(sucursalesSembradas()).then())
+                .then(template.insertAll(productosSembrados()).then())
+                .block();
+    }
+
+    /** Mismo converter que {@code ConectionConfig}: lecturas directas BSON → dominio. */
+    private static ReactiveMongoTemplate template(MongoClient client) {
+        var factory = new SimpleReactiveMongoDatabaseFactory(client, "franquicias_bench");
+        var conversions = new MongoCustomConversions(BsonReadConverters.todos());
+        var context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.setCodecRegistryProvider(factory);
+        converter.afterPropertiesSet();
+        return new ReactiveMongoTemplate(factory, converter);
+    }
+
+    private List<FranquiciaData> franquiciasSembradas() {
+        Instant ahora = Instant.now();
+        List<FranquiciaData> docs = new ArrayList<>(franquicias);
+        for (int f = 0; f < franquicias; f++) {
+            docs.add(FranquiciaData.builder().id("f" + f).nombre("Franquicia " + f)
+                    .createdAt(ahora).updatedAt(ahora).version(0L).build());
+        }
+        return docs;
+    }
+
+    private List<SucursalData> sucursalesSembradas() {
+        Instant ahora = Instant.now();
+        List<SucursalData> docs = new ArrayList<>(franquicias * sucursalesPorFranquicia);
+        for (int f = 0; f < franquicias; f++) {
+            for (int s = 0; s < sucursalesPorFranquicia; s++) {
+                docs.add(SucursalData.builder().id("f" + f + "-s" + s).franquiciaId("f" + f).nombre("Sucursal " + s)
+                        .createdAt(ahora).updatedAt(ahora).version(0L).build());
+            }
+        }
+        return docs;
+    }
+
+    private List<ProductoData> productosSembrados() {
+        Random random = new Random(SEMILLA);
+        Instant ahora = Instant.now();
+        List<ProductoData> docs = new ArrayList<>(franquicias * sucursalesPorFranquicia * productosPorSucursal);
+        for (int f = 0; f < franquicias; f++) {
+            for (int s = 0; s < sucursalesPorFranquicia; s++) {
+                String sucursal = "f" + f + "-s" + s;
+                for (int p = 0; p < productosPorSucursal; p++) {
+                    docs.add(ProductoData.builder().id(sucursal + "-p" + p).sucursalId(sucursal).nombre("Producto " + p)
+                            .stock(random.nextInt(1000)).createdAt(ahora).updatedAt(ahora).version(0L).build());
+                }
+            }
+        }
+        return docs;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public List<Franquicia> nMasUno() {
+        return franquiciaAdapter.obtenerFranquicias()
+                .concatMap(f -> sucursalAdapter.listarPorFranquicia(f.getId())
+                        .concatMap(s -> productoAdapter.listarPorSucursal(s.getId())
+                                .collectList()
+                                .map(ps -> s.toBuilder().productos(ps).build()))
+                        .collectList()
+                        .map(ss -> f.toBuilder().sucursales(ss).build()))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Franquicia> lotesIn() {
+        return hydrator.hydrateFranquicias(franquiciaAdapter.obtenerFranquicias(), true)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<Franquicia> lookup() {
+        return franquiciaAdapter.obtenerFranquiciasHidratadas()
+                .collectList()
+                .block();
+    }
+}
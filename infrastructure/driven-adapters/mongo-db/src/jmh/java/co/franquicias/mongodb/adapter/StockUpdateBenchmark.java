@@ -0,0 +1,115 @@
+package co.franquicias.mongodb.adapter;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.facade.SucursalFranquiciaCache;
+import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
+import co.franquicias.mongodb.repository.ReactiveProductosRepository;
+import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput de actualizaciones de stock concurrentes contra un Mongo real
+ * ({@code -Dbench.mongo.uri}, por defecto {@code mongodb://localhost:27017}):
+ * <ul>
+ *   <li>{@code tresRoundTrips}: el camino anterior (sucursal por id + updateFirst + findById).</li>
+ *   <li>{@code findAndModify}: pertenencia desde {@link SucursalFranquiciaCache} + un único findAndModify.</li>
+ * </ul>
+ * Los productos se reparten entre los hilos al azar, así que también hay contención sobre el mismo documento.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class StockUpdateBenchmark {
+
+    private static final String FRANQUICIA = "bench-f";
+    private static final String SUCURSAL = "bench-s";
+
+    @Param({"100", "10000"})
+    int productos;
+
+    private MongoClient client;
+    private ReactiveMongoTemplate template;
+    private ProductoAdapter productoAdapter;
+    private SucursalFranquiciaCache sucursalFranquicia;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        template = new ReactiveMongoTemplate(client, "franquicias_bench");
+        var repos = new ReactiveMongoRepositoryFactory(template);
+        var mm = new ModelMapper();
+        var repoSucursales = repos.getRepository(ReactiveSucursalesRepository.class);
+        productoAdapter = new ProductoAdapter(repos.getRepository(ReactiveProductosRepository.class), template, mm, repoSucursales);
+        var sucursalAdapter = new SucursalAdapter(repoSucursales, template, mm, repos.getRepository(ReactiveFranquiciaRepository.class));
+        sucursalFranquicia = new SucursalFranquiciaCache(sucursalAdapter, new SimpleMeterRegistry(), Duration.ofMinutes(5), 1000);
+
+        template.dropCollection(ProductoData.class)
+                .then(template.dropCollection(SucursalData.class))
+                .then(template.insert(SucursalData.builder().id(SUCURSAL).franquiciaId(FRANQUICIA).nombre("S").build()))
+                .thenMany(template.insertAll(Flux.range(0, productos)
+                        .map(n -> ProductoData.builder().id("p" + n).sucursalId(SUCURSAL).nombre("P" + n)
+                                .stock(0).createdAt(Instant.now()).updatedAt(Instant.now()).version(0L).build())
+                        .collectList()))
+                .blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    private String productoAlAzar() {
+        return "p" + ThreadLocalRandom.current().nextInt(productos);
+    }
+
+    @Benchmark
+    public Producto tresRoundTrips() {
+        String id = productoAlAzar();
+        int stock = ThreadLocalRandom.current().nextInt(1000);
+        return template.findById(SUCURSAL, SucursalData.class)
+                .filter(s -> Objects.equals(FRANQUICIA, s.getFranquiciaId()))
+                .flatMap(s -> template.updateFirst(new Query(Criteria.where("_id").is(id)),
+                        new Update().set("stock", stock).set("updatedAt", Instant.now()), ProductoData.class))
+                .flatMap(r -> productoAdapter.findById(id))
+                .block();
+    }
+
+    @Benchmark
+    public Producto findAndModify() {
+        String id = productoAlAzar();
+        int stock = ThreadLocalRandom.current().nextInt(1000);
+        return sucursalFranquicia.franquiciaDe(SUCURSAL)
+                .filter(FRANQUICIA::equals)
+                .flatMap(f -> productoAdapter.actualizarStock(id, SUCURSAL, stock))
+                .block();
+    }
+}
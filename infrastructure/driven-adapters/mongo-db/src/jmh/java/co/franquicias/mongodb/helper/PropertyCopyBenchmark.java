@@ -0,0 +1,132 @@
+package co.franquicias.mongodb.helper;
+
+import co.franquicias.mongodb.adapter.FranquiciaAdapter;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
+import co.franquicias.mongodb.repository.ReactiveProductosRepository;
+import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Costo de {@code copyNonNullProperties} por documento (no necesita Mongo: el cliente nunca se conecta):
+ * <ul>
+ *   <li>{@code introspector}: el camino anterior ({@code Introspector.getBeanInfo} dos veces + {@code Method.invoke}).</li>
+ *   <li>{@code registro}: el helper actual, con accessors de {@link PropertyAccessors} generados una vez por clase.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertyCopyBenchmark {
+
+    private static final Set<String> EXCLUIDOS = Set.of("id", "version", "createdAt");
+
+    @Param({"ProductoData", "SucursalData", "FranquiciaData"})
+    String documento;
+
+    private MongoClient client;
+    private Object origen;
+    private Object destino;
+    private BiConsumer<Object, Object> copiaRegistro;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        var template = new ReactiveMongoTemplate(client, "franquicias_bench");
+        var repos = new ReactiveMongoRepositoryFactory(template);
+        var mm = new ModelMapper();
+        var repoSucursales = repos.getRepository(ReactiveSucursalesRepository.class);
+        var repoFranquicia = repos.getRepository(ReactiveFranquiciaRepository.class);
+        Instant now = Instant.now();
+
+        switch (documento) {
+            case "ProductoData" -> {
+                var adapter = new ProductoAdapter(repos.getRepository(ReactiveProductosRepository.class), template, mm, repoSucursales);
+                origen = ProductoData.builder().nombre("  Leche  ").stock(5).updatedAt(now).build();
+                destino = ProductoData.builder().id("p1").sucursalId("s1").nombre("Leche").stock(1)
+                        .createdAt(now).updatedAt(now).version(3L).build();
+                copiaRegistro = (o, d) -> adapter.copyNonNullProperties((ProductoData) o, (ProductoData) d);
+            }
+            case "SucursalData" -> {
+                var adapter = new SucursalAdapter(repoSucursales, template, mm, repoFranquicia);
+                origen = SucursalData.builder().nombre("  Centro  ").updatedAt(now).build();
+                destino = SucursalData.builder().id("s1").franquiciaId("f1").nombre("Centro")
+                        .createdAt(now).updatedAt(now).version(3L).build();
+                copiaRegistro = (o, d) -> adapter.copyNonNullProperties((SucursalData) o, (SucursalData) d);
+            }
+            case "FranquiciaData" -> {
+                var adapter = new FranquiciaAdapter(repoFranquicia, template, mm);
+                origen = FranquiciaData.builder().nombre("  Norte  ").updatedAt(now).build();
+                destino = FranquiciaData.builder().id("f1").nombre("Norte")
+                        .createdAt(now).updatedAt(now).version(3L).build();
+                copiaRegistro = (o, d) -> adapter.copyNonNullProperties((FranquiciaData) o, (FranquiciaData) d);
+            }
+            default -> throw new IllegalArgumentException("documento desconocido: " + documento);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public Object introspector() throws Exception {
+        copiaIntrospector(origen, destino);
+        return destino;
+    }
+
+    @Benchmark
+    public Object registro() {
+        copiaRegistro.accept(origen, destino);
+        return destino;
+    }
+
+    /** El buildSourceValues/applyValues anterior, con las mismas reglas de presencia para String. */
+    private static void copiaIntrospector(Object source, Object target) throws Exception {
+        Map<String, Object> values = new HashMap<>();
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(source.getClass(), Object.class).getPropertyDescriptors()) {
+            var read = pd.getReadMethod();
+            if (read == null || EXCLUIDOS.contains(pd.getName())) continue;
+            Object raw = read.invoke(source);
+            if (raw instanceof CharSequence cs) {
+                String trimmed = cs.toString().trim();
+                raw = trimmed.isEmpty() ? null : trimmed;
+            }
+            if (raw != null) values.put(pd.getName(), raw);
+        }
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(target.getClass(), Object.class).getPropertyDescriptors()) {
+            var write = pd.getWriteMethod();
+            if (write == null) continue;
+            Object val = values.get(pd.getName());
+            if (val != null) write.invoke(target, val);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.config.MapperConfig;
+import co.franquicias.mongodb.entity.ProductoData;
+import org.bson.Document;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificación de 100k documentos de {@code productos} (ya leídos por el driver) a {@link Producto}:
+ * <ul>
+ *   <li>{@code viaEntidadModelMapper}: BSON → {@link ProductoData} → ModelMapper (el camino original).</li>
+ *   <li>{@code viaEntidad}: BSON → {@link ProductoData} → {@link DataMappers}.</li>
+ *   <li>{@code directo}: BSON → {@link Producto} con {@link BsonReadConverters}.</li>
+ * </ul>
+ * Una operación son los 100k documentos, así que {@code gc.alloc.rate.norm} (profiler gc del build)
+ * es directamente la asignación por 100k documentos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BsonReadBenchmark {
+
+    private static final int DOCUMENTOS = 100_000;
+
+    private List<Document> docs;
+    private MappingMongoConverter porDefecto;
+    private MappingMongoConverter conConverters;
+    private ModelMapper modelMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Date now = Date.from(Instant.now());
+        docs = new ArrayList<>(DOCUMENTOS);
+        for (int n = 0; n < DOCUMENTOS; n++) {
+            docs.add(new Document("_id", "p" + n).append("sucursalId", "s" + (n % 50)).append("nombre", "Producto " + n)
+                    .append("stock", n % 1000).append("createdAt", now).append("updatedAt", now).append("version", 1L)
+                    .append("_class", ProductoData.class.getName()));
+        }
+        porDefecto = converter(new MongoCustomConversions(List.of()));
+        conConverters = converter(new MongoCustomConversions(BsonReadConverters.todos()));
+        modelMapper = new MapperConfig().modelMapper();
+    }
+
+    private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    @Benchmark
+    public void viaEntidadModelMapper(Blackhole bh) {
+        for (Document d : docs) {
+            bh.consume(modelMapper.map(porDefecto.read(ProductoData.class, d), Producto.class));
+        }
+    }
+
+    @Benchmark
+    public void viaEntidad(Blackhole bh) {
+        for (Document d : docs) {
+            bh.consume(DataMappers.PRODUCTO.toEntity(porDefecto.read(ProductoData.class, d)));
+        }
+    }
+
+    @Benchmark
+    public void directo(Blackhole bh) {
+        for (Document d : docs) {
+            bh.consume(conConverters.read(Producto.class, d));
+        }
+    }
+}
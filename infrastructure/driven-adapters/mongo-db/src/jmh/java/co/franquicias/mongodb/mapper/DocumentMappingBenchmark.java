@@ -0,0 +1,80 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.config.MapperConfig;
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.helper.DocumentMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documento → modelo (el camino de cada lectura) con ModelMapper y con {@link DataMappers}.
+ * Cada operación mapea un documento; con {@code -prof gc} (activo en el bloque {@code jmh} del build)
+ * {@code gc.alloc.rate.norm} da los bytes asignados por documento mapeado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DocumentMappingBenchmark {
+
+    @Param({"ProductoData", "SucursalData", "FranquiciaData"})
+    String documento;
+
+    private ModelMapper modelMapper;
+    private Object doc;
+    private Class<?> modelo;
+    private DocumentMapper<Object, Object> mapper;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        modelMapper = new MapperConfig().modelMapper();
+        Instant now = Instant.now();
+        switch (documento) {
+            case "ProductoData" -> {
+                doc = ProductoData.builder().id("p1").sucursalId("s1").nombre("Leche").stock(4)
+                        .createdAt(now).updatedAt(now).version(1L).build();
+                modelo = Producto.class;
+                mapper = (DocumentMapper<Object, Object>) (DocumentMapper<?, ?>) DataMappers.PRODUCTO;
+            }
+            case "SucursalData" -> {
+                doc = SucursalData.builder().id("s1").franquiciaId("f1").nombre("Centro")
+                        .createdAt(now).updatedAt(now).version(1L).build();
+                modelo = Sucursal.class;
+                mapper = (DocumentMapper<Object, Object>) (DocumentMapper<?, ?>) DataMappers.SUCURSAL;
+            }
+            case "FranquiciaData" -> {
+                doc = FranquiciaData.builder().id("f1").nombre("Norte")
+                        .createdAt(now).updatedAt(now).version(1L).build();
+                modelo = Franquicia.class;
+                mapper = (DocumentMapper<Object, Object>) (DocumentMapper<?, ?>) DataMappers.FRANQUICIA;
+            }
+            default -> throw new IllegalArgumentException("documento desconocido: " + documento);
+        }
+    }
+
+    @Benchmark
+    public Object modelMapper() {
+        return modelMapper.map(doc, modelo);
+    }
+
+    @Benchmark
+    public Object dataMappers() {
+        return mapper.toEntity(doc);
+    }
+}
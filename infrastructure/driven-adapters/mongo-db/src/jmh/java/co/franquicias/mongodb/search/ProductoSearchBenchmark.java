@@ -0,0 +1,78 @@
+package co.franquicias.mongodb.search;
+
+import co.franquicias.model.producto.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Type-ahead: índice de trigramas vs. la línea base de la búsqueda por regex {@code (?i).*<q>.*} que
+ * se usaba antes sobre {@code productos}, evaluada en memoria sobre los mismos nombres (mide solo
+ * CPU: aquel camino por Mongo sumaba además el round trip y el COLLSCAN).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductoSearchBenchmark {
+
+    private static final String[] PALABRAS = {
+            "café", "molido", "leche", "entera", "azúcar", "morena", "arroz", "integral", "aceite", "oliva",
+            "galletas", "avena", "jugo", "naranja", "queso", "fresco", "pan", "tajado", "atún", "agua"
+    };
+    private static final String[] CONSULTAS = {"caf", "lech", "moli", "ntegr", "ol", "zzz"};
+    private static final int K = 20;
+
+    @Param({"10000", "100000"})
+    int productos;
+
+    private ProductoNgramIndex index;
+    private List<Producto> catalogo;
+    private Pattern[] patrones;
+    private int i;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(42);
+        index = new ProductoNgramIndex(true, 512);
+        catalogo = new ArrayList<>(productos);
+        for (int n = 0; n < productos; n++) {
+            String nombre = PALABRAS[rnd.nextInt(PALABRAS.length)] + " " + PALABRAS[rnd.nextInt(PALABRAS.length)] + " " + n;
+            Producto p = Producto.builder().id("p" + n).sucursalId("s" + (n % 50)).nombre(nombre).stock(n % 100).build();
+            catalogo.add(p);
+            index.indexar(p);
+        }
+        index.marcarListo();
+        patrones = new Pattern[CONSULTAS.length];
+        for (int c = 0; c < CONSULTAS.length; c++) {
+            patrones[c] = Pattern.compile("(?i).*" + Pattern.quote(CONSULTAS[c]) + ".*");
+        }
+    }
+
+    @Benchmark
+    public List<String> ngram() {
+        return index.buscar(CONSULTAS[i++ % CONSULTAS.length], K);
+    }
+
+    @Benchmark
+    public List<Producto> regex() {
+        Pattern p = patrones[i++ % patrones.length];
+        List<Producto> res = new ArrayList<>();
+        for (Producto producto : catalogo) {
+            if (p.matcher(producto.getNombre()).matches()) {
+                res.add(producto);
+            }
+        }
+        return res;
+    }
+}
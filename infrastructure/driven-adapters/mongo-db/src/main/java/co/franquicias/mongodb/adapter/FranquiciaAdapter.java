@@ -1,13 +1,20 @@
 package co.franquicias.mongodb.adapter;
 
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.mongodb.entity.FranquiciaData;
 import co.franquicias.mongodb.helper.MongoDBAdapterOperations;
+import co.franquicias.mongodb.mapper.DataMappers;
 import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.modelmapper.ModelMapper;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.LookupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -25,10 +32,11 @@ public class FranquiciaAdapter
     public FranquiciaAdapter(ReactiveFranquiciaRepository repo,
                              ReactiveMongoTemplate template,
                              ModelMapper mm) {
-        super(repo, template, FranquiciaData.class, Franquicia.class, mm);
+        super(repo, template, FranquiciaData.class, Franquicia.class, mm, DataMappers.FRANQUICIA);
         this.repo = repo;
     }
 
+    /** Alta optimista: un único insert; el duplicado lo detecta el índice único sobre {@code nombre}. */
     public Mono<Franquicia> crearFranquicia(String nombre) {
         var data = FranquiciaData.builder()
                 .id(UUID.randomUUID().toString())
@@ -37,19 +45,51 @@ public class FranquiciaAdapter
                 .updatedAt(Instant.now())
                 .build();
 
-        return repo.existsByNombre(nombre)
-                .flatMap(exists -> Boolean.TRUE.equals(exists)
-                        ? Mono.error(new IllegalStateException("Franquicia ya existe"))
-                        : repo.save(data))
-                .map(this::toEntity);
+        return repo.insert(data)
+                .map(this::toEntity)
+                .onErrorMap(DuplicateKeyException.class, e -> new IllegalStateException("Franquicia ya existe", e));
     }
 
     public Mono<Franquicia> obtenerPorId(String id) {
         return findById(id);
     }
 
+    /** Todas las franquicias, decodificadas directo al dominio por el reading converter. */
     public Flux<Franquicia> obtenerFranquicias() {
-        return findAll();
+        return findEntitiesByQuery(new Query());
+    }
+
+    /** {@code _id}/{@code version}/{@code updatedAt} de la franquicia, para su revisión. */
+    public Mono<Document> versionPorId(String id) {
+        return findVersions(Criteria.where("_id").is(id)).next();
+    }
+
+    /** {@code _id}/{@code version}/{@code updatedAt} de todas las franquicias, ordenadas por id. */
+    public Flux<Document> versiones() {
+        return findVersions(null);
+    }
+
+    /** Página de franquicias por keyset sobre {@code _id}. */
+    public Mono<Pagina<Franquicia>> pagina(String after, int limit) {
+        return paginar(null, after, limit, FranquiciaData::getId);
+    }
+
+    /**
+     * Franquicias con sucursales y productos embebidos en una sola consulta:
+     * franquicias → $lookup sucursales → $lookup productos, resuelto en el servidor.
+     * Cada franquicia sale como un único documento BSON, limitado a 16MB: un árbol mayor falla con
+     * BSONObjectTooLarge y la fachada continúa con {@code FranquiciaTreeHydrator}.
+     */
+    public Flux<Franquicia> obtenerFranquiciasHidratadas() {
+        LookupOperation productos = Aggregation.lookup("productos", "_id", "sucursalId", "productos");
+        LookupOperation sucursales = LookupOperation.newLookup()
+                .from("sucursales")
+                .localField("_id")
+                .foreignField("franquiciaId")
+                .pipeline(productos)
+                .as("sucursales");
+
+        return mongoTemplate.aggregate(Aggregation.newAggregation(sucursales), "franquicias", Franquicia.class);
     }
 
     public Mono<Franquicia> obtenerPorNombre(String nombre) {
@@ -62,7 +102,7 @@ public class FranquiciaAdapter
 
     public Mono<Franquicia> actualizarFranquicia(String franquiciaId, Franquicia cambios) {
         cambios.setUpdatedAt(Instant.now());
-        return mergeNonNullAndSave(franquiciaId, cambios)
+        return patchNonNull(franquiciaId, cambios)
                 .onErrorMap(DuplicateKeyException.class,
                         e -> new IllegalStateException("El nombre de la franquicia ya existe", e));
     }
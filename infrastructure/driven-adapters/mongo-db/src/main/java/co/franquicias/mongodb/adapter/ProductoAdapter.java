@@ -1,21 +1,49 @@
 package co.franquicias.mongodb.adapter;
 
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.producto.StockInsuficienteException;
 import co.franquicias.mongodb.entity.ProductoData;
 import co.franquicias.mongodb.helper.MongoDBAdapterOperations;
+import co.franquicias.mongodb.mapper.DataMappers;
 import co.franquicias.mongodb.repository.ReactiveProductosRepository;
 import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.modelmapper.ModelMapper;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -29,11 +57,16 @@ public class ProductoAdapter
                            ReactiveMongoTemplate template,
                            ModelMapper mm,
                            ReactiveSucursalesRepository repoSucursales) {
-        super(repo, template, ProductoData.class, Producto.class, mm);
+        super(repo, template, ProductoData.class, Producto.class, mm, DataMappers.PRODUCTO);
         this.repo = repo;
         this.repoSucursales = repoSucursales;
     }
 
+    /**
+     * Alta optimista: un único insert. El duplicado lo detecta el índice único
+     * {@code ux_producto_sucursal_nombre}; la existencia de la sucursal la valida quien llama
+     * (la fachada, desde la caché de pertenencia).
+     */
     public Mono<Producto> crear(String sucursalId, String nombre, int stock) {
         var now = Instant.now();
         var data = ProductoData.builder()
@@ -45,36 +78,287 @@ public class ProductoAdapter
                 .updatedAt(now)
                 .build();
 
-        return repoSucursales.existsById(sucursalId)
-                .flatMap(exists -> Boolean.TRUE.equals(exists)
-                        ? repo.existsBySucursalIdAndNombre(sucursalId, nombre)
-                        .flatMap(dup -> dup
-                                ? Mono.error(new IllegalStateException("Producto ya existe en la sucursal"))
-                                : repo.save(data))
-                        : Mono.error(new IllegalArgumentException("La sucursal destino no existe: " + sucursalId))
-                )
-                .map(this::toEntity);
+        return repo.insert(data)
+                .map(this::toEntity)
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new IllegalStateException("Producto ya existe en la sucursal", e));
+    }
+
+    /** Página de productos por keyset sobre {@code _id}. */
+    public Mono<Pagina<Producto>> pagina(String after, int limit) {
+        return paginar(null, after, limit, ProductoData::getId);
     }
 
+    /** Lee directo a {@link Producto} con el reading converter (sin pasar por {@link ProductoData}). */
     public Flux<Producto> listarPorSucursal(String sucursalId) {
-        return mapFluxDocToEntity(repo.findBySucursalId(sucursalId));
+        return findEntitiesByQuery(new Query(Criteria.where("sucursalId").is(sucursalId)));
+    }
+
+    /**
+     * Productos de varias sucursales en una sola consulta (sucursalId $in [...]). Va por el template y
+     * no por un {@code findBySucursalIdIn} derivado para leer directo a {@link Producto} con el reading
+     * converter, sin materializar {@link ProductoData}.
+     */
+    public Flux<Producto> listarPorSucursales(Collection<String> sucursalIds) {
+        return findEntitiesByQuery(new Query(Criteria.where("sucursalId").in(sucursalIds)));
+    }
+
+    /** Productos por id en una sola consulta (_id $in [...]); el orden no es el de {@code ids}. */
+    public Flux<Producto> listarPorIds(Collection<String> ids) {
+        return findEntitiesByQuery(new Query(Criteria.where("_id").in(ids)));
+    }
+
+    /** Versiones (más {@code stock}) de los productos de varias sucursales, ordenadas por id. */
+    public Flux<Document> versionesPorSucursales(Collection<String> sucursalIds) {
+        return findVersions(Criteria.where("sucursalId").in(sucursalIds), "stock");
+    }
+
+    /** Todos los productos, decodificados directo al dominio. */
+    @Override
+    public Flux<Producto> findAll() {
+        return findEntitiesByQuery(new Query());
+    }
+
+    /**
+     * Producto con mayor stock de cada sucursal, resuelto en Mongo: $match/$sort/$group apoyado en el
+     * índice {sucursalId:1, stock:-1}, de modo que cada sucursal aporta un solo documento.
+     */
+    public Flux<Producto> maxStockPorSucursales(Collection<String> sucursalIds) {
+        return mongoTemplate.aggregate(pipelineMaxStock(sucursalIds), ProductoData.class, ProductoData.class)
+                .map(this::toEntity);
+    }
+
+    static Aggregation pipelineMaxStock(Collection<String> sucursalIds) {
+        return Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("sucursalId").in(sucursalIds)),
+                Aggregation.sort(Sort.by(Sort.Order.asc("sucursalId"), Sort.Order.desc("stock"))),
+                Aggregation.group("sucursalId").first(Aggregation.ROOT).as("top"),
+                Aggregation.replaceRoot("top")
+        );
+    }
+
+    /**
+     * Búsqueda por nombre sobre el índice de texto (español, sin distinguir mayúsculas ni tildes),
+     * ordenada por relevancia y acotada a {@code limit} resultados.
+     */
+    public Flux<Producto> buscarPorTexto(String texto, int limit) {
+        if (texto == null || texto.isBlank()) {
+            return Flux.empty();
+        }
+        return findByQuery(consultaTexto(texto, limit));
+    }
+
+    static Query consultaTexto(String texto, int limit) {
+        return TextQuery.queryText(TextCriteria.forLanguage("spanish").matching(texto))
+                .sortByScore()
+                .limit(limit);
+    }
+
+    /** Producto por id solo si pertenece a la sucursal. */
+    public Mono<Producto> obtenerEnSucursal(String id, String sucursalId) {
+        return findOneByQuery(consultaStock(id, sucursalId));
+    }
+
+    /**
+     * Fija el stock en un solo round trip: findAndModify filtrando por {@code _id} y {@code sucursalId}
+     * (un producto de otra sucursal no hace match) y devolviendo el documento ya modificado.
+     */
+    public Mono<Producto> actualizarStock(String id, String sucursalId, int stock) {
+        return findAndModifyReturningEntity(consultaStock(id, sucursalId), actualizacionStock(stock))
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")));
     }
 
-    public Flux<Producto> buscarPorNombreLike(String nombreLike) {
-        String regex = ".*" + java.util.regex.Pattern.quote(nombreLike) + ".*";
-        return mapFluxDocToEntity(repo.findByNombreRegex("(?i)" + regex));
+    /**
+     * Suma {@code delta} al stock con un {@code $inc} condicional: para decrementos el filtro exige
+     * {@code stock >= -delta}, así que el servidor nunca deja stock negativo y no hay lectura previa
+     * ni reintentos. Solo si no hubo match se consulta el producto para distinguir el error.
+     */
+    public Mono<Producto> ajustarStock(String id, String sucursalId, int delta) {
+        return findAndModifyReturningEntity(consultaAjuste(id, sucursalId, delta), ajusteStock(delta))
+                .switchIfEmpty(Mono.defer(() -> mongoTemplate.exists(consultaStock(id, sucursalId), ProductoData.class)
+                        .flatMap(existe -> Boolean.TRUE.equals(existe)
+                                ? Mono.error(new StockInsuficienteException(id, delta))
+                                : Mono.error(new IllegalArgumentException("Producto no encontrado")))));
     }
 
-    public Mono<Producto> actualizarStock(String id, int stock) {
-        var q = new Query(org.springframework.data.mongodb.core.query.Criteria.where("_id").is(id));
-        var u = new org.springframework.data.mongodb.core.query.Update()
+    static Query consultaAjuste(String id, String sucursalId, int delta) {
+        Query q = consultaStock(id, sucursalId);
+        if (delta < 0) {
+            q.addCriteria(Criteria.where("stock").gte(-delta));
+        }
+        return q;
+    }
+
+    static Update ajusteStock(int delta) {
+        return new Update()
+                .inc("stock", delta)
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+    }
+
+    static Query consultaStock(String id, String sucursalId) {
+        return new Query(Criteria.where("_id").is(id).and("sucursalId").is(sucursalId));
+    }
+
+    static Update actualizacionStock(int stock) {
+        return new Update()
                 .set("stock", stock)
-                .set("updatedAt", Instant.now());
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
+    }
+
+    /**
+     * Aplica un lote de stocks absolutos con un único bulkWrite desordenado ({@code updateOne} por
+     * {@code _id + sucursalId}) y devuelve un resultado por ítem, en el orden del lote. Si todas las
+     * operaciones hicieron match no hay más round trips; si no, una consulta {@code $in} distingue
+     * los productos inexistentes. Los errores de escritura se reportan por índice sin frenar el resto.
+     * <p>
+     * En un bulk desordenado dos {@code updateOne} sobre el mismo producto no tienen orden entre sí,
+     * así que de un producto repetido solo se escribe su última entrada; las anteriores salen
+     * {@code SUPERADO}.
+     */
+    public Flux<ResultadoActualizacion> actualizarStockLote(List<ActualizacionStock> lote) {
+        if (lote.isEmpty()) {
+            return Flux.empty();
+        }
+        boolean[] superadas = superadas(lote);
+        List<ActualizacionStock> vigentes = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            if (!superadas[i]) vigentes.add(lote.get(i));
+        }
+        Flux<ResultadoActualizacion> resultados = Mono.defer(() -> {
+                    ReactiveBulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoData.class);
+                    vigentes.forEach(c -> ops.updateOne(consultaStock(c.getProductoId(), c.getSucursalId()),
+                            actualizacionStock(c.getStock())));
+                    return ejecutar(ops);
+                })
+                .flatMapMany(resumen -> clasificar(vigentes, resumen))
+                .onErrorResume(e -> {
+                    // el bulk pudo aplicarse en parte antes de fallar: quien llama debe releer estos productos
+                    log.warn("[productos] actualizarStockLote: falló el bulk de {} productos, quedan en ERROR: {}",
+                            vigentes.size(), e.toString());
+                    return Flux.fromIterable(vigentes)
+                            .map(c -> ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ERROR, e.getMessage()));
+                });
+        if (vigentes.size() == lote.size()) {
+            return resultados;
+        }
+        return resultados.collectList().flatMapIterable(rs -> {
+            List<ResultadoActualizacion> todos = new ArrayList<>(lote.size());
+            int j = 0;
+            for (int i = 0; i < lote.size(); i++) {
+                todos.add(superadas[i]
+                        ? ResultadoActualizacion.de(lote.get(i), ResultadoActualizacion.Estado.SUPERADO,
+                                "Reemplazada por una entrada posterior del mismo producto en el lote")
+                        : rs.get(j++));
+            }
+            return todos;
+        });
+    }
+
+    /** true en cada entrada cuyo producto vuelve a aparecer más adelante en el lote. */
+    private static boolean[] superadas(List<ActualizacionStock> lote) {
+        boolean[] superadas = new boolean[lote.size()];
+        Set<String> vistos = new HashSet<>();
+        for (int i = lote.size() - 1; i >= 0; i--) {
+            superadas[i] = !vistos.add(lote.get(i).getProductoId());
+        }
+        return superadas;
+    }
+
+    /**
+     * Inserta un lote de productos nuevos con un bulkWrite desordenado: un duplicado (índice único
+     * {@code ux_producto_sucursal_nombre}) u otro error en una fila no impide insertar las demás.
+     * Devuelve un resultado por fila, en el orden del lote, sin consultas previas de existencia.
+     */
+    public Flux<ResultadoImportacion> insertarLote(List<ImportacionProducto> filas) {
+        if (filas.isEmpty()) {
+            return Flux.empty();
+        }
+        Instant ahora = Instant.now();
+        List<ProductoData> docs = filas.stream()
+                .map(f -> ProductoData.builder()
+                        .id(UUID.randomUUID().toString())
+                        .sucursalId(f.getSucursalId())
+                        .nombre(f.getNombre())
+                        .stock(f.getStock())
+                        .createdAt(ahora)
+                        .updatedAt(ahora)
+                        .build())
+                .toList();
+
+        return Mono.defer(() -> ejecutar(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoData.class).insert(docs)))
+                .flatMapIterable(resumen -> {
+                    List<ResultadoImportacion> resultados = new ArrayList<>(filas.size());
+                    for (int i = 0; i < filas.size(); i++) {
+                        BulkWriteError error = resumen.errores().get(i);
+                        if (error == null) {
+                            resultados.add(ResultadoImportacion.de(filas.get(i), ResultadoImportacion.Estado.CREADO, docs.get(i).getId(), null));
+                        } else if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                            resultados.add(ResultadoImportacion.de(filas.get(i), ResultadoImportacion.Estado.DUPLICADO, null,
+                                    "Ya existe un producto con ese nombre en la sucursal"));
+                        } else {
+                            resultados.add(ResultadoImportacion.de(filas.get(i), ResultadoImportacion.Estado.ERROR, null, error.getMessage()));
+                        }
+                    }
+                    return resultados;
+                })
+                .onErrorResume(e -> Flux.fromIterable(filas)
+                        .map(f -> ResultadoImportacion.de(f, ResultadoImportacion.Estado.ERROR, null, e.getMessage())));
+    }
+
+    /** Coincidencias y errores por índice de un bulkWrite desordenado. */
+    private record ResumenLote(int coincidencias, Map<Integer, BulkWriteError> errores) { }
+
+    /** Ejecuta el bulk y resume sus errores de escritura en lugar de propagarlos. */
+    private static Mono<ResumenLote> ejecutar(ReactiveBulkOperations ops) {
+        return ops.execute()
+                .map(r -> new ResumenLote(r.getMatchedCount(), Map.of()))
+                .onErrorResume(BulkOperationException.class,
+                        e -> Mono.just(new ResumenLote(e.getResult().getMatchedCount(), porIndice(e.getErrors()))))
+                .onErrorResume(MongoBulkWriteException.class,
+                        e -> Mono.just(new ResumenLote(e.getWriteResult().getMatchedCount(), porIndice(e.getWriteErrors()))));
+    }
+
+    private Flux<ResultadoActualizacion> clasificar(List<ActualizacionStock> lote, ResumenLote resumen) {
+        boolean todosCoinciden = resumen.coincidencias() == lote.size() - resumen.errores().size();
+        Mono<Set<String>> existentes = todosCoinciden ? Mono.just(Set.of()) : existentes(lote);
+
+        return existentes.flatMapIterable(claves -> {
+            List<ResultadoActualizacion> resultados = new ArrayList<>(lote.size());
+            for (int i = 0; i < lote.size(); i++) {
+                ActualizacionStock c = lote.get(i);
+                BulkWriteError error = resumen.errores().get(i);
+                if (error != null) {
+                    resultados.add(ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ERROR, error.getMessage()));
+                } else if (todosCoinciden || claves.contains(clave(c.getProductoId(), c.getSucursalId()))) {
+                    resultados.add(ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ACTUALIZADO, null));
+                } else {
+                    resultados.add(ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.NO_ENCONTRADO,
+                            "Producto no encontrado en la sucursal"));
+                }
+            }
+            return resultados;
+        });
+    }
+
+    /** Claves {@code productoId|sucursalId} de los productos del lote que existen. */
+    private Mono<Set<String>> existentes(List<ActualizacionStock> lote) {
+        Query q = new Query(Criteria.where("_id").in(lote.stream().map(ActualizacionStock::getProductoId).toList()));
+        q.fields().include("_id", "sucursalId");
+        return mongoTemplate.find(q, ProductoData.class)
+                .map(d -> clave(d.getId(), d.getSucursalId()))
+                .collect(Collectors.toSet());
+    }
+
+    private static String clave(String productoId, String sucursalId) {
+        return productoId + "|" + sucursalId;
+    }
 
-        return updateFirstMatched(q, u)
-                .flatMap(matched -> Boolean.TRUE.equals(matched)
-                        ? findById(id)
-                        : Mono.error(new IllegalArgumentException("Producto no encontrado")));
+    private static Map<Integer, BulkWriteError> porIndice(List<BulkWriteError> errores) {
+        Map<Integer, BulkWriteError> porIndice = new HashMap<>();
+        errores.forEach(e -> porIndice.put(e.getIndex(), e));
+        return porIndice;
     }
 
     public Mono<String> eliminarPorId(String id) {
@@ -84,7 +368,7 @@ public class ProductoAdapter
     public Mono<Producto> actualizarProducto(String id, Producto cambios) {
         cambios.setUpdatedAt(Instant.now());
         return validarSucursal(cambios.getSucursalId())
-                .then(mergeNonNullAndSave(id, cambios))
+                .then(patchNonNull(id, cambios))
                 .onErrorMap(DuplicateKeyException.class,
                         e -> new IllegalStateException("Ya existe un producto con ese nombre en la sucursal", e));
     }
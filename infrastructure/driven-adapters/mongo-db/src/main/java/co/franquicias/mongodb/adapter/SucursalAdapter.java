@@ -1,21 +1,28 @@
 package co.franquicias.mongodb.adapter;
 
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.mongodb.entity.SucursalData;
 import co.franquicias.mongodb.helper.MongoDBAdapterOperations;
+import co.franquicias.mongodb.mapper.DataMappers;
 import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
 import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.modelmapper.ModelMapper;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.UUID;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Slf4j
 @Component
 public class SucursalAdapter
@@ -28,11 +35,15 @@ public class SucursalAdapter
                            ReactiveMongoTemplate template,
                            ModelMapper mm,
                            ReactiveFranquiciaRepository repoFranquicia) {
-        super(repo, template, SucursalData.class, Sucursal.class, mm);
+        super(repo, template, SucursalData.class, Sucursal.class, mm, DataMappers.SUCURSAL);
         this.repo = repo;
         this.repoFranquicia = repoFranquicia;
     }
 
+    /**
+     * Alta optimista: un único insert. El duplicado lo detecta el índice único
+     * {@code ux_sucursal_franquicia_nombre}; la existencia de la franquicia la valida quien llama.
+     */
     public Mono<Sucursal> crear(String franquiciaId, String nombre) {
         var now = Instant.now();
         var data = SucursalData.builder()
@@ -43,19 +54,44 @@ public class SucursalAdapter
                 .updatedAt(now)
                 .build();
 
-        return repoFranquicia.existsById(franquiciaId)
-                .flatMap(exists -> Boolean.TRUE.equals(exists)
-                        ? repo.existsByFranquiciaIdAndNombre(franquiciaId, nombre)
-                        .flatMap(dup -> dup
-                                ? Mono.error(new IllegalStateException("Sucursal ya existe en la franquicia"))
-                                : repo.save(data))
-                        : Mono.error(new IllegalArgumentException("La franquicia no existe: " + franquiciaId))
-                )
-                .map(this::toEntity);
+        return repo.insert(data)
+                .map(this::toEntity)
+                .onErrorMap(DuplicateKeyException.class,
+                        e -> new IllegalStateException("Sucursal ya existe en la franquicia", e));
     }
 
+    /** Lee directo a {@link Sucursal} con el reading converter (sin pasar por {@link SucursalData}). */
     public Flux<Sucursal> listarPorFranquicia(String franquiciaId) {
-        return mapFluxDocToEntity(repo.findByFranquiciaId(franquiciaId));
+        return findEntitiesByQuery(new Query(where("franquiciaId").is(franquiciaId)));
+    }
+
+    /**
+     * Sucursales de varias franquicias en una sola consulta (franquiciaId $in [...]). Va por el template y
+     * no por un {@code findByFranquiciaIdIn} derivado para leer directo a {@link Sucursal} con el reading
+     * converter, sin materializar {@link SucursalData}.
+     */
+    public Flux<Sucursal> listarPorFranquicias(Collection<String> franquiciaIds) {
+        return findEntitiesByQuery(new Query(where("franquiciaId").in(franquiciaIds)));
+    }
+
+    /** {@code _id}/{@code version}/{@code updatedAt} de la sucursal, para su revisión. */
+    public Mono<Document> versionPorId(String id) {
+        return findVersions(where("_id").is(id)).next();
+    }
+
+    /** Versiones de las sucursales de una franquicia ({@code franquiciaId} incluido), ordenadas por id. */
+    public Flux<Document> versionesPorFranquicia(String franquiciaId) {
+        return findVersions(where("franquiciaId").is(franquiciaId));
+    }
+
+    /** Versiones de todas las sucursales, ordenadas por id. */
+    public Flux<Document> versiones() {
+        return findVersions(null);
+    }
+
+    /** Página de sucursales de una franquicia, por keyset sobre {@code _id}. */
+    public Mono<Pagina<Sucursal>> paginaPorFranquicia(String franquiciaId, String after, int limit) {
+        return paginar(where("franquiciaId").is(franquiciaId), after, limit, SucursalData::getId);
     }
 
     public Mono<Sucursal> obtenerPorId(String id) {
@@ -69,7 +105,7 @@ public class SucursalAdapter
     public Mono<Sucursal> actualizarSucursal(String id, Sucursal cambios) {
         cambios.setUpdatedAt(Instant.now());
         return validarFranquicia(cambios.getFranquiciaId())
-                .then(mergeNonNullAndSave(id, cambios))
+                .then(patchNonNull(id, cambios))
                 .onErrorMap(DuplicateKeyException.class,
                         e -> new IllegalStateException("Ya existe una sucursal con ese nombre en la franquicia", e));
     }
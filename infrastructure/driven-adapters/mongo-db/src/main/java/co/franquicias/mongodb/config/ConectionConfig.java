@@ -1,5 +1,6 @@
 package co.franquicias.mongodb.config;
 
+import co.franquicias.mongodb.mapper.BsonReadConverters;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.reactivestreams.client.MongoClient;
@@ -8,6 +9,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
 @EnableReactiveMongoRepositories(basePackages = "co.franquicias.mongodb.repository")
@@ -27,8 +33,30 @@ public class ConectionConfig {
         return MongoClients.create(settings);
     }
 
+    /** Reading converters BSON → dominio para las lecturas calientes (ver {@link BsonReadConverters}). */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(BsonReadConverters.todos());
+    }
+
+    /**
+     * Mismo converter que arma ReactiveMongoTemplate por defecto, más las conversiones propias.
+     * El contexto no crea índices por su cuenta; los crea {@link CreadorIndices} al arrancar.
+     */
     @Bean
     public ReactiveMongoTemplate reactiveMongoTemplate() {
-        return new ReactiveMongoTemplate(reactiveMongoClient(), databaseName);
+        var factory = new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient(), databaseName);
+        MongoCustomConversions conversions = mongoCustomConversions();
+
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.setCodecRegistryProvider(factory);
+        converter.afterPropertiesSet();
+
+        return new ReactiveMongoTemplate(factory, converter);
     }
 }
@@ -0,0 +1,72 @@
+package co.franquicias.mongodb.config;
+
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.ProductoViewData;
+import co.franquicias.mongodb.entity.SucursalData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Crea al arrancar los índices declarados en las entidades ({@code @Indexed}, {@code @CompoundIndex},
+ * {@code @TextIndexed}). El {@code MongoMappingContext} propio de {@link ConectionConfig} no crea índices
+ * automáticamente ({@code spring.data.mongodb.auto-index-creation} no aplica), así que esta es la única
+ * vía: sin ella {@code $text} falla y el reporte de máximo stock no tiene su índice.
+ * <p>
+ * {@code createIndex} es idempotente: un índice existente con la misma definición no se toca.
+ * <p>
+ * La creación bloquea el arranque, antes de que el servidor web acepte tráfico: además de {@code $text},
+ * las altas optimistas dependen de los índices únicos {@code ux_*} para rechazar duplicados. Los fallos
+ * se reintentan con backoff durante {@code franquicias.indices.timeout}; pasado ese plazo el arranque falla.
+ */
+@Slf4j
+@Component
+public class CreadorIndices implements SmartInitializingSingleton {
+
+    static final List<Class<?>> ENTIDADES =
+            List.of(FranquiciaData.class, SucursalData.class, ProductoData.class, ProductoViewData.class);
+
+    private final ReactiveMongoTemplate template;
+    private final Duration timeout;
+
+    public CreadorIndices(ReactiveMongoTemplate template,
+                          @Value("${franquicias.indices.timeout:PT60S}") Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("franquicias.indices.timeout debe ser positivo");
+        }
+        this.template = template;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            crear()
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(5)))
+                    .block(timeout);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("No se pudieron crear los índices de Mongo en " + timeout, e);
+        }
+    }
+
+    public Mono<Void> crear() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(template.getConverter().getMappingContext());
+        return Flux.fromIterable(ENTIDADES)
+                .concatMap(entidad -> Flux.fromIterable(resolver.resolveIndexFor(entidad))
+                        .concatMap(indice -> template.indexOps(entidad).ensureIndex(indice))
+                        .doOnNext(nombre -> log.info("[indices] {} -> {}", entidad.getSimpleName(), nombre)))
+                .doOnError(e -> log.error("[indices] error creando índices: {}", e.toString()))
+                .then();
+    }
+}
@@ -4,6 +4,11 @@ import org.modelmapper.ModelMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * ModelMapper compartido por los adapters. Los documentos principales se mapean con
+ * {@link co.franquicias.mongodb.mapper.DataMappers}; este bean queda como respaldo para
+ * {@code map}/{@code mapList}, subdocumentos y cualquier adapter sin mapper propio.
+ */
 @Configuration
 public class MapperConfig {
     @Bean
@@ -6,13 +6,15 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
-@Document("productos")
+@Document(collection = "productos", language = "spanish")
 @CompoundIndexes({
-        @CompoundIndex(name = "ux_producto_sucursal_nombre", def = "{ 'sucursalId': 1, 'nombre': 1 }", unique = true)
+        @CompoundIndex(name = "ux_producto_sucursal_nombre", def = "{ 'sucursalId': 1, 'nombre': 1 }", unique = true),
+        @CompoundIndex(name = "ix_producto_sucursal_stock", def = "{ 'sucursalId': 1, 'stock': -1 }")
 })
 @Getter
 @Setter
@@ -26,6 +28,7 @@ public class ProductoData {
     @Indexed
     private String sucursalId;
 
+    @TextIndexed
     private String nombre;
     private int stock;
 
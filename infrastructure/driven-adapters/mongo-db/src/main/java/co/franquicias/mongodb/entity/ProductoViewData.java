@@ -0,0 +1,32 @@
+package co.franquicias.mongodb.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Modelo de lectura desnormalizado: un documento por producto con los nombres
+ * de su sucursal y franquicia ya resueltos. El {@code id} es el id del producto.
+ */
+@Document("productos_view")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductoViewData {
+    @Id
+    private String id;
+
+    private String productoNombre;
+    private int stock;
+
+    @Indexed
+    private String sucursalId;
+    private String sucursalNombre;
+
+    @Indexed
+    private String franquiciaId;
+    private String franquiciaNombre;
+}
@@ -12,7 +12,8 @@ import java.time.Instant;
 
 @Document("sucursales")
 @CompoundIndexes({
-        @CompoundIndex(name = "ux_sucursal_franquicia_nombre", def = "{ 'franquiciaId': 1, 'nombre': 1 }", unique = true)
+        @CompoundIndex(name = "ux_sucursal_franquicia_nombre", def = "{ 'franquiciaId': 1, 'nombre': 1 }", unique = true),
+        @CompoundIndex(name = "ix_sucursal_franquicia_id", def = "{ 'franquiciaId': 1, '_id': 1 }")
 })
 @Getter
 @Setter
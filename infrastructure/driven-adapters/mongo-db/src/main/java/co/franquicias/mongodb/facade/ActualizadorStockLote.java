@@ -0,0 +1,81 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Actualización masiva de stock: agrupa el flujo de entrada en lotes de {@code chunk-size} y aplica
+ * cada lote con un bulkWrite desordenado, uno a la vez, para acotar la memoria y la presión sobre
+ * Mongo. Tras cada lote se propagan los stocks aplicados a {@code productos_view} (también por bulk);
+ * el índice n-gram no guarda stock, así que no se toca.
+ * <p>
+ * Un ítem en {@code ERROR} puede haberse escrito igual (p. ej. un timeout del bulk entero tras
+ * aplicarse en parte), así que sus filas de la vista se recalculan desde {@code productos}.
+ */
+@Slf4j
+@Component
+public class ActualizadorStockLote {
+
+    private final ProductoAdapter productoAdapter;
+    private final ProductoViewProjection productoView;
+    private final int chunkSize;
+
+    public ActualizadorStockLote(ProductoAdapter productoAdapter,
+                                 ProductoViewProjection productoView,
+                                 @Value("${franquicias.bulk.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("franquicias.bulk.chunk-size debe ser mayor a 0");
+        }
+        this.productoAdapter = productoAdapter;
+        this.productoView = productoView;
+        this.chunkSize = chunkSize;
+    }
+
+    public Flux<ResultadoActualizacion> aplicar(Flux<ActualizacionStock> cambios) {
+        return cambios.buffer(chunkSize)
+                .concatMap(this::aplicarLote);
+    }
+
+    private Flux<ResultadoActualizacion> aplicarLote(List<ActualizacionStock> lote) {
+        return productoAdapter.actualizarStockLote(lote)
+                .collectList()
+                .flatMapMany(resultados -> sincronizar(lote, resultados).thenMany(Flux.fromIterable(resultados)));
+    }
+
+    private Mono<Void> sincronizar(List<ActualizacionStock> lote, List<ResultadoActualizacion> resultados) {
+        // los resultados vienen en el orden del lote; de un producto repetido solo la última entrada
+        // llega a Mongo (las anteriores salen SUPERADO), así que la vista recibe ese mismo valor
+        List<ActualizacionStock> aplicados = new ArrayList<>();
+        Set<String> inciertos = new LinkedHashSet<>();
+        for (int i = 0; i < lote.size(); i++) {
+            ResultadoActualizacion.Estado estado = resultados.get(i).getEstado();
+            if (estado == ResultadoActualizacion.Estado.ACTUALIZADO) {
+                aplicados.add(lote.get(i));
+            } else if (estado == ResultadoActualizacion.Estado.ERROR) {
+                inciertos.add(lote.get(i).getProductoId());
+            }
+        }
+        return productoView.actualizarStockLote(aplicados)
+                .onErrorResume(e -> {
+                    log.error("[productos_view] actualizarStockLote ({} productos) error: {}", aplicados.size(), e.toString());
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> inciertos.isEmpty() ? Mono.<Void>empty() : productoView.refrescarProductos(inciertos)))
+                .onErrorResume(e -> {
+                    log.error("[productos_view] refrescarProductos ({} productos con error) error: {}", inciertos.size(), e.toString());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,75 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.mongodb.adapter.FranquiciaAdapter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de franquicias existentes para validar el padre al crear sucursales sin ir a Mongo.
+ * <p>
+ * Solo guarda positivos: una franquicia recién creada o leída queda registrada durante {@code ttl}
+ * y la fachada la quita al eliminarla. Comparte la configuración de {@link SucursalFranquiciaCache}
+ * y, como ella, al superar {@code max-entries} desaloja las entradas menos usadas.
+ */
+@Component
+public class FranquiciaExistenteCache {
+
+    private final FranquiciaAdapter franquiciaAdapter;
+    private final Cache<String, Boolean> existentes;
+
+    public FranquiciaExistenteCache(FranquiciaAdapter franquiciaAdapter,
+                                    @Value("${franquicias.ownership-cache.ttl:PT5M}") Duration ttl,
+                                    @Value("${franquicias.ownership-cache.max-entries:10000}") int maxEntradas) {
+        this(franquiciaAdapter, ttl, maxEntradas, System::nanoTime);
+    }
+
+    FranquiciaExistenteCache(FranquiciaAdapter franquiciaAdapter, Duration ttl, int maxEntradas, LongSupplier reloj) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("franquicias.ownership-cache.ttl debe ser positivo");
+        }
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("franquicias.ownership-cache.max-entries debe ser mayor a 0");
+        }
+        this.franquiciaAdapter = franquiciaAdapter;
+        this.existentes = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(ttl)
+                .ticker(reloj::getAsLong)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public Mono<Boolean> existe(String franquiciaId) {
+        return Mono.defer(() -> {
+            if (existentes.getIfPresent(franquiciaId) != null) {
+                return Mono.just(true);
+            }
+            return franquiciaAdapter.obtenerPorId(franquiciaId)
+                    .doOnNext(f -> registrar(franquiciaId))
+                    .hasElement();
+        });
+    }
+
+    public void registrar(String franquiciaId) {
+        existentes.put(franquiciaId, Boolean.TRUE);
+    }
+
+    public void invalidar(String franquiciaId) {
+        existentes.invalidate(franquiciaId);
+    }
+
+    public void invalidarTodo() {
+        existentes.invalidateAll();
+    }
+
+    int tamano() {
+        existentes.cleanUp();
+        return (int) existentes.estimatedSize();
+    }
+}
@@ -0,0 +1,94 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Hidratación por lotes del árbol franquicia → sucursales → productos.
+ * <p>
+ * Agrupa los ids en ventanas de {@code windowSize} elementos y resuelve cada ventana con una
+ * consulta {@code $in} por nivel, armando el árbol en memoria. Ventanas más grandes implican
+ * menos round trips a Mongo a cambio de más memoria por ventana.
+ */
+@Component
+public class FranquiciaTreeHydrator {
+
+    private final SucursalAdapter sucursalAdapter;
+    private final ProductoAdapter productoAdapter;
+    private final int windowSize;
+    private final boolean lookupEnabled;
+
+    public FranquiciaTreeHydrator(SucursalAdapter sucursalAdapter,
+                                  ProductoAdapter productoAdapter,
+                                  @Value("${franquicias.hydration.window-size:100}") int windowSize,
+                                  @Value("${franquicias.hydration.lookup-enabled:true}") boolean lookupEnabled) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("franquicias.hydration.window-size debe ser mayor a 0");
+        }
+        this.sucursalAdapter = sucursalAdapter;
+        this.productoAdapter = productoAdapter;
+        this.windowSize = windowSize;
+        this.lookupEnabled = lookupEnabled;
+    }
+
+    /** true si el listado completo debe resolverse con la agregación $lookup en vez de lotes $in. */
+    public boolean isLookupEnabled() {
+        return lookupEnabled;
+    }
+
+    /** Franquicias con sucursales embebidas; si includeProductos=true, cada sucursal con sus productos. */
+    public Flux<Franquicia> hydrateFranquicias(Flux<Franquicia> franquicias, boolean includeProductos) {
+        return franquicias.buffer(windowSize)
+                .concatMap(lote -> hydrateFranquiciaWindow(lote, includeProductos));
+    }
+
+    /** Sucursales con productos embebidos, una consulta de productos por ventana. */
+    public Flux<Sucursal> hydrateSucursales(Flux<Sucursal> sucursales) {
+        return sucursales.buffer(windowSize)
+                .concatMap(this::hydrateSucursalWindow);
+    }
+
+    // ================== Ventanas ==================
+
+    private Flux<Franquicia> hydrateFranquiciaWindow(List<Franquicia> lote, boolean includeProductos) {
+        List<String> ids = lote.stream().map(Franquicia::getId).toList();
+        Flux<Sucursal> sucs = sucursalAdapter.listarPorFranquicias(ids);
+        Flux<Sucursal> sucsHydrated = includeProductos ? hydrateSucursales(sucs) : sucs;
+
+        return sucsHydrated
+                .collect(Collectors.groupingBy(Sucursal::getFranquiciaId, LinkedHashMap::new, Collectors.toList()))
+                .flatMapIterable(porFranquicia -> lote.stream()
+                        .map(f -> f.toBuilder()
+                                .sucursales(porFranquicia.getOrDefault(f.getId(), new ArrayList<>()))
+                                .build())
+                        .toList());
+    }
+
+    private Flux<Sucursal> hydrateSucursalWindow(List<Sucursal> lote) {
+        List<String> ids = lote.stream().map(Sucursal::getId).toList();
+
+        return productoAdapter.listarPorSucursales(ids)
+                .collect(Collectors.groupingBy(Producto::getSucursalId, LinkedHashMap::new, Collectors.toList()))
+                .flatMapIterable(porSucursal -> stitch(lote, porSucursal));
+    }
+
+    private static List<Sucursal> stitch(List<Sucursal> lote, Map<String, List<Producto>> porSucursal) {
+        return lote.stream()
+                .map(s -> s.toBuilder()
+                        .productos(porSucursal.getOrDefault(s.getId(), new ArrayList<>()))
+                        .build())
+                .toList();
+    }
+}
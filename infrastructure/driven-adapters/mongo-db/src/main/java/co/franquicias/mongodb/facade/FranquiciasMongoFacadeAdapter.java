@@ -2,57 +2,100 @@ package co.franquicias.mongodb.facade;
 
 import co.franquicias.model.OperacionesFranquiciaPort;
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.mongodb.adapter.FranquiciaAdapter;
 import co.franquicias.mongodb.adapter.ProductoAdapter;
 import co.franquicias.mongodb.adapter.SucursalAdapter;
+import co.franquicias.mongodb.helper.RevisionDigest;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import com.mongodb.MongoException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class FranquiciasMongoFacadeAdapter implements OperacionesFranquiciaPort {
 
+    private static final int BSON_OBJECT_TOO_LARGE = 10334;
+
     private final FranquiciaAdapter franquiciaAdapter;
     private final SucursalAdapter   sucursalAdapter;
     private final ProductoAdapter   productoAdapter;
+    private final FranquiciaTreeHydrator hydrator;
+    private final ProductoViewProjection productoView;
+    private final ProductoNgramIndex ngramIndex;
+    private final SucursalFranquiciaCache sucursalFranquicia;
+    private final FranquiciaExistenteCache franquiciasExistentes;
+    private final ActualizadorStockLote actualizadorStockLote;
+    private final ImportadorProductos importadorProductos;
+    private final StockWriteBehind stockWriteBehind;
 
     // ================== HELPERS DE HIDRATACIÓN ==================
 
     /** Sucursal -> Sucursal con productos embebidos. */
     private Mono<Sucursal> hydrateSucursalWithProductos(Sucursal s) {
         return productoAdapter.listarPorSucursal(s.getId())
+                .map(stockWriteBehind::aplicar)
                 .collectList()
                 .map(prods -> s.toBuilder().productos(prods).build());
     }
 
+    /** Franquicia -> Franquicia con sucursales (y productos) embebidos, vía el hidratador por lotes. */
+    private Mono<Franquicia> hydrateFranquicia(Franquicia f, boolean includeProductos) {
+        return hydrator.hydrateFranquicias(Flux.just(f), includeProductos).next()
+                .map(stockWriteBehind::aplicar);
+    }
+
+    // ================== PERTENENCIA ==================
+
+    /** Valida que la sucursal exista y sea de la franquicia, vía la caché sucursalId → franquiciaId. */
+    private Mono<Void> validarPertenencia(String franquiciaId, String sucursalId) {
+        return sucursalFranquicia.franquiciaDe(sucursalId)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Sucursal no existe")))
+                .flatMap(fId -> Objects.equals(franquiciaId, fId)
+                        ? Mono.<Void>empty()
+                        : Mono.error(new IllegalStateException("Sucursal no pertenece a la franquicia")));
+    }
+
+    // ================== PROYECCIÓN productos_view ==================
+
     /**
-     * Franquicia -> Franquicia con sucursales embebidas; si includeProductos=true,
-     * cada sucursal viene con productos embebidos.
+     * Aplica el mantenimiento de la vista tras una escritura ya confirmada. Un fallo aquí no revierte
+     * la escritura: se registra y la vista se corrige con la verificación/reconstrucción.
      */
-    private Mono<Franquicia> hydrateFranquicia(String franquiciaId, Franquicia f, boolean includeProductos) {
-        Flux<Sucursal> sucs = sucursalAdapter.listarPorFranquicia(franquiciaId);
-        Flux<Sucursal> sucsHydrated = includeProductos
-                ? sucs.flatMap(this::hydrateSucursalWithProductos)
-                : sucs;
-
-        return sucsHydrated.collectList()
-                .map(list -> f.toBuilder().sucursales(list).build());
+    private Mono<Void> syncView(Mono<Void> op, String contexto) {
+        return op.onErrorResume(e -> {
+            log.error("[productos_view] {} error: {}", contexto, e.toString());
+            return Mono.empty();
+        });
     }
 
     // ================== OPERACIONES ==================
 
     @Override
     public Mono<Franquicia> crearFranquicia(String nombre) {
-        return franquiciaAdapter.crearFranquicia(nombre);
+        return franquiciaAdapter.crearFranquicia(nombre)
+                .doOnNext(f -> franquiciasExistentes.registrar(f.getId()));
     }
 
     @Override
@@ -60,37 +103,85 @@ public class FranquiciasMongoFacadeAdapter implements OperacionesFranquiciaPort
         // Ahora devuelve franquicia + sucursales + productos
         return franquiciaAdapter.obtenerPorNombre(nombre)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Franquicia no existe")))
-                .flatMap(f -> hydrateFranquicia(f.getId(), f, true));
+                .flatMap(f -> hydrateFranquicia(f, true));
     }
 
     @Override
     public Flux<Franquicia> obtenerFranquicias(boolean verProductos) {
-        return franquiciaAdapter.obtenerFranquicias()
-                .flatMap(f -> hydrateFranquicia(f.getId(), f, verProductos));
+        if (verProductos && hydrator.isLookupEnabled()) {
+            // Árbol completo en una sola agregación ($lookup) en lugar de N+1 consultas
+            return obtenerFranquiciasPorLookup()
+                    .map(stockWriteBehind::aplicar);
+        }
+        return hydrator.hydrateFranquicias(franquiciaAdapter.obtenerFranquicias(), verProductos)
+                .map(stockWriteBehind::aplicar);
+    }
+
+    /**
+     * Listado por $lookup con respaldo en lotes $in: una franquicia cuyo árbol supera el límite de 16MB
+     * de un documento BSON hace fallar la agregación; en ese caso se hidratan con el hydrator las
+     * franquicias que aún no se emitieron, sin repetir las ya entregadas.
+     */
+    private Flux<Franquicia> obtenerFranquiciasPorLookup() {
+        Set<String> emitidas = new HashSet<>();
+        return franquiciaAdapter.obtenerFranquiciasHidratadas()
+                .doOnNext(f -> emitidas.add(f.getId()))
+                .onErrorResume(FranquiciasMongoFacadeAdapter::documentoDemasiadoGrande, e -> {
+                    log.warn("Árbol de franquicias supera 16MB en $lookup ({} ya emitidas); se continúa con lotes $in",
+                            emitidas.size(), e);
+                    return hydrator.hydrateFranquicias(
+                            franquiciaAdapter.obtenerFranquicias().filter(f -> !emitidas.contains(f.getId())), true);
+                });
+    }
+
+    /** BSONObjectTooLarge (código 10334) en cualquier punto de la cadena de causas. */
+    static boolean documentoDemasiadoGrande(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof MongoException me && me.getCode() == BSON_OBJECT_TOO_LARGE) {
+                return true;
+            }
+            if (t.getMessage() != null && t.getMessage().contains("BSONObjectTooLarge")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public Mono<String> eliminarFranquiciaPorId(String id) {
-        return franquiciaAdapter.eliminarPorId(id);
+        return franquiciaAdapter.eliminarPorId(id)
+                .doOnNext(msg -> {
+                    franquiciasExistentes.invalidar(id);
+                    sucursalFranquicia.invalidarFranquicia(id);
+                })
+                .flatMap(msg -> syncView(productoView.eliminarPorFranquicia(id), "eliminarFranquicia " + id)
+                        .thenReturn(msg));
     }
 
     @Override
     public Mono<Franquicia> actualizarFranquicia(String franquiciaId, Franquicia cambios) {
-        return franquiciaAdapter.actualizarFranquicia(franquiciaId, cambios);
+        return franquiciaAdapter.actualizarFranquicia(franquiciaId, cambios)
+                .flatMap(f -> cambios.getNombre() == null
+                        ? Mono.just(f)
+                        : syncView(productoView.renombrarFranquicia(franquiciaId, f.getNombre()),
+                                "renombrarFranquicia " + franquiciaId).thenReturn(f));
     }
 
     @Override
     public Mono<Franquicia> obtenerFranquicia(String id) {
         return franquiciaAdapter.obtenerPorId(id)
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Franquicia no existe")))
-                .flatMap(f -> hydrateFranquicia(f.getId(), f, true));
+                .flatMap(f -> hydrateFranquicia(f, true));
     }
 
     @Override
     public Mono<Sucursal> agregarSucursal(String franquiciaId, String nombre) {
-        return franquiciaAdapter.obtenerPorId(franquiciaId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Franquicia no existe")))
-                .then(sucursalAdapter.crear(franquiciaId, nombre));
+        // padre desde la caché y un único insert: el duplicado lo resuelve el índice único
+        return franquiciasExistentes.existe(franquiciaId)
+                .flatMap(existe -> Boolean.TRUE.equals(existe)
+                        ? sucursalAdapter.crear(franquiciaId, nombre)
+                        : Mono.error(new IllegalArgumentException("Franquicia no existe")))
+                .doOnNext(s -> sucursalFranquicia.registrar(s.getId(), franquiciaId));
     }
 
     @Override
@@ -110,7 +201,8 @@ public class FranquiciasMongoFacadeAdapter implements OperacionesFranquiciaPort
                                         .thenMany(Flux.<Sucursal>empty())
                         )
                 )
-                .flatMap(this::hydrateSucursalWithProductos)
+                .transform(hydrator::hydrateSucursales)
+                .map(stockWriteBehind::aplicar)
                 .doOnSubscribe(s -> log.info("[obtenerSucursalPorFranquiciaId] fId={}", franquiciaId))
                 .doOnComplete(() -> log.info("[obtenerSucursalPorFranquiciaId] fId={} completado", franquiciaId))
                 .doOnError(e -> log.error("[obtenerSucursalPorFranquiciaId] fId={} error: {}", franquiciaId, e.toString()));
@@ -118,120 +210,260 @@ public class FranquiciasMongoFacadeAdapter implements OperacionesFranquiciaPort
 
     @Override
     public Mono<String> eliminarSucursalPorId(String id) {
-        return sucursalAdapter.eliminarPorId(id);
+        return sucursalAdapter.eliminarPorId(id)
+                .doOnNext(msg -> sucursalFranquicia.invalidar(id))
+                .flatMap(msg -> syncView(productoView.eliminarPorSucursal(id), "eliminarSucursal " + id)
+                        .thenReturn(msg));
     }
 
     @Override
     public Mono<Sucursal> actualizarSucursal(String id, Sucursal cambios) {
-        return sucursalAdapter.actualizarSucursal(id, cambios);
+        return sucursalAdapter.actualizarSucursal(id, cambios)
+                .doOnNext(s -> sucursalFranquicia.invalidar(id))
+                .flatMap(s -> syncView(productoView.refrescarSucursal(id), "refrescarSucursal " + id)
+                        .thenReturn(s));
     }
 
     @Override
     public Mono<Producto> agregarProducto(String franquiciaId, String sucursalId, String nombre, int stock) {
-        return sucursalAdapter.obtenerPorId(sucursalId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Sucursal no existe")))
-                .flatMap(s -> Objects.equals(franquiciaId, s.getFranquiciaId())
-                        ? productoAdapter.crear(sucursalId, nombre, stock)
-                        : Mono.error(new IllegalStateException("Sucursal no pertenece a la franquicia")));
+        return validarPertenencia(franquiciaId, sucursalId)
+                .then(Mono.defer(() -> productoAdapter.crear(sucursalId, nombre, stock)))
+                .doOnNext(ngramIndex::indexar)
+                .flatMap(p -> syncView(productoView.refrescarProducto(p.getId()), "agregarProducto " + p.getId())
+                        .thenReturn(p));
     }
 
     @Override
     public Mono<Void> eliminarProducto(String franquiciaId, String sucursalId, String productoId) {
-        return sucursalAdapter.obtenerPorId(sucursalId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Sucursal no existe")))
-                .flatMap(s -> Objects.equals(franquiciaId, s.getFranquiciaId())
-                        ? productoAdapter.eliminarPorId(productoId).then()
-                        : Mono.error(new IllegalStateException("Sucursal no pertenece a la franquicia")));
+        return validarPertenencia(franquiciaId, sucursalId)
+                .then(Mono.defer(() -> productoAdapter.eliminarPorId(productoId)))
+                .then(Mono.fromRunnable(() -> {
+                    stockWriteBehind.descartar(productoId);
+                    ngramIndex.eliminar(productoId);
+                }))
+                .then(Mono.defer(() -> syncView(productoView.eliminarProducto(productoId), "eliminarProducto " + productoId)));
     }
 
     @Override
     public Mono<Producto> actualizarStock(String franquiciaId, String sucursalId, String productoId, int stock) {
-        return sucursalAdapter.obtenerPorId(sucursalId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Sucursal no existe")))
-                .flatMap(s -> Objects.equals(franquiciaId, s.getFranquiciaId())
-                        ? productoAdapter.actualizarStock(productoId, stock)
-                        : Mono.error(new IllegalStateException("Sucursal no pertenece a la franquicia")));
+        if (stockWriteBehind.isEnabled()) {
+            // write-behind: responde desde memoria; Mongo y productos_view se actualizan en la descarga.
+            // Con el búfer lleno responde vacío y se escribe directo
+            return validarPertenencia(franquiciaId, sucursalId)
+                    .then(Mono.defer(() -> stockWriteBehind.actualizarStock(productoId, sucursalId, stock)))
+                    .switchIfEmpty(Mono.defer(() -> actualizarStockDirecto(sucursalId, productoId, stock)));
+        }
+        // Con la pertenencia en caché, el caso común es un único findAndModify sobre productos
+        return validarPertenencia(franquiciaId, sucursalId)
+                .then(Mono.defer(() -> actualizarStockDirecto(sucursalId, productoId, stock)));
+    }
+
+    private Mono<Producto> actualizarStockDirecto(String sucursalId, String productoId, int stock) {
+        return productoAdapter.actualizarStock(productoId, sucursalId, stock)
+                .flatMap(p -> syncView(productoView.actualizarStock(p.getId(), p.getStock()), "actualizarStock " + p.getId())
+                        .thenReturn(p));
+    }
+
+    @Override
+    public Mono<Producto> ajustarStock(String franquiciaId, String sucursalId, String productoId, int delta) {
+        // si el producto está en el búfer write-behind el delta se aplica ahí, sobre el último valor
+        return validarPertenencia(franquiciaId, sucursalId)
+                .then(Mono.defer(() -> stockWriteBehind.ajustarStock(productoId, sucursalId, delta)))
+                .switchIfEmpty(Mono.defer(() -> productoAdapter.ajustarStock(productoId, sucursalId, delta)
+                        .flatMap(p -> syncView(productoView.actualizarStock(p.getId(), p.getStock()), "ajustarStock " + p.getId())
+                                .thenReturn(p))));
+    }
+
+    @Override
+    public Flux<ResultadoActualizacion> actualizarStockLote(Flux<ActualizacionStock> cambios) {
+        return actualizadorStockLote.aplicar(cambios.doOnNext(c -> stockWriteBehind.descartar(c.getProductoId())));
+    }
+
+    @Override
+    public Flux<ResultadoImportacion> importarProductos(String franquiciaId, Flux<ImportacionProducto> filas) {
+        return franquiciaAdapter.obtenerPorId(franquiciaId)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Franquicia no existe")))
+                .thenMany(Flux.defer(() -> importadorProductos.importar(franquiciaId, filas)));
     }
 
     @Override
     public Flux<Producto> productosDeSucursal(String franquiciaId, String sucursalId) {
-        return sucursalAdapter.obtenerPorId(sucursalId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Sucursal no existe")))
-                .flatMapMany(s -> {
-                    if (!Objects.equals(franquiciaId, s.getFranquiciaId())) {
-                        return Flux.error(new IllegalStateException("Sucursal no pertenece a la franquicia"));
-                    }
-                    return productoAdapter.listarPorSucursal(sucursalId);
-                });
+        return validarPertenencia(franquiciaId, sucursalId)
+                .thenMany(Flux.defer(() -> productoAdapter.listarPorSucursal(sucursalId)))
+                .map(stockWriteBehind::aplicar);
     }
 
     @Override
     public Flux<Producto> todosLosProductos() {
-        return productoAdapter.findAll();
+        return productoAdapter.findAll()
+                .map(stockWriteBehind::aplicar);
     }
 
     @Override
     public Mono<Producto> actualizarProducto(String id, Producto cambios) {
-        return productoAdapter.actualizarProducto(id, cambios);
+        return Mono.fromRunnable(() -> stockWriteBehind.descartar(id))
+                .then(Mono.defer(() -> productoAdapter.actualizarProducto(id, cambios)))
+                .doOnNext(ngramIndex::indexar)
+                .flatMap(p -> syncView(productoView.refrescarProducto(p.getId()), "actualizarProducto " + p.getId())
+                        .thenReturn(p));
     }
 
     @Override
-    public Flux<Producto> buscarProductos(String nombreLike) {
-        return productoAdapter.buscarPorNombreLike(nombreLike == null ? "" : nombreLike.trim());
+    public Flux<Producto> buscarProductos(String nombreLike, int limit) {
+        String texto = nombreLike == null ? "" : nombreLike.trim();
+        if (ngramIndex.disponible()) {
+            // type-ahead en memoria (prefijo/infijo); Mongo solo mientras el índice no esté listo
+            return Flux.defer(() -> porIds(ngramIndex.buscar(texto, limit)));
+        }
+        return productoAdapter.buscarPorTexto(texto, limit);
+    }
+
+    @Override
+    public Flux<Producto> sugerirProductos(String texto, int limit) {
+        // las sugerencias aproximadas solo existen con el índice en memoria; sin él no se sugiere nada
+        return ngramIndex.disponible()
+                ? Flux.defer(() -> porIds(ngramIndex.similares(texto, limit)))
+                : Flux.empty();
+    }
+
+    /** El índice n-gram solo guarda id y nombre: el resto se lee en una consulta, en el orden del ranking. */
+    private Flux<Producto> porIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return productoAdapter.listarPorIds(ids)
+                .collectMap(Producto::getId)
+                .flatMapIterable(porId -> ids.stream().map(porId::get).filter(Objects::nonNull).toList())
+                .map(stockWriteBehind::aplicar);
     }
 
     @Override
     public Mono<Map<String, Object>> productoGlobal(String productoId) {
-        return productoAdapter.findById(productoId)
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")))
-                .zipWhen(p -> sucursalAdapter.obtenerPorId(p.getSucursalId())
-                        .switchIfEmpty(Mono.error(new IllegalStateException("Sucursal del producto no existe"))))
-                .map(t -> Map.of(
-                        "productoId",      t.getT1().getId(),
-                        "productoNombre",  t.getT1().getNombre(),
-                        "stock",           t.getT1().getStock(),
-                        "sucursalId",      t.getT2().getId(),
-                        "sucursalNombre",  t.getT2().getNombre(),
-                        "franquiciaId",    t.getT2().getFranquiciaId()
-                ));
+        return productoView.obtener(productoId)
+                .map(stockWriteBehind::aplicarFila)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")));
     }
 
     @Override
     public Flux<Object> todosProductosViewRaw() {
-        return productoAdapter.findAll()
-                .flatMap(p -> sucursalAdapter.obtenerPorId(p.getSucursalId())
-                        .map(s -> Map.<String, Object>of(
-                                "productoId",      p.getId(),
-                                "productoNombre",  p.getNombre(),
-                                "stock",           p.getStock(),
-                                "sucursalId",      s.getId(),
-                                "sucursalNombre",  s.getNombre(),
-                                "franquiciaId",    s.getFranquiciaId()
-                        )))
+        return productoView.listar()
+                .map(stockWriteBehind::aplicarFila)
                 .cast(Object.class);
     }
 
+    // ================== LISTADOS PAGINADOS ==================
+
+    @Override
+    public Mono<Pagina<Franquicia>> obtenerFranquicias(boolean verProductos, int limit, String after) {
+        return franquiciaAdapter.pagina(after, limit)
+                .flatMap(p -> hydrator.hydrateFranquicias(Flux.fromIterable(p.getItems()), verProductos)
+                        .map(stockWriteBehind::aplicar)
+                        .collectList()
+                        .map(items -> new Pagina<>(items, p.getNextCursor())));
+    }
+
+    @Override
+    public Mono<Pagina<Sucursal>> obtenerSucursalPorFranquiciaId(String franquiciaId, int limit, String after) {
+        return sucursalAdapter.paginaPorFranquicia(franquiciaId, after, limit)
+                .flatMap(p -> p.getItems().isEmpty() && after == null
+                        ? franquiciaAdapter.obtenerPorId(franquiciaId)
+                                .switchIfEmpty(Mono.error(new IllegalArgumentException("Franquicia no encontrada")))
+                                .thenReturn(p)
+                        : hydrator.hydrateSucursales(Flux.fromIterable(p.getItems()))
+                                .map(stockWriteBehind::aplicar)
+                                .collectList()
+                                .map(items -> new Pagina<>(items, p.getNextCursor())));
+    }
+
+    @Override
+    public Mono<Pagina<Producto>> todosLosProductos(int limit, String after) {
+        return productoAdapter.pagina(after, limit)
+                .map(p -> new Pagina<>(p.getItems().stream().map(stockWriteBehind::aplicar).toList(), p.getNextCursor()));
+    }
+
+    @Override
+    public Mono<Pagina<Map<String, Object>>> todosProductosViewRaw(int limit, String after) {
+        return productoView.pagina(after, limit)
+                .map(p -> new Pagina<>(p.getItems().stream().map(stockWriteBehind::aplicarFila).toList(), p.getNextCursor()));
+    }
+
+    @Override
+    public Mono<Long> reconstruirVistaProductos() {
+        return productoView.reconstruir();
+    }
+
+    @Override
+    public Mono<Map<String, Object>> verificarVistaProductos() {
+        return productoView.verificar();
+    }
+
+    // ================== REVISIONES (GET condicional) ==================
+
+    @Override
+    public Mono<Revision> revisionFranquicia(String id) {
+        return franquiciaAdapter.versionPorId(id)
+                .flatMap(f -> sucursalAdapter.versionesPorFranquicia(id).collectList()
+                        .flatMap(sucursales -> {
+                            RevisionDigest digest = new RevisionDigest("franquicia").agregar("f", f);
+                            sucursales.forEach(s -> digest.agregar("s", s));
+                            return revisionConProductos(digest, sucursales);
+                        }));
+    }
+
+    @Override
+    public Mono<Revision> revisionSucursal(String id) {
+        return sucursalAdapter.versionPorId(id)
+                .flatMap(s -> revisionConProductos(new RevisionDigest("sucursal").agregar("s", s), List.of(s)));
+    }
+
+    /**
+     * Solo franquicias y sucursales: el listado con productos no lleva validadores, porque su revisión
+     * recorrería las versiones de todo el catálogo en cada GET.
+     */
+    @Override
+    public Mono<Revision> revisionFranquicias() {
+        return Mono.defer(() -> {
+            RevisionDigest digest = new RevisionDigest("franquicias");
+            return franquiciaAdapter.versiones().doOnNext(f -> digest.agregar("f", f))
+                    .thenMany(sucursalAdapter.versiones().doOnNext(s -> digest.agregar("s", s)))
+                    .then(Mono.fromCallable(digest::revision));
+        });
+    }
+
+    private Mono<Revision> revisionConProductos(RevisionDigest digest, List<Document> sucursales) {
+        List<String> ids = sucursales.stream().map(RevisionDigest::id).toList();
+        Flux<Document> productos = ids.isEmpty() ? Flux.empty() : productoAdapter.versionesPorSucursales(ids);
+        return productos.doOnNext(p -> agregarProducto(digest, p))
+                .then(Mono.fromCallable(digest::revision));
+    }
+
+    /** La lectura responde el stock con lo pendiente del write-behind, así que la revisión también. */
+    private void agregarProducto(RevisionDigest digest, Document p) {
+        int stock = p.get("stock") instanceof Number n ? n.intValue() : 0;
+        Producto vigente = stockWriteBehind.aplicar(Producto.builder().id(RevisionDigest.id(p)).stock(stock).build());
+        digest.agregar("p", p, vigente.getStock());
+    }
+
     @Override
     public Flux<Map<String, Object>> maxStockPorSucursal(String franquiciaId) {
         return sucursalAdapter.listarPorFranquicia(franquiciaId)
-                .flatMap(suc ->
-                        productoAdapter.listarPorSucursal(suc.getId())
-                                .sort(java.util.Comparator.comparingInt(Producto::getStock).reversed())
-                                .next()
-                                .map(prod -> Map.<String,Object>of(
-                                        "sucursalId",     suc.getId(),
-                                        "sucursalNombre", suc.getNombre(),
-                                        "productoId",     prod.getId(),
-                                        "productoNombre", prod.getNombre(),
-                                        "stock",          prod.getStock()
-                                ))
-                                .defaultIfEmpty(Map.of(
-                                        "sucursalId",     suc.getId(),
-                                        "sucursalNombre", suc.getNombre(),
-                                        "productoId",     null,
-                                        "productoNombre", null,
-                                        "stock",          0
-                                ))
-                );
+                .collectList()
+                .filter(sucs -> !sucs.isEmpty())
+                .flatMapMany(sucs -> productoAdapter.maxStockPorSucursales(sucs.stream().map(Sucursal::getId).toList())
+                        .collectMap(Producto::getSucursalId)
+                        .flatMapIterable(top -> sucs.stream()
+                                .map(suc -> filaMaxStock(suc, top.get(suc.getId())))
+                                .toList()));
+    }
+
+    /** Fila del reporte; sucursal sin productos conserva la forma con producto nulo y stock 0. */
+    private static Map<String, Object> filaMaxStock(Sucursal suc, Producto prod) {
+        Map<String, Object> fila = new LinkedHashMap<>();
+        fila.put("sucursalId",     suc.getId());
+        fila.put("sucursalNombre", suc.getNombre());
+        fila.put("productoId",     prod != null ? prod.getId() : null);
+        fila.put("productoNombre", prod != null ? prod.getNombre() : null);
+        fila.put("stock",          prod != null ? prod.getStock() : 0);
+        return fila;
     }
 }
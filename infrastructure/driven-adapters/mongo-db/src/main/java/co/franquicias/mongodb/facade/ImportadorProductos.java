@@ -0,0 +1,108 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Importación masiva de productos de una franquicia. El flujo de filas se consume en lotes de
+ * {@code chunk-size} con {@code concatMap}: se pide el siguiente lote solo cuando el anterior quedó
+ * escrito, así que la lectura del cuerpo HTTP avanza al ritmo de Mongo y la memoria queda acotada
+ * a un lote sin importar el tamaño del archivo.
+ * <p>
+ * Por lote: se valida la pertenencia de cada sucursal (vía {@link SucursalFranquiciaCache}), se
+ * insertan las filas válidas con un bulkWrite desordenado y se propagan las altas a
+ * {@code productos_view} y al índice n-gram.
+ */
+@Slf4j
+@Component
+public class ImportadorProductos {
+
+    private final ProductoAdapter productoAdapter;
+    private final ProductoViewProjection productoView;
+    private final ProductoNgramIndex ngramIndex;
+    private final SucursalFranquiciaCache sucursalFranquicia;
+    private final int chunkSize;
+
+    public ImportadorProductos(ProductoAdapter productoAdapter,
+                               ProductoViewProjection productoView,
+                               ProductoNgramIndex ngramIndex,
+                               SucursalFranquiciaCache sucursalFranquicia,
+                               @Value("${franquicias.bulk.chunk-size:1000}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("franquicias.bulk.chunk-size debe ser mayor a 0");
+        }
+        this.productoAdapter = productoAdapter;
+        this.productoView = productoView;
+        this.ngramIndex = ngramIndex;
+        this.sucursalFranquicia = sucursalFranquicia;
+        this.chunkSize = chunkSize;
+    }
+
+    public Flux<ResultadoImportacion> importar(String franquiciaId, Flux<ImportacionProducto> filas) {
+        return filas.buffer(chunkSize)
+                .concatMap(lote -> importarLote(franquiciaId, lote));
+    }
+
+    private Flux<ResultadoImportacion> importarLote(String franquiciaId, List<ImportacionProducto> lote) {
+        return Flux.fromStream(lote.stream().map(ImportacionProducto::getSucursalId).distinct())
+                .flatMap(sId -> sucursalFranquicia.franquiciaDe(sId)
+                        .map(fId -> Map.entry(sId, fId)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new)
+                .flatMapMany(duenos -> {
+                    List<ImportacionProducto> validas = new ArrayList<>(lote.size());
+                    List<ResultadoImportacion> rechazadas = new ArrayList<>();
+                    for (ImportacionProducto f : lote) {
+                        String dueno = duenos.get(f.getSucursalId());
+                        if (dueno == null) {
+                            rechazadas.add(ResultadoImportacion.de(f, ResultadoImportacion.Estado.INVALIDO, null, "Sucursal no existe"));
+                        } else if (!Objects.equals(franquiciaId, dueno)) {
+                            rechazadas.add(ResultadoImportacion.de(f, ResultadoImportacion.Estado.INVALIDO, null,
+                                    "Sucursal no pertenece a la franquicia"));
+                        } else {
+                            validas.add(f);
+                        }
+                    }
+                    return productoAdapter.insertarLote(validas)
+                            .collectList()
+                            .flatMapMany(insertadas -> sincronizar(validas, insertadas)
+                                    .thenMany(Flux.concat(Flux.fromIterable(insertadas), Flux.fromIterable(rechazadas))));
+                });
+    }
+
+    /** {@code resultados} viene en el mismo orden que {@code filas}. */
+    private Mono<Void> sincronizar(List<ImportacionProducto> filas, List<ResultadoImportacion> resultados) {
+        List<String> creados = new ArrayList<>();
+        for (int i = 0; i < resultados.size(); i++) {
+            ResultadoImportacion r = resultados.get(i);
+            if (r.getEstado() == ResultadoImportacion.Estado.CREADO) {
+                creados.add(r.getProductoId());
+                ngramIndex.indexar(Producto.builder()
+                        .id(r.getProductoId())
+                        .sucursalId(r.getSucursalId())
+                        .nombre(r.getNombre())
+                        .stock(filas.get(i).getStock())
+                        .build());
+            }
+        }
+        return productoView.refrescarProductos(creados)
+                .onErrorResume(e -> {
+                    log.error("[productos_view] importación ({} productos) error: {}", creados.size(), e.toString());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,447 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.producto.StockInsuficienteException;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind opcional ({@code franquicias.stock.write-behind.enabled}) para las actualizaciones de
+ * stock de alta frecuencia.
+ * <p>
+ * Cada escritura deja el último stock del producto en una tabla en memoria y responde sin ir a Mongo;
+ * las escrituras sobre un producto ya pendiente se coalescen en una sola. La tabla se descarga con
+ * bulkWrite desordenados (en lotes de {@code chunk-size}) cada {@code flush-interval} o en cuanto
+ * llega a {@code max-pending} productos, y al apagar la aplicación.
+ * <p>
+ * Lecturas: la fachada pasa los productos leídos por {@link #aplicar(Producto)} y variantes, que
+ * sobreponen el stock pendiente, en vuelo o recién descargado (este último hasta la descarga
+ * siguiente, así una lectura que empezó antes de que aterrizara la escritura no ve el valor viejo).
+ * Un producto nunca está en dos descargas a la vez, así que se respeta el orden de sus escrituras.
+ * {@link #descartar} marca como superado lo que esté en vuelo: ya no se sobrepone ni pasa a recién
+ * descargado al aterrizar, y si la escritura falla no vuelve al búfer.
+ * <p>
+ * Con {@code max-pending} productos pendientes (p. ej. con Mongo caído y las descargas fallando) el
+ * búfer deja de crecer: {@link #actualizarStock} responde vacío para los productos que no estén ya en
+ * él y la fachada escribe directo en Mongo.
+ * <p>
+ * El búfer es por instancia: con varias réplicas escribiendo el mismo producto gana la última en
+ * descargar, igual que con escrituras directas concurrentes.
+ */
+@Slf4j
+@Component
+public class StockWriteBehind {
+
+    private record Pendiente(Producto producto, long desdeNanos, boolean superado) {
+        Pendiente superar() {
+            return new Pendiente(producto, desdeNanos, true);
+        }
+    }
+
+    private final ProductoAdapter productoAdapter;
+    private final ProductoViewProjection productoView;
+    private final boolean enabled;
+    private final int maxPendientes;
+    private final Duration intervalo;
+    private final int chunkSize;
+    private final LongSupplier reloj;
+
+    private final Map<String, Pendiente> pendientes = new ConcurrentHashMap<>();
+    private final Map<String, Pendiente> enVuelo = new ConcurrentHashMap<>();
+    private final Map<String, Pendiente> recientes = new ConcurrentHashMap<>();
+    private final AtomicBoolean descargaPorTamano = new AtomicBoolean();
+
+    private final Counter recibidas;
+    private final Counter escritas;
+    private final Counter fallidas;
+    private final Counter directas;
+    private final Timer lag;
+
+    private Disposable programado;
+
+    public StockWriteBehind(ProductoAdapter productoAdapter,
+                            ProductoViewProjection productoView,
+                            MeterRegistry registry,
+                            @Value("${franquicias.stock.write-behind.enabled:false}") boolean enabled,
+                            @Value("${franquicias.stock.write-behind.max-pending:500}") int maxPendientes,
+                            @Value("${franquicias.stock.write-behind.flush-interval:PT0.5S}") Duration intervalo,
+                            @Value("${franquicias.bulk.chunk-size:1000}") int chunkSize) {
+        this(productoAdapter, productoView, registry, enabled, maxPendientes, intervalo, chunkSize, System::nanoTime);
+    }
+
+    StockWriteBehind(ProductoAdapter productoAdapter, ProductoViewProjection productoView, MeterRegistry registry,
+                     boolean enabled, int maxPendientes, Duration intervalo, int chunkSize, LongSupplier reloj) {
+        if (maxPendientes <= 0) {
+            throw new IllegalArgumentException("franquicias.stock.write-behind.max-pending debe ser mayor a 0");
+        }
+        if (intervalo.isNegative() || intervalo.isZero()) {
+            throw new IllegalArgumentException("franquicias.stock.write-behind.flush-interval debe ser positivo");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("franquicias.bulk.chunk-size debe ser mayor a 0");
+        }
+        this.productoAdapter = productoAdapter;
+        this.productoView = productoView;
+        this.enabled = enabled;
+        this.maxPendientes = maxPendientes;
+        this.intervalo = intervalo;
+        this.chunkSize = chunkSize;
+        this.reloj = reloj;
+
+        this.recibidas = Counter.builder("franquicias.stock.write_behind.recibidas")
+                .description("Actualizaciones de stock aceptadas por el búfer").register(registry);
+        this.escritas = Counter.builder("franquicias.stock.write_behind.escritas")
+                .description("Productos escritos en Mongo por las descargas").register(registry);
+        this.fallidas = Counter.builder("franquicias.stock.write_behind.fallidas")
+                .description("Productos cuya escritura falló y volvieron al búfer").register(registry);
+        this.directas = Counter.builder("franquicias.stock.write_behind.directas")
+                .description("Actualizaciones que fueron directo a Mongo por tener el búfer lleno").register(registry);
+        this.lag = Timer.builder("franquicias.stock.write_behind.lag")
+                .description("Tiempo desde la primera escritura pendiente de un producto hasta que llega a Mongo")
+                .register(registry);
+        Gauge.builder("franquicias.stock.write_behind.pendientes", pendientes, Map::size)
+                .description("Productos con stock pendiente de descargar").register(registry);
+        Gauge.builder("franquicias.stock.write_behind.coalescencia", this, StockWriteBehind::coalescencia)
+                .description("Actualizaciones recibidas por cada escritura en Mongo").register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (enabled && programado == null) {
+            programado = Flux.interval(intervalo)
+                    .onBackpressureDrop()
+                    .concatMap(t -> descargar())
+                    .subscribe();
+        }
+    }
+
+    /** Detiene el temporizador y descarga todo lo pendiente antes de cerrar el contexto. */
+    @PreDestroy
+    public void cerrar() {
+        if (programado != null) {
+            programado.dispose();
+        }
+        if (!descargado()) {
+            try {
+                descargarTodo().block(intervalo.multipliedBy(20).plusSeconds(10));
+            } catch (RuntimeException e) {
+                log.error("[stock write-behind] al cerrar quedaron {} productos sin descargar: {}",
+                        pendientes.size() + enVuelo.size(), e.toString());
+            }
+        }
+    }
+
+    // ================== Escrituras ==================
+
+    /**
+     * Fija el stock en el búfer. Si el producto no está en memoria se lee una vez de Mongo (filtrando
+     * por sucursal) para validar que existe y para responder el producto completo. Vacío si el búfer
+     * está lleno y el producto no está en él: la fachada escribe entonces directo en Mongo.
+     */
+    public Mono<Producto> actualizarStock(String productoId, String sucursalId, int stock) {
+        return Mono.defer(() -> {
+                    if (lleno() && !pendientes.containsKey(productoId) && !enVuelo.containsKey(productoId)) {
+                        // la escritura directa deja atrás el último valor descargado
+                        recientes.remove(productoId);
+                        directas.increment();
+                        return Mono.empty();
+                    }
+                    Pendiente actual = vigente(productoId);
+                    return actual != null && Objects.equals(sucursalId, actual.producto().getSucursalId())
+                            ? Mono.just(actual.producto())
+                            : productoAdapter.obtenerEnSucursal(productoId, sucursalId)
+                                    .switchIfEmpty(Mono.error(new IllegalArgumentException("Producto no encontrado")));
+                })
+                .map(leido -> encolar(leido, stock));
+    }
+
+    /**
+     * Suma {@code delta} sobre el stock en memoria si el producto está en el búfer; vacío si no lo
+     * está, y entonces la fachada aplica el {@code $inc} condicional directo en Mongo.
+     */
+    public Mono<Producto> ajustarStock(String productoId, String sucursalId, int delta) {
+        return Mono.fromCallable(() -> {
+            Pendiente p = pendientes.compute(productoId, (id, previo) -> {
+                Pendiente base = previo != null ? previo : volando(id);
+                if (base == null) {
+                    return null;
+                }
+                if (!Objects.equals(sucursalId, base.producto().getSucursalId())) {
+                    throw new IllegalArgumentException("Producto no encontrado");
+                }
+                int stock = base.producto().getStock() + delta;
+                if (stock < 0) {
+                    throw new StockInsuficienteException(id, delta);
+                }
+                return nuevo(base.producto(), stock, previo);
+            });
+            if (p == null) {
+                // el $inc irá directo a Mongo: el último valor descargado ya no es el vigente
+                recientes.remove(productoId);
+                return null;
+            }
+            registrada();
+            return p.producto();
+        });
+    }
+
+    /**
+     * Olvida el stock en memoria de un producto que se escribe por otro camino (edición, lote o
+     * eliminación), para que una descarga posterior no pise ese valor. Lo que esté en vuelo queda
+     * superado: sigue bloqueando otra descarga del producto hasta aterrizar, pero ya no se lee.
+     */
+    public void descartar(String productoId) {
+        pendientes.remove(productoId);
+        recientes.remove(productoId);
+        enVuelo.computeIfPresent(productoId, (id, p) -> p.superar());
+    }
+
+    private Producto encolar(Producto leido, int stock) {
+        Pendiente p = pendientes.compute(leido.getId(), (id, previo) -> {
+            Pendiente base = previo != null ? previo : volando(id);
+            return nuevo(base != null ? base.producto() : leido, stock, previo);
+        });
+        registrada();
+        return p.producto();
+    }
+
+    /** Conserva el instante de la primera escritura pendiente para medir el lag de descarga. */
+    private Pendiente nuevo(Producto base, int stock, Pendiente previo) {
+        return new Pendiente(base.toBuilder().stock(stock).updatedAt(Instant.now()).build(),
+                previo != null ? previo.desdeNanos() : reloj.getAsLong(), false);
+    }
+
+    private void registrada() {
+        recibidas.increment();
+        if (lleno() && descargaPorTamano.compareAndSet(false, true)) {
+            descargar()
+                    .doFinally(s -> descargaPorTamano.set(false))
+                    .subscribe();
+        }
+    }
+
+    // ================== Descarga ==================
+
+    /**
+     * Escribe lo pendiente que no esté ya en vuelo. Los fallos devuelven el producto al búfer (salvo
+     * que haya llegado un valor más nuevo) y no se propagan.
+     */
+    public Mono<Void> descargar() {
+        return Mono.defer(() -> {
+            recientes.clear();
+            List<Pendiente> lote = tomarLote();
+            if (lote.isEmpty()) {
+                return Mono.empty();
+            }
+            return Flux.fromIterable(lote)
+                    .buffer(chunkSize)
+                    .concatMap(this::escribir)
+                    .then();
+        });
+    }
+
+    /** Descarga repetidamente hasta que no quede nada pendiente ni en vuelo. */
+    Mono<Void> descargarTodo() {
+        return Mono.defer(this::descargar)
+                .then(Mono.fromCallable(this::descargado))
+                .flatMap(listo -> listo ? Mono.just(true) : Mono.delay(Duration.ofMillis(20)).thenReturn(false))
+                .repeat()
+                .takeUntil(Boolean::booleanValue)
+                .then();
+    }
+
+    private List<Pendiente> tomarLote() {
+        List<Pendiente> lote = new ArrayList<>();
+        for (Map.Entry<String, Pendiente> e : pendientes.entrySet()) {
+            String id = e.getKey();
+            Pendiente p = e.getValue();
+            // un producto en vuelo espera a que aterrice la escritura anterior
+            if (enVuelo.putIfAbsent(id, p) == null) {
+                // si llegó un valor más nuevo queda pendiente para la próxima descarga
+                pendientes.remove(id, p);
+                lote.add(p);
+            }
+        }
+        return lote;
+    }
+
+    private Mono<Void> escribir(List<Pendiente> lote) {
+        List<ActualizacionStock> cambios = lote.stream()
+                .map(p -> ActualizacionStock.builder()
+                        .productoId(p.producto().getId())
+                        .sucursalId(p.producto().getSucursalId())
+                        .stock(p.producto().getStock())
+                        .build())
+                .toList();
+
+        return productoAdapter.actualizarStockLote(cambios)
+                .collectList()
+                .flatMap(resultados -> {
+                    List<ActualizacionStock> aplicados = new ArrayList<>();
+                    long ahora = reloj.getAsLong();
+                    for (int i = 0; i < lote.size(); i++) {
+                        Pendiente p = lote.get(i);
+                        ResultadoActualizacion.Estado estado = resultados.get(i).getEstado();
+                        if (estado == ResultadoActualizacion.Estado.ACTUALIZADO) {
+                            aplicados.add(cambios.get(i));
+                            lag.record(ahora - p.desdeNanos(), TimeUnit.NANOSECONDS);
+                            aterrizar(p);
+                        } else if (estado == ResultadoActualizacion.Estado.NO_ENCONTRADO) {
+                            // eliminado mientras estaba pendiente: no hay nada que escribir
+                            soltar(p);
+                        } else {
+                            reencolar(p);
+                        }
+                    }
+                    escritas.increment(aplicados.size());
+                    return productoView.actualizarStockLote(aplicados)
+                            .onErrorResume(e -> {
+                                log.error("[productos_view] write-behind ({} productos) error: {}", aplicados.size(), e.toString());
+                                return Mono.empty();
+                            });
+                })
+                .onErrorResume(e -> {
+                    log.error("[stock write-behind] descarga de {} productos error: {}", lote.size(), e.toString());
+                    lote.forEach(this::reencolar);
+                    return Mono.empty();
+                });
+    }
+
+    private void aterrizar(Pendiente p) {
+        String id = p.producto().getId();
+        recientes.put(id, p);
+        if (!soltar(p)) {
+            recientes.remove(id, p);
+        }
+    }
+
+    /** Devuelve al búfer una escritura fallida, salvo que se haya descartado mientras estaba en vuelo. */
+    private void reencolar(Pendiente p) {
+        String id = p.producto().getId();
+        fallidas.increment();
+        pendientes.putIfAbsent(id, p);
+        if (!soltar(p)) {
+            pendientes.remove(id, p);
+        }
+    }
+
+    /** Saca {@code p} de vuelo; false si {@link #descartar} lo dio por superado mientras se escribía. */
+    private boolean soltar(Pendiente p) {
+        String id = p.producto().getId();
+        if (enVuelo.remove(id, p)) {
+            return true;
+        }
+        enVuelo.remove(id, p.superar());
+        return false;
+    }
+
+    // ================== Lecturas ==================
+
+    /** Producto con el stock en memoria, si lo hay. */
+    public Producto aplicar(Producto producto) {
+        Pendiente p = producto == null || vacio() ? null : vigente(producto.getId());
+        return p == null || p.producto().getStock() == producto.getStock()
+                ? producto
+                : producto.toBuilder().stock(p.producto().getStock()).build();
+    }
+
+    public Sucursal aplicar(Sucursal sucursal) {
+        if (vacio() || sucursal.getProductos() == null) {
+            return sucursal;
+        }
+        return sucursal.toBuilder()
+                .productos(sucursal.getProductos().stream().map(this::aplicar).toList())
+                .build();
+    }
+
+    public Franquicia aplicar(Franquicia franquicia) {
+        if (vacio() || franquicia.getSucursales() == null) {
+            return franquicia;
+        }
+        return franquicia.toBuilder()
+                .sucursales(franquicia.getSucursales().stream().map(this::aplicar).toList())
+                .build();
+    }
+
+    /** Fila de {@code productos_view} con el stock en memoria, si lo hay. */
+    public Map<String, Object> aplicarFila(Map<String, Object> fila) {
+        Pendiente p = vacio() ? null : vigente(String.valueOf(fila.get("productoId")));
+        if (p == null) {
+            return fila;
+        }
+        Map<String, Object> copia = new LinkedHashMap<>(fila);
+        copia.put("stock", p.producto().getStock());
+        return copia;
+    }
+
+    private Pendiente vigente(String productoId) {
+        Pendiente p = pendientes.get(productoId);
+        if (p == null) {
+            p = enVuelo.get(productoId);
+            if (p != null && p.superado()) {
+                return null;
+            }
+        }
+        return p != null ? p : recientes.get(productoId);
+    }
+
+    /** Escritura en vuelo del producto, si no fue descartada. */
+    private Pendiente volando(String productoId) {
+        Pendiente p = enVuelo.get(productoId);
+        return p != null && !p.superado() ? p : null;
+    }
+
+    private boolean lleno() {
+        return pendientes.size() >= maxPendientes;
+    }
+
+    private boolean vacio() {
+        return descargado() && recientes.isEmpty();
+    }
+
+    private boolean descargado() {
+        return pendientes.isEmpty() && enVuelo.isEmpty();
+    }
+
+    int pendientes() {
+        return pendientes.size();
+    }
+
+    double coalescencia() {
+        double escritos = escritas.count();
+        return escritos == 0 ? 0 : recibidas.count() / escritos;
+    }
+}
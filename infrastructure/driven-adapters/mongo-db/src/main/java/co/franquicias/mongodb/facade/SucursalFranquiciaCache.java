@@ -0,0 +1,127 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché read-through sucursalId → franquiciaId para las validaciones de pertenencia en escrituras de producto.
+ * <p>
+ * Un acierto evita el round trip a {@code sucursales}; un fallo la consulta y guarda el resultado
+ * durante {@code ttl}. La fachada invalida la entrada al actualizar o eliminar la sucursal (o su
+ * franquicia), así que el TTL solo acota cambios hechos fuera de esta instancia. Al superar
+ * {@code max-entries} se desalojan las entradas menos usadas.
+ * <p>
+ * Lo que se guarda es la carga en curso, no solo el valor: una ráfaga de fallos sobre la misma
+ * sucursal comparte una única consulta. Una sucursal inexistente o una consulta fallida no dejan
+ * entrada.
+ */
+@Component
+public class SucursalFranquiciaCache {
+
+    private final SucursalAdapter sucursalAdapter;
+    private final LongSupplier reloj;
+    private final AsyncCache<String, String> entradas;
+
+    private final Counter aciertos;
+    private final Counter fallos;
+    private final Timer carga;
+
+    public SucursalFranquiciaCache(SucursalAdapter sucursalAdapter,
+                                   MeterRegistry registry,
+                                   @Value("${franquicias.ownership-cache.ttl:PT5M}") Duration ttl,
+                                   @Value("${franquicias.ownership-cache.max-entries:10000}") int maxEntradas) {
+        this(sucursalAdapter, registry, ttl, maxEntradas, System::nanoTime);
+    }
+
+    SucursalFranquiciaCache(SucursalAdapter sucursalAdapter, MeterRegistry registry,
+                            Duration ttl, int maxEntradas, LongSupplier reloj) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("franquicias.ownership-cache.ttl debe ser positivo");
+        }
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("franquicias.ownership-cache.max-entries debe ser mayor a 0");
+        }
+        this.sucursalAdapter = sucursalAdapter;
+        this.reloj = reloj;
+        // el mantenimiento (desalojo, expiración) corre en el hilo que escribe: es O(1) y no bloquea
+        this.entradas = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(ttl)
+                .ticker(reloj::getAsLong)
+                .executor(Runnable::run)
+                .buildAsync();
+
+        this.aciertos = Counter.builder("franquicias.ownership_cache.consultas").tag("resultado", "acierto")
+                .description("Validaciones de pertenencia resueltas desde la caché").register(registry);
+        this.fallos = Counter.builder("franquicias.ownership_cache.consultas").tag("resultado", "fallo")
+                .description("Validaciones de pertenencia que consultaron sucursales").register(registry);
+        this.carga = Timer.builder("franquicias.ownership_cache.carga")
+                .description("Duración de la consulta a sucursales en un fallo de la caché").register(registry);
+        Gauge.builder("franquicias.ownership_cache.entradas", this, SucursalFranquiciaCache::tamano)
+                .description("Sucursales con pertenencia en caché").register(registry);
+    }
+
+    /**
+     * Franquicia dueña de la sucursal; vacío si la sucursal no existe (no se cachea la ausencia).
+     * Quien se suma a una carga en curso cuenta como acierto: no genera otra consulta.
+     */
+    public Mono<String> franquiciaDe(String sucursalId) {
+        return Mono.defer(() -> {
+            CompletableFuture<String> enCache = entradas.getIfPresent(sucursalId);
+            if (enCache != null) {
+                aciertos.increment();
+                return Mono.fromFuture(enCache, true);
+            }
+            return Mono.fromFuture(entradas.get(sucursalId, (id, executor) -> cargar(id)), true);
+        });
+    }
+
+    /** Registra la pertenencia de una sucursal recién creada, sin esperar a la primera consulta. */
+    public void registrar(String sucursalId, String franquiciaId) {
+        entradas.put(sucursalId, CompletableFuture.completedFuture(franquiciaId));
+    }
+
+    /** Descarta la entrada; una carga en curso para la sucursal termina sin volver a la caché. */
+    public void invalidar(String sucursalId) {
+        entradas.synchronous().invalidate(sucursalId);
+    }
+
+    /** Descarta las sucursales de la franquicia y, por las dudas, las cargas aún sin resolver. */
+    public void invalidarFranquicia(String franquiciaId) {
+        entradas.asMap().values().removeIf(f -> !f.isDone()
+                || (!f.isCompletedExceptionally() && franquiciaId.equals(f.getNow(null))));
+    }
+
+    /** Vacía la caché (p. ej. cuando el bus de invalidación perdió eventos). */
+    public void invalidarTodo() {
+        entradas.synchronous().invalidateAll();
+    }
+
+    int tamano() {
+        entradas.synchronous().cleanUp();
+        return (int) entradas.synchronous().estimatedSize();
+    }
+
+    private CompletableFuture<String> cargar(String sucursalId) {
+        fallos.increment();
+        long inicio = reloj.getAsLong();
+        return sucursalAdapter.obtenerPorId(sucursalId)
+                .mapNotNull(Sucursal::getFranquiciaId)
+                .doFinally(s -> carga.record(reloj.getAsLong() - inicio, TimeUnit.NANOSECONDS))
+                .toFuture();
+    }
+}
@@ -0,0 +1,13 @@
+package co.franquicias.mongodb.helper;
+
+/**
+ * Mapeo explícito Documento (D) ↔ Modelo (E) para {@link MongoDBAdapterOperations}.
+ * Los adapters que registran uno evitan ModelMapper en {@code toEntity}/{@code toDocument};
+ * ambos métodos reciben valores no nulos.
+ */
+public interface DocumentMapper<E, D> {
+
+    E toEntity(D document);
+
+    D toDocument(E entity);
+}
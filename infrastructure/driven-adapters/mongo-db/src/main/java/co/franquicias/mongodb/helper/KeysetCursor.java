@@ -0,0 +1,57 @@
+package co.franquicias.mongodb.helper;
+
+import co.franquicias.model.pagina.Pagina;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación keyset sobre {@code _id}: cada página es {@code _id > cursor ORDER BY _id LIMIT n+1},
+ * servida por el índice de {@code _id} (o un compuesto {@code {filtro, _id}}) sin skip/offset.
+ * El cursor es el último {@code _id} devuelto codificado en base64 url-safe.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    /** Query de una página: filtro opcional + {@code _id > after}, orden por {@code _id} y {@code limit + 1}. */
+    public static Query query(Criteria filtro, String after, int limit) {
+        Query query = new Query();
+        if (filtro != null) {
+            query.addCriteria(filtro);
+        }
+        if (after != null && !after.isBlank()) {
+            query.addCriteria(Criteria.where("_id").gt(decode(after)));
+        }
+        return query.with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit + 1);
+    }
+
+    /** Arma la página a partir de los {@code limit + 1} documentos leídos; el sobrante indica que hay más. */
+    public static <D, T> Pagina<T> pagina(List<D> docs, int limit, Function<D, String> idOf, Function<D, T> mapper) {
+        boolean hayMas = docs.size() > limit;
+        List<D> visibles = hayMas ? docs.subList(0, limit) : docs;
+        return Pagina.<T>builder()
+                .items(visibles.stream().map(mapper).toList())
+                .nextCursor(hayMas ? encode(idOf.apply(visibles.get(limit - 1))) : null)
+                .build();
+    }
+}
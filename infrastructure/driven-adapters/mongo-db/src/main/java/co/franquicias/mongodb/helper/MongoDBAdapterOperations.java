@@ -1,16 +1,20 @@
 package co.franquicias.mongodb.helper;
 
+import co.franquicias.model.pagina.Pagina;
 import org.modelmapper.ModelMapper;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 
@@ -30,18 +34,48 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
     protected final Class<E> entityClass;
     protected final ModelMapper modelMapper;
 
+    /** Mapeo explícito del documento principal; null => ModelMapper. */
+    private final DocumentMapper<E, D> documentMapper;
+
+    private static final String VERSION = "version";
+    private static final Set<String> PATCH_EXCLUIDOS = Set.of("id", VERSION, "createdAt");
+
+    /** Colección del documento, resuelta una vez desde {@code @Document} (o el nombre de la clase). */
+    private final String collectionName;
+
+    /** El documento tiene {@code version}: cada patch la incrementa como lo haría un save. */
+    private final boolean versioned;
+
     protected MongoDBAdapterOperations(
             ReactiveMongoRepository<D, I> repository,
             ReactiveMongoTemplate mongoTemplate,
             Class<D> documentClass,
             Class<E> entityClass,
             ModelMapper modelMapper
+    ) {
+        this(repository, mongoTemplate, documentClass, entityClass, modelMapper, null);
+    }
+
+    /**
+     * Igual que el anterior, pero {@code toEntity}/{@code toDocument} usan {@code documentMapper}
+     * en lugar de ModelMapper, que queda para {@link #map}/{@link #mapList} y subdocumentos.
+     */
+    protected MongoDBAdapterOperations(
+            ReactiveMongoRepository<D, I> repository,
+            ReactiveMongoTemplate mongoTemplate,
+            Class<D> documentClass,
+            Class<E> entityClass,
+            ModelMapper modelMapper,
+            DocumentMapper<E, D> documentMapper
     ) {
         this.repository = Objects.requireNonNull(repository);
         this.mongoTemplate = Objects.requireNonNull(mongoTemplate);
         this.documentClass = Objects.requireNonNull(documentClass);
         this.entityClass = Objects.requireNonNull(entityClass);
         this.modelMapper = Objects.requireNonNull(modelMapper);
+        this.documentMapper = documentMapper;
+        this.versioned = PropertyAccessors.of(documentClass).writable().containsKey(VERSION);
+        this.collectionName = collectionName(documentClass);
         configureModelMapper();
     }
 
@@ -52,12 +86,14 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
 
     /** Convierte Modelo (E) -> Documento (D). */
     protected D toDocument(E entity) {
-        return entity == null ? null : modelMapper.map(entity, documentClass);
+        if (entity == null) return null;
+        return documentMapper != null ? documentMapper.toDocument(entity) : modelMapper.map(entity, documentClass);
     }
 
     /** Convierte Documento (D) -> Modelo (E). */
     protected E toEntity(D document) {
-        return document == null ? null : modelMapper.map(document, entityClass);
+        if (document == null) return null;
+        return documentMapper != null ? documentMapper.toEntity(document) : modelMapper.map(document, entityClass);
     }
 
     /** Mapea cualquier objeto a un tipo objetivo (útil para subdocumentos). */
@@ -111,11 +147,41 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
         return mongoTemplate.find(query, documentClass).map(this::toEntity);
     }
 
+    /**
+     * Lee directo al Modelo (E), sin instanciar el Documento: requiere un reading converter
+     * {@code Document → E} registrado en el template (ver {@code ConectionConfig}).
+     */
+    protected Flux<E> findEntitiesByQuery(Query query) {
+        return mongoTemplate.find(query, entityClass, collectionName);
+    }
+
+    /**
+     * Solo {@code _id} y {@code version} (más {@code extra}) de los documentos que
+     * cumplen {@code criteria} (null = todos), ordenados por {@code _id}: base de las revisiones de
+     * GET condicional, sin mapear ni hidratar.
+     */
+    protected Flux<org.bson.Document> findVersions(Criteria criteria, String... extra) {
+        Query query = (criteria != null ? new Query(criteria) : new Query()).with(Sort.by("_id"));
+        query.fields().include("_id", VERSION).include(extra);
+        return mongoTemplate.query(documentClass)
+                .inCollection(collectionName)
+                .as(org.bson.Document.class)
+                .matching(query)
+                .all();
+    }
+
     /** Encuentra un documento por Query y devuelve modelo. */
     protected Mono<E> findOneByQuery(Query query) {
         return mongoTemplate.findOne(query, documentClass).map(this::toEntity);
     }
 
+    /** Página keyset sobre {@code _id} (ver {@link KeysetCursor}); {@code filtro} puede ser null. */
+    protected Mono<Pagina<E>> paginar(Criteria filtro, String after, int limit, Function<D, String> idOf) {
+        return Mono.defer(() -> mongoTemplate.find(KeysetCursor.query(filtro, after, limit), documentClass)
+                .collectList()
+                .map(docs -> KeysetCursor.pagina(docs, limit, idOf, this::toEntity)));
+    }
+
     /** findAndModify que retorna el documento modificado como Modelo (E). */
     protected Mono<E> findAndModifyReturningEntity(Query query, Update update) {
         return mongoTemplate.findAndModify(query, update, options().returnNew(true), documentClass)
@@ -131,6 +197,39 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
                 .map(result -> result.getMatchedCount() > 0);
     }
 
+    // ===================== Actualización parcial ($set de no nulos) =====================
+
+    /**
+     * PATCH en un solo round trip: los campos presentes del Modelo parcial (mismas reglas que
+     * {@link #copyNonNullProperties}) van en un {@code $set}, {@code version} se incrementa con
+     * {@code $inc} y todo se aplica con findAndModify(returnNew). No reescribe los campos ausentes.
+     */
+    protected Mono<E> patchNonNull(I id, E partialEntity) {
+        return patchNonNull(id, partialEntity, PATCH_EXCLUIDOS);
+    }
+
+    protected Mono<E> patchNonNull(I id, E partialEntity, Set<String> excluded) {
+        return Mono.fromCallable(() -> buildPatchUpdate(toDocument(partialEntity), excluded))
+                .flatMap(update -> findAndModifyReturningEntity(new Query(Criteria.where("_id").is(id)), update))
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Recurso no encontrado")));
+    }
+
+    /** Un {@code $set} por propiedad presente del documento parcial, más {@code $inc} de la versión. */
+    protected Update buildPatchUpdate(D patchDoc, Set<String> excluded) {
+        Update update = new Update();
+        if (patchDoc != null) {
+            try {
+                buildSourceValues(patchDoc, excluded).forEach(update::set);
+            } catch (PropertyAccessException e) {
+                throw new PropertyCopyException("Error en buildPatchUpdate", e);
+            }
+        }
+        if (versioned) {
+            update.inc(VERSION, 1);
+        }
+        return update;
+    }
+
     // ===================== Actualización parcial (merge no nulos) =====================
 
     /**
@@ -149,7 +248,7 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
     }
 
     protected void copyNonNullProperties(D source, D target) {
-        copyNonNullProperties(source, target, Set.of("id", "version", "createdAt"));
+        copyNonNullProperties(source, target, PATCH_EXCLUIDOS);
     }
 
     /**
@@ -173,24 +272,21 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
     }
 
     // ===================== Helpers privados para reducir complejidad =====================
+    // Los accessors salen de PropertyAccessors: introspección una vez por clase, llamadas directas después.
     private Map<String, Object> buildSourceValues(D source, Set<String> excluded)
             throws PropertyAccessException {
         try {
-            var sourceInfo = Introspector.getBeanInfo(source.getClass(), Object.class);
             Map<String, Object> values = new HashMap<>();
 
-            for (PropertyDescriptor pd : sourceInfo.getPropertyDescriptors()) {
-                var read = pd.getReadMethod();
-                if (read == null) continue;
-
-                String name = pd.getName();
+            for (PropertyAccessors.Property p : PropertyAccessors.of(source.getClass()).readable()) {
+                String name = p.name();
                 if (excluded != null && excluded.contains(name)) continue;
 
-                Object raw = read.invoke(source);
+                Object raw = p.getter().apply(source);
                 normalizeValue(raw).ifPresent(v -> values.put(name, v));
             }
             return values;
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             throw new PropertyAccessException("Error construyendo valores de origen", e);
         }
     }
@@ -198,18 +294,15 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
     private void applyValues(D target, Map<String, Object> values)
             throws PropertyAccessException {
         try {
-            var targetInfo = Introspector.getBeanInfo(target.getClass(), Object.class);
-
-            for (PropertyDescriptor pd : targetInfo.getPropertyDescriptors()) {
-                var write = pd.getWriteMethod();
-                if (write == null) continue;
+            Map<String, PropertyAccessors.Property> writable = PropertyAccessors.of(target.getClass()).writable();
 
-                Object val = values.get(pd.getName());
-                if (val != null) {
-                    write.invoke(target, val);
+            for (Map.Entry<String, Object> e : values.entrySet()) {
+                PropertyAccessors.Property p = writable.get(e.getKey());
+                if (p != null) {
+                    p.setter().accept(target, e.getValue());
                 }
             }
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
             throw new PropertyAccessException("Error aplicando valores al destino", e);
         }
     }
@@ -245,6 +338,15 @@ public abstract class MongoDBAdapterOperations<E, D, I> {
         return raw;
     }
 
+    private static String collectionName(Class<?> documentClass) {
+        Document document = AnnotatedElementUtils.findMergedAnnotation(documentClass, Document.class);
+        if (document != null && !document.collection().isEmpty()) {
+            return document.collection();
+        }
+        String simple = documentClass.getSimpleName();
+        return Character.toLowerCase(simple.charAt(0)) + simple.substring(1);
+    }
+
     // ===================== Excepciones dedicadas =====================
 
     /** Excepción checked para operaciones de introspección/reflexión. */
@@ -0,0 +1,143 @@
+package co.franquicias.mongodb.helper;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Registro por clase de getters/setters para la copia de propiedades del helper.
+ * <p>
+ * La introspección se hace una sola vez por clase ({@link ClassValue}) y cada accessor se genera con
+ * {@link LambdaMetafactory}, así que leer o escribir una propiedad es una llamada directa a
+ * {@link Function}/{@link BiConsumer} en lugar de {@code Method.invoke}. Si la clase no admite lambdas
+ * generadas (p. ej. otro class loader) se usa el {@link MethodHandle} directamente.
+ */
+final class PropertyAccessors {
+
+    /** Propiedad de bean; {@code getter} o {@code setter} son null si no existen. */
+    record Property(String name, Function<Object, Object> getter, BiConsumer<Object, Object> setter) { }
+
+    private static final ClassValue<PropertyAccessors> REGISTRY = new ClassValue<>() {
+        @Override
+        protected PropertyAccessors computeValue(Class<?> type) {
+            return new PropertyAccessors(type);
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final List<Property> readable;
+    private final Map<String, Property> writable;
+
+    private PropertyAccessors(Class<?> type) {
+        List<Property> lectura = new ArrayList<>();
+        Map<String, Property> escritura = new HashMap<>();
+        for (PropertyDescriptor pd : descriptors(type)) {
+            Property p = new Property(pd.getName(), getter(type, pd.getReadMethod()), setter(type, pd.getWriteMethod()));
+            if (p.getter() != null) lectura.add(p);
+            if (p.setter() != null) escritura.put(p.name(), p);
+        }
+        this.readable = List.copyOf(lectura);
+        this.writable = Map.copyOf(escritura);
+    }
+
+    static PropertyAccessors of(Class<?> type) {
+        return REGISTRY.get(type);
+    }
+
+    /** Propiedades con getter, en el orden de la introspección. */
+    List<Property> readable() {
+        return readable;
+    }
+
+    /** Propiedades con setter, por nombre. */
+    Map<String, Property> writable() {
+        return writable;
+    }
+
+    // ===================== Construcción =====================
+
+    private static PropertyDescriptor[] descriptors(Class<?> type) {
+        try {
+            return Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("No se pudo introspectar " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Class<?> type, Method read) {
+        if (read == null) return null;
+        MethodHandle mh = unreflect(read);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    mh,
+                    MethodType.methodType(wrap(read.getReturnType()), type));
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            MethodHandle generic = mh.asType(MethodType.methodType(Object.class, Object.class));
+            return bean -> invoke(() -> generic.invokeExact(bean));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Class<?> type, Method write) {
+        if (write == null) return null;
+        MethodHandle mh = unreflect(write);
+        try {
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    mh,
+                    MethodType.methodType(void.class, type, wrap(write.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            MethodHandle generic = mh.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (bean, value) -> invoke(() -> {
+                generic.invokeExact(bean, value);
+                return null;
+            });
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Accessor inaccesible: " + method, e);
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    @FunctionalInterface
+    private interface Invocation {
+        Object call() throws Throwable;
+    }
+
+    private static Object invoke(Invocation invocation) {
+        try {
+            return invocation.call();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package co.franquicias.mongodb.helper;
+
+import co.franquicias.model.revision.Revision;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Acumula la {@link Revision} de una lectura a partir de las versiones de sus documentos (ver
+ * {@link MongoDBAdapterOperations#findVersions}): SHA-256 sobre tipo + id + version (+ stock vigente en
+ * productos) en el orden en que se agregan.
+ * <p>
+ * No es thread-safe: se alimenta desde un único Flux secuencial y {@link #revision()} se llama una vez.
+ */
+public final class RevisionDigest {
+
+    private final MessageDigest sha;
+
+    /** {@code alcance} distingue lecturas distintas sobre los mismos documentos (p. ej. con o sin productos). */
+    public RevisionDigest(String alcance) {
+        try {
+            this.sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+        actualizar(alcance);
+    }
+
+    public RevisionDigest agregar(String tipo, Document version) {
+        return agregar(tipo, version, null);
+    }
+
+    public RevisionDigest agregar(String tipo, Document version, Integer stock) {
+        actualizar(tipo);
+        actualizar(id(version));
+        actualizar(String.valueOf(version.get("version")));
+        if (stock != null) {
+            actualizar(stock.toString());
+        }
+        return this;
+    }
+
+    /** ETag de 128 bits en hex (sin comillas). */
+    public Revision revision() {
+        return Revision.builder()
+                .etag(HexFormat.of().formatHex(sha.digest(), 0, 16))
+                .build();
+    }
+
+    /** {@code _id} como lo ve el dominio: hex si es ObjectId. */
+    public static String id(Document version) {
+        Object id = version.get("_id");
+        return id instanceof ObjectId oid ? oid.toHexString() : String.valueOf(id);
+    }
+
+    private void actualizar(String valor) {
+        sha.update(valor.getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+    }
+}
@@ -0,0 +1,334 @@
+package co.franquicias.mongodb.invalidacion;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.facade.FranquiciaExistenteCache;
+import co.franquicias.mongodb.facade.SucursalFranquiciaCache;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import co.franquicias.mongodb.search.ProductoNgramIndexLoader;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bus de invalidación entre nodos: sigue el change stream de {@code franquicias}, {@code sucursales}
+ * y {@code productos} y descarta en la caché local de este nodo lo que otro nodo modificó.
+ * <ul>
+ *   <li>sucursal actualizada o eliminada → {@link SucursalFranquiciaCache#invalidar};</li>
+ *   <li>franquicia actualizada o eliminada → {@link FranquiciaExistenteCache#invalidar} (y, si se
+ *       eliminó, sus sucursales en {@link SucursalFranquiciaCache});</li>
+ *   <li>producto creado, reemplazado o renombrado → upsert de su nombre en el {@link ProductoNgramIndex};
+ *       eliminado → baja.</li>
+ * </ul>
+ * De {@code productos} solo llegan las actualizaciones que tocan {@code nombre}: el filtro corre en el
+ * servidor, así que los cambios de stock (la mayoría de las escrituras) no viajan al nodo. El stream no
+ * pide el documento vigente ({@code updateLookup}); el nombre sale de {@code updatedFields} o, en altas y
+ * reemplazos, del {@code fullDocument} recortado a {@code _id} y {@code nombre}.
+ * El último resume token se guarda cada {@code token-interval} en {@link ResumeTokenStore}, así que
+ * tras un corte o un reinicio el stream retoma donde quedó; reaplicar un evento es inocuo. Si la
+ * historia ya no está en el oplog se descarta el token y se vacían las cachés.
+ * <p>
+ * Los change streams requieren replica set o sharded cluster. Contra un mongod standalone (o con
+ * {@code enabled=false}) el nodo queda en modo solo-TTL: las cachés vencen por su TTL y el índice
+ * n-gram solo ve las escrituras propias.
+ */
+@Slf4j
+@Component
+public class InvalidacionChangeStream {
+
+    public enum Modo { INICIANDO, CHANGE_STREAM, SOLO_TTL }
+
+    /** Evento ya aplicado a las cachés locales. */
+    public record Evento(String coleccion, OperationType operacion, String id) { }
+
+    static final List<String> COLECCIONES = List.of("franquicias", "sucursales", "productos");
+
+    private static final List<Bson> PIPELINE = List.of(
+            Aggregates.match(Filters.or(
+                    Filters.in("ns.coll", "franquicias", "sucursales"),
+                    Filters.and(
+                            Filters.eq("ns.coll", "productos"),
+                            Filters.or(
+                                    Filters.ne("operationType", OperationType.UPDATE.getValue()),
+                                    Filters.exists("updateDescription.updatedFields.nombre"))),
+                    Filters.in("operationType", OperationType.DROP_DATABASE.getValue(), OperationType.INVALIDATE.getValue()))),
+            Aggregates.project(Projections.include("operationType", "ns", "documentKey",
+                    "fullDocument._id", "fullDocument.nombre",
+                    "updateDescription.updatedFields.nombre", "updateDescription.removedFields")));
+
+    /** ChangeStreamHistoryLost / ChangeStreamFatalError: el token ya no sirve para retomar. */
+    private static final List<Integer> CODIGOS_HISTORIA_PERDIDA = List.of(286, 280);
+
+    private final ReactiveMongoTemplate template;
+    private final ResumeTokenStore tokens;
+    private final SucursalFranquiciaCache sucursalFranquicia;
+    private final FranquiciaExistenteCache franquiciasExistentes;
+    private final ProductoNgramIndex ngramIndex;
+    private final ProductoNgramIndexLoader ngramLoader;
+    private final boolean enabled;
+    private final String nodo;
+    private final Duration intervaloToken;
+    private final Duration reintento;
+
+    private final AtomicReference<Modo> modo = new AtomicReference<>(Modo.INICIANDO);
+    private final AtomicReference<BsonDocument> ultimoToken = new AtomicReference<>();
+    private final AtomicReference<BsonDocument> tokenGuardado = new AtomicReference<>();
+    private final Counter eventos;
+
+    private final Disposable.Composite suscripciones = Disposables.composite();
+
+    public InvalidacionChangeStream(ReactiveMongoTemplate template,
+                                    ResumeTokenStore tokens,
+                                    SucursalFranquiciaCache sucursalFranquicia,
+                                    FranquiciaExistenteCache franquiciasExistentes,
+                                    ProductoNgramIndex ngramIndex,
+                                    ProductoNgramIndexLoader ngramLoader,
+                                    MeterRegistry registry,
+                                    @Value("${franquicias.invalidacion.enabled:true}") boolean enabled,
+                                    @Value("${franquicias.invalidacion.nodo:${HOSTNAME:local}}") String nodo,
+                                    @Value("${franquicias.invalidacion.token-interval:PT1S}") Duration intervaloToken,
+                                    @Value("${franquicias.invalidacion.retry-interval:PT30S}") Duration reintento) {
+        if (intervaloToken.isNegative() || intervaloToken.isZero()) {
+            throw new IllegalArgumentException("franquicias.invalidacion.token-interval debe ser positivo");
+        }
+        if (reintento.isNegative() || reintento.isZero()) {
+            throw new IllegalArgumentException("franquicias.invalidacion.retry-interval debe ser positivo");
+        }
+        this.template = template;
+        this.tokens = tokens;
+        this.sucursalFranquicia = sucursalFranquicia;
+        this.franquiciasExistentes = franquiciasExistentes;
+        this.ngramIndex = ngramIndex;
+        this.ngramLoader = ngramLoader;
+        this.enabled = enabled;
+        this.nodo = nodo;
+        this.intervaloToken = intervaloToken;
+        this.reintento = reintento;
+
+        this.eventos = Counter.builder("franquicias.invalidacion.eventos")
+                .description("Eventos de change stream aplicados a las cachés locales").register(registry);
+        Gauge.builder("franquicias.invalidacion.change_stream", modo, m -> m.get() == Modo.CHANGE_STREAM ? 1 : 0)
+                .description("1 si el nodo recibe invalidaciones por change stream, 0 si está en modo solo-TTL")
+                .register(registry);
+    }
+
+    public Modo modo() {
+        return modo.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!enabled) {
+            modo.set(Modo.SOLO_TTL);
+            log.info("[invalidacion] deshabilitada: las cachés locales dependen solo del TTL");
+            return;
+        }
+        if (suscripciones.size() > 0) {
+            return;
+        }
+        suscripciones.add(escuchar()
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, reintento))
+                .repeatWhen(fin -> fin.takeWhile(x -> modo.get() == Modo.CHANGE_STREAM).delayElements(reintento))
+                .subscribe());
+        suscripciones.add(Flux.interval(intervaloToken)
+                .onBackpressureDrop()
+                .concatMap(t -> guardarToken()
+                        .onErrorResume(e -> {
+                            log.warn("[invalidacion] no se pudo guardar el resume token: {}", e.toString());
+                            return Mono.empty();
+                        }))
+                .subscribe());
+    }
+
+    /** Detiene el stream y guarda el último token para retomar desde ahí en el próximo arranque. */
+    @PreDestroy
+    public void detener() {
+        suscripciones.dispose();
+        try {
+            guardarToken().block(Duration.ofSeconds(5));
+        } catch (RuntimeException e) {
+            log.warn("[invalidacion] al cerrar no se pudo guardar el resume token: {}", e.toString());
+        }
+    }
+
+    /**
+     * Un intento de seguir el change stream: completa vacío si el servidor no soporta change streams
+     * (modo solo-TTL) o tras un evento {@code invalidate}; propaga los errores para reintentar.
+     */
+    Flux<Evento> escuchar() {
+        return soportaChangeStreams()
+                .flatMapMany(soportado -> {
+                    if (!soportado) {
+                        if (modo.getAndSet(Modo.SOLO_TTL) != Modo.SOLO_TTL) {
+                            log.warn("[invalidacion] Mongo sin replica set: sin change streams, modo solo-TTL");
+                        }
+                        return Flux.empty();
+                    }
+                    return Mono.justOrEmpty(ultimoToken.get())
+                            .switchIfEmpty(tokens.leer(nodo))
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .flatMapMany(token -> abrir(token.orElse(null)));
+                })
+                .onErrorResume(InvalidacionChangeStream::historiaPerdida, e -> descartarToken()
+                        .then(Mono.fromRunnable(this::invalidarTodo))
+                        .then(Mono.error(e)))
+                .doOnError(e -> {
+                    if (modo.getAndSet(Modo.SOLO_TTL) != Modo.SOLO_TTL) {
+                        log.warn("[invalidacion] change stream caído, modo solo-TTL hasta reconectar: {}", e.toString());
+                    }
+                });
+    }
+
+    /** Guarda el último token procesado si cambió desde el último guardado. */
+    Mono<Void> guardarToken() {
+        return Mono.defer(() -> {
+            BsonDocument token = ultimoToken.get();
+            if (token == null || token.equals(tokenGuardado.get())) {
+                return Mono.empty();
+            }
+            return tokens.guardar(nodo, token).doOnSuccess(v -> tokenGuardado.set(token));
+        });
+    }
+
+    /**
+     * Aplica un cambio de {@code coleccion} sobre las cachés locales; {@code nombre} es el nombre nuevo
+     * del producto cuando el evento lo trae.
+     */
+    void aplicar(String coleccion, OperationType operacion, String id, String nombre) {
+        switch (operacion) {
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                invalidarTodo();
+                return;
+            }
+            case INSERT, UPDATE, REPLACE, DELETE -> { }
+            default -> {
+                return;
+            }
+        }
+        if (id == null || coleccion == null) {
+            return;
+        }
+        switch (coleccion) {
+            case "sucursales" -> {
+                if (operacion != OperationType.INSERT) sucursalFranquicia.invalidar(id);
+            }
+            case "franquicias" -> {
+                if (operacion != OperationType.INSERT) franquiciasExistentes.invalidar(id);
+                if (operacion == OperationType.DELETE) sucursalFranquicia.invalidarFranquicia(id);
+            }
+            case "productos" -> {
+                if (!ngramIndex.isEnabled()) return;
+                if (operacion == OperationType.DELETE) ngramIndex.eliminar(id);
+                else if (nombre != null) ngramIndex.indexar(Producto.builder().id(id).nombre(nombre).build());
+            }
+            default -> { }
+        }
+    }
+
+    // ================== Stream ==================
+
+    /** {@code hello}: los change streams existen en replica sets ({@code setName}) y en mongos. */
+    private Mono<Boolean> soportaChangeStreams() {
+        return template.executeCommand(new Document("hello", 1))
+                .map(r -> r.containsKey("setName") || "isdbgrid".equals(r.getString("msg")));
+    }
+
+    private Flux<Evento> abrir(BsonDocument token) {
+        return template.getMongoDatabase()
+                .flatMapMany(db -> {
+                    ChangeStreamPublisher<Document> stream = db.watch(PIPELINE, Document.class);
+                    return token != null ? stream.resumeAfter(token) : stream;
+                })
+                .doOnSubscribe(s -> {
+                    if (modo.getAndSet(Modo.CHANGE_STREAM) != Modo.CHANGE_STREAM) {
+                        log.info("[invalidacion] siguiendo change stream de {} ({})", COLECCIONES,
+                                token != null ? "retomando" : "desde ahora");
+                    }
+                })
+                .concatMap(this::procesar);
+    }
+
+    private Mono<Evento> procesar(ChangeStreamDocument<Document> cambio) {
+        String coleccion = cambio.getNamespace() != null ? cambio.getNamespace().getCollectionName() : null;
+        String id = cambio.getDocumentKey() != null ? id(cambio.getDocumentKey().get("_id")) : null;
+        OperationType operacion = cambio.getOperationType();
+
+        aplicar(coleccion, operacion, id, nombre(cambio));
+        eventos.increment();
+        Evento evento = new Evento(coleccion, operacion, id);
+
+        if (operacion == OperationType.INVALIDATE) {
+            // tras invalidate el token ya no permite retomar: el próximo intento abre desde ahora
+            return descartarToken().thenReturn(evento);
+        }
+        ultimoToken.set(cambio.getResumeToken());
+        return Mono.just(evento);
+    }
+
+    private Mono<Void> descartarToken() {
+        return Mono.defer(() -> {
+            ultimoToken.set(null);
+            tokenGuardado.set(null);
+            return tokens.borrar(nodo);
+        });
+    }
+
+    private void invalidarTodo() {
+        sucursalFranquicia.invalidarTodo();
+        franquiciasExistentes.invalidarTodo();
+        if (ngramIndex.isEnabled()) {
+            ngramLoader.cargar().subscribe(n -> { }, e -> { });
+        }
+    }
+
+    private static boolean historiaPerdida(Throwable e) {
+        return e instanceof MongoServerException mse && CODIGOS_HISTORIA_PERDIDA.contains(mse.getCode());
+    }
+
+    /** Nombre de producto del evento: el del alta o reemplazo, o el que fijó la actualización. */
+    private static String nombre(ChangeStreamDocument<Document> cambio) {
+        if (cambio.getFullDocument() != null) {
+            return cambio.getFullDocument().getString("nombre");
+        }
+        UpdateDescription cambios = cambio.getUpdateDescription();
+        BsonValue v = cambios != null && cambios.getUpdatedFields() != null
+                ? cambios.getUpdatedFields().get("nombre") : null;
+        return v != null && v.isString() ? v.asString().getValue() : null;
+    }
+
+    private static String id(BsonValue v) {
+        if (v == null) return null;
+        if (v.isObjectId()) return v.asObjectId().getValue().toHexString();
+        if (v.isString()) return v.asString().getValue();
+        return v.toString();
+    }
+}
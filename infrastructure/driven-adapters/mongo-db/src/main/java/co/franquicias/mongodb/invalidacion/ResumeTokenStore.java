@@ -0,0 +1,46 @@
+package co.franquicias.mongodb.invalidacion;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Último resume token procesado por cada nodo, en {@code change_stream_tokens} ({@code _id} = nodo).
+ * Permite que el bus de invalidación retome el change stream donde lo dejó tras un reinicio.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResumeTokenStore {
+
+    public static final String COLECCION = "change_stream_tokens";
+
+    private final ReactiveMongoTemplate template;
+
+    /** Token guardado del nodo; vacío si nunca guardó uno (o se descartó). */
+    public Mono<BsonDocument> leer(String nodo) {
+        return template.findById(nodo, Document.class, COLECCION)
+                .mapNotNull(d -> d.get("token", Document.class))
+                .map(Document::toBsonDocument);
+    }
+
+    public Mono<Void> guardar(String nodo, BsonDocument token) {
+        Update update = new Update()
+                .set("token", Document.parse(token.toJson()))
+                .set("updatedAt", Instant.now());
+        return template.upsert(query(where("_id").is(nodo)), update, COLECCION).then();
+    }
+
+    /** Descarta el token: el próximo arranque abre el stream desde el presente. */
+    public Mono<Void> borrar(String nodo) {
+        return template.remove(query(where("_id").is(nodo)), COLECCION).then();
+    }
+}
@@ -0,0 +1,96 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reading converters BSON → dominio: las lecturas calientes decodifican directo al modelo, sin armar
+ * primero el {@code *Data} y luego mapearlo. Las escrituras siguen pasando por los documentos.
+ * <p>
+ * También cubren el árbol hidratado por {@code $lookup}: franquicia → {@code sucursales} →
+ * {@code productos}. Un campo nuevo en el modelo hay que leerlo aquí (lo cubre {@code BsonReadConvertersTest}).
+ */
+public final class BsonReadConverters {
+    private BsonReadConverters() {}
+
+    public static List<Converter<?, ?>> todos() {
+        return List.of(ProductoConverter.INSTANCE, SucursalConverter.INSTANCE, FranquiciaConverter.INSTANCE);
+    }
+
+    @ReadingConverter
+    public enum ProductoConverter implements Converter<Document, Producto> {
+        INSTANCE;
+
+        @Override
+        public Producto convert(Document d) {
+            Producto p = new Producto();
+            p.setId(id(d));
+            p.setSucursalId(d.getString("sucursalId"));
+            p.setNombre(d.getString("nombre"));
+            p.setStock(d.get("stock") instanceof Number n ? n.intValue() : 0);
+            p.setCreatedAt(instant(d, "createdAt"));
+            p.setUpdatedAt(instant(d, "updatedAt"));
+            return p;
+        }
+    }
+
+    @ReadingConverter
+    public enum SucursalConverter implements Converter<Document, Sucursal> {
+        INSTANCE;
+
+        @Override
+        public Sucursal convert(Document d) {
+            Sucursal s = new Sucursal();
+            s.setId(id(d));
+            s.setFranquiciaId(d.getString("franquiciaId"));
+            s.setNombre(d.getString("nombre"));
+            s.setCreatedAt(instant(d, "createdAt"));
+            s.setUpdatedAt(instant(d, "updatedAt"));
+            for (Object p : hijos(d, "productos")) {
+                if (p instanceof Document producto) s.getProductos().add(ProductoConverter.INSTANCE.convert(producto));
+            }
+            return s;
+        }
+    }
+
+    @ReadingConverter
+    public enum FranquiciaConverter implements Converter<Document, Franquicia> {
+        INSTANCE;
+
+        @Override
+        public Franquicia convert(Document d) {
+            Franquicia f = new Franquicia();
+            f.setId(id(d));
+            f.setNombre(d.getString("nombre"));
+            f.setCreatedAt(instant(d, "createdAt"));
+            f.setUpdatedAt(instant(d, "updatedAt"));
+            for (Object s : hijos(d, "sucursales")) {
+                if (s instanceof Document sucursal) f.getSucursales().add(SucursalConverter.INSTANCE.convert(sucursal));
+            }
+            return f;
+        }
+    }
+
+    private static String id(Document d) {
+        Object id = d.get("_id");
+        return id == null ? null : id.toString();
+    }
+
+    private static Instant instant(Document d, String campo) {
+        Object v = d.get(campo);
+        if (v instanceof Date date) return date.toInstant();
+        return v instanceof Instant i ? i : null;
+    }
+
+    private static List<?> hijos(Document d, String campo) {
+        return d.get(campo) instanceof List<?> lista ? lista : List.of();
+    }
+}
@@ -0,0 +1,92 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import co.franquicias.mongodb.helper.DocumentMapper;
+
+/**
+ * Mappers escritos a mano para los documentos principales: campo a campo, sin reflexión.
+ * <p>
+ * Reproducen lo que hacía ModelMapper: el modelo sale del constructor vacío (listas hijas vacías)
+ * y {@code version} no viaja al dominio, así que un documento armado desde el modelo la deja en null.
+ * Un campo nuevo en el documento o el modelo hay que agregarlo aquí (lo cubre {@code DataMappersTest}).
+ */
+public final class DataMappers {
+    private DataMappers() {}
+
+    public static final DocumentMapper<Franquicia, FranquiciaData> FRANQUICIA = new DocumentMapper<>() {
+        @Override
+        public Franquicia toEntity(FranquiciaData d) {
+            Franquicia f = new Franquicia();
+            f.setId(d.getId());
+            f.setNombre(d.getNombre());
+            f.setCreatedAt(d.getCreatedAt());
+            f.setUpdatedAt(d.getUpdatedAt());
+            return f;
+        }
+
+        @Override
+        public FranquiciaData toDocument(Franquicia f) {
+            FranquiciaData d = new FranquiciaData();
+            d.setId(f.getId());
+            d.setNombre(f.getNombre());
+            d.setCreatedAt(f.getCreatedAt());
+            d.setUpdatedAt(f.getUpdatedAt());
+            return d;
+        }
+    };
+
+    public static final DocumentMapper<Sucursal, SucursalData> SUCURSAL = new DocumentMapper<>() {
+        @Override
+        public Sucursal toEntity(SucursalData d) {
+            Sucursal s = new Sucursal();
+            s.setId(d.getId());
+            s.setFranquiciaId(d.getFranquiciaId());
+            s.setNombre(d.getNombre());
+            s.setCreatedAt(d.getCreatedAt());
+            s.setUpdatedAt(d.getUpdatedAt());
+            return s;
+        }
+
+        @Override
+        public SucursalData toDocument(Sucursal s) {
+            SucursalData d = new SucursalData();
+            d.setId(s.getId());
+            d.setFranquiciaId(s.getFranquiciaId());
+            d.setNombre(s.getNombre());
+            d.setCreatedAt(s.getCreatedAt());
+            d.setUpdatedAt(s.getUpdatedAt());
+            return d;
+        }
+    };
+
+    public static final DocumentMapper<Producto, ProductoData> PRODUCTO = new DocumentMapper<>() {
+        @Override
+        public Producto toEntity(ProductoData d) {
+            Producto p = new Producto();
+            p.setId(d.getId());
+            p.setSucursalId(d.getSucursalId());
+            p.setNombre(d.getNombre());
+            p.setStock(d.getStock());
+            p.setCreatedAt(d.getCreatedAt());
+            p.setUpdatedAt(d.getUpdatedAt());
+            return p;
+        }
+
+        @Override
+        public ProductoData toDocument(Producto p) {
+            ProductoData d = new ProductoData();
+            d.setId(p.getId());
+            d.setSucursalId(p.getSucursalId());
+            d.setNombre(p.getNombre());
+            d.setStock(p.getStock());
+            d.setCreatedAt(p.getCreatedAt());
+            d.setUpdatedAt(p.getUpdatedAt());
+            return d;
+        }
+    };
+}
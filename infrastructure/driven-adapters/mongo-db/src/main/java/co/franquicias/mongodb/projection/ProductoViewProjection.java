@@ -0,0 +1,242 @@
+package co.franquicias.mongodb.projection;
+
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.pagina.Pagina;
+import co.franquicias.mongodb.entity.ProductoViewData;
+import co.franquicias.mongodb.helper.KeysetCursor;
+import co.franquicias.mongodb.repository.ReactiveProductoViewRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Proyección CQRS {@code productos_view}: producto + sucursal + franquicia desnormalizados.
+ * <p>
+ * Las lecturas de la vista global son una sola consulta indexada sobre esta colección. La fachada
+ * la mantiene en cada escritura; {@link #reconstruir()} la rellena desde las colecciones fuente y
+ * {@link #verificar()} compara ambas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductoViewProjection {
+
+    public static final String COLECCION = "productos_view";
+
+    /** Forma de un documento de la vista a partir de producto + $lookup de sucursal/franquicia. */
+    private static final AggregationOperation PROYECCION_VISTA = ctx -> new Document("$project", new Document("_id", 1)
+            .append("productoNombre",   "$nombre")
+            .append("stock",            "$stock")
+            .append("sucursalId",       "$sucursal._id")
+            .append("sucursalNombre",   "$sucursal.nombre")
+            .append("franquiciaId",     "$sucursal.franquiciaId")
+            .append("franquiciaNombre", "$franquicia.nombre"));
+
+    private static final AggregationOperation MERGE_VISTA = ctx -> new Document("$merge", new Document("into", COLECCION)
+            .append("on", "_id")
+            .append("whenMatched", "replace")
+            .append("whenNotMatched", "insert"));
+
+    private static final List<String> CAMPOS_VISTA =
+            List.of("productoNombre", "stock", "sucursalId", "sucursalNombre", "franquiciaId", "franquiciaNombre");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReactiveProductoViewRepository repo;
+
+    // ================== Lecturas ==================
+
+    public Flux<Map<String, Object>> listar() {
+        return repo.findAll().map(ProductoViewProjection::toFila);
+    }
+
+    public Mono<Map<String, Object>> obtener(String productoId) {
+        return repo.findById(productoId).map(ProductoViewProjection::toFila);
+    }
+
+    /** Página de la vista por keyset sobre {@code _id} (el id del producto). */
+    public Mono<Pagina<Map<String, Object>>> pagina(String after, int limit) {
+        return Mono.defer(() -> mongoTemplate.find(KeysetCursor.query(null, after, limit), ProductoViewData.class)
+                .collectList()
+                .map(filas -> KeysetCursor.pagina(filas, limit, ProductoViewData::getId, ProductoViewProjection::toFila)));
+    }
+
+    // ================== Mantenimiento en escrituras ==================
+
+    /** Recalcula la fila de un producto (alta, cambio de nombre o de sucursal). */
+    public Mono<Void> refrescarProducto(String productoId) {
+        return merge(where("_id").is(productoId));
+    }
+
+    /** Recalcula las filas de varios productos con un solo $merge (altas masivas). */
+    public Mono<Void> refrescarProductos(Collection<String> productoIds) {
+        return productoIds.isEmpty() ? Mono.empty() : merge(where("_id").in(productoIds));
+    }
+
+    /** Recalcula las filas de todos los productos de una sucursal (renombre o cambio de franquicia). */
+    public Mono<Void> refrescarSucursal(String sucursalId) {
+        return merge(where("sucursalId").is(sucursalId));
+    }
+
+    public Mono<Void> actualizarStock(String productoId, int stock) {
+        return mongoTemplate.updateFirst(query(where("_id").is(productoId)),
+                        new Update().set("stock", stock), ProductoViewData.class)
+                .then();
+    }
+
+    /** Stock de varios productos en un solo bulkWrite desordenado. */
+    public Mono<Void> actualizarStockLote(List<ActualizacionStock> cambios) {
+        if (cambios.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            ReactiveBulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoViewData.class);
+            cambios.forEach(c -> ops.updateOne(query(where("_id").is(c.getProductoId())), new Update().set("stock", c.getStock())));
+            return ops.execute().then();
+        });
+    }
+
+    public Mono<Void> renombrarFranquicia(String franquiciaId, String nombre) {
+        return mongoTemplate.updateMulti(query(where("franquiciaId").is(franquiciaId)),
+                        new Update().set("franquiciaNombre", nombre), ProductoViewData.class)
+                .then();
+    }
+
+    public Mono<Void> eliminarProducto(String productoId) {
+        return repo.deleteById(productoId);
+    }
+
+    public Mono<Void> eliminarPorSucursal(String sucursalId) {
+        return mongoTemplate.remove(query(where("sucursalId").is(sucursalId)), ProductoViewData.class).then();
+    }
+
+    public Mono<Void> eliminarPorFranquicia(String franquiciaId) {
+        return mongoTemplate.remove(query(where("franquiciaId").is(franquiciaId)), ProductoViewData.class).then();
+    }
+
+    // ================== Backfill y verificación ==================
+
+    /**
+     * Reconstruye la vista completa desde productos/sucursales/franquicias con {@code $out},
+     * que reemplaza la colección de forma atómica conservando sus índices.
+     */
+    public Mono<Long> reconstruir() {
+        List<AggregationOperation> stages = etapasVista(null);
+        stages.add(Aggregation.out(COLECCION));
+
+        return mongoTemplate.aggregate(sinSalida(stages), "productos", Document.class)
+                .then(mongoTemplate.count(new Query(), ProductoViewData.class))
+                .doOnSuccess(n -> log.info("[productos_view] reconstruida con {} documentos", n));
+    }
+
+    /**
+     * Compara la vista con las colecciones fuente, en el servidor:
+     * faltantes (producto sin fila), desactualizados (fila distinta) y sobrantes (fila sin producto).
+     */
+    public Mono<Map<String, Object>> verificar() {
+        Mono<Map<String, Long>> porEstado = mongoTemplate
+                .aggregate(Aggregation.newAggregation(etapasComparacion()), "productos", Document.class)
+                .collectMap(d -> d.getString("_id"), d -> ((Number) d.get("n")).longValue());
+
+        Mono<Long> sobrantes = mongoTemplate
+                .aggregate(Aggregation.newAggregation(
+                        Aggregation.lookup("productos", "_id", "_id", "fuente"),
+                        Aggregation.match(where("fuente").size(0)),
+                        Aggregation.count().as("n")), COLECCION, Document.class)
+                .next()
+                .map(d -> ((Number) d.get("n")).longValue())
+                .defaultIfEmpty(0L);
+
+        return Mono.zip(porEstado, sobrantes)
+                .map(t -> {
+                    long ok = t.getT1().getOrDefault("ok", 0L);
+                    long faltantes = t.getT1().getOrDefault("faltante", 0L);
+                    long desactualizados = t.getT1().getOrDefault("desactualizado", 0L);
+                    Map<String, Object> reporte = new LinkedHashMap<>();
+                    reporte.put("productos", ok + faltantes + desactualizados);
+                    reporte.put("faltantes", faltantes);
+                    reporte.put("desactualizados", desactualizados);
+                    reporte.put("sobrantes", t.getT2());
+                    reporte.put("consistente", faltantes == 0 && desactualizados == 0 && t.getT2() == 0);
+                    return reporte;
+                });
+    }
+
+    // ================== Helpers ==================
+
+    private Mono<Void> merge(Criteria filtro) {
+        List<AggregationOperation> stages = etapasVista(filtro);
+        stages.add(MERGE_VISTA);
+        return mongoTemplate.aggregate(sinSalida(stages), "productos", Document.class).then();
+    }
+
+    /** productos [→ $match] → $lookup sucursal → $lookup franquicia → forma de la vista. */
+    private static List<AggregationOperation> etapasVista(Criteria filtro) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (filtro != null) {
+            stages.add(Aggregation.match(filtro));
+        }
+        stages.add(Aggregation.lookup("sucursales", "sucursalId", "_id", "sucursal"));
+        stages.add(Aggregation.unwind("sucursal"));
+        stages.add(Aggregation.lookup("franquicias", "sucursal.franquiciaId", "_id", "franquicia"));
+        stages.add(Aggregation.unwind("franquicia", true));
+        stages.add(PROYECCION_VISTA);
+        return stages;
+    }
+
+    /** Fila esperada vs. fila materializada, agrupadas por estado (ok / faltante / desactualizado). */
+    private static List<AggregationOperation> etapasComparacion() {
+        List<Object> esperado = new ArrayList<>();
+        List<Object> actual = new ArrayList<>();
+        for (String campo : CAMPOS_VISTA) {
+            esperado.add("$" + campo);
+            actual.add(new Document("$arrayElemAt", List.of("$vista." + campo, 0)));
+        }
+        Document estado = new Document("$cond", List.of(
+                new Document("$eq", List.of(new Document("$size", "$vista"), 0)),
+                "faltante",
+                new Document("$cond", List.of(new Document("$eq", List.of(esperado, actual)), "ok", "desactualizado"))));
+
+        List<AggregationOperation> stages = etapasVista(null);
+        stages.add(Aggregation.lookup(COLECCION, "_id", "_id", "vista"));
+        stages.add(ctx -> new Document("$group", new Document("_id", estado).append("n", new Document("$sum", 1))));
+        return stages;
+    }
+
+    private static Aggregation sinSalida(List<AggregationOperation> stages) {
+        return Aggregation.newAggregation(stages)
+                .withOptions(AggregationOptions.builder().skipOutput().build());
+    }
+
+    private static Map<String, Object> toFila(ProductoViewData v) {
+        Map<String, Object> fila = new LinkedHashMap<>();
+        fila.put("productoId",       v.getId());
+        fila.put("productoNombre",   v.getProductoNombre());
+        fila.put("stock",            v.getStock());
+        fila.put("sucursalId",       v.getSucursalId());
+        fila.put("sucursalNombre",   v.getSucursalNombre());
+        fila.put("franquiciaId",     v.getFranquiciaId());
+        fila.put("franquiciaNombre", v.getFranquiciaNombre());
+        return fila;
+    }
+}
@@ -7,7 +7,6 @@ import reactor.core.publisher.Mono;
 public interface ReactiveFranquiciaRepository
         extends ReactiveMongoRepository<FranquiciaData, String> {
 
-    Mono<Boolean> existsByNombre(String nombre);
     Mono<FranquiciaData> findByNombre(String nombre);
     Mono<Void> deleteById(String nombre);
 }
@@ -0,0 +1,7 @@
+package co.franquicias.mongodb.repository;
+
+import co.franquicias.mongodb.entity.ProductoViewData;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveProductoViewRepository extends ReactiveMongoRepository<ProductoViewData, String> {
+}
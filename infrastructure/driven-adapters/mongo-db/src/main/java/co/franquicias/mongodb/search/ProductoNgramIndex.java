@@ -0,0 +1,595 @@
+package co.franquicias.mongodb.search;
+
+import co.franquicias.model.producto.Producto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de trigramas en memoria sobre el nombre de los productos para búsquedas type-ahead.
+ * <p>
+ * Cada producto se interna con un ordinal {@code int} y solo guarda su id y su nombre normalizado:
+ * las consultas devuelven ids y quien llama resuelve el resto (stock, sucursal) en Mongo. Los ids
+ * UUID se empaquetan en dos {@code long}; el resto se guarda como texto. La búsqueda de ordinal por id
+ * es una tabla de direccionamiento abierto sobre {@code int[]}, sin objetos por producto.
+ * <p>
+ * Cada trigrama (tres chars empaquetados en un {@code long}) apunta a una lista ordenada de
+ * ordinales en un {@code int[]}. Una consulta de 3+ caracteres intersecta las listas de sus
+ * trigramas y verifica los candidatos con {@code contains}. Las de 1-2 caracteres son de prefijo y
+ * leen una sola lista: la del trigrama {@code INICIO+q}, o para un carácter la de la clave
+ * {@code INICIO+c+INICIO} que se indexa con la inicial de cada nombre. Los nombres se comparan sin
+ * mayúsculas ni tildes y el ranking es prefijo antes que infijo, luego nombre más corto.
+ * <p>
+ * Los ordinales de productos eliminados se reutilizan en las siguientes altas, así que los arreglos
+ * por ordinal no crecen con el recambio del catálogo.
+ * <p>
+ * Con nombres de ~25 caracteres un producto cuesta ~200 bytes (la mitad en listas de trigramas):
+ * un catálogo de 2M cabe en el {@code max-memory-mb} por defecto. Si el tamaño estimado lo supera,
+ * el índice se vacía y queda saturado: las búsquedas vuelven a Mongo hasta la siguiente carga.
+ */
+@Slf4j
+@Component
+public class ProductoNgramIndex {
+
+    private static final int N = 3;
+    /** Marca de inicio de nombre: los prefijos de 1-2 caracteres se resuelven con una sola lista. */
+    private static final char INICIO = '\u0002';
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    // costos aproximados en bytes (cabeceras de objeto + entradas de HashMap)
+    private static final long COSTO_LISTA = 80;
+    /** Cabeceras del String normalizado y de su byte[]; los arreglos por ordinal se cuentan al crecer. */
+    private static final long COSTO_NOMBRE = 40;
+    /** Id no UUID: String, byte[] y entrada de HashMap con su Integer. */
+    private static final long COSTO_ID_TEXTO = 96;
+    /** Por ordinal: dos long del id y la referencia al nombre. */
+    private static final long COSTO_ORDINAL = 20;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    /** Ordinal + 1 por hueco (0 = vacío), sondeo lineal; a lo sumo medio llena. */
+    private int[] tabla = new int[2 * CAPACIDAD_INICIAL];
+    private long[] idAlto = new long[CAPACIDAD_INICIAL];
+    private long[] idBajo = new long[CAPACIDAD_INICIAL];
+    /** Ordinales cuyo id no es un UUID canónico: su id está en {@link #idsTexto}. */
+    private final BitSet textuales = new BitSet();
+    private final Map<Integer, String> idsTexto = new HashMap<>();
+    private String[] normalizados = new String[CAPACIDAD_INICIAL];
+    private int siguiente;
+    /** Pila de ordinales liberados por {@link #eliminar}, que se reutilizan antes de crecer. */
+    private int[] libres = new int[16];
+    private int cantidadLibres;
+    private int cantidad;
+    private long bytes;
+
+    private volatile boolean listo;
+    private volatile boolean saturado;
+
+    public ProductoNgramIndex(@Value("${franquicias.search.ngram.enabled:true}") boolean enabled,
+                              @Value("${franquicias.search.ngram.max-memory-mb:512}") int maxMemoryMb) {
+        if (maxMemoryMb <= 0) {
+            throw new IllegalArgumentException("franquicias.search.ngram.max-memory-mb debe ser mayor a 0");
+        }
+        this.enabled = enabled;
+        this.maxBytes = maxMemoryMb * 1024L * 1024L;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** true si el índice está cargado y dentro del límite de memoria. */
+    public boolean disponible() {
+        return enabled && listo && !saturado;
+    }
+
+    // ================== Carga y mantenimiento ==================
+
+    /** Vacía el índice antes de una carga completa. */
+    public void reiniciar() {
+        lock.writeLock().lock();
+        try {
+            limpiar();
+            listo = false;
+            saturado = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Fin de la carga completa: recorta las listas de trigramas a su tamaño y habilita las consultas. */
+    public void marcarListo() {
+        lock.writeLock().lock();
+        try {
+            for (Postings lista : postings.values()) {
+                bytes -= 4L * lista.recortar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listo = true;
+        log.info("[ngram] índice listo: {} productos, ~{} KB", tamano(), bytesEstimados() / 1024);
+    }
+
+    /** Alta o cambio de nombre de un producto (upsert por id); del producto solo se guarda id y nombre. */
+    public void indexar(Producto p) {
+        if (!enabled || saturado || p == null || p.getId() == null) {
+            return;
+        }
+        String id = p.getId();
+        UUID uuid = comoUuid(id);
+        String norm = normalizar(p.getNombre());
+        lock.writeLock().lock();
+        try {
+            int ord = ordinal(id, uuid);
+            if (ord >= 0) {
+                if (!norm.equals(normalizados[ord])) {
+                    for (long g : claves(normalizados[ord])) {
+                        quitar(g, ord);
+                    }
+                    bytes += norm.length() - normalizados[ord].length();
+                    normalizados[ord] = norm;
+                    for (long g : claves(norm)) {
+                        agregar(g, ord);
+                    }
+                }
+            } else {
+                ord = cantidadLibres > 0 ? libres[--cantidadLibres] : siguiente++;
+                asegurarCapacidad(ord);
+                guardarId(ord, id, uuid);
+                normalizados[ord] = norm;
+                bytes += COSTO_NOMBRE + norm.length();
+                insertar(ord);
+                for (long g : claves(norm)) {
+                    agregar(g, ord);
+                }
+            }
+            if (bytes > maxBytes) {
+                log.warn("[ngram] límite de memoria superado (~{} MB); se desactiva el índice", bytes / (1024 * 1024));
+                saturado = true;
+                limpiar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(String productoId) {
+        if (!enabled || saturado || productoId == null) {
+            return;
+        }
+        UUID uuid = comoUuid(productoId);
+        lock.writeLock().lock();
+        try {
+            int ord = ordinal(productoId, uuid);
+            if (ord < 0) {
+                return;
+            }
+            for (long g : claves(normalizados[ord])) {
+                quitar(g, ord);
+            }
+            sacar(ord);
+            bytes -= COSTO_NOMBRE + normalizados[ord].length();
+            if (textuales.get(ord)) {
+                bytes -= COSTO_ID_TEXTO + productoId.length();
+                textuales.clear(ord);
+                idsTexto.remove(ord);
+            }
+            normalizados[ord] = null;
+            liberar(ord);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ================== Consulta ==================
+
+    /**
+     * Ids de hasta {@code k} productos cuyo nombre contiene {@code texto}, prefijos primero; con 1-2
+     * caracteres, solo los que empiezan con {@code texto}.
+     */
+    public List<String> buscar(String texto, int k) {
+        String q = normalizar(texto);
+        if (q.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Integer> top = new PriorityQueue<>(k + 1, ranking(q).reversed());
+            if (q.length() < N) {
+                Postings lista = postings.get(q.length() == 1 ? inicial(q.charAt(0)) : gram(INICIO, q.charAt(0), q.charAt(1)));
+                for (int i = 0; lista != null && i < lista.size; i++) {
+                    considerar(top, lista.ords[i], q, k);
+                }
+            } else {
+                int[] candidatos = candidatos(q);
+                for (int ord : candidatos) {
+                    considerar(top, ord, q, k);
+                }
+            }
+            List<Integer> orden = new ArrayList<>(top);
+            orden.sort(ranking(q));
+            return orden.stream().map(this::id).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids de hasta {@code k} productos con nombre parecido a {@code texto} (tolerante a errores de
+     * tipeo): los que comparten más trigramas con la consulta, exigiendo al menos un tercio de ellos.
+     */
+    public List<String> similares(String texto, int k) {
+        String q = normalizar(texto);
+        long[] grams = trigramas(INICIO + q);
+        if (grams.length == 0 || k <= 0) {
+            return List.of();
+        }
+        int minimo = Math.max(1, grams.length / 3);
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> compartidos = new HashMap<>();
+            for (long g : grams) {
+                Postings lista = postings.get(g);
+                if (lista != null) {
+                    for (int i = 0; i < lista.size; i++) {
+                        compartidos.merge(lista.ords[i], 1, Integer::sum);
+                    }
+                }
+            }
+            Comparator<Map.Entry<Integer, Integer>> porSimilitud =
+                    Comparator.<Map.Entry<Integer, Integer>>comparingInt(e -> -e.getValue())
+                            .thenComparingInt(e -> normalizados[e.getKey()].length())
+                            .thenComparing(e -> normalizados[e.getKey()]);
+            return compartidos.entrySet().stream()
+                    .filter(e -> e.getValue() >= minimo)
+                    .sorted(porSimilitud)
+                    .limit(k)
+                    .map(e -> id(e.getKey()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        lock.readLock().lock();
+        try {
+            return cantidad;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long bytesEstimados() {
+        lock.readLock().lock();
+        try {
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Minúsculas y sin tildes/diacríticos. */
+    static String normalizar(String s) {
+        if (s == null) {
+            return "";
+        }
+        return MARCAS.matcher(Normalizer.normalize(s.trim(), Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    // ================== Internos ==================
+
+    private void considerar(PriorityQueue<Integer> top, int ord, String q, int k) {
+        String nombre = normalizados[ord];
+        if (nombre == null || !nombre.contains(q)) {
+            return;
+        }
+        top.add(ord);
+        if (top.size() > k) {
+            top.poll();
+        }
+    }
+
+    /** prefijo < infijo, luego nombre más corto, luego orden alfabético. */
+    private Comparator<Integer> ranking(String q) {
+        return Comparator.<Integer>comparingInt(ord -> normalizados[ord].startsWith(q) ? 0 : 1)
+                .thenComparingInt(ord -> normalizados[ord].length())
+                .thenComparing(ord -> normalizados[ord]);
+    }
+
+    /** Intersección de las listas de los trigramas de la consulta, empezando por la más corta. */
+    private int[] candidatos(String q) {
+        long[] grams = trigramas(q);
+        Postings[] listas = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            listas[i] = postings.get(grams[i]);
+            if (listas[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(listas, Comparator.comparingInt(l -> l.size));
+        int[] res = Arrays.copyOf(listas[0].ords, listas[0].size);
+        int n = res.length;
+        for (int i = 1; i < listas.length && n > 0; i++) {
+            n = intersectar(res, n, listas[i]);
+        }
+        return Arrays.copyOf(res, n);
+    }
+
+    private static int intersectar(int[] acc, int n, Postings otra) {
+        int i = 0;
+        int j = 0;
+        int out = 0;
+        while (i < n && j < otra.size) {
+            if (acc[i] < otra.ords[j]) {
+                i++;
+            } else if (acc[i] > otra.ords[j]) {
+                j++;
+            } else {
+                acc[out++] = acc[i++];
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private void agregar(long gram, int ord) {
+        Postings lista = postings.get(gram);
+        if (lista == null) {
+            lista = new Postings();
+            postings.put(gram, lista);
+            bytes += COSTO_LISTA + 4L * lista.ords.length;
+        }
+        int antes = lista.ords.length;
+        lista.add(ord);
+        bytes += 4L * (lista.ords.length - antes);
+    }
+
+    private void quitar(long gram, int ord) {
+        Postings lista = postings.get(gram);
+        if (lista != null && lista.remove(ord) && lista.size == 0) {
+            postings.remove(gram);
+            bytes -= COSTO_LISTA + 4L * lista.ords.length;
+        }
+    }
+
+    private void asegurarCapacidad(int ord) {
+        if (ord >= normalizados.length) {
+            int nueva = normalizados.length * 2;
+            bytes += COSTO_ORDINAL * (nueva - normalizados.length);
+            idAlto = Arrays.copyOf(idAlto, nueva);
+            idBajo = Arrays.copyOf(idBajo, nueva);
+            normalizados = Arrays.copyOf(normalizados, nueva);
+        }
+    }
+
+    private void limpiar() {
+        postings.clear();
+        tabla = new int[2 * CAPACIDAD_INICIAL];
+        idAlto = new long[CAPACIDAD_INICIAL];
+        idBajo = new long[CAPACIDAD_INICIAL];
+        textuales.clear();
+        idsTexto.clear();
+        normalizados = new String[CAPACIDAD_INICIAL];
+        siguiente = 0;
+        libres = new int[16];
+        cantidadLibres = 0;
+        cantidad = 0;
+        bytes = 0;
+    }
+
+    // ---------- ids y tabla id -> ordinal ----------
+
+    /** El id como UUID si está en su forma canónica (así lo genera {@code ProductoAdapter}); si no, null. */
+    private static UUID comoUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void guardarId(int ord, String id, UUID uuid) {
+        if (uuid != null) {
+            idAlto[ord] = uuid.getMostSignificantBits();
+            idBajo[ord] = uuid.getLeastSignificantBits();
+        } else {
+            textuales.set(ord);
+            idsTexto.put(ord, id);
+            bytes += COSTO_ID_TEXTO + id.length();
+        }
+    }
+
+    private String id(int ord) {
+        return textuales.get(ord) ? idsTexto.get(ord) : new UUID(idAlto[ord], idBajo[ord]).toString();
+    }
+
+    private static int hash(String id, UUID uuid) {
+        int h = uuid != null ? Long.hashCode(uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) : id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int hash(int ord) {
+        if (textuales.get(ord)) {
+            return hash(idsTexto.get(ord), null);
+        }
+        int h = Long.hashCode(idAlto[ord] ^ idBajo[ord]);
+        return h ^ (h >>> 16);
+    }
+
+    private boolean mismoId(int ord, String id, UUID uuid) {
+        if (uuid == null) {
+            return textuales.get(ord) && id.equals(idsTexto.get(ord));
+        }
+        return !textuales.get(ord) && idAlto[ord] == uuid.getMostSignificantBits()
+                && idBajo[ord] == uuid.getLeastSignificantBits();
+    }
+
+    /** Ordinal del id, o -1 si no está indexado. */
+    private int ordinal(String id, UUID uuid) {
+        int mascara = tabla.length - 1;
+        for (int i = hash(id, uuid) & mascara; tabla[i] != 0; i = (i + 1) & mascara) {
+            if (mismoId(tabla[i] - 1, id, uuid)) {
+                return tabla[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private void insertar(int ord) {
+        if (2 * (cantidad + 1) > tabla.length) {
+            int[] anterior = tabla;
+            tabla = new int[anterior.length * 2];
+            bytes += 4L * (tabla.length - anterior.length);
+            for (int v : anterior) {
+                if (v != 0) {
+                    ubicar(v - 1);
+                }
+            }
+        }
+        ubicar(ord);
+        cantidad++;
+    }
+
+    private void ubicar(int ord) {
+        int mascara = tabla.length - 1;
+        int i = hash(ord) & mascara;
+        while (tabla[i] != 0) {
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = ord + 1;
+    }
+
+    /** Quita el ordinal de la tabla corriendo hacia atrás los que sondearon por encima de su hueco. */
+    private void sacar(int ord) {
+        int mascara = tabla.length - 1;
+        int i = hash(ord) & mascara;
+        while (tabla[i] != ord + 1) {
+            i = (i + 1) & mascara;
+        }
+        for (int j = (i + 1) & mascara; tabla[j] != 0; j = (j + 1) & mascara) {
+            int ideal = hash(tabla[j] - 1) & mascara;
+            boolean quedaEntre = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+            if (!quedaEntre) {
+                tabla[i] = tabla[j];
+                i = j;
+            }
+        }
+        tabla[i] = 0;
+        cantidad--;
+    }
+
+    /** Claves de un nombre normalizado: sus trigramas con la marca de inicio y la de su inicial. */
+    private static long[] claves(String norm) {
+        long[] grams = trigramas(INICIO + norm);
+        if (norm.isEmpty()) {
+            return grams;
+        }
+        long[] todas = Arrays.copyOf(grams, grams.length + 1);
+        todas[grams.length] = inicial(norm.charAt(0));
+        return todas;
+    }
+
+    /** Clave de los nombres que empiezan con {@code c}; no choca con un trigrama (INICIO no aparece en medio). */
+    private static long inicial(char c) {
+        return gram(INICIO, c, INICIO);
+    }
+
+    private static long gram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private void liberar(int ord) {
+        if (cantidadLibres == libres.length) {
+            libres = Arrays.copyOf(libres, cantidadLibres * 2);
+            bytes += 4L * cantidadLibres;
+        }
+        libres[cantidadLibres++] = ord;
+    }
+
+    /** Ordinales asignados alguna vez (vivos más libres); con reutilización no pasa del pico de productos. */
+    int ordinalesAsignados() {
+        lock.readLock().lock();
+        try {
+            return siguiente;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Trigramas distintos de {@code s}, cada uno empaquetado como 3 chars de 16 bits. */
+    static long[] trigramas(String s) {
+        if (s.length() < N) {
+            return new long[0];
+        }
+        long[] grams = new long[s.length() - N + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(s.charAt(i), s.charAt(i + 1), s.charAt(i + 2));
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /** Lista de ordinales ordenada y sin duplicados, sobre un int[] que crece al doble. */
+    private static final class Postings {
+        int[] ords = new int[4];
+        int size;
+
+        void add(int ord) {
+            int pos = Arrays.binarySearch(ords, 0, size, ord);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, Math.max(4, size * 2));
+            }
+            System.arraycopy(ords, pos, ords, pos + 1, size - pos);
+            ords[pos] = ord;
+            size++;
+        }
+
+        /** Ajusta el arreglo al tamaño; devuelve cuántos huecos liberó. */
+        int recortar() {
+            int libres = ords.length - size;
+            if (libres > 0) {
+                ords = Arrays.copyOf(ords, size);
+            }
+            return libres;
+        }
+
+        boolean remove(int ord) {
+            int pos = Arrays.binarySearch(ords, 0, size, ord);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ords, pos + 1, ords, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package co.franquicias.mongodb.search;
+
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Carga el {@link ProductoNgramIndex} desde Mongo al arrancar. Mientras carga, las búsquedas
+ * usan el índice de texto de Mongo; las escrituras concurrentes se aplican igual (upsert por id).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductoNgramIndexLoader {
+
+    private final ProductoNgramIndex index;
+    private final ProductoAdapter productoAdapter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (index.isEnabled()) {
+            cargar().subscribe();
+        }
+    }
+
+    public Mono<Integer> cargar() {
+        return Mono.fromRunnable(index::reiniciar)
+                .thenMany(productoAdapter.findAll())
+                .doOnNext(index::indexar)
+                .then(Mono.fromCallable(() -> {
+                    index.marcarListo();
+                    return index.tamano();
+                }))
+                .doOnError(e -> log.error("[ngram] error cargando índice: {}", e.toString()));
+    }
+}
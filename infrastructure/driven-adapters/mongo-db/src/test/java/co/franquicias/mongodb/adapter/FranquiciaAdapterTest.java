@@ -3,6 +3,7 @@ package co.franquicias.mongodb.adapter;
 import co.franquicias.model.franquicia.Franquicia;
 import co.franquicias.mongodb.entity.FranquiciaData;
 import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -13,7 +14,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -61,11 +66,10 @@ class FranquiciaAdapterTest {
     class CrearFranquicia {
 
         @Test
-        @DisplayName("crearFranquicia: crea cuando no existe y mapea a dominio")
+        @DisplayName("crearFranquicia: un único insert y mapea a dominio")
         void crear_ok() {
             String nombre = "Mi Franquicia";
-            when(repo.existsByNombre(nombre)).thenReturn(Mono.just(false));
-            when(repo.save(any(FranquiciaData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(repo.insert(any(FranquiciaData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
             StepVerifier.create(adapter.crearFranquicia(nombre))
                     .assertNext(f -> {
@@ -77,22 +81,20 @@ class FranquiciaAdapterTest {
                     })
                     .verifyComplete();
             ArgumentCaptor<FranquiciaData> cap = ArgumentCaptor.forClass(FranquiciaData.class);
-            verify(repo).save(cap.capture());
+            verify(repo).insert(cap.capture());
             org.junit.jupiter.api.Assertions.assertEquals(nombre, cap.getValue().getNombre());
         }
 
         @Test
-        @DisplayName("crearFranquicia: falla con IllegalStateException si ya existe")
+        @DisplayName("crearFranquicia: DuplicateKeyException del índice único => IllegalStateException")
         void crear_duplicado() {
             String nombre = "Repetida";
-            when(repo.existsByNombre(nombre)).thenReturn(Mono.just(true));
+            when(repo.insert(any(FranquiciaData.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000 nombre")));
 
             StepVerifier.create(adapter.crearFranquicia(nombre))
                     .expectErrorMatches(ex -> ex instanceof IllegalStateException &&
                             ex.getMessage().contains("Franquicia ya existe"))
                     .verify();
-
-            verify(repo, never()).save(any());
         }
     }
 
@@ -112,12 +114,12 @@ class FranquiciaAdapterTest {
         }
 
         @Test
-        @DisplayName("obtenerFranquicias: delega en findAll y mapea")
+        @DisplayName("obtenerFranquicias: lee directo a Franquicia desde la colección franquicias")
         void obtenerFranquicias() {
             Instant t = Instant.now();
-            when(repo.findAll()).thenReturn(Flux.just(
-                    data("1", "A", t, t),
-                    data("2", "B", t, t)
+            when(template.find(any(Query.class), eq(Franquicia.class), eq("franquicias"))).thenReturn(Flux.just(
+                    entity("1", "A", t, t),
+                    entity("2", "B", t, t)
             ));
 
             StepVerifier.create(adapter.obtenerFranquicias())
@@ -125,6 +127,25 @@ class FranquiciaAdapterTest {
                     .verifyComplete();
         }
 
+        @Test
+        @DisplayName("obtenerFranquiciasHidratadas: una sola agregación $lookup sobre franquicias")
+        void obtenerFranquiciasHidratadas() {
+            Instant t = Instant.now();
+            when(template.aggregate(any(Aggregation.class), eq("franquicias"), eq(Franquicia.class)))
+                    .thenReturn(Flux.just(entity("1", "A", t, t)));
+
+            StepVerifier.create(adapter.obtenerFranquiciasHidratadas())
+                    .expectNextMatches(f -> f.getId().equals("1"))
+                    .verifyComplete();
+
+            ArgumentCaptor<Aggregation> cap = ArgumentCaptor.forClass(Aggregation.class);
+            verify(template).aggregate(cap.capture(), eq("franquicias"), eq(Franquicia.class));
+            String pipeline = cap.getValue().toString();
+            org.junit.jupiter.api.Assertions.assertTrue(pipeline.contains("sucursales"));
+            org.junit.jupiter.api.Assertions.assertTrue(pipeline.contains("productos"));
+            verifyNoInteractions(repo);
+        }
+
         @Test
         @DisplayName("obtenerPorNombre: usa repo.findByNombre y mapea")
         void obtenerPorNombre() {
@@ -151,15 +172,14 @@ class FranquiciaAdapterTest {
     class Actualizar {
 
         @Test
-        @DisplayName("actualizarFranquicia: merge no nulos (actualiza nombre, preserva createdAt)")
+        @DisplayName("actualizarFranquicia: un findAndModify con $set de los presentes y $inc de version")
         void actualizar_ok() {
             Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            Instant before = Instant.parse("2024-02-01T00:00:00Z");
 
-            FranquiciaData existente = data("abc", "Vieja", created, before);
-
-            when(repo.findById("abc")).thenReturn(Mono.just(existente));
-            when(repo.save(any(FranquiciaData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            when(template.findAndModify(q.capture(), u.capture(), any(FindAndModifyOptions.class), eq(FranquiciaData.class)))
+                    .thenReturn(Mono.just(data("abc", "Nueva", created, Instant.now())));
 
             Franquicia cambios = entity(null, "Nueva", null, null);
 
@@ -172,20 +192,33 @@ class FranquiciaAdapterTest {
                     })
                     .verifyComplete();
 
-            ArgumentCaptor<FranquiciaData> cap = ArgumentCaptor.forClass(FranquiciaData.class);
-            verify(repo).save(cap.capture());
-            org.junit.jupiter.api.Assertions.assertEquals("Nueva", cap.getValue().getNombre());
-            org.junit.jupiter.api.Assertions.assertEquals(created, cap.getValue().getCreatedAt());
+            org.junit.jupiter.api.Assertions.assertEquals("abc", q.getValue().getQueryObject().get("_id"));
+            Document set = (Document) u.getValue().getUpdateObject().get("$set");
+            org.junit.jupiter.api.Assertions.assertEquals("Nueva", set.get("nombre"));
+            org.junit.jupiter.api.Assertions.assertNotNull(set.get("updatedAt"));
+            org.junit.jupiter.api.Assertions.assertFalse(set.containsKey("createdAt"));
+            org.junit.jupiter.api.Assertions.assertFalse(set.containsKey("id"));
+            org.junit.jupiter.api.Assertions.assertEquals(new Document("version", 1), u.getValue().getUpdateObject().get("$inc"));
+            verify(repo, never()).findById(anyString());
+            verify(repo, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("actualizarFranquicia: id inexistente => Recurso no encontrado")
+        void actualizar_noExiste() {
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(FranquiciaData.class)))
+                    .thenReturn(Mono.empty());
+
+            StepVerifier.create(adapter.actualizarFranquicia("x", entity(null, "Nueva", null, null)))
+                    .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
+                            ex.getMessage().contains("Recurso no encontrado"))
+                    .verify();
         }
 
         @Test
         @DisplayName("actualizarFranquicia: mapea DuplicateKeyException a IllegalStateException")
         void actualizar_duplicateKey() {
-            Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            FranquiciaData existente = data("abc", "Vieja", created, created);
-
-            when(repo.findById("abc")).thenReturn(Mono.just(existente));
-            when(repo.save(any(FranquiciaData.class)))
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(FranquiciaData.class)))
                     .thenReturn(Mono.error(new DuplicateKeyException("dup index nombre")));
 
             Franquicia cambios = entity(null, "NombreDuplicado", null, null);
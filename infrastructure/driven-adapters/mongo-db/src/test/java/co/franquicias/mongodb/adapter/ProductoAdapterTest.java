@@ -1,9 +1,18 @@
 package co.franquicias.mongodb.adapter;
 
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.producto.StockInsuficienteException;
 import co.franquicias.mongodb.entity.ProductoData;
 import co.franquicias.mongodb.repository.ReactiveProductosRepository;
 import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,16 +23,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
-import com.mongodb.client.result.UpdateResult;
-
 import java.time.Instant;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -71,15 +84,13 @@ class ProductoAdapterTest {
     class Crear {
 
         @Test
-        @DisplayName("crear: OK cuando la sucursal existe y no hay duplicado")
+        @DisplayName("crear: un único insert, sin consultas previas de existencia")
         void crear_ok() {
             String sucursalId = "S1";
             String nombre = "Coca Cola";
             int stock = 10;
 
-            when(repoSucursales.existsById(sucursalId)).thenReturn(Mono.just(true));
-            when(repo.existsBySucursalIdAndNombre(sucursalId, nombre)).thenReturn(Mono.just(false));
-            when(repo.save(any(ProductoData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(repo.insert(any(ProductoData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
             StepVerifier.create(adapter.crear(sucursalId, nombre, stock))
                     .assertNext(p -> {
@@ -94,77 +105,149 @@ class ProductoAdapterTest {
                     .verifyComplete();
 
             ArgumentCaptor<ProductoData> cap = ArgumentCaptor.forClass(ProductoData.class);
-            verify(repo).save(cap.capture());
+            verify(repo).insert(cap.capture());
             org.junit.jupiter.api.Assertions.assertEquals(nombre, cap.getValue().getNombre());
             org.junit.jupiter.api.Assertions.assertEquals(stock, cap.getValue().getStock());
+            verifyNoInteractions(repoSucursales);
+            verify(repo, never()).save(any(ProductoData.class));
         }
 
         @Test
-        @DisplayName("crear: falla si la sucursal no existe")
-        void crear_sucursalNoExiste() {
-            String sucursalId = "SX";
-            when(repoSucursales.existsById(sucursalId)).thenReturn(Mono.just(false));
-
-            StepVerifier.create(adapter.crear(sucursalId, "X", 1))
-                    .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
-                            ex.getMessage().contains("La sucursal destino no existe: " + sucursalId))
-                    .verify();
-
-            verify(repo, never()).existsBySucursalIdAndNombre(anyString(), anyString());
-            verify(repo, never()).save(any());
-        }
-
-        @Test
-        @DisplayName("crear: falla si ya existe producto con el mismo nombre en la sucursal")
+        @DisplayName("crear: DuplicateKeyException del índice único => IllegalStateException de dominio")
         void crear_duplicado() {
-            String sucursalId = "S1";
-            String nombre = "Agua";
-            when(repoSucursales.existsById(sucursalId)).thenReturn(Mono.just(true));
-            when(repo.existsBySucursalIdAndNombre(sucursalId, nombre)).thenReturn(Mono.just(true));
+            when(repo.insert(any(ProductoData.class)))
+                    .thenReturn(Mono.error(new DuplicateKeyException("E11000 ux_producto_sucursal_nombre")));
 
-            StepVerifier.create(adapter.crear(sucursalId, nombre, 1))
+            StepVerifier.create(adapter.crear("S1", "Agua", 1))
                     .expectErrorMatches(ex -> ex instanceof IllegalStateException &&
                             ex.getMessage().contains("Producto ya existe en la sucursal"))
                     .verify();
-
-            verify(repo, never()).save(any());
         }
     }
 
     // -------------------- listarPorSucursal --------------------
     @Test
-    @DisplayName("listarPorSucursal: mapea los documentos a dominio")
+    @DisplayName("listarPorSucursal: lee directo a Producto desde la colección productos")
     void listarPorSucursal() {
         Instant t = Instant.now();
-        when(repo.findBySucursalId("S1")).thenReturn(Flux.just(
-                data("p1","S1","Pan",5,t,t),
-                data("p2","S1","Leche",8,t,t)
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        when(template.find(q.capture(), eq(Producto.class), eq("productos"))).thenReturn(Flux.just(
+                entity("p1","S1","Pan",5,t,t),
+                entity("p2","S1","Leche",8,t,t)
         ));
 
         StepVerifier.create(adapter.listarPorSucursal("S1"))
                 .expectNextMatches(p -> p.getId().equals("p1") && p.getNombre().equals("Pan"))
                 .expectNextMatches(p -> p.getId().equals("p2") && p.getNombre().equals("Leche"))
                 .verifyComplete();
+
+        org.junit.jupiter.api.Assertions.assertEquals("S1", q.getValue().getQueryObject().get("sucursalId"));
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    @DisplayName("listarPorSucursales / findAll / listarPorIds: también leen directo a Producto")
+    void listarPorSucursales_yFindAll() {
+        Instant t = Instant.now();
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        when(template.find(q.capture(), eq(Producto.class), eq("productos")))
+                .thenReturn(Flux.just(entity("p1","S1","Pan",5,t,t)));
+
+        StepVerifier.create(adapter.listarPorSucursales(List.of("S1", "S2"))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(adapter.findAll()).expectNextCount(1).verifyComplete();
+        StepVerifier.create(adapter.listarPorIds(List.of("p1", "p2"))).expectNextCount(1).verifyComplete();
+
+        org.junit.jupiter.api.Assertions.assertEquals(
+                new org.bson.Document("sucursalId", new org.bson.Document("$in", List.of("S1", "S2"))),
+                q.getAllValues().get(0).getQueryObject());
+        org.junit.jupiter.api.Assertions.assertTrue(q.getAllValues().get(1).getQueryObject().isEmpty());
+        org.junit.jupiter.api.Assertions.assertEquals(
+                new org.bson.Document("_id", new org.bson.Document("$in", List.of("p1", "p2"))),
+                q.getAllValues().get(2).getQueryObject());
+        verifyNoInteractions(repo);
+    }
+
+    // -------------------- maxStockPorSucursales --------------------
+    @Test
+    @DisplayName("maxStockPorSucursales: agrega en Mongo ($match/$sort/$group) y mapea un producto por sucursal")
+    void maxStockPorSucursales() {
+        Instant t = Instant.now();
+        when(template.aggregate(any(Aggregation.class), eq(ProductoData.class), eq(ProductoData.class)))
+                .thenReturn(Flux.just(data("p2","S1","Leche",8,t,t), data("p9","S2","Agua",1,t,t)));
+
+        StepVerifier.create(adapter.maxStockPorSucursales(java.util.List.of("S1", "S2")))
+                .expectNextMatches(p -> p.getId().equals("p2") && p.getStock() == 8)
+                .expectNextMatches(p -> p.getId().equals("p9") && p.getSucursalId().equals("S2"))
+                .verifyComplete();
+
+        ArgumentCaptor<Aggregation> cap = ArgumentCaptor.forClass(Aggregation.class);
+        verify(template).aggregate(cap.capture(), eq(ProductoData.class), eq(ProductoData.class));
+        String pipeline = cap.getValue().toString();
+        org.junit.jupiter.api.Assertions.assertTrue(pipeline.contains("$match"));
+        org.junit.jupiter.api.Assertions.assertTrue(pipeline.contains("$sort"));
+        org.junit.jupiter.api.Assertions.assertTrue(pipeline.contains("$group"));
+        verifyNoInteractions(repo);
+    }
+
+    // -------------------- pagina (keyset) --------------------
+    @Test
+    @DisplayName("pagina: consulta limit+1 ordenada por _id y devuelve nextCursor si hay más")
+    void pagina() {
+        Instant t = Instant.now();
+        when(template.find(any(Query.class), eq(ProductoData.class)))
+                .thenReturn(Flux.just(data("p1","S1","A",1,t,t), data("p2","S1","B",2,t,t), data("p3","S2","C",3,t,t)));
+
+        StepVerifier.create(adapter.pagina(null, 2))
+                .assertNext(pg -> {
+                    org.junit.jupiter.api.Assertions.assertEquals(2, pg.getItems().size());
+                    org.junit.jupiter.api.Assertions.assertEquals("p2",
+                            co.franquicias.mongodb.helper.KeysetCursor.decode(pg.getNextCursor()));
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> cap = ArgumentCaptor.forClass(Query.class);
+        verify(template).find(cap.capture(), eq(ProductoData.class));
+        org.junit.jupiter.api.Assertions.assertEquals(3, cap.getValue().getLimit());
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    @DisplayName("pagina: cursor inválido => IllegalArgumentException sin consultar Mongo")
+    void pagina_cursorInvalido() {
+        StepVerifier.create(adapter.pagina("%%%", 2))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(template);
     }
 
-    // -------------------- buscarPorNombreLike --------------------
+    // -------------------- buscarPorTexto --------------------
     @Test
-    @DisplayName("buscarPorNombreLike: usa regex (?i).*<quote(nombreLike)>. * y mapea")
-    void buscarPorNombreLike() {
+    @DisplayName("buscarPorTexto: $text en español, orden por relevancia y limit; sin regex")
+    void buscarPorTexto() {
         Instant t = Instant.now();
-        when(repo.findByNombreRegex(anyString()))
-                .thenReturn(Flux.just(data("p1","S1","Cola Zero",3,t,t)));
+        when(template.find(any(Query.class), eq(ProductoData.class)))
+                .thenReturn(Flux.just(data("p1","S1","Café Molido",3,t,t)));
 
-        StepVerifier.create(adapter.buscarPorNombreLike("Cola (Zero)"))
-                .expectNextMatches(p -> p.getNombre().equals("Cola Zero"))
+        StepVerifier.create(adapter.buscarPorTexto("cafe", 10))
+                .expectNextMatches(p -> p.getNombre().equals("Café Molido"))
                 .verifyComplete();
 
-        ArgumentCaptor<String> patternCap = ArgumentCaptor.forClass(String.class);
-        verify(repo).findByNombreRegex(patternCap.capture());
-        String pattern = patternCap.getValue();
-        org.junit.jupiter.api.Assertions.assertTrue(pattern.startsWith("(?i).*"));
-        org.junit.jupiter.api.Assertions.assertTrue(pattern.endsWith(".*"));
-        org.junit.jupiter.api.Assertions.assertTrue(pattern.contains(java.util.regex.Pattern.quote("Cola (Zero)")));
+        ArgumentCaptor<Query> cap = ArgumentCaptor.forClass(Query.class);
+        verify(template).find(cap.capture(), eq(ProductoData.class));
+        Query q = cap.getValue();
+        org.bson.Document text = (org.bson.Document) q.getQueryObject().get("$text");
+        org.junit.jupiter.api.Assertions.assertEquals("cafe", text.get("$search"));
+        org.junit.jupiter.api.Assertions.assertEquals("spanish", text.get("$language"));
+        org.junit.jupiter.api.Assertions.assertTrue(q.getSortObject().containsKey("score"));
+        org.junit.jupiter.api.Assertions.assertEquals(10, q.getLimit());
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    @DisplayName("buscarPorTexto: texto vacío no consulta Mongo")
+    void buscarPorTexto_vacio() {
+        StepVerifier.create(adapter.buscarPorTexto("  ", 10)).verifyComplete();
+        verifyNoInteractions(template, repo);
     }
 
     // -------------------- actualizarStock --------------------
@@ -172,34 +255,272 @@ class ProductoAdapterTest {
     class ActualizarStock {
 
         @Test
-        @DisplayName("actualizarStock: si hay match, luego lee por id y retorna entidad")
+        @DisplayName("actualizarStock: un solo findAndModify por _id + sucursalId, retorna el documento nuevo")
         void actualizarStock_ok() {
             String id = "p1";
             Instant t = Instant.now();
             ProductoData mod = data(id,"S1","Pan",15,t,t);
 
-            when(template.updateFirst(any(Query.class), any(Update.class), eq(ProductoData.class)))
-                    .thenReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null)));
-            when(repo.findById(id)).thenReturn(Mono.just(mod));
+            ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            when(template.findAndModify(q.capture(), u.capture(), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.just(mod));
 
-            StepVerifier.create(adapter.actualizarStock(id, 15))
+            StepVerifier.create(adapter.actualizarStock(id, "S1", 15))
                     .expectNextMatches(p -> p.getId().equals(id) && p.getStock() == 15)
                     .verifyComplete();
+
+            org.bson.Document filtro = q.getValue().getQueryObject();
+            org.junit.jupiter.api.Assertions.assertEquals(id, filtro.get("_id"));
+            org.junit.jupiter.api.Assertions.assertEquals("S1", filtro.get("sucursalId"));
+            org.bson.Document cambios = u.getValue().getUpdateObject();
+            org.junit.jupiter.api.Assertions.assertEquals(15, cambios.get("$set", org.bson.Document.class).get("stock"));
+            org.junit.jupiter.api.Assertions.assertEquals(1, cambios.get("$inc", org.bson.Document.class).get("version"));
+            verify(template, never()).updateFirst(any(Query.class), any(Update.class), eq(ProductoData.class));
+            verify(repo, never()).findById(anyString());
         }
 
         @Test
-        @DisplayName("actualizarStock: si no hay match, error 'Producto no encontrado'")
+        @DisplayName("actualizarStock: sin match (no existe o es de otra sucursal), error 'Producto no encontrado'")
         void actualizarStock_noMatch() {
-            when(template.updateFirst(any(Query.class), any(Update.class), eq(ProductoData.class)))
-                    .thenReturn(Mono.just(UpdateResult.acknowledged(0L, 0L, null)));
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.empty());
 
-            StepVerifier.create(adapter.actualizarStock("nope", 10))
+            StepVerifier.create(adapter.actualizarStock("nope", "S1", 10))
                     .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
                             ex.getMessage().contains("Producto no encontrado"))
                     .verify();
+        }
+    }
 
+    // -------------------- ajustarStock --------------------
+    @Nested
+    class AjustarStock {
+
+        @Test
+        @DisplayName("ajustarStock: $inc condicionado a stock >= -delta, sin lectura previa")
+        void ajustarStock_decremento() {
+            Instant t = Instant.now();
+            ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            when(template.findAndModify(q.capture(), u.capture(), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.just(data("p1","S1","Pan",7,t,t)));
+
+            StepVerifier.create(adapter.ajustarStock("p1", "S1", -3))
+                    .expectNextMatches(p -> p.getStock() == 7)
+                    .verifyComplete();
+
+            org.bson.Document filtro = q.getValue().getQueryObject();
+            org.junit.jupiter.api.Assertions.assertEquals("S1", filtro.get("sucursalId"));
+            org.junit.jupiter.api.Assertions.assertEquals(3, filtro.get("stock", org.bson.Document.class).get("$gte"));
+            org.junit.jupiter.api.Assertions.assertEquals(-3,
+                    u.getValue().getUpdateObject().get("$inc", org.bson.Document.class).get("stock"));
+            verify(template, never()).exists(any(Query.class), eq(ProductoData.class));
             verify(repo, never()).findById(anyString());
         }
+
+        @Test
+        @DisplayName("ajustarStock: los incrementos no llevan condición sobre stock")
+        void ajustarStock_incremento() {
+            org.junit.jupiter.api.Assertions.assertNull(
+                    ProductoAdapter.consultaAjuste("p1", "S1", 5).getQueryObject().get("stock"));
+        }
+
+        @Test
+        @DisplayName("ajustarStock: sin match y el producto existe => StockInsuficienteException")
+        void ajustarStock_insuficiente() {
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.empty());
+            when(template.exists(any(Query.class), eq(ProductoData.class))).thenReturn(Mono.just(true));
+
+            StepVerifier.create(adapter.ajustarStock("p1", "S1", -50))
+                    .expectError(StockInsuficienteException.class)
+                    .verify();
+        }
+
+        @Test
+        @DisplayName("ajustarStock: sin match y el producto no existe en la sucursal => 'Producto no encontrado'")
+        void ajustarStock_noEncontrado() {
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.empty());
+            when(template.exists(any(Query.class), eq(ProductoData.class))).thenReturn(Mono.just(false));
+
+            StepVerifier.create(adapter.ajustarStock("nope", "S1", -1))
+                    .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
+                            ex.getMessage().contains("Producto no encontrado"))
+                    .verify();
+        }
+    }
+
+    // -------------------- actualizarStockLote --------------------
+    @Nested
+    class ActualizarStockLote {
+
+        ReactiveBulkOperations ops;
+
+        private ActualizacionStock cambio(String pId, String sId, int stock) {
+            return ActualizacionStock.builder().productoId(pId).sucursalId(sId).stock(stock).build();
+        }
+
+        private BulkWriteResult resultado(int matched) {
+            BulkWriteResult r = mock(BulkWriteResult.class);
+            when(r.getMatchedCount()).thenReturn(matched);
+            return r;
+        }
+
+        @BeforeEach
+        void setUpBulk() {
+            ops = mock(ReactiveBulkOperations.class);
+            when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoData.class)).thenReturn(ops);
+        }
+
+        @Test
+        @DisplayName("actualizarStockLote: todo hace match => un solo bulkWrite, todos ACTUALIZADO en orden")
+        void todosActualizados() {
+            BulkWriteResult r = resultado(2);
+            when(ops.execute()).thenReturn(Mono.just(r));
+
+            StepVerifier.create(adapter.actualizarStockLote(List.of(cambio("p1","S1",5), cambio("p2","S1",0))))
+                    .expectNextMatches(x -> x.getProductoId().equals("p1") && x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .expectNextMatches(x -> x.getProductoId().equals("p2") && x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .verifyComplete();
+
+            verify(ops, times(2)).updateOne(any(Query.class), any(Update.class));
+            verify(template, never()).find(any(Query.class), eq(ProductoData.class));
+        }
+
+        @Test
+        @DisplayName("actualizarStockLote: faltan matches => una consulta $in distingue NO_ENCONTRADO (incl. otra sucursal)")
+        void noEncontrados() {
+            BulkWriteResult r = resultado(1);
+            when(ops.execute()).thenReturn(Mono.just(r));
+            when(template.find(any(Query.class), eq(ProductoData.class)))
+                    .thenReturn(Flux.just(data("p1","S1","A",5,null,null), data("p2","S9","B",1,null,null)));
+
+            StepVerifier.create(adapter.actualizarStockLote(List.of(
+                            cambio("p1","S1",5), cambio("p2","S1",1), cambio("p3","S1",1))))
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.NO_ENCONTRADO)
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.NO_ENCONTRADO)
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("actualizarStockLote: errores de escritura se reportan por índice; el resto se aplica")
+        void erroresPorIndice() {
+            BulkWriteResult r = resultado(1);
+            BulkOperationException ex = mock(BulkOperationException.class);
+            when(ex.getResult()).thenReturn(r);
+            when(ex.getErrors()).thenReturn(List.of(new BulkWriteError(2, "falló", new BsonDocument(), 0)));
+            when(ops.execute()).thenReturn(Mono.error(ex));
+
+            StepVerifier.create(adapter.actualizarStockLote(List.of(cambio("p1","S1",5), cambio("p2","S1",1))))
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.ERROR && "falló".equals(x.getMensaje()))
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("actualizarStockLote: producto repetido en el lote => solo se escribe su última entrada, las anteriores SUPERADO")
+        void productoRepetido() {
+            BulkWriteResult r = resultado(2);
+            when(ops.execute()).thenReturn(Mono.just(r));
+
+            StepVerifier.create(adapter.actualizarStockLote(List.of(
+                            cambio("p1","S1",5), cambio("p2","S1",1), cambio("p1","S1",9))))
+                    .expectNextMatches(x -> x.getProductoId().equals("p1") && x.getEstado() == ResultadoActualizacion.Estado.SUPERADO)
+                    .expectNextMatches(x -> x.getProductoId().equals("p2") && x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .expectNextMatches(x -> x.getProductoId().equals("p1") && x.getEstado() == ResultadoActualizacion.Estado.ACTUALIZADO)
+                    .verifyComplete();
+
+            ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+            verify(ops, times(2)).updateOne(any(Query.class), updates.capture());
+            org.junit.jupiter.api.Assertions.assertEquals(1, updates.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("stock"));
+            org.junit.jupiter.api.Assertions.assertEquals(9, updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class).get("stock"));
+            verify(template, never()).find(any(Query.class), eq(ProductoData.class));
+        }
+
+        @Test
+        @DisplayName("actualizarStockLote: fallo general => ERROR para todo el lote, sin propagar")
+        void falloGeneral() {
+            when(ops.execute()).thenReturn(Mono.error(new RuntimeException("timeout")));
+
+            StepVerifier.create(adapter.actualizarStockLote(List.of(cambio("p1","S1",5))))
+                    .expectNextMatches(x -> x.getEstado() == ResultadoActualizacion.Estado.ERROR && "timeout".equals(x.getMensaje()))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("obtenerEnSucursal: un findOne filtrando por _id y sucursalId")
+    void obtenerEnSucursal() {
+        when(template.findOne(any(Query.class), eq(ProductoData.class)))
+                .thenReturn(Mono.just(data("p1", "S1", "A", 4, null, null)));
+
+        StepVerifier.create(adapter.obtenerEnSucursal("p1", "S1"))
+                .expectNextMatches(p -> p.getId().equals("p1") && p.getStock() == 4)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> cap = ArgumentCaptor.forClass(Query.class);
+        verify(template).findOne(cap.capture(), eq(ProductoData.class));
+        org.junit.jupiter.api.Assertions.assertEquals("S1", cap.getValue().getQueryObject().get("sucursalId"));
+    }
+
+    // -------------------- insertarLote --------------------
+    @Nested
+    class InsertarLote {
+
+        ReactiveBulkOperations ops;
+
+        private ImportacionProducto fila(long n, String nombre) {
+            return ImportacionProducto.builder().fila(n).sucursalId("S1").nombre(nombre).stock(1).build();
+        }
+
+        private void stubBulk() {
+            ops = mock(ReactiveBulkOperations.class);
+            when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoData.class)).thenReturn(ops);
+            when(ops.insert(anyList())).thenReturn(ops);
+        }
+
+        @Test
+        @DisplayName("insertarLote: un bulk insert desordenado, sin exists previos; CREADO con id generado")
+        void creados() {
+            stubBulk();
+            when(ops.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+            StepVerifier.create(adapter.insertarLote(List.of(fila(1, "A"), fila(2, "B"))))
+                    .expectNextMatches(r -> r.getFila() == 1 && r.getEstado() == ResultadoImportacion.Estado.CREADO && r.getProductoId() != null)
+                    .expectNextMatches(r -> r.getFila() == 2 && r.getEstado() == ResultadoImportacion.Estado.CREADO)
+                    .verifyComplete();
+
+            verify(ops).insert(argThat((List<?> docs) -> docs.size() == 2));
+            verifyNoInteractions(repo, repoSucursales);
+        }
+
+        @Test
+        @DisplayName("insertarLote: E11000 del índice único => DUPLICADO; otros errores por fila => ERROR")
+        void duplicados() {
+            stubBulk();
+            BulkOperationException ex = mock(BulkOperationException.class);
+            when(ex.getResult()).thenReturn(mock(BulkWriteResult.class));
+            when(ex.getErrors()).thenReturn(List.of(
+                    new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1),
+                    new BulkWriteError(121, "validation", new BsonDocument(), 2)));
+            when(ops.execute()).thenReturn(Mono.error(ex));
+
+            StepVerifier.create(adapter.insertarLote(List.of(fila(1, "A"), fila(2, "A"), fila(3, "C"))))
+                    .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.CREADO)
+                    .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.DUPLICADO && r.getProductoId() == null)
+                    .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.ERROR && "validation".equals(r.getMensaje()))
+                    .verifyComplete();
+        }
+
+        @Test
+        @DisplayName("insertarLote: lote vacío no toca Mongo")
+        void vacio() {
+            StepVerifier.create(adapter.insertarLote(List.of())).verifyComplete();
+            verifyNoInteractions(template);
+        }
     }
 
     // -------------------- eliminarPorId --------------------
@@ -217,14 +538,15 @@ class ProductoAdapterTest {
     class ActualizarProducto {
 
         @Test
-        @DisplayName("actualizarProducto: OK (valida sucursal si viene, merge y mapea DuplicateKeyException)")
+        @DisplayName("actualizarProducto: OK (un findAndModify con $set de los presentes y $inc de version)")
         void actualizar_ok() {
             String id = "p1";
             Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            ProductoData existente = data(id,"S1","Viejo",5,created,created);
 
-            when(repo.findById(id)).thenReturn(Mono.just(existente));
-            when(repo.save(any(ProductoData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            when(template.findAndModify(q.capture(), u.capture(), any(FindAndModifyOptions.class), eq(ProductoData.class)))
+                    .thenReturn(Mono.just(data(id, "S1", "Nuevo", 0, created, Instant.now())));
 
             Producto cambios = entity(null, null, "Nuevo", 0, null, null); // sólo nombre
             StepVerifier.create(adapter.actualizarProducto(id, cambios))
@@ -237,9 +559,14 @@ class ProductoAdapterTest {
                     })
                     .verifyComplete();
 
-            ArgumentCaptor<ProductoData> cap = ArgumentCaptor.forClass(ProductoData.class);
-            verify(repo).save(cap.capture());
-            org.junit.jupiter.api.Assertions.assertEquals("Nuevo", cap.getValue().getNombre());
+            org.junit.jupiter.api.Assertions.assertEquals(id, q.getValue().getQueryObject().get("_id"));
+            Document set = (Document) u.getValue().getUpdateObject().get("$set");
+            org.junit.jupiter.api.Assertions.assertEquals("Nuevo", set.get("nombre"));
+            org.junit.jupiter.api.Assertions.assertFalse(set.containsKey("sucursalId"));
+            org.junit.jupiter.api.Assertions.assertFalse(set.containsKey("createdAt"));
+            org.junit.jupiter.api.Assertions.assertEquals(new Document("version", 1), u.getValue().getUpdateObject().get("$inc"));
+            verify(repo, never()).findById(anyString());
+            verify(repo, never()).save(any());
         }
 
         @Test
@@ -259,16 +586,13 @@ class ProductoAdapterTest {
                         return Mono.just(false);
                     });
 
-            when(repo.findById(anyString()))
-                    .thenReturn(Mono.never());
-
             StepVerifier.create(adapter.actualizarProducto(id, cambios))
                     .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
                             ex.getMessage().contains("La sucursal destino no existe: S999"))
                     .verify();
 
             verify(repoSucursales, times(1)).existsById("S999");
-            verify(repo, never()).save(any());
+            verify(template, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductoData.class));
         }
 
 
@@ -276,11 +600,7 @@ class ProductoAdapterTest {
         @DisplayName("actualizarProducto: DuplicateKeyException → IllegalStateException con mensaje claro")
         void actualizar_duplicateKey() {
             String id = "p1";
-            Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            ProductoData existente = data(id,"S1","Viejo",5,created,created);
-
-            when(repo.findById(id)).thenReturn(Mono.just(existente));
-            when(repo.save(any(ProductoData.class)))
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductoData.class)))
                     .thenReturn(Mono.error(new DuplicateKeyException("dup nombre en sucursal")));
 
             Producto cambios = entity(null, null, "NuevoConflicto", 0, null, null);
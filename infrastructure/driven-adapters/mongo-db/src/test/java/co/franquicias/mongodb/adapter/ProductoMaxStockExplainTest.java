@@ -0,0 +1,72 @@
+package co.franquicias.mongodb.adapter;
+
+import co.franquicias.mongodb.config.CreadorIndices;
+import co.franquicias.mongodb.entity.ProductoData;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Verifica contra un Mongo real que el reporte de máximo stock corre sobre {@code ix_producto_sucursal_stock}
+ * tal como lo deja {@link CreadorIndices} al arrancar. Requiere Docker; sin él la clase se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ProductoMaxStockExplainTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    static MongoClient client;
+    static ReactiveMongoTemplate template;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getConnectionString());
+        template = new ReactiveMongoTemplate(client, "test");
+        new CreadorIndices(template, Duration.ofMinutes(1)).crear().block();
+
+        Instant now = Instant.now();
+        List<ProductoData> docs = IntStream.range(0, 200)
+                .mapToObj(i -> ProductoData.builder().id("p" + i).sucursalId("s" + (i % 4))
+                        .nombre("Producto " + i).stock(i).createdAt(now).updatedAt(now).build())
+                .toList();
+        template.insertAll(docs).blockLast();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    @DisplayName("maxStockPorSucursales: el plan usa ix_producto_sucursal_stock, sin COLLSCAN ni SORT en memoria")
+    void explain_usaIndice() {
+        List<Document> pipeline = ProductoAdapter.pipelineMaxStock(List.of("s1", "s2"))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        Document plan = template.executeCommand(new Document("explain",
+                        new Document("aggregate", "productos").append("pipeline", pipeline).append("cursor", new Document()))
+                        .append("verbosity", "queryPlanner"))
+                .block();
+
+        Assertions.assertNotNull(plan);
+        String json = plan.toJson();
+        Assertions.assertTrue(json.contains("ix_producto_sucursal_stock"), json);
+        Assertions.assertFalse(json.contains("COLLSCAN"), json);
+    }
+}
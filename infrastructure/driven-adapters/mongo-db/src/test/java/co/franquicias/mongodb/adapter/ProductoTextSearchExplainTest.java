@@ -0,0 +1,88 @@
+package co.franquicias.mongodb.adapter;
+
+import co.franquicias.mongodb.config.CreadorIndices;
+import co.franquicias.mongodb.entity.ProductoData;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Verifica contra un Mongo real que la búsqueda de productos usa el índice de texto (sin COLLSCAN)
+ * y que ignora mayúsculas y tildes. Requiere Docker; sin él la clase se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ProductoTextSearchExplainTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    static MongoClient client;
+    static ReactiveMongoTemplate template;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getConnectionString());
+        template = new ReactiveMongoTemplate(client, "test");
+
+        new CreadorIndices(template, Duration.ofMinutes(1)).crear().block();
+
+        Instant now = Instant.now();
+        List<ProductoData> docs = List.of("Café Molido", "Azúcar Morena", "Leche Entera", "Té Verde").stream()
+                .map(n -> ProductoData.builder().id(UUID.randomUUID().toString()).sucursalId("s1")
+                        .nombre(n).stock(1).createdAt(now).updatedAt(now).build())
+                .toList();
+        template.insertAll(docs).blockLast();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    @DisplayName("buscarPorTexto: plan ganador usa TEXT, nunca COLLSCAN")
+    void explain_sinCollscan() {
+        Query query = ProductoAdapter.consultaTexto("cafe", 10);
+
+        Document plan = template.getCollection("productos")
+                .flatMap(c -> Mono.from(c.find(query.getQueryObject())
+                        .projection(query.getFieldsObject())
+                        .sort(query.getSortObject())
+                        .limit(query.getLimit())
+                        .explain(Document.class)))
+                .block();
+
+        Assertions.assertNotNull(plan);
+        String winningPlan = ((Document) plan.get("queryPlanner")).get("winningPlan", Document.class).toJson();
+        Assertions.assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+        Assertions.assertTrue(winningPlan.contains("TEXT"), winningPlan);
+    }
+
+    @Test
+    @DisplayName("buscarPorTexto: sin distinguir mayúsculas ni tildes")
+    void insensibleATildes() {
+        List<ProductoData> res = template.find(ProductoAdapter.consultaTexto("AZUCAR", 10), ProductoData.class)
+                .collectList()
+                .block();
+
+        Assertions.assertNotNull(res);
+        Assertions.assertEquals(1, res.size());
+        Assertions.assertEquals("Azúcar Morena", res.get(0).getNombre());
+    }
+}
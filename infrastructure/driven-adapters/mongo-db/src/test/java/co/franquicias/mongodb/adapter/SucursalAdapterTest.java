@@ -4,6 +4,7 @@ import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.mongodb.entity.SucursalData;
 import co.franquicias.mongodb.repository.ReactiveFranquiciaRepository;
 import co.franquicias.mongodb.repository.ReactiveSucursalesRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,7 +15,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -64,14 +68,12 @@ class SucursalAdapterTest {
     class Crear {
 
         @Test
-        @DisplayName("crear: OK cuando la franquicia existe y no hay duplicado")
+        @DisplayName("crear: un único insert, sin consultas previas de existencia")
         void crear_ok() {
             String franquiciaId = "F1";
             String nombre = "Sucursal Norte";
 
-            when(repoFranquicia.existsById(franquiciaId)).thenReturn(Mono.just(true));
-            when(repo.existsByFranquiciaIdAndNombre(franquiciaId, nombre)).thenReturn(Mono.just(false));
-            when(repo.save(any(SucursalData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            when(repo.insert(any(SucursalData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
             StepVerifier.create(adapter.crear(franquiciaId, nombre))
                     .assertNext(s -> {
@@ -85,58 +87,43 @@ class SucursalAdapterTest {
                     .verifyComplete();
 
             ArgumentCaptor<SucursalData> cap = ArgumentCaptor.forClass(SucursalData.class);
-            verify(repo).save(cap.capture());
+            verify(repo).insert(cap.capture());
             org.junit.jupiter.api.Assertions.assertEquals(nombre, cap.getValue().getNombre());
             org.junit.jupiter.api.Assertions.assertEquals(franquiciaId, cap.getValue().getFranquiciaId());
+            verifyNoInteractions(repoFranquicia);
         }
 
         @Test
-        @DisplayName("crear: falla si la franquicia no existe")
-        void crear_franquiciaNoExiste() {
-            String franquiciaId = "FX";
-            when(repoFranquicia.existsById(franquiciaId)).thenReturn(Mono.just(false));
-
-            StepVerifier.create(adapter.crear(franquiciaId, "S1"))
-                    .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
-                            ex.getMessage().contains("La franquicia no existe: " + franquiciaId))
-                    .verify();
-
-            verify(repo, never()).existsByFranquiciaIdAndNombre(anyString(), anyString());
-            verify(repo, never()).save(any());
-        }
-
-        @Test
-        @DisplayName("crear: falla si ya existe sucursal con el mismo nombre en la franquicia")
+        @DisplayName("crear: DuplicateKeyException del índice único => IllegalStateException de dominio")
         void crear_duplicado() {
-            String franquiciaId = "F1";
-            String nombre = "Sucursal A";
-
-            when(repoFranquicia.existsById(franquiciaId)).thenReturn(Mono.just(true));
-            when(repo.existsByFranquiciaIdAndNombre(franquiciaId, nombre)).thenReturn(Mono.just(true));
+            when(repo.insert(any(SucursalData.class)))
+                    .thenReturn(Mono.error(new DuplicateKeyException("E11000 ux_sucursal_franquicia_nombre")));
 
-            StepVerifier.create(adapter.crear(franquiciaId, nombre))
+            StepVerifier.create(adapter.crear("F1", "Sucursal A"))
                     .expectErrorMatches(ex -> ex instanceof IllegalStateException &&
                             ex.getMessage().contains("Sucursal ya existe en la franquicia"))
                     .verify();
-
-            verify(repo, never()).save(any());
         }
     }
 
     // ================== consultas/eliminación ==================
     @Test
-    @DisplayName("listarPorFranquicia: mapea documentos a dominio")
+    @DisplayName("listarPorFranquicia: lee directo a Sucursal desde la colección sucursales")
     void listarPorFranquicia() {
         Instant t = Instant.now();
-        when(repo.findByFranquiciaId("F1")).thenReturn(Flux.just(
-                data("s1","F1","A",t,t),
-                data("s2","F1","B",t,t)
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        when(template.find(q.capture(), eq(Sucursal.class), eq("sucursales"))).thenReturn(Flux.just(
+                entity("s1","F1","A",t,t),
+                entity("s2","F1","B",t,t)
         ));
 
         StepVerifier.create(adapter.listarPorFranquicia("F1"))
                 .expectNextMatches(s -> s.getId().equals("s1") && s.getNombre().equals("A"))
                 .expectNextMatches(s -> s.getId().equals("s2") && s.getNombre().equals("B"))
                 .verifyComplete();
+
+        org.junit.jupiter.api.Assertions.assertEquals("F1", q.getValue().getQueryObject().get("franquiciaId"));
+        verifyNoInteractions(repo);
     }
 
     @Test
@@ -165,14 +152,14 @@ class SucursalAdapterTest {
     class Actualizar {
 
         @Test
-        @DisplayName("actualizarSucursal: OK (merge no nulos; preserva franquiciaId y createdAt)")
+        @DisplayName("actualizarSucursal: OK ($set solo de los presentes; preserva franquiciaId y createdAt)")
         void actualizar_ok() {
             String id = "s1";
             Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            SucursalData existente = data(id, "F1", "Vieja", created, created);
 
-            when(repo.findById(id)).thenReturn(Mono.just(existente));
-            when(repo.save(any(SucursalData.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            when(template.findAndModify(any(Query.class), u.capture(), any(FindAndModifyOptions.class), eq(SucursalData.class)))
+                    .thenReturn(Mono.just(data(id, "F1", "Nueva", created, Instant.now())));
 
             Sucursal cambios = entity(null, null, "Nueva", null, null);
 
@@ -186,10 +173,12 @@ class SucursalAdapterTest {
                     })
                     .verifyComplete();
 
-            ArgumentCaptor<SucursalData> cap = ArgumentCaptor.forClass(SucursalData.class);
-            verify(repo).save(cap.capture());
-            org.junit.jupiter.api.Assertions.assertEquals("Nueva", cap.getValue().getNombre());
-            org.junit.jupiter.api.Assertions.assertEquals("F1", cap.getValue().getFranquiciaId());
+            Document set = (Document) u.getValue().getUpdateObject().get("$set");
+            org.junit.jupiter.api.Assertions.assertEquals("Nueva", set.get("nombre"));
+            org.junit.jupiter.api.Assertions.assertFalse(set.containsKey("franquiciaId"));
+            org.junit.jupiter.api.Assertions.assertEquals(new Document("version", 1), u.getValue().getUpdateObject().get("$inc"));
+            verifyNoInteractions(repoFranquicia);
+            verify(repo, never()).save(any());
         }
 
         @Test
@@ -208,26 +197,20 @@ class SucursalAdapterTest {
                         return Mono.just(false);
                     });
 
-            when(repo.findById(anyString())).thenReturn(Mono.never());
-
             StepVerifier.create(adapter.actualizarSucursal(id, cambios))
                     .expectErrorMatches(ex -> ex instanceof IllegalArgumentException &&
                             ex.getMessage().contains("La franquicia destino no existe: F999"))
                     .verify();
 
             verify(repoFranquicia, times(1)).existsById("F999");
-            verify(repo, never()).save(any());
+            verifyNoInteractions(template);
         }
 
         @Test
         @DisplayName("actualizarSucursal: DuplicateKeyException → IllegalStateException")
         void actualizar_duplicateKey() {
             String id = "s1";
-            Instant created = Instant.parse("2024-01-01T00:00:00Z");
-            SucursalData existente = data(id, "F1", "Vieja", created, created);
-
-            when(repo.findById(id)).thenReturn(Mono.just(existente));
-            when(repo.save(any(SucursalData.class)))
+            when(template.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SucursalData.class)))
                     .thenReturn(Mono.error(new DuplicateKeyException("dup nombre")));
 
             Sucursal cambios = entity(null, null, "Conflicto", null, null);
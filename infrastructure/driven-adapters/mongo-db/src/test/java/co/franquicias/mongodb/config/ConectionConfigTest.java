@@ -1,13 +1,18 @@
 package co.franquicias.mongodb.config;
 
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
 import com.mongodb.reactivestreams.client.MongoClient;
 import jakarta.annotation.Resource;
+import org.bson.Document;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -53,6 +58,15 @@ class ConectionConfigSpringTest {
                 "El MongoClient dentro del template debe ser el bean singleton del contexto");
     }
 
+    @Test
+    @DisplayName("ReactiveMongoTemplate registra los reading converters BSON → dominio")
+    void templateHasReadConverters() {
+        var converter = (MappingMongoConverter) reactiveMongoTemplate.getConverter();
+        assertTrue(converter.getConversions().hasCustomReadTarget(Document.class, Producto.class));
+        assertTrue(converter.getConversions().hasCustomReadTarget(Document.class, Sucursal.class));
+        assertTrue(converter.getConversions().hasCustomReadTarget(Document.class, Franquicia.class));
+    }
+
     // ====================== Helpers robustos ======================
 
     private static Object getFieldByNameOrType(Object target, String[] candidateNames, Class<?> assignableTo) throws Exception {
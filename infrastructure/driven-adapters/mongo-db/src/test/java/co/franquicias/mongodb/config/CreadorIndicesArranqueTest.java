@@ -0,0 +1,54 @@
+package co.franquicias.mongodb.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+
+class CreadorIndicesArranqueTest {
+
+    /** Creador cuyo {@code crear()} falla las primeras {@code fallos} veces. */
+    private static CreadorIndices creador(Duration timeout, int fallos, AtomicInteger intentos) {
+        return new CreadorIndices(mock(ReactiveMongoTemplate.class), timeout) {
+            @Override
+            public Mono<Void> crear() {
+                return Mono.defer(() -> intentos.incrementAndGet() <= fallos
+                        ? Mono.error(new IllegalStateException("mongo no disponible"))
+                        : Mono.empty());
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("un fallo transitorio se reintenta y el arranque sigue")
+    void reintenta() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        creador(Duration.ofSeconds(10), 1, intentos).afterSingletonsInstantiated();
+
+        Assertions.assertEquals(2, intentos.get());
+    }
+
+    @Test
+    @DisplayName("sin índices dentro del timeout => el arranque falla")
+    void fallaElArranque() {
+        AtomicInteger intentos = new AtomicInteger();
+        CreadorIndices creador = creador(Duration.ofMillis(300), Integer.MAX_VALUE, intentos);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, creador::afterSingletonsInstantiated);
+        Assertions.assertTrue(e.getMessage().contains("índices"));
+    }
+
+    @Test
+    @DisplayName("constructor: timeout debe ser positivo")
+    void configInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new CreadorIndices(mock(ReactiveMongoTemplate.class), Duration.ZERO));
+    }
+}
@@ -0,0 +1,82 @@
+package co.franquicias.mongodb.config;
+
+import co.franquicias.mongodb.entity.ProductoData;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Con el template real de {@link ConectionConfig} (sin crear índices a mano) el {@link CreadorIndices}
+ * deja los índices declarados en las entidades y {@code $text} funciona. Requiere Docker; sin él se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringJUnitConfig(classes = {ConectionConfig.class, CreadorIndices.class, CreadorIndicesTest.Conversiones.class})
+class CreadorIndicesTest {
+
+    /** Sin Spring Boot el contexto no convierte {@code PT60S} a {@link java.time.Duration} por su cuenta. */
+    @Configuration
+    static class Conversiones {
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+    }
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGO::getConnectionString);
+        registry.add("spring.data.mongodb.database", () -> "indices");
+    }
+
+    @Resource ReactiveMongoTemplate template;
+    @Resource CreadorIndices creador;
+
+    private List<String> indices(String coleccion) {
+        return template.indexOps(coleccion).getIndexInfo().map(IndexInfo::getName).collectList().block();
+    }
+
+    @Test
+    @DisplayName("crea los índices declarados al levantar el contexto; $text y el índice del reporte de máximo stock quedan disponibles")
+    void creaIndicesDeclarados() {
+        // el contexto ya los creó al arrancar; crear() es idempotente
+        StepVerifier.create(creador.crear()).verifyComplete();
+        // idempotente: un segundo arranque no falla
+        StepVerifier.create(creador.crear()).verifyComplete();
+
+        List<String> productos = indices("productos");
+        Assertions.assertTrue(productos.contains("ix_producto_sucursal_stock"), productos.toString());
+        Assertions.assertTrue(productos.contains("ux_producto_sucursal_nombre"), productos.toString());
+        Assertions.assertTrue(indices("sucursales").contains("ux_sucursal_franquicia_nombre"));
+        Assertions.assertTrue(indices("franquicias").contains("nombre"));
+        Assertions.assertEquals(3, indices("productos_view").size(), "_id, sucursalId y franquiciaId");
+
+        Instant ahora = Instant.now();
+        template.insert(ProductoData.builder().id("p1").sucursalId("s1").nombre("Café Molido").stock(1)
+                .createdAt(ahora).updatedAt(ahora).build()).block();
+        StepVerifier.create(template.find(TextQuery.queryText(TextCriteria.forDefaultLanguage().matching("cafe")), ProductoData.class))
+                .expectNextMatches(p -> "p1".equals(p.getId()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,104 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActualizadorStockLoteTest {
+
+    @Mock ProductoAdapter productoAdapter;
+    @Mock ProductoViewProjection productoView;
+
+    ActualizadorStockLote actualizador;
+
+    @BeforeEach
+    void setUp() {
+        actualizador = new ActualizadorStockLote(productoAdapter, productoView, 2);
+    }
+
+    private ActualizacionStock cambio(String pId, int stock) {
+        return ActualizacionStock.builder().productoId(pId).sucursalId("s1").stock(stock).build();
+    }
+
+    private ResultadoActualizacion res(ActualizacionStock c, ResultadoActualizacion.Estado estado) {
+        return ResultadoActualizacion.de(c, estado, null);
+    }
+
+    @Test
+    @DisplayName("aplicar: un bulkWrite por chunk, en orden; la vista solo con los ACTUALIZADO")
+    void aplicar_porChunks() {
+        ActualizacionStock c1 = cambio("p1", 5), c2 = cambio("p2", 6), c3 = cambio("p3", 7);
+
+        when(productoAdapter.actualizarStockLote(List.of(c1, c2)))
+                .thenReturn(Flux.just(res(c1, ResultadoActualizacion.Estado.ACTUALIZADO),
+                        res(c2, ResultadoActualizacion.Estado.NO_ENCONTRADO)));
+        when(productoAdapter.actualizarStockLote(List.of(c3)))
+                .thenReturn(Flux.just(res(c3, ResultadoActualizacion.Estado.ACTUALIZADO)));
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        StepVerifier.create(actualizador.aplicar(Flux.just(c1, c2, c3)))
+                .expectNextMatches(r -> r.getProductoId().equals("p1"))
+                .expectNextMatches(r -> r.getProductoId().equals("p2"))
+                .expectNextMatches(r -> r.getProductoId().equals("p3"))
+                .verifyComplete();
+
+        verify(productoView).actualizarStockLote(List.of(c1));
+        verify(productoView).actualizarStockLote(List.of(c3));
+    }
+
+    @Test
+    @DisplayName("aplicar: ítems en ERROR (bulk caído, quizá aplicado en parte) => sus filas de la vista se recalculan")
+    void aplicar_errorRefrescaVista() {
+        ActualizacionStock c1 = cambio("p1", 5), c2 = cambio("p2", 6);
+        when(productoAdapter.actualizarStockLote(List.of(c1, c2)))
+                .thenReturn(Flux.just(res(c1, ResultadoActualizacion.Estado.ERROR),
+                        res(c2, ResultadoActualizacion.Estado.ERROR)));
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+        when(productoView.refrescarProductos(anyCollection())).thenReturn(Mono.empty());
+
+        StepVerifier.create(actualizador.aplicar(Flux.just(c1, c2)))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        verify(productoView).actualizarStockLote(List.of());
+        verify(productoView).refrescarProductos(Set.of("p1", "p2"));
+    }
+
+    @Test
+    @DisplayName("aplicar: un fallo al sincronizar productos_view no interrumpe el reporte")
+    void aplicar_fallaVista() {
+        ActualizacionStock c1 = cambio("p1", 5);
+        when(productoAdapter.actualizarStockLote(List.of(c1)))
+                .thenReturn(Flux.just(res(c1, ResultadoActualizacion.Estado.ACTUALIZADO)));
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.error(new RuntimeException("mongo down")));
+
+        StepVerifier.create(actualizador.aplicar(Flux.just(c1)))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("constructor: chunk-size debe ser positivo")
+    void chunkInvalido() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ActualizadorStockLote(productoAdapter, productoView, 0));
+    }
+}
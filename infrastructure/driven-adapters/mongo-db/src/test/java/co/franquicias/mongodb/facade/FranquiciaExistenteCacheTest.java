@@ -0,0 +1,93 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.mongodb.adapter.FranquiciaAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FranquiciaExistenteCacheTest {
+
+    @Mock FranquiciaAdapter franquiciaAdapter;
+
+    AtomicLong ahora;
+    FranquiciaExistenteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ahora = new AtomicLong();
+        cache = new FranquiciaExistenteCache(franquiciaAdapter, Duration.ofSeconds(10), 2, ahora::get);
+    }
+
+    private Franquicia franq(String id) {
+        Franquicia f = new Franquicia();
+        f.setId(id);
+        return f;
+    }
+
+    @Test
+    @DisplayName("existe: consulta una vez y responde de la caché hasta que vence el TTL")
+    void aciertoYExpiracion() {
+        when(franquiciaAdapter.obtenerPorId("f1")).thenReturn(Mono.just(franq("f1")));
+
+        StepVerifier.create(cache.existe("f1")).expectNext(true).verifyComplete();
+        StepVerifier.create(cache.existe("f1")).expectNext(true).verifyComplete();
+        verify(franquiciaAdapter, times(1)).obtenerPorId("f1");
+
+        ahora.addAndGet(Duration.ofSeconds(11).toNanos());
+        StepVerifier.create(cache.existe("f1")).expectNext(true).verifyComplete();
+        verify(franquiciaAdapter, times(2)).obtenerPorId("f1");
+    }
+
+    @Test
+    @DisplayName("existe: franquicia inexistente => false y no se cachea")
+    void ausenteNoSeCachea() {
+        when(franquiciaAdapter.obtenerPorId("fx")).thenReturn(Mono.empty());
+
+        StepVerifier.create(cache.existe("fx")).expectNext(false).verifyComplete();
+        StepVerifier.create(cache.existe("fx")).expectNext(false).verifyComplete();
+        verify(franquiciaAdapter, times(2)).obtenerPorId("fx");
+        Assertions.assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("registrar / invalidar: alta sin consulta, baja vuelve a consultar; al llenarse desaloja sin vaciarse")
+    void registrarEInvalidar() {
+        cache.registrar("f1");
+        StepVerifier.create(cache.existe("f1")).expectNext(true).verifyComplete();
+        verifyNoInteractions(franquiciaAdapter);
+
+        cache.invalidar("f1");
+        when(franquiciaAdapter.obtenerPorId("f1")).thenReturn(Mono.empty());
+        StepVerifier.create(cache.existe("f1")).expectNext(false).verifyComplete();
+
+        cache.registrar("a");
+        cache.registrar("b");
+        cache.registrar("c");
+        Assertions.assertEquals(2, cache.tamano());
+
+        cache.invalidarTodo();
+        Assertions.assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("constructor: ttl y max-entries deben ser positivos")
+    void configuracionInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new FranquiciaExistenteCache(franquiciaAdapter, Duration.ZERO, 10));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new FranquiciaExistenteCache(franquiciaAdapter, Duration.ofSeconds(1), 0));
+    }
+}
@@ -0,0 +1,118 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FranquiciaTreeHydratorTest {
+
+    @Mock SucursalAdapter sucursalAdapter;
+    @Mock ProductoAdapter productoAdapter;
+
+    FranquiciaTreeHydrator hydrator;
+
+    @BeforeEach
+    void setUp() {
+        hydrator = new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 2, true);
+    }
+
+    private Franquicia franq(String id) {
+        Franquicia f = new Franquicia();
+        f.setId(id);
+        f.setNombre("F-" + id);
+        return f;
+    }
+    private Sucursal suc(String id, String fid) {
+        Sucursal s = new Sucursal();
+        s.setId(id);
+        s.setFranquiciaId(fid);
+        s.setNombre("S-" + id);
+        return s;
+    }
+    private Producto prod(String id, String sid) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setSucursalId(sid);
+        p.setNombre("P-" + id);
+        return p;
+    }
+
+    @Test
+    @DisplayName("hydrateFranquicias: una consulta $in por ventana y por nivel, conservando el orden")
+    void hydrateFranquicias_porVentanas() {
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1", "f2")))
+                .thenReturn(Flux.just(suc("s1", "f1"), suc("s2", "f2"), suc("s3", "f1")));
+        when(sucursalAdapter.listarPorFranquicias(List.of("f3")))
+                .thenReturn(Flux.empty());
+        when(productoAdapter.listarPorSucursales(List.of("s1", "s2")))
+                .thenReturn(Flux.just(prod("p1", "s1"), prod("p2", "s1")));
+        when(productoAdapter.listarPorSucursales(List.of("s3")))
+                .thenReturn(Flux.just(prod("p3", "s3")));
+
+        StepVerifier.create(hydrator.hydrateFranquicias(Flux.just(franq("f1"), franq("f2"), franq("f3")), true))
+                .assertNext(f -> {
+                    Assertions.assertEquals("f1", f.getId());
+                    Assertions.assertEquals(List.of("s1", "s3"), f.getSucursales().stream().map(Sucursal::getId).toList());
+                    Assertions.assertEquals(2, f.getSucursales().get(0).getProductos().size());
+                    Assertions.assertEquals(1, f.getSucursales().get(1).getProductos().size());
+                })
+                .assertNext(f -> {
+                    Assertions.assertEquals("f2", f.getId());
+                    Assertions.assertEquals(1, f.getSucursales().size());
+                    Assertions.assertTrue(f.getSucursales().get(0).getProductos().isEmpty());
+                })
+                .assertNext(f -> {
+                    Assertions.assertEquals("f3", f.getId());
+                    Assertions.assertTrue(f.getSucursales().isEmpty());
+                })
+                .verifyComplete();
+
+        verify(sucursalAdapter, times(2)).listarPorFranquicias(anyCollection());
+        verify(productoAdapter, times(2)).listarPorSucursales(anyCollection());
+    }
+
+    @Test
+    @DisplayName("hydrateFranquicias(includeProductos=false): no consulta productos")
+    void hydrateFranquicias_sinProductos() {
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1"))).thenReturn(Flux.just(suc("s1", "f1")));
+
+        StepVerifier.create(hydrator.hydrateFranquicias(Flux.just(franq("f1")), false))
+                .expectNextMatches(f -> f.getSucursales().size() == 1)
+                .verifyComplete();
+
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("hydrateSucursales: flujo vacío no consulta Mongo")
+    void hydrateSucursales_vacio() {
+        StepVerifier.create(hydrator.hydrateSucursales(Flux.empty()))
+                .verifyComplete();
+
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("constructor: window-size debe ser positivo")
+    void windowSizeInvalido() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 0, true));
+    }
+}
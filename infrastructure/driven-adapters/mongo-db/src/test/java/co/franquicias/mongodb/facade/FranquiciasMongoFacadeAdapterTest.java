@@ -2,19 +2,38 @@ package co.franquicias.mongodb.facade;
 
 import co.franquicias.model.OperacionesFranquiciaPort;
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.producto.StockInsuficienteException;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.mongodb.adapter.FranquiciaAdapter;
 import co.franquicias.mongodb.adapter.ProductoAdapter;
 import co.franquicias.mongodb.adapter.SucursalAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -26,12 +45,35 @@ class FranquiciasMongoFacadeAdapterTest {
     @Mock FranquiciaAdapter franquiciaAdapter;
     @Mock SucursalAdapter sucursalAdapter;
     @Mock ProductoAdapter productoAdapter;
+    @Mock ProductoViewProjection productoView;
 
+    ProductoNgramIndex ngramIndex;
+    SucursalFranquiciaCache sucursalFranquicia;
+    FranquiciaExistenteCache franquiciasExistentes;
+    StockWriteBehind writeBehind;
     OperacionesFranquiciaPort facade;
 
     @BeforeEach
     void setUp() {
-        facade = new FranquiciasMongoFacadeAdapter(franquiciaAdapter, sucursalAdapter, productoAdapter);
+        ngramIndex = new ProductoNgramIndex(true, 8);
+        sucursalFranquicia = new SucursalFranquiciaCache(sucursalAdapter, new SimpleMeterRegistry(), Duration.ofMinutes(5), 100);
+        franquiciasExistentes = new FranquiciaExistenteCache(franquiciaAdapter, Duration.ofMinutes(5), 100);
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, new SimpleMeterRegistry(),
+                false, 100, Duration.ofSeconds(1), 100);
+        facade = new FranquiciasMongoFacadeAdapter(franquiciaAdapter, sucursalAdapter, productoAdapter,
+                new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 100, true), productoView, ngramIndex,
+                sucursalFranquicia, franquiciasExistentes,
+                new ActualizadorStockLote(productoAdapter, productoView, 100),
+                new ImportadorProductos(productoAdapter, productoView, ngramIndex, sucursalFranquicia, 100),
+                writeBehind);
+
+        lenient().when(productoView.refrescarProducto(anyString())).thenReturn(Mono.empty());
+        lenient().when(productoView.refrescarSucursal(anyString())).thenReturn(Mono.empty());
+        lenient().when(productoView.actualizarStock(anyString(), anyInt())).thenReturn(Mono.empty());
+        lenient().when(productoView.renombrarFranquicia(anyString(), anyString())).thenReturn(Mono.empty());
+        lenient().when(productoView.eliminarProducto(anyString())).thenReturn(Mono.empty());
+        lenient().when(productoView.eliminarPorSucursal(anyString())).thenReturn(Mono.empty());
+        lenient().when(productoView.eliminarPorFranquicia(anyString())).thenReturn(Mono.empty());
     }
 
     private Franquicia franq(String id, String nombre) {
@@ -69,6 +111,41 @@ class FranquiciasMongoFacadeAdapterTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("crearFranquicia + agregarSucursal: la franquicia recién creada no se vuelve a consultar")
+    void agregarSucursal_padreDesdeCache() {
+        when(franquiciaAdapter.crearFranquicia("F1")).thenReturn(Mono.just(franq("f1","F1")));
+        when(sucursalAdapter.crear("f1", "Norte")).thenReturn(Mono.just(suc("s1","f1","Norte")));
+        when(sucursalAdapter.crear("f1", "Sur")).thenReturn(Mono.just(suc("s2","f1","Sur")));
+        when(productoAdapter.crear("s1", "P", 1)).thenReturn(Mono.just(prod("p1","s1","P",1)));
+
+        StepVerifier.create(facade.crearFranquicia("F1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(facade.agregarSucursal("f1", "Norte")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(facade.agregarSucursal("f1", "Sur")).expectNextCount(1).verifyComplete();
+        // la pertenencia de la sucursal nueva también queda registrada
+        StepVerifier.create(facade.agregarProducto("f1", "s1", "P", 1)).expectNextCount(1).verifyComplete();
+
+        verify(franquiciaAdapter, never()).obtenerPorId(anyString());
+        verify(sucursalAdapter, never()).obtenerPorId(anyString());
+    }
+
+    @Test
+    @DisplayName("agregarSucursal: franquicia inexistente => IAE sin insertar; duplicado => error del adapter")
+    void agregarSucursal_errores() {
+        when(franquiciaAdapter.obtenerPorId("fx")).thenReturn(Mono.empty());
+        StepVerifier.create(facade.agregarSucursal("fx", "Norte"))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("Franquicia no existe"))
+                .verify();
+        verify(sucursalAdapter, never()).crear(anyString(), anyString());
+
+        when(franquiciaAdapter.obtenerPorId("f1")).thenReturn(Mono.just(franq("f1","F1")));
+        when(sucursalAdapter.crear("f1", "Norte"))
+                .thenReturn(Mono.error(new IllegalStateException("Sucursal ya existe en la franquicia")));
+        StepVerifier.create(facade.agregarSucursal("f1", "Norte"))
+                .expectErrorMatches(e -> e instanceof IllegalStateException && e.getMessage().contains("ya existe"))
+                .verify();
+    }
+
     @Test
     @DisplayName("obtenerFranquiciaPorNombre: con hidratación de sucursales y productos")
     void obtenerFranquiciaPorNombre_hidratada() {
@@ -80,9 +157,8 @@ class FranquiciasMongoFacadeAdapterTest {
         Producto p3 = prod("p3","s2","C",7);
 
         when(franquiciaAdapter.obtenerPorNombre("F1")).thenReturn(Mono.just(base));
-        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.just(s1, s2));
-        when(productoAdapter.listarPorSucursal("s1")).thenReturn(Flux.just(p1, p2));
-        when(productoAdapter.listarPorSucursal("s2")).thenReturn(Flux.just(p3));
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1"))).thenReturn(Flux.just(s1, s2));
+        when(productoAdapter.listarPorSucursales(List.of("s1", "s2"))).thenReturn(Flux.just(p1, p2, p3));
 
         StepVerifier.create(facade.obtenerFranquiciaPorNombre("F1"))
                 .assertNext(f -> {
@@ -109,28 +185,53 @@ class FranquiciasMongoFacadeAdapterTest {
     }
 
     @Test
-    @DisplayName("obtenerFranquicias(verProductos=false): hidrata solo sucursales")
+    @DisplayName("obtenerFranquicias(verProductos=false): hidrata solo sucursales con una consulta $in")
     void obtenerFranquicias_sinProductos() {
         Franquicia f1 = franq("f1","F1");
         Franquicia f2 = franq("f2","F2");
         when(franquiciaAdapter.obtenerFranquicias()).thenReturn(Flux.just(f1, f2));
-        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.just(suc("s1","f1","A")));
-        when(sucursalAdapter.listarPorFranquicia("f2")).thenReturn(Flux.empty());
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1", "f2"))).thenReturn(Flux.just(suc("s1","f1","A")));
 
         StepVerifier.create(facade.obtenerFranquicias(false))
                 .expectNextMatches(f -> f.getId().equals("f1") && f.getSucursales().size() == 1 &&
                         (f.getSucursales().get(0).getProductos() == null || f.getSucursales().get(0).getProductos().isEmpty()))
                 .expectNextMatches(f -> f.getId().equals("f2") && f.getSucursales().isEmpty())
                 .verifyComplete();
+
+        verifyNoInteractions(productoAdapter);
     }
 
     @Test
-    @DisplayName("obtenerFranquicias(verProductos=true): hidrata sucursales + productos")
+    @DisplayName("obtenerFranquicias(verProductos=true) sin $lookup: hidrata por lotes $in")
+    void obtenerFranquicias_conProductos_porLotes() {
+        facade = new FranquiciasMongoFacadeAdapter(franquiciaAdapter, sucursalAdapter, productoAdapter,
+                new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 100, false), productoView, ngramIndex,
+                sucursalFranquicia, franquiciasExistentes,
+                new ActualizadorStockLote(productoAdapter, productoView, 100),
+                new ImportadorProductos(productoAdapter, productoView, ngramIndex, sucursalFranquicia, 100),
+                writeBehind);
+        when(franquiciaAdapter.obtenerFranquicias()).thenReturn(Flux.just(franq("f1","F1")));
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1"))).thenReturn(Flux.just(suc("s1","f1","A")));
+        when(productoAdapter.listarPorSucursales(List.of("s1"))).thenReturn(Flux.just(prod("p1","s1","P",2)));
+
+        StepVerifier.create(facade.obtenerFranquicias(true))
+                .assertNext(f -> {
+                    Assertions.assertEquals(1, f.getSucursales().size());
+                    Assertions.assertEquals(1, f.getSucursales().get(0).getProductos().size());
+                })
+                .verifyComplete();
+
+        verify(franquiciaAdapter, never()).obtenerFranquiciasHidratadas();
+    }
+
+    @Test
+    @DisplayName("obtenerFranquicias(verProductos=true): usa la agregación hidratada, sin N+1")
     void obtenerFranquicias_conProductos() {
+        Sucursal s1 = suc("s1","f1","A");
+        s1.setProductos(List.of(prod("p1","s1","P",2)));
         Franquicia f1 = franq("f1","F1");
-        when(franquiciaAdapter.obtenerFranquicias()).thenReturn(Flux.just(f1));
-        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.just(suc("s1","f1","A")));
-        when(productoAdapter.listarPorSucursal("s1")).thenReturn(Flux.just(prod("p1","s1","P",2)));
+        f1.setSucursales(List.of(s1));
+        when(franquiciaAdapter.obtenerFranquiciasHidratadas()).thenReturn(Flux.just(f1));
 
         StepVerifier.create(facade.obtenerFranquicias(true))
                 .assertNext(f -> {
@@ -139,6 +240,48 @@ class FranquiciasMongoFacadeAdapterTest {
                     Assertions.assertEquals(1, f.getSucursales().get(0).getProductos().size());
                 })
                 .verifyComplete();
+
+        verify(franquiciaAdapter, never()).obtenerFranquicias();
+        verifyNoInteractions(sucursalAdapter, productoAdapter);
+    }
+
+    @Test
+    @DisplayName("obtenerFranquicias(verProductos=true): si el $lookup supera 16MB sigue por lotes $in sin repetir")
+    void obtenerFranquicias_lookupDemasiadoGrande() {
+        Franquicia f1 = franq("f1","F1");
+        f1.setSucursales(List.of());
+        MongoCommandException tooLarge = new MongoCommandException(
+                new BsonDocument("ok", new BsonInt32(0))
+                        .append("code", new BsonInt32(10334))
+                        .append("codeName", new BsonString("BSONObjectTooLarge"))
+                        .append("errmsg", new BsonString("BSONObj size: 17000000 is invalid")),
+                new ServerAddress());
+        when(franquiciaAdapter.obtenerFranquiciasHidratadas()).thenReturn(Flux.concat(
+                Flux.just(f1), Flux.error(new UncategorizedMongoDbException("aggregate", tooLarge))));
+        when(franquiciaAdapter.obtenerFranquicias()).thenReturn(Flux.just(franq("f1","F1"), franq("f2","F2")));
+        when(sucursalAdapter.listarPorFranquicias(List.of("f2"))).thenReturn(Flux.just(suc("s2","f2","B")));
+        when(productoAdapter.listarPorSucursales(List.of("s2"))).thenReturn(Flux.just(prod("p2","s2","P",3)));
+
+        StepVerifier.create(facade.obtenerFranquicias(true))
+                .assertNext(f -> Assertions.assertEquals("f1", f.getId()))
+                .assertNext(f -> {
+                    Assertions.assertEquals("f2", f.getId());
+                    Assertions.assertEquals(1, f.getSucursales().get(0).getProductos().size());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("obtenerFranquicias(verProductos=true): otros errores del $lookup se propagan")
+    void obtenerFranquicias_lookupOtroError() {
+        when(franquiciaAdapter.obtenerFranquiciasHidratadas())
+                .thenReturn(Flux.error(new UncategorizedMongoDbException("timeout", null)));
+
+        StepVerifier.create(facade.obtenerFranquicias(true))
+                .expectError(UncategorizedMongoDbException.class)
+                .verify();
+
+        verify(franquiciaAdapter, never()).obtenerFranquicias();
     }
 
     @Test
@@ -146,7 +289,7 @@ class FranquiciasMongoFacadeAdapterTest {
     void obtenerFranquicia_porId() {
         Franquicia base = franq("f1","F1");
         when(franquiciaAdapter.obtenerPorId("f1")).thenReturn(Mono.just(base));
-        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.empty());
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1"))).thenReturn(Flux.empty());
 
         StepVerifier.create(facade.obtenerFranquicia("f1"))
                 .expectNextMatches(f -> f.getId().equals("f1") && f.getSucursales().isEmpty())
@@ -170,6 +313,9 @@ class FranquiciasMongoFacadeAdapterTest {
         StepVerifier.create(facade.actualizarFranquicia("f1", franq(null,"N")))
                 .expectNextMatches(f -> f.getNombre().equals("N"))
                 .verifyComplete();
+
+        verify(productoView).eliminarPorFranquicia("f1");
+        verify(productoView).renombrarFranquicia("f1", "N");
     }
 
     // ================= Sucursales =================
@@ -196,7 +342,7 @@ class FranquiciasMongoFacadeAdapterTest {
     @DisplayName("obtenerSucursalPorFranquiciaId: hidrata; si repo vacío valida existencia de franquicia")
     void obtenerSucursalPorFranquiciaId() {
         when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.just(suc("s1","f1","A")));
-        when(productoAdapter.listarPorSucursal("s1")).thenReturn(Flux.just(prod("p1","s1","P",1)));
+        when(productoAdapter.listarPorSucursales(List.of("s1"))).thenReturn(Flux.just(prod("p1","s1","P",1)));
 
         StepVerifier.create(facade.obtenerSucursalPorFranquiciaId("f1"))
                 .expectNextMatches(s -> s.getId().equals("s1") && s.getProductos().size() == 1)
@@ -226,6 +372,9 @@ class FranquiciasMongoFacadeAdapterTest {
         StepVerifier.create(facade.actualizarSucursal("s1", suc(null,null,"N")))
                 .expectNextMatches(s -> s.getNombre().equals("N"))
                 .verifyComplete();
+
+        verify(productoView).eliminarPorSucursal("s1");
+        verify(productoView).refrescarSucursal("s1");
     }
 
     // ================= Productos =================
@@ -239,6 +388,7 @@ class FranquiciasMongoFacadeAdapterTest {
         StepVerifier.create(facade.agregarProducto("f1","s1","P",5))
                 .expectNextMatches(p -> p.getId().equals("p1") && p.getStock()==5)
                 .verifyComplete();
+        verify(productoView).refrescarProducto("p1");
 
         when(sucursalAdapter.obtenerPorId("sx")).thenReturn(Mono.empty());
         StepVerifier.create(facade.agregarProducto("f1","sx","P",1))
@@ -259,7 +409,7 @@ class FranquiciasMongoFacadeAdapterTest {
     void eliminarYActualizarStock() {
         when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
         when(productoAdapter.eliminarPorId("p1")).thenReturn(Mono.just("ok"));
-        when(productoAdapter.actualizarStock("p1", 9)).thenReturn(Mono.just(prod("p1","s1","P",9)));
+        when(productoAdapter.actualizarStock("p1", "s1", 9)).thenReturn(Mono.just(prod("p1","s1","P",9)));
 
         StepVerifier.create(facade.eliminarProducto("f1","s1","p1"))
                 .verifyComplete();
@@ -271,6 +421,85 @@ class FranquiciasMongoFacadeAdapterTest {
         StepVerifier.create(facade.eliminarProducto("f1","s2","p1"))
                 .expectError(IllegalStateException.class)
                 .verify();
+
+        verify(productoView, times(1)).eliminarProducto("p1");
+        verify(productoView).actualizarStock("p1", 9);
+        // la pertenencia de s1 se resolvió una sola vez y luego salió de la caché
+        verify(sucursalAdapter, times(1)).obtenerPorId("s1");
+    }
+
+    @Test
+    @DisplayName("actualizarStock: con la pertenencia en caché es un solo findAndModify; producto ajeno => no encontrado")
+    void actualizarStock_unRoundTrip() {
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
+        when(productoAdapter.actualizarStock(anyString(), eq("s1"), anyInt()))
+                .thenAnswer(inv -> "p1".equals(inv.getArgument(0))
+                        ? Mono.just(prod("p1","s1","P",inv.<Integer>getArgument(2)))
+                        : Mono.error(new IllegalArgumentException("Producto no encontrado")));
+
+        for (int stock = 1; stock <= 3; stock++) {
+            StepVerifier.create(facade.actualizarStock("f1","s1","p1",stock)).expectNextCount(1).verifyComplete();
+        }
+        StepVerifier.create(facade.actualizarStock("f1","s1","pX",1))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("Producto no encontrado"))
+                .verify();
+
+        verify(sucursalAdapter, times(1)).obtenerPorId("s1");
+        verify(productoAdapter, times(4)).actualizarStock(anyString(), eq("s1"), anyInt());
+        verify(productoAdapter, never()).findById(anyString());
+    }
+
+    @Test
+    @DisplayName("ajustarStock: valida pertenencia, delega el $inc y sincroniza la vista con el stock nuevo")
+    void ajustarStock() {
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
+        when(productoAdapter.ajustarStock("p1", "s1", -2)).thenReturn(Mono.just(prod("p1","s1","P",8)));
+        when(productoAdapter.ajustarStock("p1", "s1", -20))
+                .thenReturn(Mono.error(new StockInsuficienteException("p1", -20)));
+
+        StepVerifier.create(facade.ajustarStock("f1","s1","p1",-2))
+                .expectNextMatches(p -> p.getStock() == 8)
+                .verifyComplete();
+        StepVerifier.create(facade.ajustarStock("f1","s1","p1",-20))
+                .expectError(StockInsuficienteException.class)
+                .verify();
+        StepVerifier.create(facade.ajustarStock("fX","s1","p1",-2))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(productoView).actualizarStock("p1", 8);
+        verify(productoAdapter, times(2)).ajustarStock(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("actualizarSucursal / eliminarSucursalPorId: invalidan la pertenencia cacheada")
+    void escriturasSucursal_invalidanCache() {
+        when(sucursalAdapter.obtenerPorId("s1"))
+                .thenReturn(Mono.just(suc("s1","f1","S1")), Mono.just(suc("s1","f2","S1")));
+        when(sucursalAdapter.actualizarSucursal(eq("s1"), any())).thenReturn(Mono.just(suc("s1","f2","S1")));
+        when(productoAdapter.actualizarStock("p1", "s1", 5)).thenReturn(Mono.just(prod("p1","s1","P",5)));
+
+        StepVerifier.create(facade.actualizarStock("f1","s1","p1",5)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(facade.actualizarSucursal("s1", suc(null,"f2",null))).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(facade.actualizarStock("f1","s1","p1",5))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(facade.actualizarStock("f2","s1","p1",5)).expectNextCount(1).verifyComplete();
+
+        verify(sucursalAdapter, times(2)).obtenerPorId("s1");
+    }
+
+    @Test
+    @DisplayName("escrituras: un fallo al mantener productos_view no revierte ni propaga")
+    void fallaProyeccionNoPropaga() {
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
+        when(productoAdapter.actualizarStock("p1", "s1", 3)).thenReturn(Mono.just(prod("p1","s1","P",3)));
+        when(productoView.actualizarStock("p1", 3)).thenReturn(Mono.error(new RuntimeException("mongo down")));
+
+        StepVerifier.create(facade.actualizarStock("f1","s1","p1",3))
+                .expectNextMatches(p -> p.getStock()==3)
+                .verifyComplete();
     }
 
     @Test
@@ -317,72 +546,363 @@ class FranquiciasMongoFacadeAdapterTest {
         StepVerifier.create(facade.actualizarProducto("p1", prod(null,null,"N",2)))
                 .expectNextMatches(p -> p.getNombre().equals("N"))
                 .verifyComplete();
+
+        verify(productoView).refrescarProducto("p1");
     }
 
     @Test
-    @DisplayName("buscarProductos: trimea parámetro")
+    @DisplayName("buscarProductos: trimea parámetro y usa la búsqueda de texto con límite")
     void buscarProductos() {
-        when(productoAdapter.buscarPorNombreLike("abc")).thenReturn(Flux.just(prod("p1","s1","abc",1)));
-        when(productoAdapter.buscarPorNombreLike("")).thenReturn(Flux.empty());
+        when(productoAdapter.buscarPorTexto("abc", 20)).thenReturn(Flux.just(prod("p1","s1","abc",1)));
+        when(productoAdapter.buscarPorTexto("", 20)).thenReturn(Flux.empty());
 
-        StepVerifier.create(facade.buscarProductos("  abc  "))
+        StepVerifier.create(facade.buscarProductos("  abc  ", 20))
                 .expectNextCount(1).verifyComplete();
-        StepVerifier.create(facade.buscarProductos(null))
+        StepVerifier.create(facade.buscarProductos(null, 20))
                 .verifyComplete();
     }
 
     @Test
-    @DisplayName("productoGlobal: arma mapa combinando producto y sucursal")
-    void productoGlobal() {
-        Producto p = prod("p1","s1","A",9);
-        Sucursal s = suc("s1","f1","S1");
+    @DisplayName("buscarProductos: con el índice n-gram listo rankea en memoria y lee los productos por id")
+    void buscarProductos_ngram() {
+        ngramIndex.indexar(prod("p1","s1","Café Molido",3));
+        ngramIndex.indexar(prod("p2","s1","Molinillo",1));
+        ngramIndex.marcarListo();
+        when(productoAdapter.listarPorIds(List.of("p2", "p1")))
+                .thenReturn(Flux.just(prod("p1","s1","Café Molido",7), prod("p2","s1","Molinillo",1)));
+
+        StepVerifier.create(facade.buscarProductos("moli", 10))
+                .expectNextMatches(p -> p.getId().equals("p2"))
+                .expectNextMatches(p -> p.getId().equals("p1") && p.getStock() == 7)
+                .verifyComplete();
+        verify(productoAdapter, never()).buscarPorTexto(anyString(), anyInt());
+    }
 
-        when(productoAdapter.findById("p1")).thenReturn(Mono.just(p));
-        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(s));
+    @Test
+    @DisplayName("sugerirProductos: sólo desde el índice n-gram; sin índice listo no consulta Mongo")
+    void sugerirProductos() {
+        ngramIndex.indexar(prod("p1","s1","Leche",3));
+
+        StepVerifier.create(facade.sugerirProductos("lehce", 5)).verifyComplete();
+
+        verifyNoInteractions(productoAdapter);
+
+        ngramIndex.marcarListo();
+        when(productoAdapter.listarPorIds(List.of("p1"))).thenReturn(Flux.just(prod("p1","s1","Leche",3)));
+        StepVerifier.create(facade.sugerirProductos("lehce", 5))
+                .expectNextMatches(p -> p.getId().equals("p1"))
+                .verifyComplete();
+        verify(productoAdapter, never()).buscarPorTexto(anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("escrituras de producto: mantienen el índice n-gram")
+    void escrituras_mantienenNgram() {
+        ngramIndex.marcarListo();
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
+        when(productoAdapter.crear("s1","Leche",5)).thenReturn(Mono.just(prod("p1","s1","Leche",5)));
+        when(productoAdapter.eliminarPorId("p1")).thenReturn(Mono.just("ok"));
+
+        StepVerifier.create(facade.agregarProducto("f1","s1","Leche",5)).expectNextCount(1).verifyComplete();
+        Assertions.assertEquals(1, ngramIndex.buscar("lec", 5).size());
+
+        StepVerifier.create(facade.eliminarProducto("f1","s1","p1")).verifyComplete();
+        Assertions.assertTrue(ngramIndex.buscar("lec", 5).isEmpty());
+    }
+
+    private Map<String, Object> vista(String pId, String sId, String fId, String fNombre) {
+        Map<String, Object> m = new java.util.HashMap<>();
+        m.put("productoId", pId);
+        m.put("productoNombre", "P-" + pId);
+        m.put("stock", 9);
+        if (sId != null) {
+            m.put("sucursalId", sId);
+            m.put("sucursalNombre", "S-" + sId);
+            m.put("franquiciaId", fId);
+            m.put("franquiciaNombre", fNombre);
+        }
+        return m;
+    }
+
+    @Test
+    @DisplayName("productoGlobal: lectura por _id sobre productos_view")
+    void productoGlobal() {
+        when(productoView.obtener("p1")).thenReturn(Mono.just(vista("p1","s1","f1","F1")));
 
         StepVerifier.create(facade.productoGlobal("p1"))
                 .assertNext(m -> {
                     Assertions.assertEquals("p1", m.get("productoId"));
                     Assertions.assertEquals("s1", m.get("sucursalId"));
                     Assertions.assertEquals("f1", m.get("franquiciaId"));
+                    Assertions.assertEquals("F1", m.get("franquiciaNombre"));
                     Assertions.assertEquals(9, m.get("stock"));
                 })
                 .verifyComplete();
 
-        when(productoAdapter.findById("px")).thenReturn(Mono.empty());
+        when(productoView.obtener("px")).thenReturn(Mono.empty());
         StepVerifier.create(facade.productoGlobal("px"))
                 .expectErrorMatches(e -> e instanceof IllegalArgumentException &&
                         e.getMessage().contains("Producto no encontrado"))
                 .verify();
 
-        when(productoAdapter.findById("p2")).thenReturn(Mono.just(prod("p2","sX","B",1)));
-        when(sucursalAdapter.obtenerPorId("sX")).thenReturn(Mono.empty());
-        StepVerifier.create(facade.productoGlobal("p2"))
-                .expectErrorMatches(e -> e instanceof IllegalStateException &&
-                        e.getMessage().contains("Sucursal del producto no existe"))
-                .verify();
+        verifyNoInteractions(productoAdapter, sucursalAdapter);
     }
 
     @Test
-    @DisplayName("todosProductosViewRaw: vista combinada producto+sucursal")
+    @DisplayName("todosProductosViewRaw: streaming desde productos_view, sin consultas por producto")
     void todosProductosViewRaw() {
-        when(productoAdapter.findAll()).thenReturn(Flux.just(
-                prod("p1","s1","A",1),
-                prod("p2","s2","B",2)
+        when(productoView.listar()).thenReturn(Flux.just(
+                vista("p1","s1","f1","F1"),
+                vista("p2","s2","f2","F2")
         ));
-        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","S1")));
-        when(sucursalAdapter.obtenerPorId("s2")).thenReturn(Mono.just(suc("s2","f2","S2")));
 
         StepVerifier.create(facade.todosProductosViewRaw())
                 .expectNextMatches(o -> {
                     Map<?,?> m = (Map<?,?>) o;
-                    return m.get("productoId").equals("p1") && m.get("sucursalId").equals("s1");
+                    return m.get("productoId").equals("p1") && m.get("sucursalId").equals("s1")
+                            && m.get("franquiciaNombre").equals("F1");
                 })
                 .expectNextMatches(o -> {
                     Map<?,?> m = (Map<?,?>) o;
                     return m.get("productoId").equals("p2") && m.get("sucursalId").equals("s2");
                 })
                 .verifyComplete();
+
+        verifyNoInteractions(sucursalAdapter);
     }
 
+    @Test
+    @DisplayName("maxStockPorSucursal: un producto por sucursal desde la agregación; sucursal vacía con producto nulo")
+    void maxStockPorSucursal() {
+        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.just(suc("s1","f1","S1"), suc("s2","f1","S2")));
+        when(productoAdapter.maxStockPorSucursales(List.of("s1", "s2"))).thenReturn(Flux.just(prod("p1","s1","A",9)));
+
+        StepVerifier.create(facade.maxStockPorSucursal("f1"))
+                .assertNext(m -> {
+                    Assertions.assertEquals("s1", m.get("sucursalId"));
+                    Assertions.assertEquals("p1", m.get("productoId"));
+                    Assertions.assertEquals(9, m.get("stock"));
+                })
+                .assertNext(m -> {
+                    Assertions.assertEquals("s2", m.get("sucursalId"));
+                    Assertions.assertTrue(m.containsKey("productoId"));
+                    Assertions.assertNull(m.get("productoId"));
+                    Assertions.assertEquals(0, m.get("stock"));
+                })
+                .verifyComplete();
+
+        verify(productoAdapter, never()).listarPorSucursal(anyString());
+    }
+
+    @Test
+    @DisplayName("maxStockPorSucursal: franquicia sin sucursales no consulta productos")
+    void maxStockPorSucursal_sinSucursales() {
+        when(sucursalAdapter.listarPorFranquicia("f1")).thenReturn(Flux.empty());
+
+        StepVerifier.create(facade.maxStockPorSucursal("f1"))
+                .verifyComplete();
+
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("reconstruir / verificar productos_view: delegan en la proyección")
+    void reconstruirYVerificarVista() {
+        when(productoView.reconstruir()).thenReturn(Mono.just(3L));
+        when(productoView.verificar()).thenReturn(Mono.just(Map.<String, Object>of("consistente", true)));
+
+        StepVerifier.create(facade.reconstruirVistaProductos())
+                .expectNext(3L).verifyComplete();
+        StepVerifier.create(facade.verificarVistaProductos())
+                .expectNextMatches(m -> Boolean.TRUE.equals(m.get("consistente")))
+                .verifyComplete();
+    }
+
+    // ================= Listados paginados =================
+
+    @Test
+    @DisplayName("obtenerFranquicias paginado: hidrata solo la página y conserva nextCursor")
+    void obtenerFranquicias_paginado() {
+        when(franquiciaAdapter.pagina(null, 2))
+                .thenReturn(Mono.just(new Pagina<>(List.of(franq("f1","F1"), franq("f2","F2")), "c2")));
+        when(sucursalAdapter.listarPorFranquicias(List.of("f1", "f2"))).thenReturn(Flux.just(suc("s1","f1","A")));
+
+        StepVerifier.create(facade.obtenerFranquicias(false, 2, null))
+                .assertNext(p -> {
+                    Assertions.assertEquals("c2", p.getNextCursor());
+                    Assertions.assertEquals(1, p.getItems().get(0).getSucursales().size());
+                    Assertions.assertTrue(p.getItems().get(1).getSucursales().isEmpty());
+                })
+                .verifyComplete();
+
+        verify(franquiciaAdapter, never()).obtenerFranquicias();
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("obtenerSucursalPorFranquiciaId paginado: primera página vacía valida la franquicia")
+    void obtenerSucursales_paginado() {
+        when(sucursalAdapter.paginaPorFranquicia("f1", null, 10))
+                .thenReturn(Mono.just(new Pagina<>(List.of(suc("s1","f1","A")), null)));
+        when(productoAdapter.listarPorSucursales(List.of("s1"))).thenReturn(Flux.just(prod("p1","s1","P",1)));
+
+        StepVerifier.create(facade.obtenerSucursalPorFranquiciaId("f1", 10, null))
+                .assertNext(p -> {
+                    Assertions.assertNull(p.getNextCursor());
+                    Assertions.assertEquals(1, p.getItems().get(0).getProductos().size());
+                })
+                .verifyComplete();
+
+        when(sucursalAdapter.paginaPorFranquicia("fx", null, 10)).thenReturn(Mono.just(new Pagina<>(List.of(), null)));
+        when(franquiciaAdapter.obtenerPorId("fx")).thenReturn(Mono.empty());
+        StepVerifier.create(facade.obtenerSucursalPorFranquiciaId("fx", 10, null))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException &&
+                        e.getMessage().contains("Franquicia no encontrada"))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("todosLosProductos / todosProductosViewRaw paginados: delegan en adapter y proyección")
+    void productos_paginados() {
+        when(productoAdapter.pagina("c1", 5)).thenReturn(Mono.just(new Pagina<>(List.of(prod("p1","s1","A",1)), null)));
+        when(productoView.pagina("c1", 5)).thenReturn(Mono.just(new Pagina<>(List.of(vista("p1","s1","f1","F1")), "c2")));
+
+        StepVerifier.create(facade.todosLosProductos(5, "c1"))
+                .expectNextMatches(p -> p.getItems().size() == 1 && p.getNextCursor() == null)
+                .verifyComplete();
+        StepVerifier.create(facade.todosProductosViewRaw(5, "c1"))
+                .expectNextMatches(p -> p.getNextCursor().equals("c2"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importarProductos: franquicia inexistente => error sin consumir las filas")
+    void importarProductos_franquiciaNoExiste() {
+        when(franquiciaAdapter.obtenerPorId("fx")).thenReturn(Mono.empty());
+        Flux<ImportacionProducto> filas = Flux.<ImportacionProducto>error(new AssertionError("no debe suscribirse"));
+
+        StepVerifier.create(facade.importarProductos("fx", filas))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException &&
+                        e.getMessage().contains("Franquicia no existe"))
+                .verify();
+
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("importarProductos: delega en el importador por lotes")
+    void importarProductos_delegaEnImportador() {
+        ImportacionProducto fila = ImportacionProducto.builder().fila(1).sucursalId("s1").nombre("Leche").stock(3).build();
+        when(franquiciaAdapter.obtenerPorId("f1")).thenReturn(Mono.just(franq("f1", "F1")));
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1", "f1", "A")));
+        when(productoAdapter.insertarLote(List.of(fila)))
+                .thenReturn(Flux.just(ResultadoImportacion.de(fila, ResultadoImportacion.Estado.CREADO, "p1", null)));
+        when(productoView.refrescarProductos(List.of("p1"))).thenReturn(Mono.empty());
+
+        StepVerifier.create(facade.importarProductos("f1", Flux.just(fila)))
+                .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.CREADO && "p1".equals(r.getProductoId()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("write-behind: actualizarStock responde desde memoria y las lecturas ven el stock pendiente")
+    void writeBehind_leeSusEscrituras() {
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, new SimpleMeterRegistry(),
+                true, 100, Duration.ofSeconds(1), 100);
+        facade = new FranquiciasMongoFacadeAdapter(franquiciaAdapter, sucursalAdapter, productoAdapter,
+                new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 100, true), productoView, ngramIndex,
+                sucursalFranquicia, franquiciasExistentes,
+                new ActualizadorStockLote(productoAdapter, productoView, 100),
+                new ImportadorProductos(productoAdapter, productoView, ngramIndex, sucursalFranquicia, 100),
+                writeBehind);
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","A")));
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1","s1","P",1)));
+        when(productoAdapter.listarPorSucursal("s1")).thenReturn(Flux.just(prod("p1","s1","P",1)));
+
+        StepVerifier.create(facade.actualizarStock("f1","s1","p1",7)).expectNextMatches(p -> p.getStock() == 7).verifyComplete();
+        StepVerifier.create(facade.ajustarStock("f1","s1","p1",-2)).expectNextMatches(p -> p.getStock() == 5).verifyComplete();
+        StepVerifier.create(facade.productosDeSucursal("f1","s1")).expectNextMatches(p -> p.getStock() == 5).verifyComplete();
+
+        verify(productoAdapter, never()).actualizarStock(anyString(), anyString(), anyInt());
+        verify(productoAdapter, never()).ajustarStock(anyString(), anyString(), anyInt());
+        verify(productoView, never()).actualizarStock(anyString(), anyInt());
+    }
+
+    // ================== Revisiones ==================
+
+    private static Document version(String id, long version, String updatedAt) {
+        return new Document("_id", id).append("version", version).append("updatedAt", Date.from(Instant.parse(updatedAt)));
+    }
+
+    @Test
+    @DisplayName("revisionFranquicia: estable con los mismos documentos, cambia con cualquier versión del árbol")
+    void revisionFranquicia() {
+        when(franquiciaAdapter.versionPorId("f1")).thenReturn(Mono.just(version("f1", 1, "2024-01-01T00:00:00Z")));
+        when(sucursalAdapter.versionesPorFranquicia("f1")).thenReturn(Flux.just(version("s1", 0, "2024-01-02T00:00:00Z")));
+        when(productoAdapter.versionesPorSucursales(List.of("s1")))
+                .thenReturn(Flux.just(version("p1", 2, "2024-01-03T00:00:00Z").append("stock", 5)))
+                .thenReturn(Flux.just(version("p1", 2, "2024-01-03T00:00:00Z").append("stock", 5)))
+                .thenReturn(Flux.just(version("p1", 3, "2024-01-04T00:00:00Z").append("stock", 5)));
+
+        Revision r1 = facade.revisionFranquicia("f1").block();
+        Revision r2 = facade.revisionFranquicia("f1").block();
+        Revision r3 = facade.revisionFranquicia("f1").block();
+
+        Assertions.assertEquals(32, r1.getEtag().length());
+        Assertions.assertEquals(r1.getEtag(), r2.getEtag());
+        Assertions.assertNotEquals(r1.getEtag(), r3.getEtag());
+    }
+
+    @Test
+    @DisplayName("revisionFranquicia/revisionSucursal: vacío si no existe; sin sucursales no consulta productos")
+    void revisionNoExisteOSinSucursales() {
+        when(franquiciaAdapter.versionPorId("fX")).thenReturn(Mono.empty());
+        when(sucursalAdapter.versionPorId("sX")).thenReturn(Mono.empty());
+        when(franquiciaAdapter.versionPorId("f1")).thenReturn(Mono.just(version("f1", 0, "2024-01-01T00:00:00Z")));
+        when(sucursalAdapter.versionesPorFranquicia("f1")).thenReturn(Flux.empty());
+
+        StepVerifier.create(facade.revisionFranquicia("fX")).verifyComplete();
+        StepVerifier.create(facade.revisionSucursal("sX")).verifyComplete();
+        StepVerifier.create(facade.revisionFranquicia("f1")).expectNextCount(1).verifyComplete();
+        verify(productoAdapter, never()).versionesPorSucursales(anyList());
+    }
+
+    @Test
+    @DisplayName("revisionFranquicias: franquicias y sucursales, sin recorrer productos; una baja cambia el ETag")
+    void revisionFranquicias() {
+        when(franquiciaAdapter.versiones()).thenReturn(Flux.just(version("f1", 0, "2024-01-01T00:00:00Z")));
+        when(sucursalAdapter.versiones())
+                .thenReturn(Flux.just(version("s1", 0, "2024-01-01T00:00:00Z"), version("s2", 0, "2024-01-01T00:00:00Z")))
+                .thenReturn(Flux.just(version("s1", 0, "2024-01-01T00:00:00Z")));
+
+        Revision antes = facade.revisionFranquicias().block();
+        Revision despues = facade.revisionFranquicias().block();
+
+        Assertions.assertNotEquals(antes.getEtag(), despues.getEtag());
+        verifyNoInteractions(productoAdapter);
+    }
+
+    @Test
+    @DisplayName("revisionSucursal: el stock pendiente del write-behind cambia la revisión sin cambiar la versión")
+    void revisionConWriteBehind() {
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, new SimpleMeterRegistry(),
+                true, 100, Duration.ofSeconds(1), 100);
+        facade = new FranquiciasMongoFacadeAdapter(franquiciaAdapter, sucursalAdapter, productoAdapter,
+                new FranquiciaTreeHydrator(sucursalAdapter, productoAdapter, 100, true), productoView, ngramIndex,
+                sucursalFranquicia, franquiciasExistentes,
+                new ActualizadorStockLote(productoAdapter, productoView, 100),
+                new ImportadorProductos(productoAdapter, productoView, ngramIndex, sucursalFranquicia, 100),
+                writeBehind);
+        when(sucursalAdapter.versionPorId("s1")).thenReturn(Mono.just(version("s1", 0, "2024-01-01T00:00:00Z")));
+        when(productoAdapter.versionesPorSucursales(List.of("s1")))
+                .thenAnswer(inv -> Flux.just(version("p1", 2, "2024-01-01T00:00:00Z").append("stock", 1)));
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1","f1","A")));
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1","s1","P",1)));
+
+        Revision antes = facade.revisionSucursal("s1").block();
+        facade.actualizarStock("f1", "s1", "p1", 7).block();
+        Revision despues = facade.revisionSucursal("s1").block();
+
+        Assertions.assertNotEquals(antes.getEtag(), despues.getEtag());
+    }
 }
@@ -0,0 +1,122 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportadorProductosTest {
+
+    @Mock ProductoAdapter productoAdapter;
+    @Mock ProductoViewProjection productoView;
+    @Mock SucursalAdapter sucursalAdapter;
+
+    ProductoNgramIndex ngramIndex;
+    ImportadorProductos importador;
+
+    @BeforeEach
+    void setUp() {
+        ngramIndex = new ProductoNgramIndex(true, 8);
+        ngramIndex.marcarListo();
+        importador = new ImportadorProductos(productoAdapter, productoView, ngramIndex,
+                new SucursalFranquiciaCache(sucursalAdapter, new SimpleMeterRegistry(), Duration.ofMinutes(5), 100), 2);
+    }
+
+    private ImportacionProducto fila(long n, String sucursalId, String nombre, int stock) {
+        return ImportacionProducto.builder().fila(n).sucursalId(sucursalId).nombre(nombre).stock(stock).build();
+    }
+
+    private Sucursal suc(String id, String franquiciaId) {
+        Sucursal s = new Sucursal();
+        s.setId(id);
+        s.setFranquiciaId(franquiciaId);
+        return s;
+    }
+
+    private ResultadoImportacion creado(ImportacionProducto f, String productoId) {
+        return ResultadoImportacion.de(f, ResultadoImportacion.Estado.CREADO, productoId, null);
+    }
+
+    @Test
+    @DisplayName("importar: un bulk insert por chunk, en orden; vista e índice solo con los CREADO")
+    void importar_porChunks() {
+        ImportacionProducto f1 = fila(1, "s1", "Leche", 5), f2 = fila(2, "s1", "Pan", 1), f3 = fila(3, "s1", "Cafe", 7);
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1", "f1")));
+        when(productoAdapter.insertarLote(List.of(f1, f2)))
+                .thenReturn(Flux.just(creado(f1, "p1"),
+                        ResultadoImportacion.de(f2, ResultadoImportacion.Estado.DUPLICADO, null, "dup")));
+        when(productoAdapter.insertarLote(List.of(f3))).thenReturn(Flux.just(creado(f3, "p3")));
+        when(productoView.refrescarProductos(anyList())).thenReturn(Mono.empty());
+
+        StepVerifier.create(importador.importar("f1", Flux.just(f1, f2, f3)))
+                .expectNextMatches(r -> r.getFila() == 1 && r.getEstado() == ResultadoImportacion.Estado.CREADO)
+                .expectNextMatches(r -> r.getFila() == 2 && r.getEstado() == ResultadoImportacion.Estado.DUPLICADO)
+                .expectNextMatches(r -> r.getFila() == 3 && r.getEstado() == ResultadoImportacion.Estado.CREADO)
+                .verifyComplete();
+
+        verify(productoView).refrescarProductos(List.of("p1"));
+        verify(productoView).refrescarProductos(List.of("p3"));
+        // la pertenencia de s1 se consulta una vez y luego sale de la caché
+        verify(sucursalAdapter, times(1)).obtenerPorId("s1");
+        Assertions.assertEquals(List.of("p1"), ngramIndex.buscar("leche", 1));
+        Assertions.assertTrue(ngramIndex.buscar("pan", 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("importar: sucursal inexistente o de otra franquicia => INVALIDO sin llegar a Mongo")
+    void importar_sucursalAjena() {
+        ImportacionProducto f1 = fila(1, "sx", "Leche", 5), f2 = fila(2, "s9", "Pan", 1);
+        when(sucursalAdapter.obtenerPorId(anyString())).thenAnswer(inv ->
+                "s9".equals(inv.getArgument(0)) ? Mono.just(suc("s9", "otra")) : Mono.empty());
+        when(productoAdapter.insertarLote(List.of())).thenReturn(Flux.empty());
+        when(productoView.refrescarProductos(List.of())).thenReturn(Mono.empty());
+
+        StepVerifier.create(importador.importar("f1", Flux.just(f1, f2)))
+                .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.INVALIDO && "Sucursal no existe".equals(r.getMensaje()))
+                .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.INVALIDO &&
+                        "Sucursal no pertenece a la franquicia".equals(r.getMensaje()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importar: un fallo al sincronizar productos_view no interrumpe el reporte")
+    void importar_fallaVista() {
+        ImportacionProducto f1 = fila(1, "s1", "Leche", 5);
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1", "f1")));
+        when(productoAdapter.insertarLote(List.of(f1))).thenReturn(Flux.just(creado(f1, "p1")));
+        when(productoView.refrescarProductos(anyList())).thenReturn(Mono.error(new RuntimeException("mongo down")));
+
+        StepVerifier.create(importador.importar("f1", Flux.just(f1)))
+                .expectNextMatches(r -> r.getEstado() == ResultadoImportacion.Estado.CREADO)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("constructor: chunk-size debe ser positivo")
+    void chunkSizeInvalido() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ImportadorProductos(productoAdapter, productoView,
+                ngramIndex, new SucursalFranquiciaCache(sucursalAdapter, new SimpleMeterRegistry(), Duration.ofMinutes(5), 100), 0));
+    }
+}
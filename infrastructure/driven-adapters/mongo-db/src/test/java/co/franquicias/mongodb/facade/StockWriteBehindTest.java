@@ -0,0 +1,260 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.producto.StockInsuficienteException;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import co.franquicias.mongodb.projection.ProductoViewProjection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockWriteBehindTest {
+
+    @Mock ProductoAdapter productoAdapter;
+    @Mock ProductoViewProjection productoView;
+
+    SimpleMeterRegistry registry;
+    AtomicLong ahora;
+    StockWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        ahora = new AtomicLong();
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, registry, true, 100, Duration.ofSeconds(1), 100, ahora::get);
+    }
+
+    private Producto prod(String id, int stock) {
+        return Producto.builder().id(id).sucursalId("s1").nombre("P" + id).stock(stock).build();
+    }
+
+    /** El adapter responde con el estado indicado para cada cambio del lote. */
+    private void bulkResponde(ResultadoActualizacion.Estado estado) {
+        when(productoAdapter.actualizarStockLote(anyList())).thenAnswer(inv -> {
+            List<ActualizacionStock> lote = inv.getArgument(0);
+            return Flux.fromIterable(lote).map(c -> ResultadoActualizacion.de(c, estado, null));
+        });
+    }
+
+    @Test
+    @DisplayName("escrituras repetidas se coalescen: una lectura a Mongo y un solo updateOne con el último valor")
+    void coalesce() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+        bulkResponde(ResultadoActualizacion.Estado.ACTUALIZADO);
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        for (int stock = 1; stock <= 5; stock++) {
+            int s = stock;
+            StepVerifier.create(writeBehind.actualizarStock("p1", "s1", s))
+                    .expectNextMatches(p -> p.getStock() == s && "Pp1".equals(p.getNombre()))
+                    .verifyComplete();
+        }
+        Assertions.assertEquals(1, writeBehind.pendientes());
+
+        ahora.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        StepVerifier.create(writeBehind.descargar()).verifyComplete();
+
+        verify(productoAdapter, times(1)).obtenerEnSucursal("p1", "s1");
+        verify(productoAdapter, times(1)).actualizarStockLote(List.of(
+                ActualizacionStock.builder().productoId("p1").sucursalId("s1").stock(5).build()));
+        Assertions.assertEquals(0, writeBehind.pendientes());
+        Assertions.assertEquals(5.0, writeBehind.coalescencia());
+        Assertions.assertEquals(300.0, registry.get("franquicias.stock.write_behind.lag").timer().max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("lecturas ven el stock pendiente, en vuelo y recién descargado")
+    void leeSusEscrituras() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+        Sinks.One<ResultadoActualizacion> resultado = Sinks.one();
+        when(productoAdapter.actualizarStockLote(anyList())).thenReturn(resultado.asMono().flux());
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        writeBehind.actualizarStock("p1", "s1", 9).block();
+        Assertions.assertEquals(9, writeBehind.aplicar(prod("p1", 0)).getStock());
+        Assertions.assertEquals(9, writeBehind.aplicarFila(Map.of("productoId", "p1", "stock", 0)).get("stock"));
+
+        // en vuelo: la escritura todavía no aterrizó
+        StepVerifier.create(writeBehind.descargar())
+                .then(() -> Assertions.assertEquals(9, writeBehind.aplicar(prod("p1", 0)).getStock()))
+                .then(() -> resultado.tryEmitValue(ResultadoActualizacion.de(
+                        ActualizacionStock.builder().productoId("p1").sucursalId("s1").stock(9).build(),
+                        ResultadoActualizacion.Estado.ACTUALIZADO, null)))
+                .verifyComplete();
+
+        // recién descargado: una lectura que empezó antes de aterrizar sigue viendo el valor nuevo
+        Assertions.assertEquals(9, writeBehind.aplicar(prod("p1", 0)).getStock());
+        Assertions.assertEquals(3, writeBehind.aplicar(prod("p2", 3)).getStock());
+    }
+
+    @Test
+    @DisplayName("ajustarStock: aplica el delta sobre el valor en memoria; sin valor en memoria => vacío")
+    void ajustarStock() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+
+        StepVerifier.create(writeBehind.ajustarStock("p1", "s1", 1)).verifyComplete();
+
+        writeBehind.actualizarStock("p1", "s1", 4).block();
+        StepVerifier.create(writeBehind.ajustarStock("p1", "s1", -3))
+                .expectNextMatches(p -> p.getStock() == 1)
+                .verifyComplete();
+        StepVerifier.create(writeBehind.ajustarStock("p1", "s1", -2))
+                .expectError(StockInsuficienteException.class)
+                .verify();
+        StepVerifier.create(writeBehind.ajustarStock("p1", "s9", 1))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("Producto no encontrado"))
+                .verify();
+        Assertions.assertEquals(1, writeBehind.aplicar(prod("p1", 0)).getStock());
+    }
+
+    @Test
+    @DisplayName("producto inexistente o de otra sucursal => error y nada queda en el búfer")
+    void productoNoEncontrado() {
+        when(productoAdapter.obtenerEnSucursal("pX", "s1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(writeBehind.actualizarStock("pX", "s1", 1))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException && e.getMessage().contains("Producto no encontrado"))
+                .verify();
+        Assertions.assertEquals(0, writeBehind.pendientes());
+    }
+
+    @Test
+    @DisplayName("descarga fallida => el producto vuelve al búfer y se reintenta en la siguiente")
+    void fallaYReintenta() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+        when(productoAdapter.actualizarStockLote(anyList()))
+                .thenReturn(Flux.error(new RuntimeException("mongo down")))
+                .thenAnswer(inv -> {
+                    List<ActualizacionStock> lote = inv.getArgument(0);
+                    return Flux.fromIterable(lote).map(c -> ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ACTUALIZADO, null));
+                });
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        writeBehind.actualizarStock("p1", "s1", 2).block();
+        StepVerifier.create(writeBehind.descargar()).verifyComplete();
+        Assertions.assertEquals(1, writeBehind.pendientes());
+        Assertions.assertEquals(1.0, registry.get("franquicias.stock.write_behind.fallidas").counter().count());
+
+        StepVerifier.create(writeBehind.descargar()).verifyComplete();
+        Assertions.assertEquals(0, writeBehind.pendientes());
+        verify(productoAdapter, times(2)).actualizarStockLote(anyList());
+    }
+
+    @Test
+    @DisplayName("descartar: un producto escrito por otro camino no se descarga con el valor viejo")
+    void descartar() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+
+        writeBehind.actualizarStock("p1", "s1", 2).block();
+        writeBehind.descartar("p1");
+
+        StepVerifier.create(writeBehind.descargar()).verifyComplete();
+        verify(productoAdapter, never()).actualizarStockLote(anyList());
+        Assertions.assertEquals(0, writeBehind.aplicar(prod("p1", 0)).getStock());
+    }
+
+    @Test
+    @DisplayName("descartar en vuelo: el valor superado no se lee, no queda como recién descargado ni se reencola")
+    void descartarEnVuelo() {
+        when(productoAdapter.obtenerEnSucursal("p1", "s1")).thenReturn(Mono.just(prod("p1", 0)));
+        when(productoAdapter.obtenerEnSucursal("p2", "s1")).thenReturn(Mono.just(prod("p2", 0)));
+        Sinks.One<ResultadoActualizacion> aterriza = Sinks.one();
+        Sinks.One<ResultadoActualizacion> falla = Sinks.one();
+        when(productoAdapter.actualizarStockLote(anyList()))
+                .thenReturn(aterriza.asMono().flux())
+                .thenReturn(falla.asMono().flux());
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        writeBehind.actualizarStock("p1", "s1", 9).block();
+        StepVerifier.create(writeBehind.descargar())
+                .then(() -> writeBehind.descartar("p1"))
+                .then(() -> Assertions.assertEquals(5, writeBehind.aplicar(prod("p1", 5)).getStock()))
+                .then(() -> aterriza.tryEmitValue(ResultadoActualizacion.de(
+                        ActualizacionStock.builder().productoId("p1").sucursalId("s1").stock(9).build(),
+                        ResultadoActualizacion.Estado.ACTUALIZADO, null)))
+                .verifyComplete();
+        Assertions.assertEquals(5, writeBehind.aplicar(prod("p1", 5)).getStock());
+
+        writeBehind.actualizarStock("p2", "s1", 7).block();
+        StepVerifier.create(writeBehind.descargar())
+                .then(() -> writeBehind.descartar("p2"))
+                .then(() -> falla.tryEmitError(new RuntimeException("mongo down")))
+                .verifyComplete();
+        Assertions.assertEquals(0, writeBehind.pendientes());
+        Assertions.assertEquals(3, writeBehind.aplicar(prod("p2", 3)).getStock());
+    }
+
+    @Test
+    @DisplayName("búfer lleno con Mongo caído => no crece: productos nuevos van directo, los que ya están se coalescen")
+    void bufferLleno() {
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, registry, true, 2, Duration.ofMinutes(1), 100, ahora::get);
+        when(productoAdapter.obtenerEnSucursal(anyString(), eq("s1"))).thenAnswer(inv -> Mono.just(prod(inv.getArgument(0), 0)));
+        when(productoAdapter.actualizarStockLote(anyList())).thenReturn(Flux.error(new RuntimeException("mongo down")));
+
+        writeBehind.actualizarStock("p1", "s1", 1).block();
+        writeBehind.actualizarStock("p2", "s1", 1).block();
+        Assertions.assertEquals(2, writeBehind.pendientes());
+
+        StepVerifier.create(writeBehind.actualizarStock("p3", "s1", 1)).verifyComplete();
+        StepVerifier.create(writeBehind.actualizarStock("p1", "s1", 4))
+                .expectNextMatches(p -> p.getStock() == 4)
+                .verifyComplete();
+
+        Assertions.assertEquals(2, writeBehind.pendientes());
+        Assertions.assertEquals(1.0, registry.get("franquicias.stock.write_behind.directas").counter().count());
+        verify(productoAdapter, never()).obtenerEnSucursal("p3", "s1");
+    }
+
+    @Test
+    @DisplayName("al llegar a max-pending se dispara una descarga; cerrar() descarga lo que quede")
+    void disparoPorTamanoYCierre() {
+        writeBehind = new StockWriteBehind(productoAdapter, productoView, registry, true, 2, Duration.ofMinutes(1), 100, ahora::get);
+        when(productoAdapter.obtenerEnSucursal(anyString(), eq("s1"))).thenAnswer(inv -> Mono.just(prod(inv.getArgument(0), 0)));
+        bulkResponde(ResultadoActualizacion.Estado.ACTUALIZADO);
+        when(productoView.actualizarStockLote(anyList())).thenReturn(Mono.empty());
+
+        writeBehind.actualizarStock("p1", "s1", 1).block();
+        writeBehind.actualizarStock("p2", "s1", 1).block();
+        ArgumentCaptor<List<ActualizacionStock>> cap = ArgumentCaptor.forClass(List.class);
+        verify(productoAdapter, times(1)).actualizarStockLote(cap.capture());
+        Assertions.assertEquals(2, cap.getValue().size());
+
+        writeBehind.actualizarStock("p3", "s1", 1).block();
+        writeBehind.cerrar();
+        verify(productoAdapter, times(2)).actualizarStockLote(anyList());
+        Assertions.assertEquals(0, writeBehind.pendientes());
+    }
+
+    @Test
+    @DisplayName("constructor: max-pending, flush-interval y chunk-size deben ser positivos")
+    void configInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new StockWriteBehind(productoAdapter, productoView, registry, true, 0, Duration.ofSeconds(1), 100));
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new StockWriteBehind(productoAdapter, productoView, registry, true, 10, Duration.ZERO, 100));
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new StockWriteBehind(productoAdapter, productoView, registry, true, 10, Duration.ofSeconds(1), 0));
+    }
+}
@@ -0,0 +1,151 @@
+package co.franquicias.mongodb.facade;
+
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.adapter.SucursalAdapter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SucursalFranquiciaCacheTest {
+
+    @Mock SucursalAdapter sucursalAdapter;
+
+    SimpleMeterRegistry registry;
+    AtomicLong ahora;
+    SucursalFranquiciaCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        ahora = new AtomicLong();
+        cache = new SucursalFranquiciaCache(sucursalAdapter, registry, Duration.ofSeconds(10), 2, ahora::get);
+    }
+
+    private double consultas(String resultado) {
+        return registry.get("franquicias.ownership_cache.consultas").tag("resultado", resultado).counter().count();
+    }
+
+    private Sucursal suc(String id, String fid) {
+        Sucursal s = new Sucursal();
+        s.setId(id);
+        s.setFranquiciaId(fid);
+        return s;
+    }
+
+    @Test
+    @DisplayName("franquiciaDe: consulta una vez y responde de la caché hasta que vence el TTL")
+    void aciertoYExpiracion() {
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1", "f1")));
+
+        StepVerifier.create(cache.franquiciaDe("s1")).expectNext("f1").verifyComplete();
+        StepVerifier.create(cache.franquiciaDe("s1")).expectNext("f1").verifyComplete();
+        verify(sucursalAdapter, times(1)).obtenerPorId("s1");
+
+        ahora.addAndGet(Duration.ofSeconds(11).toNanos());
+        StepVerifier.create(cache.franquiciaDe("s1")).expectNext("f1").verifyComplete();
+        verify(sucursalAdapter, times(2)).obtenerPorId("s1");
+    }
+
+    @Test
+    @DisplayName("franquiciaDe: sucursal inexistente => vacío y no se cachea")
+    void ausenteNoSeCachea() {
+        when(sucursalAdapter.obtenerPorId("sX")).thenReturn(Mono.empty());
+
+        StepVerifier.create(cache.franquiciaDe("sX")).verifyComplete();
+        StepVerifier.create(cache.franquiciaDe("sX")).verifyComplete();
+        verify(sucursalAdapter, times(2)).obtenerPorId("sX");
+        Assertions.assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("franquiciaDe: una ráfaga de fallos sobre la misma sucursal comparte una sola consulta")
+    void singleFlight() {
+        Sinks.One<Sucursal> respuesta = Sinks.one();
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(respuesta.asMono());
+
+        StepVerifier.create(Mono.zip(cache.franquiciaDe("s1"), cache.franquiciaDe("s1"), cache.franquiciaDe("s1")))
+                .then(() -> respuesta.tryEmitValue(suc("s1", "f1")))
+                .expectNextMatches(t -> "f1".equals(t.getT1()) && "f1".equals(t.getT2()) && "f1".equals(t.getT3()))
+                .verifyComplete();
+
+        verify(sucursalAdapter, times(1)).obtenerPorId("s1");
+        Assertions.assertEquals(1.0, consultas("fallo"));
+        Assertions.assertEquals(2.0, consultas("acierto"));
+        Assertions.assertEquals(1, registry.get("franquicias.ownership_cache.carga").timer().count());
+    }
+
+    @Test
+    @DisplayName("franquiciaDe: una consulta fallida propaga el error y no deja entrada")
+    void errorNoSeCachea() {
+        when(sucursalAdapter.obtenerPorId("s1"))
+                .thenReturn(Mono.error(new RuntimeException("mongo down")))
+                .thenReturn(Mono.just(suc("s1", "f1")));
+
+        StepVerifier.create(cache.franquiciaDe("s1")).expectErrorMessage("mongo down").verify();
+        StepVerifier.create(cache.franquiciaDe("s1")).expectNext("f1").verifyComplete();
+        verify(sucursalAdapter, times(2)).obtenerPorId("s1");
+    }
+
+    @Test
+    @DisplayName("invalidar / invalidarFranquicia / max-entries")
+    void invalidacion() {
+        when(sucursalAdapter.obtenerPorId("s1")).thenReturn(Mono.just(suc("s1", "f1")));
+        when(sucursalAdapter.obtenerPorId("s2")).thenReturn(Mono.just(suc("s2", "f2")));
+        when(sucursalAdapter.obtenerPorId("s3")).thenReturn(Mono.just(suc("s3", "f1")));
+
+        cache.franquiciaDe("s1").block();
+        cache.franquiciaDe("s2").block();
+        Assertions.assertEquals(2, cache.tamano());
+
+        cache.invalidar("s2");
+        Assertions.assertEquals(1, cache.tamano());
+
+        cache.franquiciaDe("s3").block();
+        cache.invalidarFranquicia("f1");
+        Assertions.assertEquals(0, cache.tamano());
+
+        cache.franquiciaDe("s1").block();
+        cache.franquiciaDe("s2").block();
+        cache.franquiciaDe("s3").block();
+        Assertions.assertEquals(2, cache.tamano());
+        Assertions.assertEquals(2.0, registry.get("franquicias.ownership_cache.entradas").gauge().value());
+    }
+
+    @Test
+    @DisplayName("registrar: una sucursal recién creada responde de la caché sin consultar")
+    void registrar() {
+        cache.registrar("s1", "f1");
+
+        StepVerifier.create(cache.franquiciaDe("s1")).expectNext("f1").verifyComplete();
+        verifyNoInteractions(sucursalAdapter);
+        Assertions.assertEquals(1.0, consultas("acierto"));
+        Assertions.assertEquals(0.0, consultas("fallo"));
+
+        cache.registrar("s2", "f2");
+        cache.invalidarTodo();
+        Assertions.assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("constructor: ttl y max-entries deben ser positivos")
+    void configuracionInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new SucursalFranquiciaCache(sucursalAdapter, registry, Duration.ZERO, 10));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new SucursalFranquiciaCache(sucursalAdapter, registry, Duration.ofMinutes(1), 0));
+    }
+}
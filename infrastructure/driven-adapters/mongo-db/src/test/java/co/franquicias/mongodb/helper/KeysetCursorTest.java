@@ -0,0 +1,58 @@
+package co.franquicias.mongodb.helper;
+
+import co.franquicias.model.pagina.Pagina;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.function.Function;
+
+class KeysetCursorTest {
+
+    @Test
+    @DisplayName("encode/decode: el cursor es opaco y reversible")
+    void roundTrip() {
+        String cursor = KeysetCursor.encode("3f2a-uuid/+");
+        Assertions.assertFalse(cursor.contains("3f2a"));
+        Assertions.assertEquals("3f2a-uuid/+", KeysetCursor.decode(cursor));
+    }
+
+    @Test
+    @DisplayName("decode: cursor corrupto => IllegalArgumentException")
+    void cursorInvalido() {
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> KeysetCursor.decode("%%%"));
+        Assertions.assertEquals("Cursor inválido", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("query: _id > after, orden por _id y limit + 1, sin skip")
+    void query() {
+        Query q = KeysetCursor.query(Criteria.where("franquiciaId").is("f1"), KeysetCursor.encode("s5"), 10);
+
+        Document filtro = q.getQueryObject();
+        Assertions.assertEquals("f1", filtro.get("franquiciaId"));
+        Assertions.assertEquals("s5", ((Document) filtro.get("_id")).get("$gt"));
+        Assertions.assertEquals(1, q.getSortObject().get("_id"));
+        Assertions.assertEquals(11, q.getLimit());
+        Assertions.assertEquals(0, q.getSkip());
+
+        Assertions.assertTrue(KeysetCursor.query(null, null, 5).getQueryObject().isEmpty());
+    }
+
+    @Test
+    @DisplayName("pagina: el documento sobrante marca nextCursor; sin sobrante es la última página")
+    void pagina() {
+        Pagina<String> conMas = KeysetCursor.pagina(List.of("a", "b", "c"), 2, Function.identity(), String::toUpperCase);
+        Assertions.assertEquals(List.of("A", "B"), conMas.getItems());
+        Assertions.assertEquals("b", KeysetCursor.decode(conMas.getNextCursor()));
+
+        Pagina<String> ultima = KeysetCursor.pagina(List.of("a", "b"), 2, Function.identity(), String::toUpperCase);
+        Assertions.assertEquals(2, ultima.getItems().size());
+        Assertions.assertNull(ultima.getNextCursor());
+    }
+}
@@ -24,6 +24,7 @@ import java.time.Instant;
 import java.util.*;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -182,6 +183,36 @@ class MongoDBAdapterOperationsTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("documentMapper registrado: toEntity/toDocument no pasan por ModelMapper")
+    void documentMapperRegistrado() {
+        ModelMapper mm = spy(new ModelMapper());
+        DocumentMapper<TestEntity, TestDocument> mapper = new DocumentMapper<>() {
+            @Override
+            public TestEntity toEntity(TestDocument d) {
+                return new TestEntity(d.getId(), d.getName(), d.getAge(), d.getNickname(),
+                        d.getTags(), d.getMeta(), d.getVersion(), d.getCreatedAt());
+            }
+
+            @Override
+            public TestDocument toDocument(TestEntity e) {
+                return new TestDocument(e.getId(), e.getName(), e.getAge(), e.getNickname(),
+                        e.getTags(), e.getMeta(), e.getVersion(), e.getCreatedAt());
+            }
+        };
+        var conMapper = new MongoDBAdapterOperations<TestEntity, TestDocument, String>(
+                repository, mongoTemplate, TestDocument.class, TestEntity.class, mm, mapper) { };
+        TestDocument d = doc("1", "Zed", 40, Optional.empty(), List.of(), Map.of(), 1L, Instant.now());
+        when(repository.findById("1")).thenReturn(Mono.just(d));
+
+        StepVerifier.create(conMapper.findById("1"))
+                .expectNextMatches(e -> e.getName().equals("Zed") && e.getAge() == 40)
+                .verifyComplete();
+        org.junit.jupiter.api.Assertions.assertEquals("Zed", conMapper.toDocument(conMapper.toEntity(d)).getName());
+        verify(mm, never()).map(any(), eq(TestEntity.class));
+        verify(mm, never()).map(any(), eq(TestDocument.class));
+    }
+
     @Nested
     class CrudOps {
         @Test
@@ -362,6 +393,50 @@ class MongoDBAdapterOperationsTest {
                     .verify();
         }
 
+        @Test
+        @DisplayName("patchNonNull: un findAndModify con $set de presentes (trim, sin vacíos ni excluidos) y $inc version")
+        void patchOk() {
+            Instant created = Instant.parse("2024-05-05T10:00:00Z");
+            TestEntity partial = entity(
+                    "IGNORED", "  New Name  ", null, Optional.empty(),
+                    new ArrayList<>(), new HashMap<>(), 99L, Instant.parse("2030-01-01T00:00:00Z")
+            );
+            TestDocument updated = doc("abc", "New Name", 30, Optional.of("nick"),
+                    List.of("a"), Map.of("k", "v"), 6L, created);
+
+            ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+            ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+            ArgumentCaptor<FindAndModifyOptions> o = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+            when(mongoTemplate.findAndModify(q.capture(), u.capture(), o.capture(), eq(TestDocument.class)))
+                    .thenReturn(Mono.just(updated));
+
+            StepVerifier.create(adapter.patchNonNull("abc", partial))
+                    .expectNextMatches(e -> e.getName().equals("New Name") && e.getVersion().equals(6L))
+                    .verifyComplete();
+
+            org.junit.jupiter.api.Assertions.assertEquals("abc", q.getValue().getQueryObject().get("_id"));
+            org.junit.jupiter.api.Assertions.assertTrue(o.getValue().isReturnNew());
+            org.bson.Document update = u.getValue().getUpdateObject();
+            org.junit.jupiter.api.Assertions.assertEquals(
+                    new org.bson.Document("name", "New Name"), update.get("$set"));
+            org.junit.jupiter.api.Assertions.assertEquals(new org.bson.Document("version", 1), update.get("$inc"));
+            verify(repository, never()).findById(anyString());
+            verify(repository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("patchNonNull: error si no existe")
+        void patchNotFound() {
+            when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(TestDocument.class)))
+                    .thenReturn(Mono.empty());
+
+            StepVerifier.create(adapter.patchNonNull("x", new TestEntity()))
+                    .expectErrorMatches(ex ->
+                            ex instanceof IllegalArgumentException &&
+                                    ex.getMessage().contains("Recurso no encontrado"))
+                    .verify();
+        }
+
         @Test
         @DisplayName("copyNonNullProperties directo: exclusiones + colecciones vacías + Optional.empty + trim")
         void copyDirect() {
@@ -0,0 +1,52 @@
+package co.franquicias.mongodb.helper;
+
+import co.franquicias.mongodb.entity.ProductoData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class PropertyAccessorsTest {
+
+    static class SoloLectura {
+        public String getCalculado() { return "x"; }
+    }
+
+    @Test
+    @DisplayName("of: una instancia por clase")
+    void cachePorClase() {
+        Assertions.assertSame(PropertyAccessors.of(ProductoData.class), PropertyAccessors.of(ProductoData.class));
+        Assertions.assertNotSame(PropertyAccessors.of(ProductoData.class), PropertyAccessors.of(SoloLectura.class));
+    }
+
+    @Test
+    @DisplayName("getters/setters generados: leen y escriben, con boxing de primitivos")
+    void leeYEscribe() {
+        ProductoData p = ProductoData.builder().id("p1").nombre("Leche").stock(3).build();
+        PropertyAccessors accessors = PropertyAccessors.of(ProductoData.class);
+
+        Assertions.assertEquals(List.of("createdAt", "id", "nombre", "stock", "sucursalId", "updatedAt", "version"),
+                accessors.readable().stream().map(PropertyAccessors.Property::name).sorted().toList());
+
+        PropertyAccessors.Property stock = accessors.writable().get("stock");
+        Assertions.assertEquals(3, stock.getter().apply(p));
+        stock.setter().accept(p, 7);
+        accessors.writable().get("nombre").setter().accept(p, "Pan");
+
+        Assertions.assertEquals(7, p.getStock());
+        Assertions.assertEquals("Pan", p.getNombre());
+    }
+
+    @Test
+    @DisplayName("propiedades sin setter no son escribibles; un valor de otro tipo falla al escribir")
+    void limites() {
+        PropertyAccessors soloLectura = PropertyAccessors.of(SoloLectura.class);
+        Assertions.assertEquals("x", soloLectura.readable().get(0).getter().apply(new SoloLectura()));
+        Assertions.assertTrue(soloLectura.writable().isEmpty());
+
+        PropertyAccessors.Property stock = PropertyAccessors.of(ProductoData.class).writable().get("stock");
+        ProductoData p = new ProductoData();
+        Assertions.assertThrows(ClassCastException.class, () -> stock.setter().accept(p, "muchos"));
+    }
+}
@@ -0,0 +1,147 @@
+package co.franquicias.mongodb.invalidacion;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.facade.FranquiciaExistenteCache;
+import co.franquicias.mongodb.facade.SucursalFranquiciaCache;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import co.franquicias.mongodb.search.ProductoNgramIndexLoader;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Bus de invalidación contra un replica set de un solo nodo (el que levanta {@link MongoDBContainer}):
+ * recibe cambios en vivo y retoma desde el resume token guardado. Requiere Docker; sin él se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class InvalidacionChangeStreamReplicaSetTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    /** Margen para que el cursor del change stream quede abierto antes de escribir. */
+    private static final Duration APERTURA = Duration.ofSeconds(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    static MongoClient client;
+    static ReactiveMongoTemplate template;
+
+    final SucursalFranquiciaCache sucursalFranquicia = mock(SucursalFranquiciaCache.class);
+    final FranquiciaExistenteCache franquiciasExistentes = mock(FranquiciaExistenteCache.class);
+    final ProductoNgramIndex ngramIndex = mock(ProductoNgramIndex.class);
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getConnectionString());
+        template = new ReactiveMongoTemplate(client, "test");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    private InvalidacionChangeStream nuevo(String nodo) {
+        return new InvalidacionChangeStream(template, new ResumeTokenStore(template), sucursalFranquicia,
+                franquiciasExistentes, ngramIndex, mock(ProductoNgramIndexLoader.class),
+                new SimpleMeterRegistry(), true, nodo, Duration.ofSeconds(1), Duration.ofSeconds(1));
+    }
+
+    private void insertarSucursal(String id) {
+        template.insert(new Document("_id", id).append("nombre", "Centro").append("franquiciaId", "f1"), "sucursales").block();
+    }
+
+    @Test
+    @DisplayName("sucursal renombrada por otro nodo => este nodo invalida su entrada")
+    void invalidaEnVivo() {
+        insertarSucursal("s1");
+        InvalidacionChangeStream bus = nuevo("nodo-a");
+
+        StepVerifier.create(bus.escuchar())
+                .expectSubscription()
+                .expectNoEvent(APERTURA)
+                .then(() -> template.updateFirst(query(where("_id").is("s1")), Update.update("nombre", "Norte"), "sucursales")
+                        .subscribe())
+                .expectNextMatches(e -> "sucursales".equals(e.coleccion()) && "s1".equals(e.id())
+                        && e.operacion() == OperationType.UPDATE)
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        verify(sucursalFranquicia).invalidar("s1");
+        Assertions.assertEquals(InvalidacionChangeStream.Modo.CHANGE_STREAM, bus.modo());
+    }
+
+    @Test
+    @DisplayName("reinicio => retoma desde el token guardado y aplica lo ocurrido mientras estuvo caído")
+    void retomaDesdeToken() {
+        insertarSucursal("s2");
+        InvalidacionChangeStream antes = nuevo("nodo-b");
+
+        StepVerifier.create(antes.escuchar())
+                .expectSubscription()
+                .expectNoEvent(APERTURA)
+                .then(() -> template.updateFirst(query(where("_id").is("s2")), Update.update("nombre", "Sur"), "sucursales")
+                        .subscribe())
+                .expectNextCount(1)
+                .thenCancel()
+                .verify(TIMEOUT);
+        StepVerifier.create(antes.guardarToken()).verifyComplete();
+
+        // nadie escucha mientras se elimina la sucursal
+        template.remove(query(where("_id").is("s2")), "sucursales").block();
+
+        InvalidacionChangeStream despues = nuevo("nodo-b");
+        StepVerifier.create(despues.escuchar())
+                .expectNextMatches(e -> "s2".equals(e.id()) && e.operacion() == OperationType.DELETE)
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        verify(sucursalFranquicia, times(2)).invalidar("s2");
+        Assertions.assertNotNull(new ResumeTokenStore(template).leer("nodo-b").block());
+    }
+
+    @Test
+    @DisplayName("producto: un cambio de stock no llega al nodo; un renombre sí, con el nombre nuevo")
+    void productoSoloRenombres() {
+        when(ngramIndex.isEnabled()).thenReturn(true);
+        template.insert(new Document("_id", "p1").append("sucursalId", "s1").append("nombre", "Leche").append("stock", 4),
+                "productos").block();
+        InvalidacionChangeStream bus = nuevo("nodo-c");
+
+        StepVerifier.create(bus.escuchar())
+                .expectSubscription()
+                .expectNoEvent(APERTURA)
+                .then(() -> template.updateFirst(query(where("_id").is("p1")), Update.update("stock", 9), "productos")
+                        .then(template.updateFirst(query(where("_id").is("p1")), Update.update("nombre", "Leche entera"), "productos"))
+                        .subscribe())
+                .expectNextMatches(e -> "productos".equals(e.coleccion()) && "p1".equals(e.id())
+                        && e.operacion() == OperationType.UPDATE)
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        ArgumentCaptor<Producto> cap = ArgumentCaptor.forClass(Producto.class);
+        verify(ngramIndex).indexar(cap.capture());
+        Assertions.assertEquals("Leche entera", cap.getValue().getNombre());
+        verify(ngramIndex, never()).eliminar(any());
+    }
+}
@@ -0,0 +1,157 @@
+package co.franquicias.mongodb.invalidacion;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.facade.FranquiciaExistenteCache;
+import co.franquicias.mongodb.facade.SucursalFranquiciaCache;
+import co.franquicias.mongodb.search.ProductoNgramIndex;
+import co.franquicias.mongodb.search.ProductoNgramIndexLoader;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InvalidacionChangeStreamTest {
+
+    @Mock ReactiveMongoTemplate template;
+    @Mock ResumeTokenStore tokens;
+    @Mock SucursalFranquiciaCache sucursalFranquicia;
+    @Mock FranquiciaExistenteCache franquiciasExistentes;
+    @Mock ProductoNgramIndex ngramIndex;
+    @Mock ProductoNgramIndexLoader ngramLoader;
+
+    SimpleMeterRegistry registry;
+    InvalidacionChangeStream bus;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        bus = nuevo(true, Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+
+    private InvalidacionChangeStream nuevo(boolean enabled, Duration intervaloToken, Duration reintento) {
+        return new InvalidacionChangeStream(template, tokens, sucursalFranquicia, franquiciasExistentes,
+                ngramIndex, ngramLoader, registry, enabled, "nodo-1", intervaloToken, reintento);
+    }
+
+    @Test
+    @DisplayName("sucursal actualizada o eliminada => se invalida su pertenencia; un alta no toca la caché")
+    void sucursal() {
+        bus.aplicar("sucursales", OperationType.UPDATE, "s1", null);
+        bus.aplicar("sucursales", OperationType.DELETE, "s2", null);
+        bus.aplicar("sucursales", OperationType.INSERT, "s3", null);
+
+        verify(sucursalFranquicia).invalidar("s1");
+        verify(sucursalFranquicia).invalidar("s2");
+        verifyNoMoreInteractions(sucursalFranquicia);
+        verifyNoInteractions(franquiciasExistentes, ngramIndex);
+    }
+
+    @Test
+    @DisplayName("franquicia eliminada => se invalida la existencia y las sucursales de esa franquicia")
+    void franquicia() {
+        bus.aplicar("franquicias", OperationType.UPDATE, "f1", null);
+        bus.aplicar("franquicias", OperationType.DELETE, "f2", null);
+
+        verify(franquiciasExistentes).invalidar("f1");
+        verify(franquiciasExistentes).invalidar("f2");
+        verify(sucursalFranquicia).invalidarFranquicia("f2");
+        verifyNoMoreInteractions(sucursalFranquicia, franquiciasExistentes);
+    }
+
+    @Test
+    @DisplayName("producto: upsert del nombre nuevo en el índice n-gram, baja al eliminarse")
+    void producto() {
+        when(ngramIndex.isEnabled()).thenReturn(true);
+
+        bus.aplicar("productos", OperationType.UPDATE, "p1", "Leche");
+        bus.aplicar("productos", OperationType.DELETE, "p2", null);
+
+        ArgumentCaptor<Producto> cap = ArgumentCaptor.forClass(Producto.class);
+        verify(ngramIndex).indexar(cap.capture());
+        Assertions.assertEquals("p1", cap.getValue().getId());
+        Assertions.assertEquals("Leche", cap.getValue().getNombre());
+        verify(ngramIndex).eliminar("p2");
+        verifyNoMoreInteractions(ngramIndex);
+        verifyNoInteractions(sucursalFranquicia, franquiciasExistentes);
+    }
+
+    @Test
+    @DisplayName("producto: un evento sin nombre no toca el índice n-gram")
+    void productoSinNombre() {
+        when(ngramIndex.isEnabled()).thenReturn(true);
+
+        bus.aplicar("productos", OperationType.UPDATE, "p3", null);
+
+        verify(ngramIndex, never()).indexar(any());
+        verify(ngramIndex, never()).eliminar(any());
+    }
+
+    @Test
+    @DisplayName("drop/invalidate => se vacían las cachés y se recarga el índice n-gram")
+    void drop() {
+        when(ngramIndex.isEnabled()).thenReturn(true);
+        when(ngramLoader.cargar()).thenReturn(Mono.just(0));
+
+        bus.aplicar("productos", OperationType.DROP, null, null);
+
+        verify(sucursalFranquicia).invalidarTodo();
+        verify(franquiciasExistentes).invalidarTodo();
+        verify(ngramLoader).cargar();
+    }
+
+    @Test
+    @DisplayName("Mongo standalone => modo solo-TTL sin abrir el change stream")
+    void standaloneSoloTtl() {
+        when(template.executeCommand(any(Document.class))).thenReturn(Mono.just(new Document("isWritablePrimary", true)));
+
+        StepVerifier.create(bus.escuchar()).verifyComplete();
+
+        Assertions.assertEquals(InvalidacionChangeStream.Modo.SOLO_TTL, bus.modo());
+        Assertions.assertEquals(0.0, registry.get("franquicias.invalidacion.change_stream").gauge().value());
+        verify(template, never()).getMongoDatabase();
+        verifyNoInteractions(tokens);
+    }
+
+    @Test
+    @DisplayName("error al abrir => propaga para reintentar y queda en modo solo-TTL")
+    void errorSoloTtl() {
+        when(template.executeCommand(any(Document.class))).thenReturn(Mono.error(new IllegalStateException("sin conexión")));
+
+        StepVerifier.create(bus.escuchar()).expectErrorMessage("sin conexión").verify();
+        Assertions.assertEquals(InvalidacionChangeStream.Modo.SOLO_TTL, bus.modo());
+    }
+
+    @Test
+    @DisplayName("deshabilitada => modo solo-TTL; sin token procesado no se guarda nada")
+    void deshabilitada() {
+        bus = nuevo(false, Duration.ofSeconds(1), Duration.ofSeconds(30));
+        bus.iniciar();
+
+        Assertions.assertEquals(InvalidacionChangeStream.Modo.SOLO_TTL, bus.modo());
+        StepVerifier.create(bus.guardarToken()).verifyComplete();
+        verifyNoInteractions(template, tokens);
+    }
+
+    @Test
+    @DisplayName("constructor: token-interval y retry-interval deben ser positivos")
+    void configInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> nuevo(true, Duration.ZERO, Duration.ofSeconds(1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> nuevo(true, Duration.ofSeconds(1), Duration.ZERO));
+    }
+}
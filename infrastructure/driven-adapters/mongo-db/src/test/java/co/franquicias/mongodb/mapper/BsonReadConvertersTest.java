@@ -0,0 +1,101 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class BsonReadConvertersTest {
+
+    private final Instant c = Instant.parse("2024-01-01T00:00:00Z");
+    private final Instant u = Instant.parse("2024-02-01T00:00:00Z");
+
+    private Document producto(String id, String sucursalId, String nombre, int stock) {
+        return new Document("_id", id).append("sucursalId", sucursalId).append("nombre", nombre).append("stock", stock)
+                .append("createdAt", Date.from(c)).append("updatedAt", Date.from(u)).append("version", 3L)
+                .append("_class", "co.franquicias.mongodb.entity.ProductoData");
+    }
+
+    @Test
+    @DisplayName("producto: campos, fechas BSON a Instant y valores ausentes")
+    void producto() {
+        Producto p = BsonReadConverters.ProductoConverter.INSTANCE.convert(producto("p1", "s1", "Leche", 4));
+        Assertions.assertEquals(new Producto("p1", "s1", "Leche", 4, c, u), p);
+
+        ObjectId oid = new ObjectId();
+        Producto vacio = BsonReadConverters.ProductoConverter.INSTANCE.convert(new Document("_id", oid));
+        Assertions.assertEquals(oid.toHexString(), vacio.getId());
+        Assertions.assertEquals(0, vacio.getStock());
+        Assertions.assertNull(vacio.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("franquicia: decodifica el árbol $lookup franquicia → sucursales → productos")
+    void arbolHidratado() {
+        Document d = new Document("_id", "f1").append("nombre", "Norte").append("createdAt", Date.from(c))
+                .append("sucursales", List.of(
+                        new Document("_id", "s1").append("franquiciaId", "f1").append("nombre", "Centro")
+                                .append("productos", List.of(producto("p1", "s1", "Leche", 4), producto("p2", "s1", "Pan", 1))),
+                        new Document("_id", "s2").append("franquiciaId", "f1").append("nombre", "Sur")));
+
+        Franquicia f = BsonReadConverters.FranquiciaConverter.INSTANCE.convert(d);
+
+        Assertions.assertEquals("Norte", f.getNombre());
+        Assertions.assertEquals(c, f.getCreatedAt());
+        Assertions.assertEquals(List.of("s1", "s2"), f.getSucursales().stream().map(Sucursal::getId).toList());
+        Assertions.assertEquals(List.of("Leche", "Pan"),
+                f.getSucursales().get(0).getProductos().stream().map(Producto::getNombre).toList());
+        Assertions.assertEquals(List.of(), f.getSucursales().get(1).getProductos());
+    }
+
+    @Test
+    @DisplayName("registrados en el converter: read(Producto.class, doc) usa el converter")
+    void registradosEnElConverter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(BsonReadConverters.todos());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        Assertions.assertTrue(conversions.hasCustomReadTarget(Document.class, Producto.class));
+        Assertions.assertTrue(conversions.hasCustomReadTarget(Document.class, Sucursal.class));
+        Assertions.assertTrue(conversions.hasCustomReadTarget(Document.class, Franquicia.class));
+        Assertions.assertEquals("Leche", converter.read(Producto.class, producto("p1", "s1", "Leche", 4)).getNombre());
+    }
+
+    @Test
+    @DisplayName("el modelo no tiene campos que los converters no lean")
+    void camposConocidos() throws Exception {
+        Assertions.assertEquals(Set.of("id", "sucursalId", "nombre", "stock", "createdAt", "updatedAt"),
+                propiedades(Producto.class));
+        Assertions.assertEquals(Set.of("id", "franquiciaId", "nombre", "productos", "createdAt", "updatedAt"),
+                propiedades(Sucursal.class));
+        Assertions.assertEquals(Set.of("id", "nombre", "sucursales", "createdAt", "updatedAt"),
+                propiedades(Franquicia.class));
+    }
+
+    private static Set<String> propiedades(Class<?> type) throws Exception {
+        return Arrays.stream(Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors())
+                .map(PropertyDescriptor::getName)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,95 @@
+package co.franquicias.mongodb.mapper;
+
+import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.producto.Producto;
+import co.franquicias.model.sucursal.Sucursal;
+import co.franquicias.mongodb.config.MapperConfig;
+import co.franquicias.mongodb.entity.FranquiciaData;
+import co.franquicias.mongodb.entity.ProductoData;
+import co.franquicias.mongodb.entity.SucursalData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class DataMappersTest {
+
+    private final ModelMapper modelMapper = new MapperConfig().modelMapper();
+    private final Instant c = Instant.parse("2024-01-01T00:00:00Z");
+    private final Instant u = Instant.parse("2024-02-01T00:00:00Z");
+
+    @Test
+    @DisplayName("producto: mismo resultado que ModelMapper en ambos sentidos")
+    void producto() {
+        ProductoData d = ProductoData.builder().id("p1").sucursalId("s1").nombre("Leche").stock(4)
+                .createdAt(c).updatedAt(u).version(7L).build();
+
+        Producto p = DataMappers.PRODUCTO.toEntity(d);
+        Assertions.assertEquals(modelMapper.map(d, Producto.class), p);
+
+        ProductoData vuelta = DataMappers.PRODUCTO.toDocument(p);
+        ProductoData esperado = modelMapper.map(p, ProductoData.class);
+        Assertions.assertEquals(List.of(esperado.getId(), esperado.getSucursalId(), esperado.getNombre(), esperado.getStock(),
+                        esperado.getCreatedAt(), esperado.getUpdatedAt()),
+                List.of(vuelta.getId(), vuelta.getSucursalId(), vuelta.getNombre(), vuelta.getStock(),
+                        vuelta.getCreatedAt(), vuelta.getUpdatedAt()));
+        Assertions.assertNull(vuelta.getVersion());
+    }
+
+    @Test
+    @DisplayName("sucursal: mismo resultado que ModelMapper; productos queda como lista vacía")
+    void sucursal() {
+        SucursalData d = SucursalData.builder().id("s1").franquiciaId("f1").nombre("Centro")
+                .createdAt(c).updatedAt(u).version(2L).build();
+
+        Sucursal s = DataMappers.SUCURSAL.toEntity(d);
+        Assertions.assertEquals(modelMapper.map(d, Sucursal.class), s);
+        Assertions.assertEquals(List.of(), s.getProductos());
+
+        SucursalData vuelta = DataMappers.SUCURSAL.toDocument(s);
+        Assertions.assertEquals(List.of("s1", "f1", "Centro", c, u),
+                List.of(vuelta.getId(), vuelta.getFranquiciaId(), vuelta.getNombre(), vuelta.getCreatedAt(), vuelta.getUpdatedAt()));
+        Assertions.assertNull(vuelta.getVersion());
+    }
+
+    @Test
+    @DisplayName("franquicia: mismo resultado que ModelMapper; campos nulos siguen nulos")
+    void franquicia() {
+        FranquiciaData d = FranquiciaData.builder().id("f1").nombre("Norte").createdAt(c).build();
+
+        Franquicia f = DataMappers.FRANQUICIA.toEntity(d);
+        Assertions.assertEquals(modelMapper.map(d, Franquicia.class), f);
+        Assertions.assertNull(f.getUpdatedAt());
+        Assertions.assertEquals(List.of(), f.getSucursales());
+
+        FranquiciaData vuelta = DataMappers.FRANQUICIA.toDocument(f);
+        Assertions.assertEquals("Norte", vuelta.getNombre());
+        Assertions.assertEquals(c, vuelta.getCreatedAt());
+        Assertions.assertNull(vuelta.getUpdatedAt());
+    }
+
+    @Test
+    @DisplayName("los documentos no tienen campos que los mappers no conozcan")
+    void camposConocidos() throws Exception {
+        Assertions.assertEquals(Set.of("id", "sucursalId", "nombre", "stock", "createdAt", "updatedAt", "version"),
+                propiedades(ProductoData.class));
+        Assertions.assertEquals(Set.of("id", "franquiciaId", "nombre", "createdAt", "updatedAt", "version"),
+                propiedades(SucursalData.class));
+        Assertions.assertEquals(Set.of("id", "nombre", "createdAt", "updatedAt", "version"),
+                propiedades(FranquiciaData.class));
+    }
+
+    private static Set<String> propiedades(Class<?> type) throws Exception {
+        return Arrays.stream(Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors())
+                .map(PropertyDescriptor::getName)
+                .collect(Collectors.toSet());
+    }
+}
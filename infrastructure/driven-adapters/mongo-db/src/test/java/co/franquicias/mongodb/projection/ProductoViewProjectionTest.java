@@ -0,0 +1,173 @@
+package co.franquicias.mongodb.projection;
+
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.mongodb.entity.ProductoViewData;
+import co.franquicias.mongodb.repository.ReactiveProductoViewRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductoViewProjectionTest {
+
+    @Mock ReactiveMongoTemplate template;
+    @Mock ReactiveProductoViewRepository repo;
+
+    ProductoViewProjection projection;
+
+    @BeforeEach
+    void setUp() {
+        projection = new ProductoViewProjection(template, repo);
+    }
+
+    private ProductoViewData fila(String id) {
+        return ProductoViewData.builder()
+                .id(id).productoNombre("P-" + id).stock(4)
+                .sucursalId("s1").sucursalNombre("S1")
+                .franquiciaId("f1").franquiciaNombre("F1")
+                .build();
+    }
+
+    @Test
+    @DisplayName("listar / obtener: leen la colección materializada y exponen las claves de la vista")
+    void lecturas() {
+        when(repo.findAll()).thenReturn(Flux.just(fila("p1"), fila("p2")));
+        when(repo.findById("p1")).thenReturn(Mono.just(fila("p1")));
+
+        StepVerifier.create(projection.listar())
+                .expectNextMatches(m -> m.get("productoId").equals("p1") && m.get("franquiciaNombre").equals("F1"))
+                .expectNextMatches(m -> m.get("productoId").equals("p2"))
+                .verifyComplete();
+        StepVerifier.create(projection.obtener("p1"))
+                .expectNextMatches(m -> m.get("sucursalNombre").equals("S1") && m.get("stock").equals(4))
+                .verifyComplete();
+
+        verifyNoInteractions(template);
+    }
+
+    @Test
+    @DisplayName("refrescarProducto: recalcula la fila con $lookup y la escribe con $merge")
+    void refrescarProducto() {
+        when(template.aggregate(any(Aggregation.class), eq("productos"), eq(Document.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(projection.refrescarProducto("p1"))
+                .verifyComplete();
+
+        ArgumentCaptor<Aggregation> cap = ArgumentCaptor.forClass(Aggregation.class);
+        verify(template).aggregate(cap.capture(), eq("productos"), eq(Document.class));
+        String pipeline = cap.getValue().toString();
+        Assertions.assertTrue(pipeline.contains("$lookup"));
+        Assertions.assertTrue(pipeline.contains("$merge"));
+        Assertions.assertTrue(pipeline.contains(ProductoViewProjection.COLECCION));
+    }
+
+    @Test
+    @DisplayName("refrescarProductos: un solo $merge filtrado por $in; lista vacía no consulta")
+    void refrescarProductos() {
+        when(template.aggregate(any(Aggregation.class), eq("productos"), eq(Document.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(projection.refrescarProductos(List.of("p1", "p2"))).verifyComplete();
+        StepVerifier.create(projection.refrescarProductos(List.of())).verifyComplete();
+
+        ArgumentCaptor<Aggregation> cap = ArgumentCaptor.forClass(Aggregation.class);
+        verify(template, times(1)).aggregate(cap.capture(), eq("productos"), eq(Document.class));
+        Assertions.assertTrue(cap.getValue().toString().contains("$in"));
+    }
+
+    @Test
+    @DisplayName("actualizarStock / renombrarFranquicia / eliminaciones: updates puntuales sobre la vista")
+    void mantenimientoPuntual() {
+        when(template.updateFirst(any(Query.class), any(Update.class), eq(ProductoViewData.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(template.updateMulti(any(Query.class), any(Update.class), eq(ProductoViewData.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(3, 3L, null)));
+        when(template.remove(any(Query.class), eq(ProductoViewData.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(2)));
+        when(repo.deleteById("p1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(projection.actualizarStock("p1", 7)).verifyComplete();
+        StepVerifier.create(projection.renombrarFranquicia("f1", "Nueva")).verifyComplete();
+        StepVerifier.create(projection.eliminarProducto("p1")).verifyComplete();
+        StepVerifier.create(projection.eliminarPorSucursal("s1")).verifyComplete();
+        StepVerifier.create(projection.eliminarPorFranquicia("f1")).verifyComplete();
+
+        verify(template, times(2)).remove(any(Query.class), eq(ProductoViewData.class));
+        verify(template, never()).aggregate(any(Aggregation.class), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("actualizarStockLote: un bulkWrite desordenado; lote vacío no toca Mongo")
+    void actualizarStockLote() {
+        ReactiveBulkOperations ops = mock(ReactiveBulkOperations.class);
+        when(template.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoViewData.class)).thenReturn(ops);
+        when(ops.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        StepVerifier.create(projection.actualizarStockLote(List.of(
+                        ActualizacionStock.builder().productoId("p1").sucursalId("s1").stock(3).build(),
+                        ActualizacionStock.builder().productoId("p2").sucursalId("s1").stock(0).build())))
+                .verifyComplete();
+        StepVerifier.create(projection.actualizarStockLote(List.of())).verifyComplete();
+
+        verify(ops, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(template, times(1)).bulkOps(any(BulkOperations.BulkMode.class), eq(ProductoViewData.class));
+    }
+
+    @Test
+    @DisplayName("reconstruir: $out sobre productos_view y devuelve el total materializado")
+    void reconstruir() {
+        when(template.aggregate(any(Aggregation.class), eq("productos"), eq(Document.class))).thenReturn(Flux.empty());
+        when(template.count(any(Query.class), eq(ProductoViewData.class))).thenReturn(Mono.just(12L));
+
+        StepVerifier.create(projection.reconstruir())
+                .expectNext(12L)
+                .verifyComplete();
+
+        ArgumentCaptor<Aggregation> cap = ArgumentCaptor.forClass(Aggregation.class);
+        verify(template).aggregate(cap.capture(), eq("productos"), eq(Document.class));
+        Assertions.assertTrue(cap.getValue().toString().contains("$out"));
+    }
+
+    @Test
+    @DisplayName("verificar: combina estados por producto con los sobrantes de la vista")
+    void verificar() {
+        when(template.aggregate(any(Aggregation.class), eq("productos"), eq(Document.class)))
+                .thenReturn(Flux.just(
+                        new Document("_id", "ok").append("n", 8),
+                        new Document("_id", "desactualizado").append("n", 2)));
+        when(template.aggregate(any(Aggregation.class), eq(ProductoViewProjection.COLECCION), eq(Document.class)))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(projection.verificar())
+                .assertNext(r -> {
+                    Assertions.assertEquals(10L, r.get("productos"));
+                    Assertions.assertEquals(0L, r.get("faltantes"));
+                    Assertions.assertEquals(2L, r.get("desactualizados"));
+                    Assertions.assertEquals(0L, r.get("sobrantes"));
+                    Assertions.assertEquals(false, r.get("consistente"));
+                })
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,45 @@
+package co.franquicias.mongodb.search;
+
+import co.franquicias.model.producto.Producto;
+import co.franquicias.mongodb.adapter.ProductoAdapter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductoNgramIndexLoaderTest {
+
+    @Mock ProductoAdapter productoAdapter;
+
+    @Test
+    @DisplayName("cargar: reinicia, indexa todo el catálogo y marca el índice como disponible")
+    void cargar() {
+        ProductoNgramIndex index = new ProductoNgramIndex(true, 8);
+        index.indexar(Producto.builder().id("viejo").nombre("Obsoleto").build());
+        when(productoAdapter.findAll()).thenReturn(Flux.just(
+                Producto.builder().id("p1").nombre("Arroz").build(),
+                Producto.builder().id("p2").nombre("Arveja").build()));
+
+        StepVerifier.create(new ProductoNgramIndexLoader(index, productoAdapter).cargar())
+                .expectNext(2)
+                .verifyComplete();
+
+        Assertions.assertTrue(index.disponible());
+        Assertions.assertEquals(2, index.buscar("ar", 10).size());
+        Assertions.assertTrue(index.buscar("obsoleto", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("alArrancar: índice deshabilitado no consulta Mongo")
+    void deshabilitado() {
+        new ProductoNgramIndexLoader(new ProductoNgramIndex(false, 8), productoAdapter).alArrancar();
+        verifyNoInteractions(productoAdapter);
+    }
+}
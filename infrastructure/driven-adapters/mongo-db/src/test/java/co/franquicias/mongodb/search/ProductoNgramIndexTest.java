@@ -0,0 +1,144 @@
+package co.franquicias.mongodb.search;
+
+import co.franquicias.model.producto.Producto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class ProductoNgramIndexTest {
+
+    ProductoNgramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductoNgramIndex(true, 8);
+        index.indexar(prod("p1", "Café Molido"));
+        index.indexar(prod("p2", "Descafeinado"));
+        index.indexar(prod("p3", "Leche Entera"));
+        index.indexar(prod("p4", "Café"));
+        index.marcarListo();
+    }
+
+    private Producto prod(String id, String nombre) {
+        return Producto.builder().id(id).sucursalId("s1").nombre(nombre).stock(1).build();
+    }
+
+    @Test
+    @DisplayName("buscar: infijo sin mayúsculas ni tildes, prefijos primero y luego nombre más corto")
+    void rankingPrefijoInfijo() {
+        Assertions.assertTrue(index.disponible());
+        Assertions.assertEquals(List.of("p4", "p1", "p2"), index.buscar("CAFE", 10));
+        Assertions.assertEquals(List.of("p4"), index.buscar("cafe", 1));
+    }
+
+    @Test
+    @DisplayName("buscar: 1-2 caracteres son de prefijo (una sola lista, sin recorrer el catálogo); sin coincidencias")
+    void consultasCortas() {
+        Assertions.assertEquals(List.of("p3"), index.buscar("le", 10));
+        Assertions.assertEquals(List.of("p4", "p1"), index.buscar("Ca", 10));
+        Assertions.assertEquals(List.of("p4", "p1"), index.buscar("c", 10));
+        Assertions.assertEquals(List.of("p2"), index.buscar("D", 10));
+        Assertions.assertTrue(index.buscar("e", 10).isEmpty());
+        Assertions.assertTrue(index.buscar("mo", 10).isEmpty());
+        Assertions.assertTrue(index.buscar("xyz", 10).isEmpty());
+        Assertions.assertTrue(index.buscar("  ", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("similares: tolera errores de tipeo ordenando por trigramas compartidos")
+    void similares() {
+        Assertions.assertEquals(List.of("p3"), index.similares("lehce", 5));
+        Assertions.assertEquals(List.of("p4", "p1", "p2"), index.similares("cafe", 5));
+        Assertions.assertEquals(List.of("p4"), index.similares("cafe", 1));
+        Assertions.assertTrue(index.similares("zzz", 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("ids UUID: se empaquetan y vuelven en su forma canónica; altas y bajas mantienen la tabla de ids")
+    void idsUuid() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String id = UUID.randomUUID().toString();
+            ids.add(id);
+            index.indexar(prod(id, "Arroz " + i));
+        }
+        for (int i = 0; i < ids.size(); i += 2) {
+            index.eliminar(ids.get(i));
+        }
+
+        Assertions.assertEquals(4 + 1500, index.tamano());
+        Assertions.assertEquals(List.of(ids.get(1)), index.buscar("arroz 1", 1));
+        Assertions.assertTrue(index.buscar("arroz 2998", 10).isEmpty());
+        // el upsert encuentra el ordinal de cada id sobreviviente
+        for (int i = 1; i < ids.size(); i += 2) {
+            index.indexar(prod(ids.get(i), "Avena " + i));
+        }
+        Assertions.assertEquals(4 + 1500, index.tamano());
+        Assertions.assertTrue(index.buscar("arroz", 10).isEmpty());
+        Assertions.assertEquals(List.of(ids.get(2999)), index.buscar("avena 2999", 10));
+    }
+
+    @Test
+    @DisplayName("indexar (upsert) y eliminar mantienen las listas de trigramas")
+    void mantenimiento() {
+        index.indexar(prod("p3", "Leche Deslactosada"));
+        Assertions.assertTrue(index.buscar("entera", 10).isEmpty());
+        Assertions.assertEquals(List.of("p3"), index.buscar("deslac", 10));
+
+        index.eliminar("p1");
+        Assertions.assertEquals(List.of("p4", "p2"), index.buscar("cafe", 10));
+        Assertions.assertEquals(3, index.tamano());
+    }
+
+    @Test
+    @DisplayName("eliminar libera el ordinal: las altas siguientes lo reutilizan y no quedan huecos por recorrer")
+    void reutilizaOrdinales() {
+        for (int ronda = 0; ronda < 10; ronda++) {
+            for (int i = 0; i < 100; i++) {
+                index.indexar(prod("r" + ronda + "-" + i, "Ronda " + ronda + " item " + i));
+            }
+            for (int i = 0; i < 100; i++) {
+                index.eliminar("r" + ronda + "-" + i);
+            }
+        }
+        index.indexar(prod("x", "X"));
+
+        Assertions.assertEquals(5, index.tamano());
+        Assertions.assertEquals(104, index.ordinalesAsignados());
+        Assertions.assertEquals(List.of("x"), index.buscar("x", 10));
+        Assertions.assertTrue(index.buscar("ronda", 10).isEmpty());
+        Assertions.assertEquals(List.of("p4", "p1", "p2"), index.buscar("cafe", 10));
+    }
+
+    @Test
+    @DisplayName("límite de memoria: al superarlo el índice se vacía y deja de estar disponible")
+    void saturacion() {
+        ProductoNgramIndex chico = new ProductoNgramIndex(true, 1);
+        String largo = "x".repeat(20_000);
+        for (int i = 0; i < 100; i++) {
+            chico.indexar(prod("p" + i, largo + i));
+        }
+        chico.marcarListo();
+        Assertions.assertFalse(chico.disponible());
+        Assertions.assertEquals(0, chico.tamano());
+    }
+
+    @Test
+    @DisplayName("normalizar / trigramas: sin tildes y trigramas distintos")
+    void normalizarYTrigramas() {
+        Assertions.assertEquals("azucar morena", ProductoNgramIndex.normalizar("  Azúcar MORENA "));
+        Assertions.assertEquals(1, ProductoNgramIndex.trigramas("aaaa").length);
+        Assertions.assertEquals(0, ProductoNgramIndex.trigramas("ab").length);
+    }
+
+    @Test
+    @DisplayName("constructor: max-memory-mb debe ser positivo")
+    void memoriaInvalida() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ProductoNgramIndex(true, 0));
+    }
+}
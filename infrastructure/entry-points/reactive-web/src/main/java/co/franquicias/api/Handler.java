@@ -1,7 +1,10 @@
 package co.franquicias.api;
 
+import co.franquicias.api.coalescing.CoalescedorLecturas;
 import co.franquicias.api.dto.franquicia.CreateFranquiciaRequest;
 import co.franquicias.api.dto.franquicia.UpdateFranquiciaRequest;
+import co.franquicias.api.dto.producto.ActualizacionStockRequest;
+import co.franquicias.api.dto.producto.AjustarStockRequest;
 import co.franquicias.api.dto.producto.CreateProductoRequest;
 import co.franquicias.api.dto.producto.ProductoViewDTO;
 import co.franquicias.api.dto.producto.UpdateProductoRequest;
@@ -9,11 +12,21 @@ import co.franquicias.api.dto.producto.UpdateStockRequest;
 import co.franquicias.api.dto.sucursal.CreateSucursalRequest;
 import co.franquicias.api.dto.sucursal.UpdateSucursalRequest;
 import co.franquicias.api.mapper.DtoMappers;
+import co.franquicias.api.mapper.ImportacionMappers;
+import co.franquicias.api.snapshot.SnapshotsReportes;
+import co.franquicias.api.snapshot.SnapshotsReportes.Reporte;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.model.franquicia.Franquicia;
 import co.franquicias.usecase.franquicia.FranquiciaUseCase;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.*;
@@ -21,14 +34,30 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
 public class Handler {
 
+    /** Tamaño de página cuando se pide paginación (`after`) sin `limit`. */
+    private static final int LIMITE_POR_DEFECTO = 50;
+
+    /** Tipos que se emiten elemento a elemento según llegan del cursor de Mongo. */
+    private static final List<MediaType> STREAMING = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
     private final FranquiciaUseCase useCase;
 
+    /** Lecturas puntuales que los dashboards repiten en ráfaga: solicitudes idénticas comparten una lectura. */
+    private final CoalescedorLecturas coalescedor;
+
+    /** Reportes agregados servidos desde snapshots ya serializados; las escrituras los invalidan. */
+    private final SnapshotsReportes snapshots;
+
     // ---------- Franquicia ----------
     public Mono<ServerResponse> crearFranquicia(ServerRequest req) {
         return req.bodyToMono(CreateFranquiciaRequest.class)
@@ -41,18 +70,18 @@ public class Handler {
     }
 
     public Mono<ServerResponse> obtenerFranquicias(ServerRequest req) {
-        boolean verProducto = req.queryParam("includeProductos")
-                .map(String::toLowerCase)
-                .map(v -> v.equals("true") || v.equals("1") || v.equals("yes"))
-                .orElse(false);
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(useCase.obtenerFranquicias(verProducto), Franquicia.class);
+        boolean verProducto = verProductos(req);
+        if (paginado(req)) {
+            return limite(req)
+                    .flatMap(limit -> useCase.obtenerFranquicias(verProducto, limit, cursor(req)))
+                    .flatMap(this::okPagina);
+        }
+        return listado(req, useCase.obtenerFranquicias(verProducto), Franquicia.class);
     }
 
     public Mono<ServerResponse> obtenerFranquicia(ServerRequest req) {
         String fId = req.pathVariable("franquiciaId");
-        return useCase.obtenerPorId(fId)
+        return coalescedor.mono("franquicia", fId, () -> useCase.obtenerPorId(fId))
                 .flatMap(f -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(f));
     }
 
@@ -65,6 +94,7 @@ public class Handler {
     public Mono<ServerResponse> eliminarFranquicia(ServerRequest req) {
         String fId = req.pathVariable("franquiciaId");
         return useCase.eliminarFranquiciaPorId(fId)
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .flatMap(msg -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", msg)));
     }
 
@@ -73,6 +103,7 @@ public class Handler {
         return req.bodyToMono(UpdateFranquiciaRequest.class)
                 .map(b -> Franquicia.builder().nombre(b.nombre()).build())
                 .flatMap(patch -> useCase.actualizarFranquicia(fId, patch))
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .flatMap(f -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(f));
     }
 
@@ -81,11 +112,17 @@ public class Handler {
         String fId = req.pathVariable("franquiciaId");
         return req.bodyToMono(CreateSucursalRequest.class)
                 .flatMap(b -> useCase.agregarSucursal(fId, b.nombre()))
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .flatMap(s -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(s));
     }
 
     public Mono<ServerResponse> listarSucursalesDeFranquicia(ServerRequest req) {
         String fId = req.pathVariable("franquiciaId");
+        if (paginado(req)) {
+            return limite(req)
+                    .flatMap(limit -> useCase.obtenerSucursalPorFranquiciaId(fId, limit, cursor(req)))
+                    .flatMap(this::okPagina);
+        }
         return ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(useCase.obtenerSucursalPorFranquiciaId(fId), Sucursal.class);
@@ -93,13 +130,14 @@ public class Handler {
 
     public Mono<ServerResponse> obtenerSucursal(ServerRequest req) {
         String sId = req.pathVariable("sucursalId");
-        return useCase.obtenerSucursalPorId(sId)
+        return coalescedor.mono("sucursal", sId, () -> useCase.obtenerSucursalPorId(sId))
                 .flatMap(suc -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(suc));
     }
 
     public Mono<ServerResponse> eliminarSucursal(ServerRequest req) {
         String sId = req.pathVariable("sucursalId");
         return useCase.eliminarSucursalPorId(sId)
+                .doOnSuccess(x -> invalidarReportes(null))
                 .flatMap(msg -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", msg)));
     }
 
@@ -111,6 +149,7 @@ public class Handler {
                         .franquiciaId(b.franquiciaId())
                         .build())
                 .flatMap(patch -> useCase.actualizarSucursal(sId, patch))
+                .doOnSuccess(x -> invalidarReportes(null))
                 .flatMap(s -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(s));
     }
 
@@ -120,6 +159,7 @@ public class Handler {
         String sId = req.pathVariable("sucursalId");
         return req.bodyToMono(CreateProductoRequest.class)
                 .flatMap(b -> useCase.agregarProducto(fId, sId, b.nombre(), b.stock()))
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .flatMap(p -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(p));
     }
 
@@ -128,6 +168,7 @@ public class Handler {
         String sId = req.pathVariable("sucursalId");
         String pId = req.pathVariable("productoId");
         return useCase.eliminarProducto(fId, sId, pId)
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .then(ServerResponse.noContent().build());
     }
 
@@ -137,9 +178,48 @@ public class Handler {
         String pId = req.pathVariable("productoId");
         return req.bodyToMono(UpdateStockRequest.class)
                 .flatMap(b -> useCase.actualizarStock(fId, sId, pId, b.stock()))
+                .doOnSuccess(x -> invalidarReportes(fId))
                 .flatMap(p -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(p));
     }
 
+    public Mono<ServerResponse> ajustarStock(ServerRequest req) {
+        String fId = req.pathVariable("franquiciaId");
+        String sId = req.pathVariable("sucursalId");
+        String pId = req.pathVariable("productoId");
+        return req.bodyToMono(AjustarStockRequest.class)
+                .flatMap(b -> useCase.ajustarStock(fId, sId, pId, b.delta()))
+                .doOnSuccess(x -> invalidarReportes(fId))
+                .flatMap(p -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(p));
+    }
+
+    /**
+     * Cuerpo: arreglo JSON o NDJSON de {productoId, sucursalId, stock}; responde un resultado por
+     * entrada en NDJSON (o SSE si se pide en Accept).
+     */
+    public Mono<ServerResponse> actualizarStockLote(ServerRequest req) {
+        Flux<ActualizacionStock> cambios = req.bodyToFlux(ActualizacionStockRequest.class)
+                .map(b -> ActualizacionStock.builder()
+                        .productoId(b.productoId())
+                        .sucursalId(b.sucursalId())
+                        .stock(b.stock())
+                        .build());
+        return resultados(req, useCase.actualizarStockLote(cambios).doOnComplete(() -> invalidarReportes(null)),
+                ResultadoActualizacion.class);
+    }
+
+    /**
+     * Importación masiva: cuerpo NDJSON (por defecto) o {@code text/csv}, leído línea a línea en
+     * streaming; responde un resultado por fila en NDJSON (o SSE si se pide en Accept).
+     */
+    public Mono<ServerResponse> importarProductos(ServerRequest req) {
+        String fId = req.pathVariable("franquiciaId");
+        boolean csv = req.headers().contentType().map(TEXT_CSV::equalsTypeAndSubtype).orElse(false);
+        Flux<String> lineas = ImportacionMappers.lineas(req.bodyToFlux(DataBuffer.class));
+        Flux<ImportacionProducto> filas = csv ? ImportacionMappers.desdeCsv(lineas) : ImportacionMappers.desdeNdjson(lineas);
+        return resultados(req, useCase.importarProductos(fId, filas).doOnComplete(() -> invalidarReportes(fId)),
+                ResultadoImportacion.class);
+    }
+
     public Mono<ServerResponse> actualizarProducto(ServerRequest req) {
         String pId = req.pathVariable("productoId");
         return req.bodyToMono(UpdateProductoRequest.class)
@@ -149,44 +229,50 @@ public class Handler {
                         .sucursalId(b.sucursalId())
                         .build())
                 .flatMap(patch -> useCase.actualizarProducto(pId, patch))
+                .doOnSuccess(x -> invalidarReportes(null))
                 .flatMap(p -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(p));
     }
 
     // ---------- Reportes / consultas ----------
     public Mono<ServerResponse> maxStockPorSucursal(ServerRequest req) {
         String fId = req.pathVariable("franquiciaId");
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(useCase.maxStockPorSucursal(fId), Map.class);
+        return snapshots.responder(req, Reporte.MAX_STOCK, fId, () -> useCase.maxStockPorSucursal(fId));
     }
 
     public Mono<ServerResponse> getAllProductos(ServerRequest req) {
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(useCase.getAllProductos(), Producto.class);
+        if (paginado(req)) {
+            return limite(req)
+                    .flatMap(limit -> useCase.getAllProductos(limit, cursor(req)))
+                    .flatMap(this::okPagina);
+        }
+        return listado(req, useCase.getAllProductos(), Producto.class);
     }
 
     public Mono<ServerResponse> getProductoGlobal(ServerRequest req) {
         String pId = req.pathVariable("productoId");
-        return useCase.getProductoGlobal(pId)
+        return coalescedor.mono("producto-global", pId, () -> useCase.getProductoGlobal(pId))
                 .flatMap(p -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(p));
     }
 
     public Mono<ServerResponse> searchProductosGlobal(ServerRequest req) {
         String q = req.queryParam("nombreLike").orElse("");
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(useCase.searchProductosGlobal(q), Producto.class);
+        return limite(req)
+                .flatMap(limit -> useCase.searchProductosGlobal(q, limit))
+                .flatMap(r -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(r));
     }
 
     public Mono<ServerResponse> getAllProductosView(ServerRequest req) {
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(
-                        useCase.getAllProductosViewRaw()
-                                .map(o -> DtoMappers.toProductoViewDTO((Map<String,Object>) o)),
-                        ProductoViewDTO.class
-                );
+        if (paginado(req)) {
+            return limite(req)
+                    .flatMap(limit -> useCase.getAllProductosViewRaw(limit, cursor(req)))
+                    .map(p -> new Pagina<>(p.getItems().stream().map(DtoMappers::toProductoViewDTO).toList(),
+                            p.getNextCursor()))
+                    .flatMap(this::okPagina);
+        }
+        return listado(req,
+                useCase.getAllProductosViewRaw()
+                        .map(o -> DtoMappers.toProductoViewDTO((Map<String,Object>) o)),
+                ProductoViewDTO.class);
     }
 
     public Mono<ServerResponse> getProductoGlobalView(ServerRequest req) {
@@ -196,6 +282,18 @@ public class Handler {
                 .flatMap(dto -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(dto));
     }
 
+    // ---------- Administración productos_view ----------
+    public Mono<ServerResponse> reconstruirVistaProductos(ServerRequest req) {
+        return useCase.reconstruirVistaProductos()
+                .flatMap(n -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("documentos", n)));
+    }
+
+    public Mono<ServerResponse> verificarVistaProductos(ServerRequest req) {
+        return useCase.verificarVistaProductos()
+                .flatMap(r -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(r));
+    }
+
     public Mono<ServerResponse> getProductosDeSucursal(ServerRequest req) {
         String fId = req.pathVariable("franquiciaId");
         String sId = req.pathVariable("sucursalId");
@@ -203,4 +301,100 @@ public class Handler {
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(useCase.getProductosDeSucursal(fId, sId), Producto.class);
     }
+
+    /** Una escritura deja viejos los reportes de su franquicia; si no se conoce la franquicia, los de todas. */
+    private void invalidarReportes(String fId) {
+        if (fId != null) {
+            snapshots.invalidar(Reporte.MAX_STOCK, fId);
+        } else {
+            snapshots.invalidar(Reporte.MAX_STOCK);
+        }
+    }
+
+    // ---------- Streaming ----------
+
+    /**
+     * Listado completo: arreglo JSON por defecto, o NDJSON / SSE si el cliente los pide en Accept.
+     * En modo streaming el encoder escribe y hace flush de cada elemento con backpressure hacia el cursor.
+     */
+    private <T> Mono<ServerResponse> listado(ServerRequest req, Flux<T> items, Class<T> tipo) {
+        MediaType mediaType = tipoStreaming(req).orElse(MediaType.APPLICATION_JSON);
+        return ServerResponse.ok()
+                .contentType(mediaType)
+                .body(items, tipo);
+    }
+
+    /**
+     * Resultados de una carga masiva, uno por entrada: siempre en streaming (NDJSON salvo que se pida
+     * SSE), así el sobre de {@code ResponseEnvelopeFilter} no acumula en memoria la respuesta entera.
+     */
+    private <T> Mono<ServerResponse> resultados(ServerRequest req, Flux<T> items, Class<T> tipo) {
+        return ServerResponse.ok()
+                .contentType(tipoStreaming(req).orElse(MediaType.APPLICATION_NDJSON))
+                .body(items, tipo);
+    }
+
+    private static Optional<MediaType> tipoStreaming(ServerRequest req) {
+        return req.headers().accept().stream()
+                .flatMap(aceptado -> STREAMING.stream().filter(aceptado::equalsTypeAndSubtype))
+                .findFirst();
+    }
+
+    private static boolean streaming(ServerRequest req) {
+        return tipoStreaming(req).isPresent();
+    }
+
+    // ---------- Revisiones (GET condicional, ver CachePolicy) ----------
+
+    public Mono<Revision> revisionFranquicia(ServerRequest req) {
+        String fId = req.pathVariable("franquiciaId");
+        return coalescedor.mono("revision-franquicia", fId, () -> useCase.revisionFranquicia(fId));
+    }
+
+    public Mono<Revision> revisionSucursal(ServerRequest req) {
+        String sId = req.pathVariable("sucursalId");
+        return coalescedor.mono("revision-sucursal", sId, () -> useCase.revisionSucursal(sId));
+    }
+
+    /**
+     * Solo el arreglo JSON completo sin productos lleva validadores: una página o un stream se sirven
+     * siempre, y la revisión del árbol con productos recorrería las versiones de todo el catálogo.
+     */
+    public Mono<Revision> revisionFranquicias(ServerRequest req) {
+        if (paginado(req) || streaming(req) || verProductos(req)) {
+            return Mono.empty();
+        }
+        return coalescedor.mono("revision-franquicias", "todas", useCase::revisionFranquicias);
+    }
+
+    private static boolean verProductos(ServerRequest req) {
+        return req.queryParam("includeProductos")
+                .map(String::toLowerCase)
+                .map(v -> v.equals("true") || v.equals("1") || v.equals("yes"))
+                .orElse(false);
+    }
+
+    // ---------- Paginación keyset ----------
+
+    /** Se pagina solo si el cliente envía `limit` o `after`; sin ellos se conserva el listado completo. */
+    private static boolean paginado(ServerRequest req) {
+        return req.queryParam("limit").isPresent() || req.queryParam("after").isPresent();
+    }
+
+    private static Mono<Integer> limite(ServerRequest req) {
+        return Mono.fromCallable(() -> req.queryParam("limit")
+                        .map(String::trim)
+                        .map(Integer::parseInt)
+                        .orElse(LIMITE_POR_DEFECTO))
+                .onErrorMap(NumberFormatException.class,
+                        e -> new IllegalArgumentException("limit debe ser un número entero"));
+    }
+
+    private static String cursor(ServerRequest req) {
+        return req.queryParam("after").filter(a -> !a.isBlank()).orElse(null);
+    }
+
+    private Mono<ServerResponse> okPagina(Pagina<?> pagina) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(pagina);
+    }
 }
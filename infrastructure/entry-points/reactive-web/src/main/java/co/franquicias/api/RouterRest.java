@@ -1,5 +1,6 @@
 package co.franquicias.api;
 
+import co.franquicias.api.http.CachePolicy;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,8 +15,16 @@ public class RouterRest {
 
     private final Handler handler;
 
+    /**
+     * Política de caché por ruta: las lecturas con revisión (ver {@link CachePolicy}) se revalidan con
+     * ETag/Last-Modified; el resto queda en {@code no-store}.
+     */
     @Bean
     public RouterFunction<ServerResponse> routerFunction() {
+        CachePolicy franquicias = CachePolicy.revalidar(handler::revisionFranquicias);
+        CachePolicy franquicia  = CachePolicy.revalidar(handler::revisionFranquicia);
+        CachePolicy sucursal    = CachePolicy.revalidar(handler::revisionSucursal);
+
         return route()
                 // Productos
                 .GET   ("/api/productos/search",                handler::searchProductosGlobal)
@@ -25,13 +34,14 @@ public class RouterRest {
                 .GET   ("/api/productos/{productoId}",          handler::getProductoGlobal)
 
                 .PATCH ("/api/productos/{productoId}",          handler::actualizarProducto)
+                .POST  ("/api/productos/stock/bulk",            handler::actualizarStockLote)
 
                 // Franquicias
                 .POST  ("/api/franquicias",                     handler::crearFranquicia)
-                .GET   ("/api/franquicias",                     handler::obtenerFranquicias)
+                .GET   ("/api/franquicias",                     franquicias.apply(handler::obtenerFranquicias))
 
                 .GET   ("/api/franquicias/by-name",             handler::obtenerFranquiciaPorNombre)
-                .GET   ("/api/franquicias/{franquiciaId}",      handler::obtenerFranquicia)
+                .GET   ("/api/franquicias/{franquiciaId}",      franquicia.apply(handler::obtenerFranquicia))
                 .DELETE("/api/franquicias/{franquiciaId}",      handler::eliminarFranquicia)
                 .PATCH ("/api/franquicias/{franquiciaId}",      handler::actualizarFranquicia)
 
@@ -40,7 +50,7 @@ public class RouterRest {
                 .GET("/api/franquicias/{franquiciaId}/sucursales",    handler::listarSucursalesDeFranquicia)
 
                 // NUEVOS:
-                .GET   ("/api/sucursales/{sucursalId}",         handler::obtenerSucursal)
+                .GET   ("/api/sucursales/{sucursalId}",         sucursal.apply(handler::obtenerSucursal))
                 .DELETE("/api/sucursales/{sucursalId}",         handler::eliminarSucursal)
                 .PATCH ("/api/sucursales/{sucursalId}",         handler::actualizarSucursal)
 
@@ -48,8 +58,14 @@ public class RouterRest {
                 .POST  ("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos", handler::agregarProducto)
                 .DELETE("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}", handler::eliminarProducto)
                 .PATCH ("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}/stock", handler::actualizarStock)
+                .PATCH ("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}/stock/delta", handler::ajustarStock)
                 .GET   ("/api/franquicias/{franquiciaId}/max-stock-por-sucursal", handler::maxStockPorSucursal)
                 .GET   ("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos", handler::getProductosDeSucursal)
+                .POST  ("/api/franquicias/{franquiciaId}/productos/import", handler::importarProductos)
+
+                // Administración de la vista materializada
+                .POST  ("/api/admin/productos-view/rebuild",     handler::reconstruirVistaProductos)
+                .GET   ("/api/admin/productos-view/consistency", handler::verificarVistaProductos)
                 .build();
     }
 }
@@ -0,0 +1,137 @@
+package co.franquicias.api.coalescing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight para lecturas idénticas y concurrentes del {@code Handler} (p. ej. el mismo
+ * {@code GET /api/franquicias/{id}} desde cientos de dashboards): la primera solicitud de una clave
+ * (operación + argumentos) dispara la lectura al caso de uso y las que llegan mientras está en curso
+ * se suman a ella con {@link Mono#share()}, recibiendo el mismo resultado o el mismo error.
+ * <p>
+ * No es una caché: la clave sale de la tabla en cuanto la lectura termina, así que una solicitud
+ * posterior vuelve a leer. Lo único que puede ver es el estado de una lectura que empezó antes que
+ * ella, igual que si hubiera llegado un instante antes. La tabla se acota a {@code max-keys} claves
+ * en curso; por encima, la lectura va directa sin coalescer.
+ */
+@Component
+public class CoalescedorLecturas {
+
+    private record Clave(String operacion, String argumentos) { }
+
+    private record Contadores(Counter origen, Counter compartida, Counter desborde) { }
+
+    private final boolean enabled;
+    private final int maxClaves;
+    private final MeterRegistry registry;
+
+    private final Map<Clave, Mono<?>> enCurso = new ConcurrentHashMap<>();
+    private final Map<String, Contadores> contadores = new ConcurrentHashMap<>();
+    private final LongAdder solicitudes = new LongAdder();
+    private final LongAdder lecturas = new LongAdder();
+
+    public CoalescedorLecturas(MeterRegistry registry,
+                               @Value("${franquicias.coalescing.enabled:true}") boolean enabled,
+                               @Value("${franquicias.coalescing.max-keys:1000}") int maxClaves) {
+        if (maxClaves <= 0) {
+            throw new IllegalArgumentException("franquicias.coalescing.max-keys debe ser mayor a 0");
+        }
+        this.registry = registry;
+        this.enabled = enabled;
+        this.maxClaves = maxClaves;
+
+        Gauge.builder("franquicias.coalescing.en_curso", enCurso, Map::size)
+                .description("Lecturas distintas en curso que admiten solicitudes coalescidas").register(registry);
+        Gauge.builder("franquicias.coalescing.coalescencia", this, CoalescedorLecturas::coalescencia)
+                .description("Solicitudes atendidas por cada lectura al caso de uso").register(registry);
+    }
+
+    /** Lectura de {@code operacion} con {@code argumentos} como clave; {@code lectura} se invoca solo si nadie la tiene en curso. */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> mono(String operacion, String argumentos, Supplier<Mono<T>> lectura) {
+        if (!enabled) {
+            return Mono.defer(lectura);
+        }
+        return Mono.defer(() -> {
+            Clave clave = new Clave(operacion, argumentos);
+            Contadores c = contadores(operacion);
+            solicitudes.increment();
+
+            Mono<?> existente = enCurso.get(clave);
+            if (existente != null) {
+                c.compartida().increment();
+                return (Mono<T>) existente;
+            }
+            if (enCurso.size() >= maxClaves) {
+                c.desborde().increment();
+                lecturas.increment();
+                return lectura.get();
+            }
+
+            // la referencia permite que solo esta lectura se quite a sí misma de la tabla
+            AtomicReference<Mono<T>> propia = new AtomicReference<>();
+            Mono<T> compartida = Mono.defer(lectura)
+                    .doFinally(s -> enCurso.remove(clave, propia.get()))
+                    .share();
+            propia.set(compartida);
+
+            existente = enCurso.putIfAbsent(clave, compartida);
+            if (existente != null) {
+                c.compartida().increment();
+                return (Mono<T>) existente;
+            }
+            c.origen().increment();
+            lecturas.increment();
+            return compartida;
+        });
+    }
+
+    /**
+     * Variante para listados acotados (p. ej. una fila por sucursal): se comparte la lista completa,
+     * de modo que quien se suma tarde no pierde los elementos ya emitidos.
+     */
+    public <T> Flux<T> flux(String operacion, String argumentos, Supplier<Flux<T>> lectura) {
+        if (!enabled) {
+            return Flux.defer(lectura);
+        }
+        return this.<List<T>>mono(operacion, argumentos, () -> lectura.get().collectList())
+                .flatMapIterable(Function.identity());
+    }
+
+    int enCurso() {
+        return enCurso.size();
+    }
+
+    private double coalescencia() {
+        long l = lecturas.sum();
+        return l == 0 ? 0.0 : (double) solicitudes.sum() / l;
+    }
+
+    private Contadores contadores(String operacion) {
+        return contadores.computeIfAbsent(operacion, op -> new Contadores(
+                contador(op, "origen", "Solicitudes que dispararon la lectura al caso de uso"),
+                contador(op, "compartida", "Solicitudes que se sumaron a una lectura en curso"),
+                contador(op, "desborde", "Solicitudes sin coalescer por tabla de claves llena")));
+    }
+
+    private Counter contador(String operacion, String resultado, String descripcion) {
+        return Counter.builder("franquicias.coalescing.solicitudes")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .description(descripcion)
+                .register(registry);
+    }
+}
@@ -0,0 +1,7 @@
+package co.franquicias.api.dto.producto;
+
+public record ActualizacionStockRequest(
+        String productoId,
+        String sucursalId,
+        Integer stock
+) {}
@@ -0,0 +1,5 @@
+package co.franquicias.api.dto.producto;
+
+public record AjustarStockRequest(
+        int delta
+) {}
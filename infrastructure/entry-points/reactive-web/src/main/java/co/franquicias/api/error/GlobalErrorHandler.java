@@ -1,5 +1,6 @@
 package co.franquicias.api.error;
 
+import co.franquicias.model.producto.StockInsuficienteException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -63,6 +64,7 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
 
         if (e instanceof DuplicateKeyException)               return HttpStatus.CONFLICT;               // 409
         if (e instanceof DataIntegrityViolationException)     return HttpStatus.CONFLICT;               // 409
+        if (e instanceof StockInsuficienteException)          return HttpStatus.CONFLICT;               // 409
 
         if (e instanceof NoSuchElementException)              return HttpStatus.NOT_FOUND;              // 404
         if (e instanceof IllegalStateException ise &&
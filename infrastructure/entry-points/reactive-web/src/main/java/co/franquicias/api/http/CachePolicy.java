@@ -0,0 +1,88 @@
+package co.franquicias.api.http;
+
+import co.franquicias.model.revision.Revision;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Política de caché HTTP de una ruta GET, aplicada en {@code RouterRest} con {@code politica.apply(handler::x)}.
+ * <p>
+ * Antes de invocar el handler calcula la {@link Revision} del recurso (consulta solo de versiones) y, si
+ * {@code If-None-Match} sigue vigente, responde 304 sin leer ni serializar el cuerpo. Si no, delega y
+ * agrega {@code ETag} y el {@code Cache-Control} de la ruta a la respuesta 2xx. Solo ETag: una fecha de
+ * última modificación no avanza con las bajas, así que {@code If-Modified-Since} se ignora. Una revisión
+ * vacía (recurso inexistente, paginado, streaming, listado con productos) deja pasar la petición sin
+ * validadores. Las rutas sin política conservan el {@code no-store} de
+ * {@link co.franquicias.api.config.SecurityHeadersConfig}.
+ */
+public class CachePolicy implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    /** Sufijo del ETag cuando el cuerpo va sin sobre: son representaciones distintas del mismo estado. */
+    static final String SUFIJO_SIN_SOBRE = "-raw";
+
+    private static final String VARY = "Accept, X-Envelope-Skip, X-Envelope-Disable";
+
+    private final CacheControl cacheControl;
+    private final Function<ServerRequest, Mono<Revision>> revision;
+
+    public CachePolicy(CacheControl cacheControl, Function<ServerRequest, Mono<Revision>> revision) {
+        this.cacheControl = cacheControl;
+        this.revision = revision;
+    }
+
+    /** Cacheable solo por el cliente y siempre revalidado: el 304 sale de la consulta de versiones. */
+    public static CachePolicy revalidar(Function<ServerRequest, Mono<Revision>> revision) {
+        return new CachePolicy(CacheControl.noCache().cachePrivate(), revision);
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest req, HandlerFunction<ServerResponse> next) {
+        return revision.apply(req)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(r -> r.isEmpty() ? next.handle(req) : responder(req, next, r.get()));
+    }
+
+    private Mono<ServerResponse> responder(ServerRequest req, HandlerFunction<ServerResponse> next, Revision r) {
+        String etag = etag(req, r);
+        Optional<ServerResponse> noModificado = req.checkNotModified(etag);
+        if (noModificado.isPresent()) {
+            return ServerResponse.from(noModificado.get())
+                    .cacheControl(cacheControl)
+                    .header(HttpHeaders.VARY, VARY)
+                    .build();
+        }
+        // checkNotModified ya dejó el ETag en el exchange; los headers de un ServerResponse
+        // construido son de solo lectura, así que la política se escribe también ahí
+        HttpHeaders headers = req.exchange().getResponse().getHeaders();
+        return next.handle(req)
+                .doOnNext(resp -> {
+                    if (resp.statusCode().is2xxSuccessful()) {
+                        headers.setETag(etag);
+                        headers.setCacheControl(cacheControl);
+                        headers.set(HttpHeaders.VARY, VARY);
+                    } else {
+                        sinValidadores(headers);
+                    }
+                })
+                .doOnError(e -> sinValidadores(headers));
+    }
+
+    /** Un error no describe la revisión del recurso. */
+    private static void sinValidadores(HttpHeaders headers) {
+        headers.remove(HttpHeaders.ETAG);
+    }
+
+    private static String etag(ServerRequest req, Revision r) {
+        String sufijo = ResponseEnvelopeFilter.shouldSkip(req.exchange()) ? SUFIJO_SIN_SOBRE : "";
+        return "\"" + r.getEtag() + sufijo + "\"";
+    }
+}
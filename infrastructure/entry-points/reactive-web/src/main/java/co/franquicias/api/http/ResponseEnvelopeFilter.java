@@ -26,6 +26,9 @@ public class ResponseEnvelopeFilter implements WebFilter {
     private static final String HEADER_SKIP    = "X-Envelope-Skip";
     private static final String HEADER_DISABLE = "X-Envelope-Disable";
 
+    /** Atributo del exchange: el handler ya escribió el cuerpo con el sobre y el filtro no lo acumula. */
+    public static final String ATTR_ENVUELTO = ResponseEnvelopeFilter.class.getName() + ".envuelto";
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
         if (shouldSkip(exchange)) return chain.filter(exchange);
@@ -36,6 +39,9 @@ public class ResponseEnvelopeFilter implements WebFilter {
         ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(original) {
             @Override
             public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                if (Boolean.TRUE.equals(exchange.getAttribute(ATTR_ENVUELTO))) {
+                    return super.writeWith(body);
+                }
                 HttpStatusCode sc = getStatusCode() != null ? getStatusCode() : HttpStatusCode.valueOf(200);
                 boolean is2xx = sc.value() >= 200 && sc.value() < 300;
 
@@ -43,8 +49,8 @@ public class ResponseEnvelopeFilter implements WebFilter {
                 boolean isJson = ct != null && (MediaType.APPLICATION_JSON.isCompatibleWith(ct)
                         || MediaType.APPLICATION_PROBLEM_JSON.isCompatibleWith(ct));
 
-                // No tocar si no es 2xx o no es JSON "normal"
-                if (!is2xx || !isJson) {
+                // No tocar si no es 2xx, no es JSON "normal" o es un stream (NDJSON/SSE no se acumula)
+                if (!is2xx || !isJson || isStreaming(ct)) {
                     return super.writeWith(body);
                 }
 
@@ -63,10 +69,7 @@ public class ResponseEnvelopeFilter implements WebFilter {
                                     return super.writeWith(Mono.just(bufferFactory.wrap(trimmed.getBytes(StandardCharsets.UTF_8))));
                                 }
 
-                                String message = defaultMessage(sc.value());
-                                String wrapped = "{\"status\":" + sc.value() +
-                                        ",\"message\":\"" + escapeJson(message) + "\"," +
-                                        "\"data\":" + (trimmed.isEmpty() ? "null" : trimmed) + "}";
+                                String wrapped = prefijo(sc.value()) + (trimmed.isEmpty() ? "null" : trimmed) + "}";
 
                                 getHeaders().setContentType(MediaType.APPLICATION_JSON);
                                 getHeaders().remove("Content-Length"); // chunked
@@ -82,12 +85,35 @@ public class ResponseEnvelopeFilter implements WebFilter {
         return chain.filter(exchange.mutate().response(decorated).build());
     }
 
-    private boolean shouldSkip(ServerWebExchange ex) {
+    /** El cliente pidió el cuerpo sin sobre: la representación cambia, así que {@link CachePolicy} también el ETag. */
+    public static boolean shouldSkip(ServerWebExchange ex) {
         var h = ex.getRequest().getHeaders();
         return "true".equalsIgnoreCase(h.getFirst(HEADER_SKIP))
                 || "true".equalsIgnoreCase(h.getFirst(HEADER_DISABLE));
     }
 
+    /**
+     * El mismo sobre 200 que arma el filtro alrededor de {@code data} (JSON ya serializado), para los
+     * handlers que guardan la respuesta completa y la marcan con {@link #ATTR_ENVUELTO}.
+     */
+    public static byte[] envolverOk(byte[] data) {
+        byte[] prefijo = prefijo(200).getBytes(StandardCharsets.UTF_8);
+        byte[] sobre = new byte[prefijo.length + data.length + 1];
+        System.arraycopy(prefijo, 0, sobre, 0, prefijo.length);
+        System.arraycopy(data, 0, sobre, prefijo.length, data.length);
+        sobre[sobre.length - 1] = '}';
+        return sobre;
+    }
+
+    private static String prefijo(int status) {
+        return "{\"status\":" + status + ",\"message\":\"" + escapeJson(defaultMessage(status)) + "\",\"data\":";
+    }
+
+    private static boolean isStreaming(MediaType ct) {
+        return MediaType.APPLICATION_NDJSON.isCompatibleWith(ct)
+                || MediaType.TEXT_EVENT_STREAM.isCompatibleWith(ct);
+    }
+
     private static boolean alreadyEnveloped(String json) {
         return json.startsWith("{") && json.contains("\"status\"") && json.contains("\"data\"");
     }
@@ -0,0 +1,139 @@
+package co.franquicias.api.mapper;
+
+import co.franquicias.model.lote.ImportacionProducto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura incremental de archivos de importación de productos (NDJSON o CSV).
+ * <p>
+ * El cuerpo se decodifica línea a línea a medida que llegan los buffers, sin juntarlo en memoria;
+ * cada línea se limita a {@value #MAX_BYTES_LINEA} bytes. Una línea que no se puede leer no corta la
+ * importación: produce una fila con {@code errorFormato} que se reporta como inválida.
+ */
+public final class ImportacionMappers {
+    private ImportacionMappers() {}
+
+    static final int MAX_BYTES_LINEA = 64 * 1024;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final List<String> COLUMNAS = List.of("sucursalId", "nombre", "stock");
+
+    /** Líneas del cuerpo (sin delimitador), decodificadas en streaming. */
+    public static Flux<String> lineas(Flux<DataBuffer> cuerpo) {
+        StringDecoder decoder = StringDecoder.allMimeTypes(List.of("\r\n", "\n"), true);
+        decoder.setMaxInMemorySize(MAX_BYTES_LINEA);
+        return decoder.decode(cuerpo, ResolvableType.forClass(String.class), MimeTypeUtils.TEXT_PLAIN, Map.of());
+    }
+
+    /** Una fila por línea no vacía: {@code {"sucursalId":..,"nombre":..,"stock":..}}. */
+    public static Flux<ImportacionProducto> desdeNdjson(Flux<String> lineas) {
+        return numeradas(lineas)
+                .map(l -> {
+                    try {
+                        JsonNode n = JSON.readTree(l.texto());
+                        return ImportacionProducto.builder()
+                                .fila(l.numero())
+                                .sucursalId(texto(n, "sucursalId"))
+                                .nombre(texto(n, "nombre"))
+                                .stock(n.hasNonNull("stock") && n.get("stock").canConvertToInt() ? n.get("stock").intValue() : null)
+                                .errorFormato(n.hasNonNull("stock") && !n.get("stock").canConvertToInt()
+                                        ? "stock debe ser un número entero" : null)
+                                .build();
+                    } catch (Exception e) {
+                        return invalida(l.numero(), "JSON inválido");
+                    }
+                });
+    }
+
+    /**
+     * CSV con columnas {@code sucursalId,nombre,stock}; una primera línea con esos nombres se toma
+     * como encabezado. Admite campos entre comillas dobles (con {@code ""} como comilla escapada).
+     */
+    public static Flux<ImportacionProducto> desdeCsv(Flux<String> lineas) {
+        return numeradas(lineas)
+                .filter(l -> !(l.numero() == 1 && esEncabezado(l.texto())))
+                .map(l -> {
+                    List<String> campos = campos(l.texto());
+                    if (campos == null || campos.size() != COLUMNAS.size()) {
+                        return invalida(l.numero(), "Se esperaban " + COLUMNAS.size() + " columnas: " + String.join(",", COLUMNAS));
+                    }
+                    Integer stock;
+                    try {
+                        stock = campos.get(2).isBlank() ? null : Integer.valueOf(campos.get(2).trim());
+                    } catch (NumberFormatException e) {
+                        return invalida(l.numero(), "stock debe ser un número entero");
+                    }
+                    return ImportacionProducto.builder()
+                            .fila(l.numero())
+                            .sucursalId(campos.get(0).trim())
+                            .nombre(campos.get(1))
+                            .stock(stock)
+                            .build();
+                });
+    }
+
+    // ================== Helpers ==================
+
+    private record Linea(long numero, String texto) { }
+
+    private static Flux<Linea> numeradas(Flux<String> lineas) {
+        return lineas.index()
+                .map(t -> new Linea(t.getT1() + 1, t.getT2()))
+                .filter(l -> !l.texto().isBlank());
+    }
+
+    private static ImportacionProducto invalida(long fila, String motivo) {
+        return ImportacionProducto.builder().fila(fila).errorFormato(motivo).build();
+    }
+
+    private static String texto(JsonNode n, String campo) {
+        return n.hasNonNull(campo) ? n.get(campo).asText() : null;
+    }
+
+    private static boolean esEncabezado(String linea) {
+        List<String> campos = campos(linea);
+        return campos != null && campos.stream().map(String::trim).toList().equals(COLUMNAS);
+    }
+
+    /** Separa una línea CSV; null si tiene comillas sin cerrar. */
+    static List<String> campos(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            return null;
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
@@ -0,0 +1,331 @@
+package co.franquicias.api.snapshot;
+
+import co.franquicias.api.coalescing.CoalescedorLecturas;
+import co.franquicias.api.http.ResponseEnvelopeFilter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Snapshots de los reportes agregados acotados que toleran unos segundos de desfase
+ * ({@code max-stock-por-sucursal}, una fila por sucursal de la franquicia), guardados ya serializados y
+ * envueltos en el sobre de {@link ResponseEnvelopeFilter}. Los listados sin cota (p. ej. la vista global
+ * de productos) no se guardan: se sirven en streaming.
+ * <p>
+ * Un acierto responde los bytes guardados tal cual, sin volver a consultar, serializar ni envolver (el
+ * filtro los deja pasar); con {@code X-Envelope-Skip} se responde el tramo {@code data}. La antigüedad
+ * del snapshot (milisegundos) va en {@value #HEADER_EDAD}. Un fallo (primera consulta, snapshot más viejo
+ * que el {@code staleness} del reporte o invalidado) lo calcula una sola vez para todas las solicitudes
+ * concurrentes y lo guarda.
+ * <p>
+ * Cada {@code refresh-interval} se recalculan en segundo plano los snapshots que pasaron la mitad de su
+ * {@code staleness}, así las lecturas en régimen casi nunca esperan un cálculo; los que no se leyeron
+ * desde su último cálculo se descartan en lugar de recalcularse. Las escrituras del {@code Handler}
+ * invalidan los snapshots afectados; los cambios hechos por otra instancia quedan acotados por el
+ * {@code staleness}.
+ */
+@Slf4j
+@Component
+public class SnapshotsReportes {
+
+    public static final String HEADER_EDAD = "X-Snapshot-Age";
+
+    public enum Reporte {
+        MAX_STOCK("max-stock");
+
+        private final String nombre;
+
+        Reporte(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String nombre() {
+            return nombre;
+        }
+    }
+
+    private record Clave(Reporte reporte, String id) { }
+
+    /** {@code sobre} es la respuesta envuelta; el arreglo JSON del reporte empieza en {@code inicioDatos}. */
+    private record Snapshot(byte[] sobre, int inicioDatos, long generadoNanos) { }
+
+    /**
+     * Snapshot de una clave y cómo recalcularlo desde el refresco programado. La época es de la clave:
+     * invalidar una franquicia no descarta los cálculos en vuelo de las demás.
+     */
+    private static final class Entrada {
+        private final Supplier<Flux<?>> calculo;
+        /** Se incrementa en cada invalidación: un cálculo que empezó antes no guarda su resultado. */
+        private long epoca;
+        private final AtomicInteger calculando = new AtomicInteger();
+        /** {@code null} mientras se calcula por primera vez o tras una invalidación. */
+        private volatile Snapshot snapshot;
+        private volatile boolean leida = true;
+
+        private Entrada(Supplier<Flux<?>> calculo) {
+            this.calculo = calculo;
+        }
+
+        private synchronized long epoca() {
+            return epoca;
+        }
+
+        private synchronized void invalidar() {
+            epoca++;
+            snapshot = null;
+        }
+
+        /** Guarda {@code s} si nadie invalidó la clave desde {@code epocaInicial}. */
+        private synchronized void guardar(long epocaInicial, Snapshot s, boolean leida) {
+            if (epoca == epocaInicial) {
+                this.snapshot = s;
+                this.leida = leida;
+            }
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final CoalescedorLecturas coalescedor;
+    private final boolean enabled;
+    private final Map<Reporte, Duration> staleness;
+    private final Duration intervalo;
+    private final int maxEntradas;
+    private final LongSupplier reloj;
+
+    private final Map<Clave, Entrada> entradas = new ConcurrentHashMap<>();
+
+    private final Map<Reporte, Counter> aciertos = new EnumMap<>(Reporte.class);
+    private final Map<Reporte, Counter> fallos = new EnumMap<>(Reporte.class);
+    private final Map<Reporte, Timer> calculos = new EnumMap<>(Reporte.class);
+
+    private Disposable programado;
+
+    public SnapshotsReportes(ObjectMapper mapper,
+                             CoalescedorLecturas coalescedor,
+                             MeterRegistry registry,
+                             @Value("${franquicias.snapshots.enabled:true}") boolean enabled,
+                             @Value("${franquicias.snapshots.max-stock.staleness:PT5S}") Duration maxStock,
+                             @Value("${franquicias.snapshots.refresh-interval:PT1S}") Duration intervalo,
+                             @Value("${franquicias.snapshots.max-entries:1000}") int maxEntradas) {
+        this(mapper, coalescedor, registry, enabled, maxStock, intervalo, maxEntradas, System::nanoTime);
+    }
+
+    SnapshotsReportes(ObjectMapper mapper, CoalescedorLecturas coalescedor, MeterRegistry registry, boolean enabled,
+                      Duration maxStock, Duration intervalo, int maxEntradas, LongSupplier reloj) {
+        if (maxStock.isNegative() || maxStock.isZero()) {
+            throw new IllegalArgumentException("franquicias.snapshots.max-stock.staleness debe ser positivo");
+        }
+        if (intervalo.isNegative() || intervalo.isZero()) {
+            throw new IllegalArgumentException("franquicias.snapshots.refresh-interval debe ser positivo");
+        }
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("franquicias.snapshots.max-entries debe ser mayor a 0");
+        }
+        this.mapper = mapper;
+        this.coalescedor = coalescedor;
+        this.enabled = enabled;
+        this.staleness = new EnumMap<>(Map.of(Reporte.MAX_STOCK, maxStock));
+        this.intervalo = intervalo;
+        this.maxEntradas = maxEntradas;
+        this.reloj = reloj;
+
+        for (Reporte r : Reporte.values()) {
+            aciertos.put(r, Counter.builder("franquicias.snapshots.consultas").tag("reporte", r.nombre())
+                    .tag("resultado", "acierto").description("Reportes servidos desde un snapshot vigente")
+                    .register(registry));
+            fallos.put(r, Counter.builder("franquicias.snapshots.consultas").tag("reporte", r.nombre())
+                    .tag("resultado", "fallo").description("Reportes que esperaron el cálculo del snapshot")
+                    .register(registry));
+            calculos.put(r, Timer.builder("franquicias.snapshots.calculo").tag("reporte", r.nombre())
+                    .description("Consulta y serialización de un snapshot").register(registry));
+        }
+        Gauge.builder("franquicias.snapshots.entradas", this, SnapshotsReportes::entradas)
+                .description("Snapshots de reportes en memoria").register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (enabled && programado == null) {
+            programado = Flux.interval(intervalo)
+                    .onBackpressureDrop()
+                    .concatMap(t -> refrescar())
+                    .subscribe();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (programado != null) {
+            programado.dispose();
+            programado = null;
+        }
+    }
+
+    /**
+     * Respuesta 200 con el reporte {@code reporte}/{@code id} como arreglo JSON: desde el snapshot si
+     * está vigente, si no desde {@code calculo}. Deshabilitado, calcula en cada solicitud.
+     */
+    public Mono<ServerResponse> responder(ServerRequest req, Reporte reporte, String id, Supplier<Flux<?>> calculo) {
+        boolean sinSobre = ResponseEnvelopeFilter.shouldSkip(req.exchange());
+        return snapshot(reporte, id, calculo)
+                .flatMap(s -> {
+                    ByteBuffer cuerpo;
+                    if (sinSobre) {
+                        cuerpo = ByteBuffer.wrap(s.sobre(), s.inicioDatos(), s.sobre().length - 1 - s.inicioDatos());
+                    } else {
+                        req.exchange().getAttributes().put(ResponseEnvelopeFilter.ATTR_ENVUELTO, Boolean.TRUE);
+                        cuerpo = ByteBuffer.wrap(s.sobre());
+                    }
+                    return ServerResponse.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header(HEADER_EDAD, Long.toString(edadMillis(s)))
+                            .bodyValue(cuerpo);
+                });
+    }
+
+    /** Descarta el snapshot del reporte para {@code id} (p. ej. una franquicia tras escribir en ella). */
+    public void invalidar(Reporte reporte, String id) {
+        Entrada entrada = entradas.get(new Clave(reporte, id));
+        if (entrada != null) {
+            entrada.invalidar();
+        }
+    }
+
+    /** Descarta todos los snapshots del reporte (escrituras que no identifican la franquicia). */
+    public void invalidar(Reporte reporte) {
+        entradas.forEach((clave, entrada) -> {
+            if (clave.reporte() == reporte) {
+                entrada.invalidar();
+            }
+        });
+    }
+
+    /**
+     * Recalcula los snapshots leídos que pasaron la mitad de su staleness y descarta los no leídos,
+     * junto con los invalidados que nadie volvió a pedir.
+     */
+    Mono<Void> refrescar() {
+        long ahora = reloj.getAsLong();
+        return Flux.fromIterable(entradas.entrySet())
+                .filter(e -> {
+                    Snapshot s = e.getValue().snapshot;
+                    return s == null || ahora - s.generadoNanos() >= staleness.get(e.getKey().reporte()).toNanos() / 2;
+                })
+                .flatMap(e -> {
+                    Entrada entrada = e.getValue();
+                    if (entrada.snapshot == null) {
+                        if (entrada.calculando.get() == 0) {
+                            entradas.remove(e.getKey(), entrada);
+                        }
+                        return Mono.empty();
+                    }
+                    if (!entrada.leida) {
+                        entradas.remove(e.getKey(), entrada);
+                        return Mono.empty();
+                    }
+                    return calcular(e.getKey(), entrada.calculo, false)
+                            .onErrorResume(ex -> {
+                                // se conserva el anterior: al vencer, la próxima lectura lo recalcula
+                                log.warn("No se pudo refrescar el snapshot {}/{}: {}",
+                                        e.getKey().reporte().nombre(), e.getKey().id(), ex.getMessage());
+                                return Mono.empty();
+                            });
+                }, 4)
+                .then();
+    }
+
+    /** Snapshots guardados (sin contar las claves invalidadas o en su primer cálculo). */
+    int entradas() {
+        return (int) entradas.values().stream().filter(e -> e.snapshot != null).count();
+    }
+
+    private Mono<Snapshot> snapshot(Reporte reporte, String id, Supplier<Flux<?>> calculo) {
+        if (!enabled) {
+            return serializar(reporte, calculo);
+        }
+        return Mono.defer(() -> {
+            Clave clave = new Clave(reporte, id);
+            Entrada entrada = entradas.get(clave);
+            Snapshot s = entrada != null ? entrada.snapshot : null;
+            if (s != null && vigente(reporte, s)) {
+                entrada.leida = true;
+                aciertos.get(reporte).increment();
+                return Mono.just(s);
+            }
+            fallos.get(reporte).increment();
+            return coalescedor.mono("snapshot-" + reporte.nombre(), id, () -> calcular(clave, calculo, true));
+        });
+    }
+
+    /**
+     * Calcula y guarda el snapshot, salvo que una invalidación de la misma clave haya llegado mientras
+     * se calculaba. Con la tabla llena responde el cálculo sin guardarlo.
+     */
+    private Mono<Snapshot> calcular(Clave clave, Supplier<Flux<?>> calculo, boolean leida) {
+        return Mono.defer(() -> {
+            Entrada entrada = entradas.get(clave);
+            if (entrada == null && entradas.size() < maxEntradas) {
+                entrada = entradas.computeIfAbsent(clave, c -> new Entrada(calculo));
+            }
+            if (entrada == null) {
+                return serializar(clave.reporte(), calculo);
+            }
+            Entrada destino = entrada;
+            long epoca = destino.epoca();
+            destino.calculando.incrementAndGet();
+            return serializar(clave.reporte(), calculo)
+                    .doOnNext(s -> destino.guardar(epoca, s, leida))
+                    .doFinally(x -> destino.calculando.decrementAndGet());
+        });
+    }
+
+    private Mono<Snapshot> serializar(Reporte reporte, Supplier<Flux<?>> calculo) {
+        return Mono.defer(() -> {
+            long inicio = reloj.getAsLong();
+            return Flux.defer(calculo).collectList()
+                    .map(filas -> {
+                        try {
+                            byte[] json = mapper.writeValueAsBytes(filas);
+                            byte[] sobre = ResponseEnvelopeFilter.envolverOk(json);
+                            return new Snapshot(sobre, sobre.length - 1 - json.length, reloj.getAsLong());
+                        } catch (JsonProcessingException e) {
+                            throw new IllegalStateException("No se pudo serializar el reporte " + reporte.nombre(), e);
+                        }
+                    })
+                    .doFinally(s -> calculos.get(reporte).record(reloj.getAsLong() - inicio, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private boolean vigente(Reporte reporte, Snapshot s) {
+        return reloj.getAsLong() - s.generadoNanos() < staleness.get(reporte).toNanos();
+    }
+
+    private long edadMillis(Snapshot s) {
+        return TimeUnit.NANOSECONDS.toMillis(reloj.getAsLong() - s.generadoNanos());
+    }
+}
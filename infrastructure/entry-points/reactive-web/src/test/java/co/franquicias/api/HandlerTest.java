@@ -1,25 +1,42 @@
 package co.franquicias.api;
 
+import co.franquicias.api.coalescing.CoalescedorLecturas;
 import co.franquicias.api.dto.franquicia.CreateFranquiciaRequest;
 import co.franquicias.api.dto.franquicia.UpdateFranquiciaRequest;
+import co.franquicias.api.dto.producto.AjustarStockRequest;
 import co.franquicias.api.dto.producto.CreateProductoRequest;
 import co.franquicias.api.dto.producto.UpdateProductoRequest;
 import co.franquicias.api.dto.producto.UpdateStockRequest;
 import co.franquicias.api.dto.sucursal.CreateSucursalRequest;
 import co.franquicias.api.dto.sucursal.UpdateSucursalRequest;
+import co.franquicias.api.snapshot.SnapshotsReportes;
+import co.franquicias.model.busqueda.ResultadoBusqueda;
 import co.franquicias.model.franquicia.Franquicia;
+import co.franquicias.model.lote.ActualizacionStock;
+import co.franquicias.model.lote.ImportacionProducto;
+import co.franquicias.model.lote.ResultadoActualizacion;
+import co.franquicias.model.lote.ResultadoImportacion;
+import co.franquicias.model.pagina.Pagina;
 import co.franquicias.model.producto.Producto;
+import co.franquicias.model.revision.Revision;
 import co.franquicias.model.sucursal.Sucursal;
 import co.franquicias.usecase.franquicia.FranquiciaUseCase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.server.*;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -30,7 +47,6 @@ class HandlerTest {
     @Mock
     FranquiciaUseCase useCase;
 
-    @InjectMocks
     Handler handler;
 
     WebTestClient client;
@@ -38,6 +54,10 @@ class HandlerTest {
     @BeforeEach
     void setup() {
         MockitoAnnotations.openMocks(this);
+        CoalescedorLecturas coalescedor = new CoalescedorLecturas(new SimpleMeterRegistry(), true, 100);
+        SnapshotsReportes snapshots = new SnapshotsReportes(new ObjectMapper(), coalescedor, new SimpleMeterRegistry(),
+                true, Duration.ofMinutes(1), Duration.ofSeconds(1), 100);
+        handler = new Handler(useCase, coalescedor, snapshots);
         RouterFunction<ServerResponse> router = buildRouter(handler);
         client = WebTestClient.bindToRouterFunction(router).build();
     }
@@ -81,6 +101,9 @@ class HandlerTest {
                 .POST("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos", h::agregarProducto)
                 .DELETE("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}", h::eliminarProducto)
                 .PUT("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}/stock", h::actualizarStock)
+                .PATCH("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos/{productoId}/stock/delta", h::ajustarStock)
+                .POST("/api/productos/stock/bulk", h::actualizarStockLote)
+                .POST("/api/franquicias/{franquiciaId}/productos/import", h::importarProductos)
                 .PUT("/api/productos/{productoId}", h::actualizarProducto)
                 // Reportes / consultas
                 .GET("/api/franquicias/{franquiciaId}/reportes/max-stock", h::maxStockPorSucursal)
@@ -88,6 +111,8 @@ class HandlerTest {
                 .GET("/api/productos/{productoId}/global", h::getProductoGlobal)
                 .GET("/api/productos/search", h::searchProductosGlobal)
                 .GET("/api/franquicias/{franquiciaId}/sucursales/{sucursalId}/productos", h::getProductosDeSucursal)
+                .POST("/api/admin/productos-view/rebuild", h::reconstruirVistaProductos)
+                .GET("/api/admin/productos-view/consistency", h::verificarVistaProductos)
                 .build();
     }
 
@@ -290,6 +315,21 @@ class HandlerTest {
                 .jsonPath("$.stock").isEqualTo(9);
     }
 
+    @Test
+    @DisplayName("PATCH /api/.../productos/{pId}/stock/delta => 200 y devuelve producto con el stock nuevo")
+    void ajustarStock() {
+        when(useCase.ajustarStock("f1","s1","p1",-3))
+                .thenReturn(Mono.just(p("p1","s1","P",6)));
+
+        client.patch().uri("/api/franquicias/f1/sucursales/s1/productos/p1/stock/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AjustarStockRequest(-3))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.stock").isEqualTo(6);
+    }
+
     @Test
     @DisplayName("PUT /api/productos/{pId} => mapea stock=0 cuando viene null/ausente")
     void actualizarProducto_stockDefaultCero() {
@@ -342,6 +382,57 @@ class HandlerTest {
                 .jsonPath("$[1].stock").isEqualTo(0);
     }
 
+    @Test
+    @DisplayName("max-stock: la segunda consulta sale del snapshot con su antigüedad; una escritura de stock lo invalida")
+    void maxStockPorSucursal_snapshot() {
+        when(useCase.maxStockPorSucursal("f1"))
+                .thenReturn(Flux.just(Map.of("sucursalId", "s1", "stock", 10)))
+                .thenReturn(Flux.just(Map.of("sucursalId", "s1", "stock", 3)));
+        when(useCase.actualizarStock("f1", "s1", "p1", 3)).thenReturn(Mono.just(p("p1","s1","A",3)));
+
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/api/franquicias/f1/reportes/max-stock")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().exists(SnapshotsReportes.HEADER_EDAD)
+                    .expectBody().jsonPath("$.data[0].stock").isEqualTo(10);
+        }
+        verify(useCase, times(1)).maxStockPorSucursal("f1");
+
+        client.put().uri("/api/franquicias/f1/sucursales/s1/productos/p1/stock")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UpdateStockRequest(3))
+                .exchange()
+                .expectStatus().isOk();
+
+        client.get().uri("/api/franquicias/f1/reportes/max-stock")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.data[0].stock").isEqualTo(3);
+        verify(useCase, times(2)).maxStockPorSucursal("f1");
+    }
+
+    @Test
+    @DisplayName("POST /api/admin/productos-view/rebuild => 200 con documentos; GET consistency => reporte")
+    void vistaProductosAdmin() {
+        when(useCase.reconstruirVistaProductos()).thenReturn(Mono.just(5L));
+        when(useCase.verificarVistaProductos()).thenReturn(Mono.just(Map.<String, Object>of(
+                "faltantes", 0, "desactualizados", 1, "sobrantes", 0, "consistente", false)));
+
+        client.post().uri("/api/admin/productos-view/rebuild")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.documentos").isEqualTo(5);
+
+        client.get().uri("/api/admin/productos-view/consistency")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.desactualizados").isEqualTo(1)
+                .jsonPath("$.consistente").isEqualTo(false);
+    }
+
     @Test
     @DisplayName("GET /api/productos => 200 lista")
     void getAllProductos() {
@@ -354,6 +445,167 @@ class HandlerTest {
                 .jsonPath("$[0].id").isEqualTo("p1");
     }
 
+    @Test
+    @DisplayName("GET /api/productos con Accept NDJSON / SSE => stream elemento a elemento")
+    void getAllProductos_streaming() {
+        when(useCase.getAllProductos()).thenReturn(Flux.just(p("p1","s1","A",1), p("p2","s1","B",2)));
+
+        client.get().uri("/api/productos")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Producto.class).hasSize(2);
+
+        client.get().uri("/api/productos")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .expectBodyList(Producto.class).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("POST /api/productos/stock/bulk con NDJSON => mapea cada línea y responde un resultado por entrada")
+    void actualizarStockLote() {
+        when(useCase.actualizarStockLote(any())).thenAnswer(inv -> {
+            Flux<ActualizacionStock> cambios = inv.getArgument(0);
+            return cambios.map(c -> ResultadoActualizacion.de(c,
+                    c.getStock() == null ? ResultadoActualizacion.Estado.INVALIDO : ResultadoActualizacion.Estado.ACTUALIZADO, null));
+        });
+
+        client.post().uri("/api/productos/stock/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("""
+                        {"productoId":"p1","sucursalId":"s1","stock":5}
+                        {"productoId":"p2","sucursalId":"s1"}
+                        """)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(ResultadoActualizacion.class)
+                .value(rs -> {
+                    Assertions.assertEquals(2, rs.size());
+                    Assertions.assertEquals(ResultadoActualizacion.Estado.ACTUALIZADO, rs.get(0).getEstado());
+                    Assertions.assertEquals(ResultadoActualizacion.Estado.INVALIDO, rs.get(1).getEstado());
+                });
+    }
+
+    @Test
+    @DisplayName("POST /api/productos/stock/bulk con arreglo JSON y sin Accept => responde NDJSON")
+    void actualizarStockLote_porDefectoNdjson() {
+        when(useCase.actualizarStockLote(any())).thenAnswer(inv -> {
+            Flux<ActualizacionStock> cambios = inv.getArgument(0);
+            return cambios.map(c -> ResultadoActualizacion.de(c, ResultadoActualizacion.Estado.ACTUALIZADO, null));
+        });
+
+        client.post().uri("/api/productos/stock/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        [{"productoId":"p1","sucursalId":"s1","stock":5}]
+                        """)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(ResultadoActualizacion.class).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("POST /api/franquicias/{id}/productos/import con text/csv => filas numeradas, errores de formato por fila")
+    void importarProductos_csv() {
+        when(useCase.importarProductos(eq("f1"), any())).thenAnswer(inv -> {
+            Flux<ImportacionProducto> filas = inv.getArgument(1);
+            return filas.map(f -> ResultadoImportacion.de(f,
+                    f.getErrorFormato() == null ? ResultadoImportacion.Estado.CREADO : ResultadoImportacion.Estado.INVALIDO,
+                    null, f.getErrorFormato()));
+        });
+
+        client.post().uri("/api/franquicias/f1/productos/import")
+                .contentType(MediaType.valueOf("text/csv"))
+                .bodyValue("sucursalId,nombre,stock\r\ns1,\"Leche, entera\",3\r\ns1,Pan,abc\r\n")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(ResultadoImportacion.class)
+                .value(rs -> {
+                    Assertions.assertEquals(2, rs.size());
+                    Assertions.assertEquals(2, rs.get(0).getFila());
+                    Assertions.assertEquals("Leche, entera", rs.get(0).getNombre());
+                    Assertions.assertEquals(ResultadoImportacion.Estado.INVALIDO, rs.get(1).getEstado());
+                    Assertions.assertEquals("stock debe ser un número entero", rs.get(1).getMensaje());
+                });
+    }
+
+    @Test
+    @DisplayName("POST /api/franquicias/{id}/productos/import sin Content-Type CSV => se lee como NDJSON; sin Accept responde NDJSON")
+    void importarProductos_ndjson() {
+        when(useCase.importarProductos(eq("f1"), any())).thenAnswer(inv -> {
+            Flux<ImportacionProducto> filas = inv.getArgument(1);
+            return filas.map(f -> ResultadoImportacion.de(f, ResultadoImportacion.Estado.CREADO, "p" + f.getFila(), null));
+        });
+
+        client.post().uri("/api/franquicias/f1/productos/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("""
+                        {"sucursalId":"s1","nombre":"Leche","stock":3}
+                        {"sucursalId":"s1","nombre":"Pan","stock":1}
+                        """)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(ResultadoImportacion.class)
+                .value(rs -> {
+                    Assertions.assertEquals(2, rs.size());
+                    Assertions.assertEquals("p2", rs.get(1).getProductoId());
+                });
+    }
+
+    @Test
+    @DisplayName("GET /api/franquicias con Accept */* => sigue siendo un arreglo JSON")
+    void obtenerFranquicias_acceptComodin() {
+        when(useCase.obtenerFranquicias(false)).thenReturn(Flux.just(f("f1","F1")));
+
+        client.get().uri("/api/franquicias")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("f1");
+    }
+
+    @Test
+    @DisplayName("GET /api/productos?limit&after => página keyset con nextCursor")
+    void getAllProductos_paginado() {
+        when(useCase.getAllProductos(2, "c1"))
+                .thenReturn(Mono.just(new Pagina<>(List.of(p("p1","s1","A",1), p("p2","s1","B",2)), "c2")));
+
+        client.get().uri("/api/productos?limit=2&after=c1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[1].id").isEqualTo("p2")
+                .jsonPath("$.nextCursor").isEqualTo("c2");
+
+        verify(useCase, never()).getAllProductos();
+    }
+
+    @Test
+    @DisplayName("GET /api/franquicias/{fId}/sucursales?after=.. => página con limit por defecto")
+    void listarSucursales_paginado() {
+        when(useCase.obtenerSucursalPorFranquiciaId("f1", 50, "c1"))
+                .thenReturn(Mono.just(new Pagina<>(List.of(s("s1","f1","S1")), null)));
+
+        client.get().uri("/api/franquicias/f1/sucursales?after=c1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo("s1")
+                .jsonPath("$.nextCursor").doesNotExist();
+    }
+
     @Test
     @DisplayName("GET /api/productos/{pId}/global => 200 con mapa")
     void getProductoGlobal() {
@@ -369,16 +621,18 @@ class HandlerTest {
     }
 
     @Test
-    @DisplayName("GET /api/productos/search?nombreLike=ab => 200 con lista")
+    @DisplayName("GET /api/productos/search?nombreLike=ab&limit=5 => 200 con lista")
     void searchProductosGlobal() {
-        when(useCase.searchProductosGlobal("ab"))
-                .thenReturn(Flux.just(p("p1","s1","ab",1)));
+        when(useCase.searchProductosGlobal("ab", 5))
+                .thenReturn(Mono.just(ResultadoBusqueda.builder()
+                        .consulta("ab").productos(List.of(p("p1","s1","ab",1))).build()));
 
-        client.get().uri("/api/productos/search?nombreLike=ab")
+        client.get().uri("/api/productos/search?nombreLike=ab&limit=5")
                 .exchange()
                 .expectStatus().isOk()
                 .expectBody()
-                .jsonPath("$[0].nombre").isEqualTo("ab");
+                .jsonPath("$.productos[0].nombre").isEqualTo("ab")
+                .jsonPath("$.sugerencias").isEqualTo(false);
     }
 
     @Test
@@ -406,4 +660,30 @@ class HandlerTest {
         verify(useCase, times(1)).obtenerFranquiciaPorNombre("F1");
         verify(useCase, never()).obtenerPorId(anyString());
     }
+
+    @Test
+    @DisplayName("revisiones: delegan con el id de la ruta; listado con productos, paginado o streaming => sin revisión")
+    void revisiones() {
+        Revision rev = new Revision("abc");
+        when(useCase.revisionFranquicia("f1")).thenReturn(Mono.just(rev));
+        when(useCase.revisionSucursal("s1")).thenReturn(Mono.just(rev));
+        when(useCase.revisionFranquicias()).thenReturn(Mono.just(rev));
+
+        ServerRequest porFranquicia = MockServerRequest.builder().pathVariable("franquiciaId", "f1").build();
+        ServerRequest porSucursal = MockServerRequest.builder().pathVariable("sucursalId", "s1").build();
+        ServerRequest listado = MockServerRequest.builder().build();
+        ServerRequest conProductos = MockServerRequest.builder().queryParam("includeProductos", "true").build();
+        ServerRequest paginado = MockServerRequest.builder().queryParam("limit", "10").build();
+        ServerRequest ndjson = MockServerRequest.builder()
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE).build();
+
+        StepVerifier.create(handler.revisionFranquicia(porFranquicia)).expectNext(rev).verifyComplete();
+        StepVerifier.create(handler.revisionSucursal(porSucursal)).expectNext(rev).verifyComplete();
+        StepVerifier.create(handler.revisionFranquicias(listado)).expectNext(rev).verifyComplete();
+        StepVerifier.create(handler.revisionFranquicias(conProductos)).verifyComplete();
+        StepVerifier.create(handler.revisionFranquicias(paginado)).verifyComplete();
+        StepVerifier.create(handler.revisionFranquicias(ndjson)).verifyComplete();
+
+        verify(useCase, times(1)).revisionFranquicias();
+    }
 }
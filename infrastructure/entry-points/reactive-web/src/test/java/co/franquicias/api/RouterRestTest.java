@@ -2,13 +2,16 @@ package co.franquicias.api;
 
 import co.franquicias.api.dto.franquicia.CreateFranquiciaRequest;
 import co.franquicias.api.dto.franquicia.UpdateFranquiciaRequest;
+import co.franquicias.api.dto.producto.AjustarStockRequest;
 import co.franquicias.api.dto.producto.CreateProductoRequest;
 import co.franquicias.api.dto.producto.UpdateProductoRequest;
 import co.franquicias.api.dto.producto.UpdateStockRequest;
 import co.franquicias.api.dto.sucursal.CreateSucursalRequest;
 import co.franquicias.api.dto.sucursal.UpdateSucursalRequest;
+import co.franquicias.model.revision.Revision;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.server.*;
@@ -33,6 +36,10 @@ class RouterRestTest {
     @BeforeEach
     void setUp() {
         closeable = MockitoAnnotations.openMocks(this);
+        // sin revisión las rutas con CachePolicy van directo al handler
+        when(handler.revisionFranquicias(any())).thenReturn(Mono.empty());
+        when(handler.revisionFranquicia(any())).thenReturn(Mono.empty());
+        when(handler.revisionSucursal(any())).thenReturn(Mono.empty());
         RouterRest routerRest = new RouterRest(handler);
         RouterFunction<ServerResponse> routes = routerRest.routerFunction();
         client = WebTestClient.bindToRouterFunction(routes).build();
@@ -117,6 +124,38 @@ class RouterRestTest {
         verify(handler).getAllProductos(any());
     }
 
+    @Test
+    @DisplayName("POST /api/productos/stock/bulk enruta a handler::actualizarStockLote")
+    void productos_stockBulk() {
+        when(handler.actualizarStockLote(any())).thenReturn(okEmpty());
+
+        client.post().uri("/api/productos/stock/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"productoId\":\"p1\",\"sucursalId\":\"s1\",\"stock\":1}\n")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(handler).actualizarStockLote(any());
+    }
+
+    @Test
+    @DisplayName("POST /api/franquicias/{franquiciaId}/productos/import enruta a handler::importarProductos")
+    void productos_import() {
+        when(handler.importarProductos(any())).thenAnswer(inv -> {
+            ServerRequest req = inv.getArgument(0);
+            Assertions.assertEquals("f1", req.pathVariable("franquiciaId"));
+            return okEmpty();
+        });
+
+        client.post().uri("/api/franquicias/f1/productos/import")
+                .contentType(MediaType.valueOf("text/csv"))
+                .bodyValue("s1,Leche,3\n")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(handler).importarProductos(any());
+    }
+
     @Test
     @DisplayName("GET /api/productos/{productoId} enruta a handler::getProductoGlobal con path variable")
     void productos_getById() {
@@ -181,6 +220,19 @@ class RouterRestTest {
         verify(handler).obtenerFranquicias(any());
     }
 
+    @Test
+    @DisplayName("GET /api/franquicias/{franquiciaId} con If-None-Match vigente => 304 sin invocar el handler")
+    void franquicias_getById_noModificado() {
+        when(handler.revisionFranquicia(any())).thenReturn(Mono.just(new Revision("abc")));
+
+        client.get().uri("/api/franquicias/f1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        verify(handler, never()).obtenerFranquicia(any());
+    }
+
     @Test
     @DisplayName("GET /api/franquicias/by-name enruta a handler::obtenerFranquiciaPorNombre")
     void franquicias_byName() {
@@ -378,6 +430,25 @@ class RouterRestTest {
         verify(handler).actualizarStock(any());
     }
 
+    @Test
+    @DisplayName("PATCH /api/franquicias/{fId}/sucursales/{sId}/productos/{pId}/stock/delta -> handler::ajustarStock")
+    void productos_patchStockDelta() {
+        when(handler.ajustarStock(any())).thenAnswer(inv -> {
+            ServerRequest req = inv.getArgument(0);
+            Assertions.assertEquals("p1", req.pathVariable("productoId"));
+            return okJson(Map.of("stock", 6));
+        });
+
+        client.patch().uri("/api/franquicias/f1/sucursales/s1/productos/p1/stock/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AjustarStockRequest(-3))
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(handler).ajustarStock(any());
+        verify(handler, never()).actualizarStock(any());
+    }
+
     @Test
     @DisplayName("GET /api/franquicias/{fId}/max-stock-por-sucursal -> handler::maxStockPorSucursal")
     void reporte_maxStockPorSucursal() {
@@ -398,6 +469,23 @@ class RouterRestTest {
         verify(handler).maxStockPorSucursal(any());
     }
 
+    @Test
+    @DisplayName("POST /api/admin/productos-view/rebuild y GET .../consistency -> handlers de administración")
+    void admin_productosView() {
+        when(handler.reconstruirVistaProductos(any())).thenAnswer(inv -> okJson(Map.of("documentos", 1)));
+        when(handler.verificarVistaProductos(any())).thenAnswer(inv -> okJson(Map.of("consistente", true)));
+
+        client.post().uri("/api/admin/productos-view/rebuild")
+                .exchange()
+                .expectStatus().isOk();
+        client.get().uri("/api/admin/productos-view/consistency")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(handler).reconstruirVistaProductos(any());
+        verify(handler).verificarVistaProductos(any());
+    }
+
     @Test
     @DisplayName("GET /api/franquicias/{fId}/sucursales/{sId}/productos -> handler::getProductosDeSucursal")
     void productos_porSucursal() {
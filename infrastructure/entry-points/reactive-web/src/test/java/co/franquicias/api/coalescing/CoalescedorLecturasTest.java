@@ -0,0 +1,145 @@
+package co.franquicias.api.coalescing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CoalescedorLecturasTest {
+
+    SimpleMeterRegistry registry;
+    CoalescedorLecturas coalescedor;
+    AtomicInteger lecturas;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescedor = new CoalescedorLecturas(registry, true, 2);
+        lecturas = new AtomicInteger();
+    }
+
+    private <T> Mono<T> contar(Mono<T> lectura) {
+        return Mono.defer(() -> {
+            lecturas.incrementAndGet();
+            return lectura;
+        });
+    }
+
+    private double solicitudes(String operacion, String resultado) {
+        return registry.get("franquicias.coalescing.solicitudes")
+                .tag("operacion", operacion).tag("resultado", resultado).counter().count();
+    }
+
+    @Test
+    @DisplayName("solicitudes concurrentes con la misma clave => una sola lectura y el mismo resultado")
+    void singleFlight() {
+        Sinks.One<String> resultado = Sinks.one();
+
+        Mono<List<String>> tres = Flux.merge(
+                        coalescedor.mono("franquicia", "f1", () -> contar(resultado.asMono())),
+                        coalescedor.mono("franquicia", "f1", () -> contar(resultado.asMono())),
+                        coalescedor.mono("franquicia", "f1", () -> contar(resultado.asMono())))
+                .collectList();
+
+        StepVerifier.create(tres)
+                .then(() -> {
+                    Assertions.assertEquals(1, coalescedor.enCurso());
+                    resultado.tryEmitValue("F1");
+                })
+                .expectNext(List.of("F1", "F1", "F1"))
+                .verifyComplete();
+
+        Assertions.assertEquals(1, lecturas.get());
+        Assertions.assertEquals(0, coalescedor.enCurso());
+        Assertions.assertEquals(1.0, solicitudes("franquicia", "origen"));
+        Assertions.assertEquals(2.0, solicitudes("franquicia", "compartida"));
+        Assertions.assertEquals(3.0, registry.get("franquicias.coalescing.coalescencia").gauge().value());
+    }
+
+    @Test
+    @DisplayName("no es caché: al terminar la lectura la siguiente solicitud vuelve a leer")
+    void sinCache() {
+        StepVerifier.create(coalescedor.mono("franquicia", "f1", () -> contar(Mono.just("a")))).expectNext("a").verifyComplete();
+        StepVerifier.create(coalescedor.mono("franquicia", "f1", () -> contar(Mono.just("b")))).expectNext("b").verifyComplete();
+
+        Assertions.assertEquals(2, lecturas.get());
+        Assertions.assertEquals(0, coalescedor.enCurso());
+    }
+
+    @Test
+    @DisplayName("claves distintas no se mezclan; un error llega a todos y libera la clave")
+    void clavesYErrores() {
+        Sinks.One<String> f1 = Sinks.one();
+
+        StepVerifier.create(Flux.merge(
+                                coalescedor.mono("franquicia", "f1", () -> contar(f1.asMono())).materialize(),
+                                coalescedor.mono("franquicia", "f1", () -> contar(f1.asMono())).materialize(),
+                                coalescedor.mono("sucursal", "f1", () -> contar(Mono.just("S1"))).materialize())
+                        .collectList())
+                .then(() -> f1.tryEmitError(new IllegalArgumentException("Franquicia no encontrada")))
+                .expectNextMatches(senales -> senales.stream().filter(s -> s.isOnError()).count() == 2
+                        && senales.stream().anyMatch(s -> "S1".equals(s.get())))
+                .verifyComplete();
+
+        Assertions.assertEquals(2, lecturas.get());
+        Assertions.assertEquals(0, coalescedor.enCurso());
+    }
+
+    @Test
+    @DisplayName("tabla llena => la lectura va directa y se cuenta como desborde")
+    void desborde() {
+        Sinks.One<String> pendiente = Sinks.one();
+        coalescedor.mono("franquicia", "f1", () -> pendiente.asMono()).subscribe();
+        coalescedor.mono("franquicia", "f2", () -> pendiente.asMono()).subscribe();
+
+        StepVerifier.create(coalescedor.mono("franquicia", "f3", () -> contar(Mono.just("F3"))))
+                .expectNext("F3")
+                .verifyComplete();
+
+        Assertions.assertEquals(2, coalescedor.enCurso());
+        Assertions.assertEquals(1.0, solicitudes("franquicia", "desborde"));
+        pendiente.tryEmitValue("x");
+        Assertions.assertEquals(0, coalescedor.enCurso());
+    }
+
+    @Test
+    @DisplayName("flux: quien se suma tarde recibe todas las filas")
+    void flux() {
+        Sinks.One<String> fin = Sinks.one();
+        Flux<String> filas = Flux.just("s1", "s2").concatWith(fin.asMono());
+
+        StepVerifier.create(Flux.merge(
+                                coalescedor.flux("max-stock", "f1", () -> filas),
+                                coalescedor.flux("max-stock", "f1", () -> filas))
+                        .collectList())
+                .then(() -> fin.tryEmitValue("s3"))
+                .expectNextMatches(l -> l.size() == 6)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("deshabilitado => cada solicitud lee; max-keys debe ser positivo")
+    void deshabilitadoYConfig() {
+        coalescedor = new CoalescedorLecturas(new SimpleMeterRegistry(), false, 2);
+        Sinks.One<String> resultado = Sinks.one();
+
+        StepVerifier.create(Flux.merge(
+                                coalescedor.mono("franquicia", "f1", () -> contar(resultado.asMono())),
+                                coalescedor.mono("franquicia", "f1", () -> contar(resultado.asMono()))))
+                .then(() -> resultado.tryEmitValue("F1"))
+                .expectNext("F1", "F1")
+                .verifyComplete();
+        Assertions.assertEquals(2, lecturas.get());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new CoalescedorLecturas(new SimpleMeterRegistry(), true, 0));
+    }
+}
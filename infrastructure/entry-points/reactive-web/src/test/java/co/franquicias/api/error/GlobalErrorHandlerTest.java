@@ -1,5 +1,6 @@
 package co.franquicias.api.error;
 
+import co.franquicias.model.producto.StockInsuficienteException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -37,6 +38,7 @@ class GlobalErrorHandlerTest {
                 .GET("/e/no-such", r -> { throw new NoSuchElementException("missing"); })
                 .GET("/e/dup", r -> { throw new DuplicateKeyException("duplicado"); })
                 .GET("/e/div", r -> { throw new DataIntegrityViolationException("violación"); })
+                .GET("/e/stock", r -> { throw new StockInsuficienteException("p1", -5); })
                 .GET("/e/unsupported", r -> { throw new UnsupportedMediaTypeStatusException("tipo no soportado"); })
                 .GET("/e/boom", r -> { throw new RuntimeException("boom"); })
                 .GET("/e/method", r -> ServerResponse.ok().build())
@@ -133,6 +135,17 @@ class GlobalErrorHandlerTest {
                 .jsonPath("$.message").isEqualTo("violación");
     }
 
+    @Test
+    @DisplayName("StockInsuficienteException => 409")
+    void stockInsuficiente_is409() {
+        client.get().uri("/e/stock")
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(409)
+                .jsonPath("$.message").isEqualTo("Stock insuficiente para el producto p1 (delta -5)");
+    }
+
     @Test
     @DisplayName("Excepción no mapeada => 500 + mensaje original")
     void unknown_is500() {
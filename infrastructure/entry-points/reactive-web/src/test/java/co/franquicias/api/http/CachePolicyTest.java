@@ -0,0 +1,134 @@
+package co.franquicias.api.http;
+
+import co.franquicias.api.config.SecurityHeadersConfig;
+import co.franquicias.model.revision.Revision;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+class CachePolicyTest {
+
+    static final Instant MODIFICADO = Instant.parse("2024-05-01T10:00:00Z");
+
+    WebTestClient client;
+    AtomicInteger invocaciones;
+    AtomicReference<Revision> revision;
+
+    @BeforeEach
+    void setUp() {
+        invocaciones = new AtomicInteger();
+        revision = new AtomicReference<>(new Revision("abc123"));
+        CachePolicy politica = CachePolicy.revalidar(req -> Mono.justOrEmpty(revision.get()));
+
+        RouterFunction<ServerResponse> router = route()
+                .GET("/recurso", politica.apply(req -> {
+                    invocaciones.incrementAndGet();
+                    return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("id", "f1"));
+                }))
+                .GET("/error", politica.apply(req -> ServerResponse.status(HttpStatus.BAD_REQUEST).build()))
+                .GET("/sin-politica", req -> ServerResponse.ok().bodyValue("x"))
+                .build();
+
+        client = WebTestClient.bindToRouterFunction(router)
+                .webFilter(new SecurityHeadersConfig())
+                .build();
+    }
+
+    @Test
+    @DisplayName("200 con ETag fuerte (sin Last-Modified) y Cache-Control de la ruta en lugar de no-store")
+    void validadores() {
+        client.get().uri("/recurso")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc123\"")
+                .expectHeader().doesNotExist(HttpHeaders.LAST_MODIFIED)
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache, private")
+                .expectBody().jsonPath("$.id").isEqualTo("f1");
+
+        client.get().uri("/sin-politica")
+                .exchange()
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    @Test
+    @DisplayName("If-None-Match vigente => 304 sin invocar el handler; tras un cambio => 200 con el ETag nuevo")
+    void ifNoneMatch() {
+        client.get().uri("/recurso")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc123\"")
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache, private")
+                .expectBody().isEmpty();
+        Assertions.assertEquals(0, invocaciones.get());
+
+        revision.set(new Revision("def456"));
+        client.get().uri("/recurso")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"def456\"");
+        Assertions.assertEquals(1, invocaciones.get());
+    }
+
+    @Test
+    @DisplayName("If-Modified-Since se ignora: una baja no avanza ninguna fecha, solo el ETag valida")
+    void ifModifiedSince() {
+        String fecha = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(MODIFICADO, ZoneOffset.UTC));
+
+        client.get().uri("/recurso")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, fecha)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc123\"");
+        Assertions.assertEquals(1, invocaciones.get());
+    }
+
+    @Test
+    @DisplayName("sin sobre => ETag distinto: no valida la representación con sobre")
+    void etagSinSobre() {
+        client.get().uri("/recurso")
+                .header("X-Envelope-Skip", "true")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc123-raw\"");
+    }
+
+    @Test
+    @DisplayName("sin revisión o respuesta no 2xx => sin validadores y no-store")
+    void sinValidadores() {
+        revision.set(null);
+        client.get().uri("/recurso")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.ETAG)
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        revision.set(new Revision("abc123"));
+        client.get().uri("/error")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectHeader().doesNotExist(HttpHeaders.ETAG)
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+}
@@ -53,6 +53,17 @@ class ResponseEnvelopeFilterTest {
                                 .contentType(MediaType.APPLICATION_PROBLEM_JSON)
                                 .bodyValue(Map.of("type","about:blank","title","problem","status",200))
                 )
+                .GET("/preenvuelto", req -> {
+                    req.exchange().getAttributes().put(ResponseEnvelopeFilter.ATTR_ENVUELTO, Boolean.TRUE);
+                    return ServerResponse.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(ResponseEnvelopeFilter.envolverOk("[{\"id\":\"p1\"}]".getBytes()));
+                })
+                .GET("/ndjson", req ->
+                        ServerResponse.ok()
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .body(reactor.core.publisher.Flux.just(Map.of("id","p1"), Map.of("id","p2")), Map.class)
+                )
                 .GET("/skip", req ->
                         ServerResponse.ok()
                                 .contentType(MediaType.APPLICATION_JSON)
@@ -109,6 +120,16 @@ class ResponseEnvelopeFilterTest {
                 .jsonPath("$.data.status").doesNotExist();
     }
 
+    @Test
+    @DisplayName("Cuerpo marcado con ATTR_ENVUELTO => pasa tal cual, con el mismo sobre que arma el filtro")
+    void preEnvuelto_passThrough() {
+        client.get().uri("/preenvuelto")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"status\":200,\"message\":\"OK\",\"data\":[{\"id\":\"p1\"}]}");
+    }
+
     @Test
     @DisplayName("Si content-type no es JSON (text/plain), NO envuelve")
     void nonJson_passThrough() {
@@ -177,4 +198,19 @@ class ResponseEnvelopeFilterTest {
                 .jsonPath("$.raw").isEqualTo(true)
                 .jsonPath("$.status").doesNotExist();
     }
+
+    @Test
+    @DisplayName("200 + application/x-ndjson => no se acumula ni envuelve: un documento por línea")
+    void ndjson_shouldPassThrough() {
+        client.get().uri("/ndjson")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(body -> {
+                    String[] lineas = body.trim().split("\n");
+                    org.junit.jupiter.api.Assertions.assertEquals(2, lineas.length);
+                    org.junit.jupiter.api.Assertions.assertFalse(body.contains("\"status\""));
+                });
+    }
 }
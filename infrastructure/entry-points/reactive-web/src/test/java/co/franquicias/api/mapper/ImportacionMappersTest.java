@@ -0,0 +1,86 @@
+package co.franquicias.api.mapper;
+
+import co.franquicias.model.lote.ImportacionProducto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ImportacionMappersTest {
+
+    private static Flux<DataBuffer> buffers(String... partes) {
+        return Flux.fromArray(partes)
+                .map(p -> DefaultDataBufferFactory.sharedInstance.wrap(p.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("lineas: une líneas partidas entre buffers y acepta \\n o \\r\\n")
+    void lineas() {
+        StepVerifier.create(ImportacionMappers.lineas(buffers("s1,Le", "che,3\r\ns1,Pan", ",1\n", "s1,Cafe,2")))
+                .expectNext("s1,Leche,3", "s1,Pan,1", "s1,Cafe,2")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("desdeCsv: salta encabezado y líneas vacías; numera por línea del archivo; admite comillas")
+    void desdeCsv() {
+        Flux<String> lineas = Flux.just("sucursalId,nombre,stock", "s1,\"Leche \"\"entera\"\", 1L\",3", "", "s2,Pan,");
+
+        StepVerifier.create(ImportacionMappers.desdeCsv(lineas))
+                .assertNext(f -> {
+                    Assertions.assertEquals(2, f.getFila());
+                    Assertions.assertEquals("s1", f.getSucursalId());
+                    Assertions.assertEquals("Leche \"entera\", 1L", f.getNombre());
+                    Assertions.assertEquals(3, f.getStock());
+                    Assertions.assertNull(f.getErrorFormato());
+                })
+                .assertNext(f -> {
+                    Assertions.assertEquals(4, f.getFila());
+                    Assertions.assertNull(f.getStock());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("desdeCsv: columnas de más/de menos, comillas sin cerrar o stock no numérico => errorFormato")
+    void desdeCsv_errores() {
+        Flux<String> lineas = Flux.just("s1,Leche", "s1,\"Pan,2", "s1,Cafe,x", "s1,Te,1,extra");
+
+        StepVerifier.create(ImportacionMappers.desdeCsv(lineas).map(ImportacionProducto::getErrorFormato))
+                .expectNext("Se esperaban 3 columnas: sucursalId,nombre,stock")
+                .expectNext("Se esperaban 3 columnas: sucursalId,nombre,stock")
+                .expectNext("stock debe ser un número entero")
+                .expectNext("Se esperaban 3 columnas: sucursalId,nombre,stock")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("desdeNdjson: JSON inválido o stock no entero => errorFormato, el resto sigue")
+    void desdeNdjson() {
+        Flux<String> lineas = Flux.just(
+                "{\"sucursalId\":\"s1\",\"nombre\":\"Leche\",\"stock\":3}",
+                "{no es json",
+                "{\"sucursalId\":\"s1\",\"nombre\":\"Pan\",\"stock\":\"muchos\"}",
+                "{\"sucursalId\":\"s1\",\"nombre\":\"Cafe\"}");
+
+        StepVerifier.create(ImportacionMappers.desdeNdjson(lineas))
+                .expectNextMatches(f -> f.getFila() == 1 && "Leche".equals(f.getNombre()) && f.getStock() == 3)
+                .expectNextMatches(f -> f.getFila() == 2 && "JSON inválido".equals(f.getErrorFormato()))
+                .expectNextMatches(f -> "stock debe ser un número entero".equals(f.getErrorFormato()))
+                .expectNextMatches(f -> f.getStock() == null && f.getErrorFormato() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("campos: separa por coma respetando comillas; null si quedan abiertas")
+    void campos() {
+        Assertions.assertEquals(List.of("a", "b,c", ""), ImportacionMappers.campos("a,\"b,c\","));
+        Assertions.assertNull(ImportacionMappers.campos("a,\"b"));
+    }
+}
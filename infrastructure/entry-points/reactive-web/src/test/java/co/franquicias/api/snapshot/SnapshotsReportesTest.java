@@ -0,0 +1,212 @@
+package co.franquicias.api.snapshot;
+
+import co.franquicias.api.coalescing.CoalescedorLecturas;
+import co.franquicias.api.http.ResponseEnvelopeFilter;
+import co.franquicias.api.snapshot.SnapshotsReportes.Reporte;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+class SnapshotsReportesTest {
+
+    static final Duration STALENESS = Duration.ofSeconds(10);
+
+    AtomicLong reloj;
+    AtomicInteger calculos;
+    SimpleMeterRegistry registry;
+    SnapshotsReportes snapshots;
+    WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new AtomicLong();
+        calculos = new AtomicInteger();
+        registry = new SimpleMeterRegistry();
+        snapshots = nuevo(true, 100);
+    }
+
+    private SnapshotsReportes nuevo(boolean enabled, int maxEntradas) {
+        SnapshotsReportes s = new SnapshotsReportes(new ObjectMapper(), new CoalescedorLecturas(registry, true, 100),
+                registry, enabled, STALENESS, Duration.ofSeconds(1), maxEntradas, reloj::get);
+        client = WebTestClient.bindToWebHandler(RouterFunctions.toWebHandler(route()
+                        .GET("/max-stock/{id}", req -> s.responder(req, Reporte.MAX_STOCK, req.pathVariable("id"),
+                                () -> Flux.defer(() -> Flux.just(Map.of("franquiciaId", req.pathVariable("id"),
+                                        "calculo", calculos.incrementAndGet())))))
+                        .build()))
+                .webFilter(new ResponseEnvelopeFilter())
+                .build();
+        return s;
+    }
+
+    private WebTestClient.ResponseSpec consultar(String id) {
+        return client.get().uri("/max-stock/" + id).exchange().expectStatus().isOk();
+    }
+
+    private static ServerRequest peticion() {
+        return MockServerRequest.builder()
+                .exchange(MockServerWebExchange.from(MockServerHttpRequest.get("/max-stock")))
+                .build();
+    }
+
+    private void avanzar(Duration d) {
+        reloj.addAndGet(d.toNanos());
+    }
+
+    @Test
+    @DisplayName("fallo => calcula y guarda; acierto => mismos bytes sin recalcular, con su antigüedad en el header")
+    void aciertoYFallo() {
+        consultar("f1").expectHeader().valueEquals(SnapshotsReportes.HEADER_EDAD, "0")
+                .expectBody().jsonPath("$.data[0].calculo").isEqualTo(1);
+        avanzar(Duration.ofMillis(2500));
+        consultar("f1").expectHeader().valueEquals(SnapshotsReportes.HEADER_EDAD, "2500")
+                .expectBody().jsonPath("$.data[0].calculo").isEqualTo(1);
+
+        Assertions.assertEquals(1, calculos.get());
+        Assertions.assertEquals(1.0, registry.get("franquicias.snapshots.consultas")
+                .tag("reporte", "max-stock").tag("resultado", "acierto").counter().count());
+        Assertions.assertEquals(1.0, registry.get("franquicias.snapshots.consultas")
+                .tag("reporte", "max-stock").tag("resultado", "fallo").counter().count());
+    }
+
+    @Test
+    @DisplayName("el acierto sale ya envuelto sin que el filtro lo re-copie; con X-Envelope-Skip, solo el arreglo")
+    void sobre() {
+        consultar("f1").expectBody()
+                .jsonPath("$.status").isEqualTo(200)
+                .jsonPath("$.message").isEqualTo("OK")
+                .jsonPath("$.data[0].franquiciaId").isEqualTo("f1")
+                .jsonPath("$.data.status").doesNotExist();
+
+        client.get().uri("/max-stock/f1").header("X-Envelope-Skip", "true").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].franquiciaId").isEqualTo("f1")
+                .jsonPath("$[0].calculo").isEqualTo(1)
+                .jsonPath("$.status").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("más viejo que el staleness => se recalcula en la solicitud")
+    void vencido() {
+        consultar("f1");
+        avanzar(STALENESS);
+        consultar("f1").expectHeader().valueEquals(SnapshotsReportes.HEADER_EDAD, "0")
+                .expectBody().jsonPath("$.data[0].calculo").isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("invalidar => la próxima solicitud recalcula; solo se descarta la franquicia indicada")
+    void invalidar() {
+        consultar("f1");
+        consultar("f2");
+
+        snapshots.invalidar(Reporte.MAX_STOCK, "f1");
+        consultar("f1").expectBody().jsonPath("$.data[0].calculo").isEqualTo(3);
+        consultar("f2").expectBody().jsonPath("$.data[0].calculo").isEqualTo(2);
+
+        snapshots.invalidar(Reporte.MAX_STOCK);
+        Assertions.assertEquals(0, snapshots.entradas());
+    }
+
+    @Test
+    @DisplayName("una invalidación de la misma clave durante el cálculo => el resultado se responde pero no se guarda")
+    void invalidacionEnVuelo() {
+        Sinks.One<Map<String, Object>> fila = Sinks.one();
+        StepVerifier.create(snapshots.responder(peticion(), Reporte.MAX_STOCK, "f1", () -> fila.asMono().flux()))
+                .then(() -> {
+                    snapshots.invalidar(Reporte.MAX_STOCK, "f1");
+                    fila.tryEmitValue(Map.of("id", "p1"));
+                })
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(0, snapshots.entradas());
+    }
+
+    @Test
+    @DisplayName("invalidar otra franquicia durante el cálculo => el snapshot en vuelo sí se guarda")
+    void invalidacionDeOtraClave() {
+        consultar("f1");
+        Sinks.One<Map<String, Object>> fila = Sinks.one();
+        StepVerifier.create(snapshots.responder(peticion(), Reporte.MAX_STOCK, "f2", () -> fila.asMono().flux()))
+                .then(() -> {
+                    snapshots.invalidar(Reporte.MAX_STOCK, "f1");
+                    fila.tryEmitValue(Map.of("id", "p1"));
+                })
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, snapshots.entradas());
+        consultar("f2").expectBody().jsonPath("$.data[0].id").isEqualTo("p1");
+        Assertions.assertEquals(1, calculos.get());
+    }
+
+    @Test
+    @DisplayName("refresco: recalcula los leídos que pasaron medio staleness y descarta los no leídos")
+    void refrescar() {
+        consultar("f1");
+        consultar("f2");
+        avanzar(STALENESS.dividedBy(2));
+        StepVerifier.create(snapshots.refrescar()).verifyComplete();
+        Assertions.assertEquals(4, calculos.get());
+        Assertions.assertEquals(2, snapshots.entradas());
+
+        // solo f1 vuelve a leerse: desde el snapshot refrescado, sin recalcular
+        consultar("f1").expectHeader().valueEquals(SnapshotsReportes.HEADER_EDAD, "0")
+                .expectBody().jsonPath("$.data[0].calculo").isEqualTo(3);
+        avanzar(STALENESS.dividedBy(2));
+        StepVerifier.create(snapshots.refrescar()).verifyComplete();
+
+        Assertions.assertEquals(5, calculos.get());
+        Assertions.assertEquals(1, snapshots.entradas());
+    }
+
+    @Test
+    @DisplayName("tabla llena => se responde el cálculo sin guardarlo")
+    void maxEntradas() {
+        snapshots = nuevo(true, 1);
+        consultar("f1");
+        consultar("f2");
+        consultar("f2");
+
+        Assertions.assertEquals(3, calculos.get());
+        Assertions.assertEquals(1, snapshots.entradas());
+    }
+
+    @Test
+    @DisplayName("deshabilitado => calcula en cada solicitud; configuración inválida => IAE")
+    void deshabilitadoYConfig() {
+        snapshots = nuevo(false, 100);
+        consultar("f1");
+        consultar("f1").expectBody().jsonPath("$.data[0].calculo").isEqualTo(2);
+        Assertions.assertEquals(0, snapshots.entradas());
+
+        ObjectMapper mapper = new ObjectMapper();
+        CoalescedorLecturas coalescedor = new CoalescedorLecturas(new SimpleMeterRegistry(), true, 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnapshotsReportes(mapper, coalescedor,
+                new SimpleMeterRegistry(), true, Duration.ZERO, Duration.ofSeconds(1), 1, reloj::get));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnapshotsReportes(mapper, coalescedor,
+                new SimpleMeterRegistry(), true, STALENESS, Duration.ZERO, 1, reloj::get));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SnapshotsReportes(mapper, coalescedor,
+                new SimpleMeterRegistry(), true, STALENESS, Duration.ofSeconds(1), 0, reloj::get));
+    }
+}